@@ -0,0 +1,98 @@
+package benchmark;
+
+import dao.HibernateUtil;
+import dao.SessionTemplate;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import model.Attorney;
+import model.BatchInsertResult;
+import model.Case;
+import model.TimeEntry;
+import service.implementation.TimeEntryServiceImpl;
+
+/**
+ * Measures time entry insert throughput with one createTimeEntry call per entry
+ * against one createTimeEntries call per batch. The service is called in-process,
+ * so RMI round trips (which the batch path also saves) are not included.
+ * Inserted rows are deleted again at the end.
+ *
+ * Usage: TimeEntryBatchBenchmark &lt;caseId&gt; &lt;attorneyId&gt; [entries] [entriesPerCall]
+ */
+public class TimeEntryBatchBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: TimeEntryBatchBenchmark <caseId> <attorneyId> [entries] [entriesPerCall]");
+            return;
+        }
+        int caseId = Integer.parseInt(args[0]);
+        int attorneyId = Integer.parseInt(args[1]);
+        int entries = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int perCall = args.length > 3 ? Integer.parseInt(args[3]) : entries;
+        String prefix = "BENCH-" + System.currentTimeMillis() + "-";
+
+        TimeEntryServiceImpl service = new TimeEntryServiceImpl();
+        try {
+            // Warm up both paths so JIT and the pool are in steady state
+            for (int i = 0; i < 200; i++) {
+                service.createTimeEntry(newEntry(prefix + "W" + i, caseId, attorneyId));
+            }
+            service.createTimeEntries(newEntries(prefix + "WB", 200, caseId, attorneyId));
+
+            List<TimeEntry> single = newEntries(prefix + "S", entries, caseId, attorneyId);
+            long start = System.nanoTime();
+            for (TimeEntry entry : single) {
+                service.createTimeEntry(entry);
+            }
+            report("createTimeEntry per entry", entries, System.nanoTime() - start);
+
+            List<TimeEntry> batch = newEntries(prefix + "B", entries, caseId, attorneyId);
+            int inserted = 0;
+            start = System.nanoTime();
+            for (int from = 0; from < entries; from += perCall) {
+                BatchInsertResult result = service.createTimeEntries(batch.subList(from, Math.min(from + perCall, entries)));
+                inserted += result != null ? result.getInsertedCount() : 0;
+            }
+            report("createTimeEntries x" + perCall, inserted, System.nanoTime() - start);
+        } finally {
+            int deleted = SessionTemplate.inTransaction("TimeEntryBatchBenchmark.cleanup", session -> session
+                    .createQuery("DELETE FROM TimeEntry t WHERE t.entryId LIKE :prefix")
+                    .setParameter("prefix", prefix + "%")
+                    .executeUpdate());
+            System.out.println("Deleted " + deleted + " benchmark entries");
+            HibernateUtil.shutdown();
+        }
+    }
+
+    private static List<TimeEntry> newEntries(String prefix, int count, int caseId, int attorneyId) {
+        List<TimeEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(newEntry(prefix + i, caseId, attorneyId));
+        }
+        return entries;
+    }
+
+    private static TimeEntry newEntry(String entryId, int caseId, int attorneyId) {
+        Case legalCase = new Case();
+        legalCase.setId(caseId);
+        Attorney attorney = new Attorney();
+        attorney.setId(attorneyId);
+
+        TimeEntry entry = new TimeEntry();
+        entry.setEntryId(entryId);
+        entry.setCase(legalCase);
+        entry.setAttorney(attorney);
+        entry.setEntryDate(LocalDate.now());
+        entry.setHours(1.5);
+        entry.setDescription("Benchmark entry");
+        entry.setHourlyRate(new BigDecimal("250.00"));
+        return entry;
+    }
+
+    private static void report(String label, int rows, long nanos) {
+        System.out.printf("%-30s %6d rows in %8.1fms  %10.0f rows/s%n",
+                label, rows, nanos / 1e6, rows / (nanos / 1e9));
+    }
+}
@@ -1,5 +1,6 @@
 package controller;
 
+import dao.HibernateUtil;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import service.implementation.*;
@@ -29,6 +30,9 @@ public class LegalCaseManagementServerController {
             registry.rebind("paymentService", new PaymentServiceImpl());
             registry.rebind("userService", new UserServiceImpl());
             
+            // Close the SessionFactory and its connection pool when the server stops
+            Runtime.getRuntime().addShutdownHook(new Thread(HibernateUtil::shutdown));
+            
             System.out.println("Legal Case Management Server is running on port 5555");
             System.out.println("Available services:");
             System.out.println("- Client Service");
@@ -0,0 +1,106 @@
+package dao;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentityGenerator;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
+
+/**
+ * Inserts many new entities of one class with JDBC statement batching.
+ *
+ * Hibernate turns batching off for entities with IDENTITY ids, since it needs
+ * each generated key before it can go on, so saving rows one by one costs one
+ * round trip per row. This writes the rows itself in batches of
+ * hibernate.jdbc.batch_size on the session's connection and transaction, and
+ * reads the generated keys back from each batch. Values are bound through the
+ * entity's Hibernate mapping, so the columns are written exactly as
+ * session.save() would write them.
+ *
+ * The rows never enter the persistence context, so there is nothing to flush
+ * or clear between batches. Entities must have no version property and no
+ * cascades that need running on insert.
+ */
+final class BatchInsert {
+
+    static final int BATCH_SIZE = (int) HibernateUtil.getSetting("hibernate.jdbc.batch_size", 50);
+
+    private BatchInsert() {
+    }
+
+    /**
+     * Inserts the rows and sets their generated ids
+     *
+     * @param session Session whose transaction the rows join
+     * @param entityClass Entity class, which must use an IDENTITY id
+     * @param rows New entities to insert
+     * @return Generated ids in the same order as the rows
+     */
+    static <T> List<Integer> insert(Session session, Class<T> entityClass, List<T> rows) {
+        SessionImplementor sessionImpl = (SessionImplementor) session;
+        SessionFactoryImplementor factory = sessionImpl.getFactory();
+        AbstractEntityPersister persister = (AbstractEntityPersister) factory.getEntityPersister(entityClass.getName());
+        if (!(persister.getIdentifierGenerator() instanceof IdentityGenerator) || persister.isVersioned()) {
+            throw new IllegalArgumentException(entityClass.getSimpleName() + " does not support batch insert");
+        }
+
+        List<Integer> properties = new ArrayList<>();
+        StringBuilder columns = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+        Type[] types = persister.getPropertyTypes();
+        boolean[] insertable = persister.getPropertyInsertability();
+        for (int i = 0; i < types.length; i++) {
+            if (!insertable[i] || types[i].isCollectionType()) {
+                continue;
+            }
+            properties.add(i);
+            for (String column : persister.getPropertyColumnNames(i)) {
+                columns.append(columns.length() > 0 ? ", " : "").append(column);
+                placeholders.append(placeholders.length() > 0 ? ", " : "").append('?');
+            }
+        }
+        String sql = "INSERT INTO " + persister.getTableName() + " (" + columns + ") VALUES (" + placeholders + ")";
+
+        // Anything the unit of work has pending must reach the database before our rows
+        session.flush();
+
+        List<Integer> ids = new ArrayList<>(rows.size());
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                int pending = 0;
+                for (int row = 0; row < rows.size(); row++) {
+                    Object[] values = persister.getPropertyValues(rows.get(row));
+                    int index = 1;
+                    for (int property : properties) {
+                        types[property].nullSafeSet(statement, values[property], index, sessionImpl);
+                        index += types[property].getColumnSpan(factory);
+                    }
+                    statement.addBatch();
+                    if (++pending == BATCH_SIZE || row == rows.size() - 1) {
+                        statement.executeBatch();
+                        int first = row - pending + 1;
+                        try (ResultSet keys = statement.getGeneratedKeys()) {
+                            for (int i = first; i <= row; i++) {
+                                if (!keys.next()) {
+                                    throw new IllegalStateException("Driver returned fewer generated keys than rows inserted");
+                                }
+                                int id = keys.getInt(1);
+                                persister.setIdentifier(rows.get(i), (Serializable) id, sessionImpl);
+                                ids.add(id);
+                            }
+                        }
+                        pending = 0;
+                    }
+                }
+            }
+        });
+        return ids;
+    }
+}
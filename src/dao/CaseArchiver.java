@@ -0,0 +1,418 @@
+package dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import model.ArchivedCase;
+import model.Case;
+import model.CaseArchive;
+import model.CaseSummary;
+import model.Document;
+import model.Event;
+import org.hibernate.LockOptions;
+import org.hibernate.Session;
+
+/**
+ * Moves cases closed for more than hibernate.archive.after_years years out of
+ * the live tables into archived_cases.
+ *
+ * A background thread archives up to hibernate.archive.batch_size of the
+ * longest-closed cases every hibernate.archive.interval milliseconds, each in
+ * a transaction of its own, so the live tables are never locked for long and a
+ * case that cannot be moved does not hold up the rest. A case is due once it
+ * is Closed or Cancelled, its closing date is old enough and none of its
+ * invoices is still open.
+ *
+ * A restored case is marked with the day it was restored and stays live for
+ * hibernate.archive.keep_restored_days days from then, even though it is
+ * still closed; after that it is archived again like any other case.
+ *
+ * The case row and every row hanging off it (attorney links, documents,
+ * events, invoices, time entries and payments) are read column by column and
+ * stored GZIP-compressed with the lists shown for the archived case, then
+ * deleted. Restoring inserts the same rows with the same ids, so nothing that
+ * pointed at the case before it was archived points anywhere else after.
+ */
+final class CaseArchiver {
+
+    private static final Logger logger = Logger.getLogger(CaseArchiver.class.getName());
+
+    private static final long AFTER_YEARS = Math.max(1, HibernateUtil.getSetting("hibernate.archive.after_years", 7));
+    private static final long INTERVAL = HibernateUtil.getSetting("hibernate.archive.interval", 300000);
+    private static final int BATCH_SIZE = (int) Math.max(1, HibernateUtil.getSetting("hibernate.archive.batch_size", 50));
+    private static final long KEEP_RESTORED_DAYS = Math.max(0, HibernateUtil.getSetting("hibernate.archive.keep_restored_days", 90));
+
+    private static final String DUE =
+            "c.status IN ('Closed', 'Cancelled') AND c.closingDate < :cutoff "
+            + "AND (c.restoredAt IS NULL OR c.restoredAt < :restoredBefore) AND NOT EXISTS ("
+            + "SELECT i.id FROM Invoice i WHERE i.legalCase.id = c.id AND i.status NOT IN ('Paid', 'Cancelled'))";
+
+    /**
+     * Tables archived with a case, parents first, with the condition that
+     * picks a case's rows; rows are inserted in this order and deleted in reverse
+     */
+    private static final String[][] TABLES = {
+        {"cases", "id = ?"},
+        {"case_attorneys", "case_id = ?"},
+        {"documents", "case_id = ?"},
+        {"events", "case_id = ?"},
+        {"invoices", "case_id = ?"},
+        {"time_entries", "case_id = ?"},
+        {"payments", "invoice_id IN (SELECT id FROM invoices WHERE case_id = ?)"}
+    };
+
+    /**
+     * The rows of one table belonging to an archived case
+     */
+    private static final class Rows implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String table;
+        final String[] columns;
+        final int[] types;
+        final List<Object[]> values = new ArrayList<>();
+
+        Rows(String table, String[] columns, int[] types) {
+            this.table = table;
+            this.columns = columns;
+            this.types = types;
+        }
+
+        List<Integer> ids() {
+            List<Integer> ids = new ArrayList<>(values.size());
+            for (int column = 0; column < columns.length; column++) {
+                if ("id".equalsIgnoreCase(columns[column])) {
+                    for (Object[] row : values) {
+                        ids.add(((Number) row[column]).intValue());
+                    }
+                }
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * What is stored, compressed, in archived_cases.payload
+     */
+    private static final class Payload implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final CaseArchive archive;
+        final List<Rows> tables;
+
+        Payload(CaseArchive archive, List<Rows> tables) {
+            this.archive = archive;
+            this.tables = tables;
+        }
+
+        Rows rows(String table) {
+            for (Rows rows : tables) {
+                if (rows.table.equals(table)) {
+                    return rows;
+                }
+            }
+            return new Rows(table, new String[0], new int[0]);
+        }
+    }
+
+    private final ScheduledExecutorService executor;
+    // Cases that failed to move; only touched on the executor thread
+    private final Set<Integer> failed = new HashSet<>();
+
+    CaseArchiver() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "case-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (INTERVAL > 0) {
+            executor.scheduleWithFixedDelay(() -> {
+                try {
+                    archiveDue();
+                } catch (RuntimeException ex) {
+                    logger.log(Level.WARNING, "Case archiving failed", ex);
+                }
+            }, Math.max(60000, INTERVAL), Math.max(60000, INTERVAL), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Archives the next batch of due cases now, on the archiver's own thread
+     * so it never overlaps a background batch
+     *
+     * @return Number of cases archived
+     */
+    int archiveNow() {
+        try {
+            return executor.submit(this::archiveDue).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while archiving cases", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Case archiving failed", ex.getCause());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int archiveDue() {
+        LocalDate cutoff = LocalDate.now().minusYears(AFTER_YEARS);
+        LocalDate restoredBefore = LocalDate.now().minusDays(KEEP_RESTORED_DAYS);
+        List<Integer> due = SessionTemplate.inSession("CaseArchiver.due", session -> session.createQuery(
+                "SELECT c.id FROM Case c WHERE " + DUE + " ORDER BY c.closingDate, c.id")
+                .setParameter("cutoff", cutoff)
+                .setParameter("restoredBefore", restoredBefore)
+                .setMaxResults(BATCH_SIZE + failed.size())
+                .list());
+
+        int tried = 0;
+        int archived = 0;
+        for (Integer caseId : due) {
+            if (tried == BATCH_SIZE) {
+                break;
+            }
+            if (failed.contains(caseId)) {
+                continue;
+            }
+            tried++;
+            try {
+                if (SessionTemplate.inTransaction("CaseArchiver.archive", session -> archive(session, caseId, cutoff, restoredBefore))) {
+                    archived++;
+                }
+            } catch (RuntimeException ex) {
+                failed.add(caseId);
+                logger.log(Level.WARNING, "Could not archive case " + caseId + "; it is skipped until the server restarts", ex);
+            }
+        }
+        if (archived > 0) {
+            logger.info("Archived " + archived + " cases closed before " + cutoff);
+        }
+        return archived;
+    }
+
+    /**
+     * Moves one case to the archive if it is still due
+     *
+     * @return true if the case was archived
+     */
+    @SuppressWarnings("unchecked")
+    private boolean archive(Session session, int caseId, LocalDate cutoff, LocalDate restoredBefore) {
+        Case legalCase = (Case) session.get(Case.class, caseId, LockOptions.UPGRADE);
+        if (legalCase == null) {
+            return false;
+        }
+        Long stillDue = (Long) session.createQuery("SELECT COUNT(c) FROM Case c WHERE c.id = :caseId AND " + DUE)
+                .setParameter("caseId", caseId)
+                .setParameter("cutoff", cutoff)
+                .setParameter("restoredBefore", restoredBefore)
+                .uniqueResult();
+        if (stillDue == 0) {
+            // Reopened, or an invoice reissued, since the batch was picked
+            return false;
+        }
+
+        CaseSummary summary = (CaseSummary) session.createQuery(CaseDao.CASE_SUMMARY_SELECT
+                + "WHERE c.id = :caseId " + CaseDao.CASE_SUMMARY_GROUP_BY)
+                .setParameter("caseId", caseId)
+                .uniqueResult();
+        LocalDate today = LocalDate.now();
+        CaseArchive archive = new CaseArchive(summary, legalCase.getClosingDate(), today,
+                session.createQuery(DocumentDao.DOCUMENT_SUMMARY_SELECT + "WHERE c.id = :caseId ORDER BY d.dateAdded DESC")
+                        .setParameter("caseId", caseId).list(),
+                session.createQuery(EventDao.EVENT_SUMMARY_SELECT + "WHERE c.id = :caseId ORDER BY e.eventDate, e.startTime")
+                        .setParameter("caseId", caseId).list(),
+                session.createQuery(InvoiceDao.INVOICE_SUMMARY_SELECT + "WHERE c.id = :caseId ORDER BY i.issueDate DESC")
+                        .setParameter("caseId", caseId).list());
+        Payload payload = new Payload(archive, session.doReturningWork(connection -> read(connection, caseId)));
+
+        ArchivedCase archived = new ArchivedCase(caseId, legalCase.getCaseNumber(), legalCase.getTitle(),
+                legalCase.getCaseType(), legalCase.getStatus(), legalCase.getClient().getId(), summary.getClientName(),
+                legalCase.getFileDate(), legalCase.getClosingDate(), today);
+        archived.setPayload(pack(payload));
+        CaseStatistics.Row before = CaseStatistics.Row.of(legalCase);
+        session.evict(legalCase);
+        session.save(archived);
+        session.flush();
+        session.doWork(connection -> delete(connection, caseId));
+
+        CaseDao.STATISTICS.afterCommit(session, before, null);
+        CaseDao.SEARCH.afterDelete(session, caseId);
+        CaseDao.DEADLINES.afterCaseDelete(session, caseId);
+        for (int documentId : payload.rows("documents").ids()) {
+            DocumentDao.SEARCH.afterDelete(session, documentId);
+        }
+        for (int eventId : payload.rows("events").ids()) {
+            EventDao.REMINDERS.afterDelete(session, eventId);
+        }
+        return true;
+    }
+
+    /**
+     * Puts an archived case back into the live tables with its original ids
+     * and removes it from the archive. The case is marked restored today, so
+     * it is not archived again for hibernate.archive.keep_restored_days days.
+     *
+     * @return The restored case, or null if no case with that number is archived
+     */
+    @SuppressWarnings("unchecked")
+    Case restore(Session session, String caseNumber) {
+        ArchivedCase archived = (ArchivedCase) session.createQuery("FROM ArchivedCase a WHERE a.caseNumber = :caseNumber")
+                .setParameter("caseNumber", caseNumber)
+                .uniqueResult();
+        if (archived == null) {
+            return null;
+        }
+        Payload payload = unpack(archived.getPayload());
+        session.doWork(connection -> insert(connection, payload.tables));
+        session.delete(archived);
+
+        int caseId = archived.getId();
+        SqlUpdate.execute(session, "UPDATE cases SET restored_at = ? WHERE id = ?", LocalDate.now(), caseId);
+        Case legalCase = (Case) session.get(Case.class, caseId);
+        CaseDao.STATISTICS.afterCommit(session, null, CaseStatistics.Row.of(legalCase));
+        CaseDao.SEARCH.afterCommit(session, legalCase);
+        CaseDao.DEADLINES.afterCommit(session, legalCase);
+        List<Document> documents = session.createQuery("FROM Document d WHERE d.associatedCase.id = :caseId")
+                .setParameter("caseId", caseId)
+                .list();
+        for (Document document : documents) {
+            DocumentDao.SEARCH.afterCommit(session, document);
+        }
+        List<Event> events = session.createQuery("FROM Event e WHERE e.associatedCase.id = :caseId")
+                .setParameter("caseId", caseId)
+                .list();
+        for (Event event : events) {
+            EventDao.REMINDERS.afterCommit(session, event);
+            CaseDao.DEADLINES.afterCommit(session, event);
+        }
+        return legalCase;
+    }
+
+    /**
+     * Reads the lists stored for an archived case
+     */
+    static CaseArchive read(byte[] payload) {
+        return unpack(payload).archive;
+    }
+
+    private static List<Rows> read(Connection connection, int caseId) throws SQLException {
+        List<Rows> tables = new ArrayList<>(TABLES.length);
+        for (String[] table : TABLES) {
+            try (PreparedStatement select = connection.prepareStatement("SELECT * FROM " + table[0] + " WHERE " + table[1])) {
+                select.setInt(1, caseId);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    ResultSetMetaData meta = resultSet.getMetaData();
+                    String[] columns = new String[meta.getColumnCount()];
+                    int[] types = new int[columns.length];
+                    for (int column = 0; column < columns.length; column++) {
+                        columns[column] = meta.getColumnName(column + 1);
+                        types[column] = meta.getColumnType(column + 1);
+                    }
+                    Rows rows = new Rows(table[0], columns, types);
+                    while (resultSet.next()) {
+                        Object[] row = new Object[columns.length];
+                        for (int column = 0; column < columns.length; column++) {
+                            row[column] = value(resultSet.getObject(column + 1));
+                        }
+                        rows.values.add(row);
+                    }
+                    tables.add(rows);
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Copies LOB values out of the result set, since they do not outlive it
+     */
+    private static Object value(Object value) throws SQLException {
+        if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            return blob.getBytes(1, (int) blob.length());
+        }
+        if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            return clob.getSubString(1, (int) clob.length());
+        }
+        return value;
+    }
+
+    private static void delete(Connection connection, int caseId) throws SQLException {
+        for (int i = TABLES.length - 1; i >= 0; i--) {
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM " + TABLES[i][0] + " WHERE " + TABLES[i][1])) {
+                delete.setInt(1, caseId);
+                delete.executeUpdate();
+            }
+        }
+    }
+
+    private static void insert(Connection connection, List<Rows> tables) throws SQLException {
+        for (Rows rows : tables) {
+            if (rows.values.isEmpty()) {
+                continue;
+            }
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(rows.table).append(" (")
+                    .append(String.join(", ", rows.columns)).append(") VALUES (");
+            for (int column = 0; column < rows.columns.length; column++) {
+                sql.append(column == 0 ? "?" : ", ?");
+            }
+            try (PreparedStatement insert = connection.prepareStatement(sql.append(")").toString())) {
+                for (Object[] row : rows.values) {
+                    for (int column = 0; column < row.length; column++) {
+                        if (row[column] == null) {
+                            insert.setNull(column + 1, rows.types[column]);
+                        } else {
+                            insert.setObject(column + 1, row[column]);
+                        }
+                    }
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+    }
+
+    private static byte[] pack(Payload payload) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeObject(payload);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Payload unpack(byte[] payload) {
+        try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(payload)))) {
+            return (Payload) in.readObject();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException("Archived case payload is in an unknown format", ex);
+        }
+    }
+}
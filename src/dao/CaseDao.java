@@ -1,506 +1,761 @@
 package dao;
 
 import java.time.LocalDate;
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.Map;
+import model.ArchivedCase;
 import model.Case;
+import model.CaseArchive;
+import model.CaseSummary;
+import model.Page;
 import org.hibernate.Query;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
+import org.hibernate.SQLQuery;
 
 /**
  * Data Access Object for Case operations using Hibernate
  */
 public class CaseDao {
-    
+
+    private static final SequenceAllocator CASE_NUMBERS = new SequenceAllocator("CASE",
+            "SELECT MAX(CAST(SUBSTRING(c.caseNumber, 5) AS integer)) FROM Case c WHERE c.caseNumber LIKE 'CASE%'");
+
+    static final CaseStatistics STATISTICS = new CaseStatistics();
+
+    static final DeadlineIndex DEADLINES = new DeadlineIndex();
+
+    private static final CaseArchiver ARCHIVER = new CaseArchiver();
+
+    private static final Patch<Case> PATCH = new Patch<>(Case.class, Case::getVersion)
+            .requiredField("title", String.class, Case::getTitle, Case::setTitle)
+            .field("caseType", String.class, Case::getCaseType, Case::setCaseType)
+            .field("status", String.class, Case::getStatus, Case::setStatus)
+            .field("description", String.class, Case::getDescription, Case::setDescription)
+            .field("fileDate", LocalDate.class, Case::getFileDate, Case::setFileDate)
+            .field("closingDate", LocalDate.class, Case::getClosingDate, Case::setClosingDate)
+            .field("court", String.class, Case::getCourt, Case::setCourt)
+            .field("judge", String.class, Case::getJudge, Case::setJudge)
+            .field("opposingParty", String.class, Case::getOpposingParty, Case::setOpposingParty)
+            .field("opposingCounsel", String.class, Case::getOpposingCounsel, Case::setOpposingCounsel);
+
+    static final TextIndex<Case> SEARCH = new TextIndex<>(Case.class, "c", Case::getId)
+            .field("title", Case::getTitle, 3f)
+            .field("opposingParty", Case::getOpposingParty, 2f)
+            .field("court", Case::getCourt, 1.5f)
+            .field("judge", Case::getJudge, 1.5f)
+            .field("description", Case::getDescription, 1f);
+
+    private static final Keyset<Case> NEWEST_FIRST = new Keyset<>(Case.class, "c")
+            .desc("fileDate", Case::getFileDate, LocalDate::parse)
+            .desc("id", Case::getId, Integer::valueOf);
+
+    private static final Keyset<Case> OLDEST_FIRST = new Keyset<>(Case.class, "c")
+            .asc("fileDate", Case::getFileDate, LocalDate::parse)
+            .asc("id", Case::getId, Integer::valueOf);
+
+    private static final String DETAILS = "client, attorneys, documents, events, timeEntries";
+
+    private static final String ARCHIVED_CASE_SELECT =
+            "SELECT new model.ArchivedCase(a.id, a.caseNumber, a.title, a.caseType, a.status, a.clientId, a.clientName, " +
+            "a.fileDate, a.closingDate, a.archivedAt) FROM ArchivedCase a ";
+
+    static final String CASE_SUMMARY_SELECT =
+            "SELECT new model.CaseSummary(c.id, c.caseNumber, c.title, c.caseType, c.status, c.fileDate, cl.name, COUNT(a)) " +
+            "FROM Case c JOIN c.client cl LEFT JOIN c.attorneys a ";
+
+    static final String CASE_SUMMARY_GROUP_BY =
+            "GROUP BY c.id, c.caseNumber, c.title, c.caseType, c.status, c.fileDate, cl.name ";
+
     /**
      * Creates a new case in the database
      */
     public Case createCase(Case legalCase) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.save(legalCase);
-            
-            transaction.commit();
-            session.close();
-            return legalCase;
+            return SessionTemplate.inTransaction("CaseDao.createCase", session -> {
+                session.save(legalCase);
+                STATISTICS.afterCommit(session, null, CaseStatistics.Row.of(legalCase));
+                SEARCH.afterCommit(session, legalCase);
+                DEADLINES.afterCommit(session, legalCase);
+                return legalCase;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Updates an existing case in the database
      */
     public Case updateCase(Case legalCase) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.update(legalCase);
-            
-            transaction.commit();
-            session.close();
-            return legalCase;
+            return SessionTemplate.inTransaction("CaseDao.updateCase", session -> {
+                CaseStatistics.Row before = CaseStatistics.Row.load(session, legalCase.getId());
+                session.update(legalCase);
+                STATISTICS.afterCommit(session, before, CaseStatistics.Row.of(legalCase));
+                SEARCH.afterCommit(session, legalCase);
+                DEADLINES.afterCommit(session, legalCase);
+                return legalCase;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Deletes a case from the database
      */
     public Case deleteCase(Case legalCase) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.delete(legalCase);
-            
-            transaction.commit();
-            session.close();
-            return legalCase;
+            return SessionTemplate.inTransaction("CaseDao.deleteCase", session -> {
+                CaseStatistics.Row before = CaseStatistics.Row.load(session, legalCase.getId());
+                session.delete(legalCase);
+                STATISTICS.afterCommit(session, before, null);
+                SEARCH.afterDelete(session, legalCase.getId());
+                DEADLINES.afterCaseDelete(session, legalCase.getId());
+                return legalCase;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Updates the status of a case
      */
     public Case updateCaseStatus(Case legalCase, String status) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            legalCase.setStatus(status);
-            session.update(legalCase);
-            
-            transaction.commit();
-            session.close();
-            return legalCase;
+            return SessionTemplate.inTransaction("CaseDao.updateCaseStatus", session -> {
+                CaseStatistics.Row before = CaseStatistics.Row.load(session, legalCase.getId());
+                legalCase.setStatus(status);
+                session.update(legalCase);
+                STATISTICS.afterCommit(session, before, CaseStatistics.Row.of(legalCase));
+                SEARCH.afterCommit(session, legalCase);
+                DEADLINES.afterCommit(session, legalCase);
+                return legalCase;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
+    /**
+     * Changes only the given properties of a case, if it is still at the
+     * version the caller read; properties already holding the new value are
+     * not written, and nothing is written if none differ
+     *
+     * @return The case as it now is, or null if it does not exist
+     * @throws IllegalArgumentException If a change names a property that cannot be patched or has the wrong type
+     * @throws ConcurrentModificationException If the case has been changed since that version
+     */
+    public Case patchCase(int caseId, long version, Map<String, Object> changes) {
+        PATCH.check(changes);
+        try {
+            return SessionTemplate.inTransaction("CaseDao.patchCase", session -> {
+                Case legalCase = PATCH.load(session, caseId, version);
+                if (legalCase == null) {
+                    return null;
+                }
+                CaseStatistics.Row before = CaseStatistics.Row.of(legalCase);
+                if (PATCH.apply(session, legalCase, caseId, changes)) {
+                    STATISTICS.afterCommit(session, before, CaseStatistics.Row.of(legalCase));
+                    SEARCH.afterCommit(session, legalCase);
+                    DEADLINES.afterCommit(session, legalCase);
+                }
+                return legalCase;
+            });
+        } catch (ConcurrentModificationException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
     /**
      * Finds a case by ID
      */
     public Case findCaseById(Case legalCase) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Case foundCase = (Case) session.get(Case.class, legalCase.getId());
-            session.close();
-            return foundCase;
+            return SessionTemplate.inSession("CaseDao.findCaseById",
+                    session -> (Case) session.get(Case.class, legalCase.getId()));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds a case by case number
      */
     public Case findCaseByCaseNumber(String caseNumber) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Case c WHERE c.caseNumber = :caseNumber");
-            query.setParameter("caseNumber", caseNumber);
-            Case legalCase = (Case) query.uniqueResult();
-            session.close();
-            return legalCase;
+            return SessionTemplate.inSession("CaseDao.findCaseByCaseNumber",
+                    session -> (Case) session.bySimpleNaturalId(Case.class).load(caseNumber));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
-     * Finds cases by title or description
+     * Finds cases by title, description, court, judge or opposing party, best match first
      */
-    @SuppressWarnings("unchecked")
     public List<Case> findCasesByText(String searchText) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Case c WHERE c.title LIKE :searchText OR c.description LIKE :searchText");
-            query.setParameter("searchText", "%" + searchText + "%");
-            List<Case> cases = query.list();
-            session.close();
-            return cases;
+            return SessionTemplate.inSession("CaseDao.findCasesByText",
+                    session -> SEARCH.list(session, searchText));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds cases by client ID
      */
     @SuppressWarnings("unchecked")
     public List<Case> findCasesByClient(int clientId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Case c WHERE c.client.id = :clientId");
-            query.setParameter("clientId", clientId);
-            List<Case> cases = query.list();
-            session.close();
-            return cases;
+            return SessionTemplate.inSession("CaseDao.findCasesByClient", session -> {
+                Query query = session.createQuery("FROM Case c WHERE c.client.id = :clientId");
+                query.setParameter("clientId", clientId);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds cases by attorney ID
      */
     @SuppressWarnings("unchecked")
     public List<Case> findCasesByAttorney(int attorneyId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("SELECT c FROM Case c JOIN c.attorneys a WHERE a.id = :attorneyId");
-            query.setParameter("attorneyId", attorneyId);
-            List<Case> cases = query.list();
-            session.close();
-            return cases;
+            return SessionTemplate.inSession("CaseDao.findCasesByAttorney", session -> {
+                Query query = session.createQuery("SELECT c FROM Case c JOIN c.attorneys a WHERE a.id = :attorneyId");
+                query.setParameter("attorneyId", attorneyId);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds cases by status
      */
     @SuppressWarnings("unchecked")
     public List<Case> findCasesByStatus(String status) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Case c WHERE c.status = :status");
-            query.setParameter("status", status);
-            List<Case> cases = query.list();
-            session.close();
-            return cases;
+            return SessionTemplate.inSession("CaseDao.findCasesByStatus", session -> {
+                Query query = session.createQuery("FROM Case c WHERE c.status = :status");
+                query.setParameter("status", status);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds cases by case type
      */
     @SuppressWarnings("unchecked")
     public List<Case> findCasesByType(String caseType) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Case c WHERE c.caseType = :caseType");
-            query.setParameter("caseType", caseType);
-            List<Case> cases = query.list();
-            session.close();
-            return cases;
+            return SessionTemplate.inSession("CaseDao.findCasesByType", session -> {
+                Query query = session.createQuery("FROM Case c WHERE c.caseType = :caseType");
+                query.setParameter("caseType", caseType);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds cases by filing date range
      */
     @SuppressWarnings("unchecked")
     public List<Case> findCasesByDateRange(LocalDate startDate, LocalDate endDate) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Case c WHERE c.fileDate BETWEEN :startDate AND :endDate");
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            List<Case> cases = query.list();
-            session.close();
-            return cases;
+            return SessionTemplate.inSession("CaseDao.findCasesByDateRange", session -> {
+                Query query = session.createQuery("FROM Case c WHERE c.fileDate BETWEEN :startDate AND :endDate");
+                query.setParameter("startDate", startDate);
+                query.setParameter("endDate", endDate);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Gets all cases
      */
     @SuppressWarnings("unchecked")
     public List<Case> findAllCases() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Case c ORDER BY c.fileDate DESC");
-            List<Case> cases = query.list();
-            session.close();
-            return cases;
+            return SessionTemplate.inSession("CaseDao.findAllCases",
+                    session -> session.createQuery("FROM Case c ORDER BY c.fileDate DESC").list());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets one page of all cases, newest filing date first
+     */
+    public Page<Case> findAllCasesPage(String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("CaseDao.findAllCasesPage",
+                    session -> NEWEST_FIRST.page(session, cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Finds one page of cases by status, newest filing date first
+     */
+    public Page<Case> findCasesByStatusPage(String status, String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("CaseDao.findCasesByStatusPage", session -> NEWEST_FIRST.page(session,
+                    "c.status = :status",
+                    query -> query.setParameter("status", status),
+                    cursor, pageSize));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
+    /**
+     * Finds one page of cases by case type, newest filing date first
+     */
+    public Page<Case> findCasesByTypePage(String caseType, String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("CaseDao.findCasesByTypePage", session -> NEWEST_FIRST.page(session,
+                    "c.caseType = :caseType",
+                    query -> query.setParameter("caseType", caseType),
+                    cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Finds one page of cases by filing date range, oldest first
+     */
+    public Page<Case> findCasesByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("CaseDao.findCasesByDateRangePage", session -> OLDEST_FIRST.page(session,
+                    "c.fileDate BETWEEN :startDate AND :endDate",
+                    query -> {
+                        query.setParameter("startDate", startDate);
+                        query.setParameter("endDate", endDate);
+                    },
+                    cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Finds one page of cases by title, description, court, judge or opposing party, best match first
+     */
+    public Page<Case> searchCasesPage(String searchText, String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("CaseDao.searchCasesPage",
+                    session -> SEARCH.page(session, searchText, cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Opens a streaming export of the cases filed in a year, in id order; the caller must close it
+     */
+    public ExportReader<Case> openCaseExport(int year) {
+        try {
+            return new ExportReader<>("CaseDao.openCaseExport",
+                    "FROM Case c WHERE c.fileDate BETWEEN :startDate AND :endDate ORDER BY c.id",
+                    query -> {
+                        query.setParameter("startDate", LocalDate.of(year, 1, 1));
+                        query.setParameter("endDate", LocalDate.of(year, 12, 31));
+                    });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
     /**
      * Gets a case with all its details including client, attorneys, documents, events, and time entries
      */
     public Case getCaseWithDetails(Case legalCase) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Load case with eager fetching of all relationships
-            Query query = session.createQuery(
-                "FROM Case c " +
-                "LEFT JOIN FETCH c.client " +
-                "LEFT JOIN FETCH c.attorneys " +
-                "LEFT JOIN FETCH c.documents " +
-                "LEFT JOIN FETCH c.events " +
-                "LEFT JOIN FETCH c.timeEntries " +
-                "WHERE c.id = :caseId"
-            );
-            query.setParameter("caseId", legalCase.getId());
-            Case foundCase = (Case) query.uniqueResult();
-            
-            session.close();
-            return foundCase;
+            return FetchGraph.parse(Case.class, DETAILS).load(legalCase.getId(), "CaseDao.getCaseWithDetails");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets a case with the associations named in a fetch spec, such as
+     * "client, attorneys, events[upcoming]"
+     *
+     * @throws IllegalArgumentException If the fetch spec is invalid
+     */
+    public Case getCaseGraph(Case legalCase, String fetchSpec) {
+        FetchGraph<Case> graph = FetchGraph.parse(Case.class, fetchSpec);
+        try {
+            return graph.load(legalCase.getId(), "CaseDao.getCaseGraph");
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Assigns an attorney to a case
      */
     public boolean assignAttorneyToCase(int caseId, int attorneyId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            // Check if assignment already exists
-            Query checkQuery = session.createQuery(
-                "SELECT COUNT(*) FROM Case c JOIN c.attorneys a WHERE c.id = :caseId AND a.id = :attorneyId"
-            );
-            checkQuery.setParameter("caseId", caseId);
-            checkQuery.setParameter("attorneyId", attorneyId);
-            Long count = (Long) checkQuery.uniqueResult();
-            
-            if (count > 0) {
-                // Assignment already exists
-                transaction.rollback();
-                session.close();
-                return false;
-            }
-            
-            // Insert new assignment
-            Query insertQuery = session.createSQLQuery(
-                "INSERT INTO case_attorneys (case_id, attorney_id) VALUES (:caseId, :attorneyId)"
-            );
-            insertQuery.setParameter("caseId", caseId);
-            insertQuery.setParameter("attorneyId", attorneyId);
-            int rowsAffected = insertQuery.executeUpdate();
-            
-            transaction.commit();
-            session.close();
-            return rowsAffected > 0;
+            return SessionTemplate.inTransaction("CaseDao.assignAttorneyToCase", session -> {
+                // Check if assignment already exists
+                Query checkQuery = session.createQuery(
+                    "SELECT COUNT(*) FROM Case c JOIN c.attorneys a WHERE c.id = :caseId AND a.id = :attorneyId"
+                );
+                checkQuery.setParameter("caseId", caseId);
+                checkQuery.setParameter("attorneyId", attorneyId);
+                Long count = (Long) checkQuery.uniqueResult();
+
+                if (count > 0) {
+                    // Assignment already exists
+                    return false;
+                }
+
+                // Insert new assignment
+                SQLQuery insertQuery = session.createSQLQuery(
+                    "INSERT INTO case_attorneys (case_id, attorney_id) VALUES (:caseId, :attorneyId)"
+                );
+                // Only the case/attorney link changes; keep the rest of the second-level cache
+                insertQuery.addSynchronizedQuerySpace("case_attorneys");
+                insertQuery.setParameter("caseId", caseId);
+                insertQuery.setParameter("attorneyId", attorneyId);
+                return insertQuery.executeUpdate() > 0;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return false;
     }
-    
+
     /**
      * Removes an attorney from a case
      */
     public boolean removeAttorneyFromCase(int caseId, int attorneyId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            Query deleteQuery = session.createSQLQuery(
-                "DELETE FROM case_attorneys WHERE case_id = :caseId AND attorney_id = :attorneyId"
-            );
-            deleteQuery.setParameter("caseId", caseId);
-            deleteQuery.setParameter("attorneyId", attorneyId);
-            int rowsAffected = deleteQuery.executeUpdate();
-            
-            transaction.commit();
-            session.close();
-            return rowsAffected > 0;
+            return SessionTemplate.inTransaction("CaseDao.removeAttorneyFromCase", session -> {
+                SQLQuery deleteQuery = session.createSQLQuery(
+                    "DELETE FROM case_attorneys WHERE case_id = :caseId AND attorney_id = :attorneyId"
+                );
+                deleteQuery.addSynchronizedQuerySpace("case_attorneys");
+                deleteQuery.setParameter("caseId", caseId);
+                deleteQuery.setParameter("attorneyId", attorneyId);
+                return deleteQuery.executeUpdate() > 0;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return false;
     }
-    
+
     /**
      * Gets cases that are due for review (based on filing date)
      */
     @SuppressWarnings("unchecked")
     public List<Case> getCasesDueForReview(int daysBefore) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Cases filed X days ago that might need review
-            Query query = session.createQuery(
-                "FROM Case c WHERE DATEDIFF(CURRENT_DATE, c.fileDate) >= :daysBefore " +
-                "AND c.status NOT IN ('Closed', 'Cancelled') ORDER BY c.fileDate"
-            );
-            query.setParameter("daysBefore", daysBefore);
-            List<Case> cases = query.list();
-            
-            session.close();
-            return cases;
+            return SessionTemplate.inSession("CaseDao.getCasesDueForReview", session -> {
+                // Cases filed X days ago that might need review
+                Query query = session.createQuery(
+                    "FROM Case c WHERE DATEDIFF(CURRENT_DATE, c.fileDate) >= :daysBefore " +
+                    "AND c.status NOT IN ('Closed', 'Cancelled') ORDER BY c.fileDate"
+                );
+                query.setParameter("daysBefore", daysBefore);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Gets active cases (not closed or cancelled)
      */
     @SuppressWarnings("unchecked")
     public List<Case> getActiveCases() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
+            return SessionTemplate.inSession("CaseDao.getActiveCases", session -> session.createQuery(
                 "FROM Case c WHERE c.status NOT IN ('Closed', 'Cancelled') ORDER BY c.fileDate DESC"
-            );
-            List<Case> cases = query.list();
-            session.close();
-            return cases;
+            ).list());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets summaries of all cases, newest filing date first
+     */
+    @SuppressWarnings("unchecked")
+    public List<CaseSummary> findAllCaseSummaries() {
+        try {
+            return SessionTemplate.inSession("CaseDao.findAllCaseSummaries",
+                    session -> session.createQuery(CASE_SUMMARY_SELECT +
+                        CASE_SUMMARY_GROUP_BY +
+                        "ORDER BY c.fileDate DESC").list());
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
-     * Gets cases with upcoming deadlines
+     * Gets summaries of the cases with a status, newest filing date first
      */
     @SuppressWarnings("unchecked")
+    public List<CaseSummary> findCaseSummariesByStatus(String status) {
+        try {
+            return SessionTemplate.inSession("CaseDao.findCaseSummariesByStatus", session -> {
+                Query query = session.createQuery(CASE_SUMMARY_SELECT +
+                    "WHERE c.status = :status " +
+                    CASE_SUMMARY_GROUP_BY +
+                    "ORDER BY c.fileDate DESC");
+                query.setParameter("status", status);
+                return query.list();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets summaries of a client's cases, newest filing date first
+     */
+    @SuppressWarnings("unchecked")
+    public List<CaseSummary> findCaseSummariesByClient(int clientId) {
+        try {
+            return SessionTemplate.inSession("CaseDao.findCaseSummariesByClient", session -> {
+                Query query = session.createQuery(CASE_SUMMARY_SELECT +
+                    "WHERE c.client.id = :clientId " +
+                    CASE_SUMMARY_GROUP_BY +
+                    "ORDER BY c.fileDate DESC");
+                query.setParameter("clientId", clientId);
+                return query.list();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets summaries of the cases an attorney is assigned to, newest filing date first
+     */
+    @SuppressWarnings("unchecked")
+    public List<CaseSummary> findCaseSummariesByAttorney(int attorneyId) {
+        try {
+            return SessionTemplate.inSession("CaseDao.findCaseSummariesByAttorney", session -> {
+                Query query = session.createQuery(CASE_SUMMARY_SELECT +
+                    "WHERE c.id IN (SELECT ac.id FROM Case ac JOIN ac.attorneys aa WHERE aa.id = :attorneyId) " +
+                    CASE_SUMMARY_GROUP_BY +
+                    "ORDER BY c.fileDate DESC");
+                query.setParameter("attorneyId", attorneyId);
+                return query.list();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets summaries of active cases (not closed or cancelled), newest filing date first
+     */
+    @SuppressWarnings("unchecked")
+    public List<CaseSummary> getActiveCaseSummaries() {
+        try {
+            return SessionTemplate.inSession("CaseDao.getActiveCaseSummaries",
+                    session -> session.createQuery(CASE_SUMMARY_SELECT +
+                        "WHERE c.status NOT IN ('Closed', 'Cancelled') " +
+                        CASE_SUMMARY_GROUP_BY +
+                        "ORDER BY c.fileDate DESC").list());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets cases with upcoming deadlines, nearest deadline first
+     */
     public List<Case> getCasesWithUpcomingDeadlines(int daysAhead) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Find cases that have events within the specified days
-            Query query = session.createQuery(
-                "SELECT DISTINCT c FROM Case c JOIN c.events e " +
-                "WHERE e.eventDate BETWEEN CURRENT_DATE AND :futureDate " +
-                "AND e.status NOT IN ('Completed', 'Cancelled') " +
-                "AND c.status NOT IN ('Closed', 'Cancelled') " +
-                "ORDER BY e.eventDate"
-            );
-            
-            LocalDate futureDate = LocalDate.now().plusDays(daysAhead);
-            query.setParameter("futureDate", futureDate);
-            List<Case> cases = query.list();
-            
-            session.close();
-            return cases;
+            return SessionTemplate.inSession("CaseDao.getCasesWithUpcomingDeadlines",
+                    session -> DEADLINES.upcoming(session, daysAhead));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
-     * Generates the next case number based on the current highest number
+     * Generates the next case number
      */
     public String generateNextCaseNumber() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Get the maximum case number
-            Query query = session.createQuery(
-                "SELECT MAX(CAST(SUBSTRING(c.caseNumber, 5) AS integer)) FROM Case c " +
-                "WHERE c.caseNumber LIKE 'CASE%'"
-            );
-            Integer maxNum = (Integer) query.uniqueResult();
-            
-            session.close();
-            
-            // Format next case number
-            int nextNum = (maxNum != null ? maxNum : 0) + 1;
-            return String.format("CASE%06d", nextNum);
+            return String.format("CASE%06d", CASE_NUMBERS.next());
         } catch (Exception ex) {
             ex.printStackTrace();
             // Default format if error occurs
             return "CASE" + System.currentTimeMillis();
         }
     }
-    
+
     /**
-     * Gets case statistics for dashboard
+     * Gets case statistics for dashboard, from the in-memory counts
      */
     public java.util.Map<String, Object> getCaseStatistics() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            java.util.Map<String, Object> stats = new java.util.HashMap<>();
-            
-            // Total cases
-            Query totalQuery = session.createQuery("SELECT COUNT(*) FROM Case");
-            Long totalCases = (Long) totalQuery.uniqueResult();
-            stats.put("totalCases", totalCases);
-            
-            // Active cases
-            Query activeQuery = session.createQuery(
-                "SELECT COUNT(*) FROM Case c WHERE c.status NOT IN ('Closed', 'Cancelled')"
-            );
-            Long activeCases = (Long) activeQuery.uniqueResult();
-            stats.put("activeCases", activeCases);
-            
-            // Cases by status
-            Query statusQuery = session.createQuery(
-                "SELECT c.status, COUNT(*) FROM Case c GROUP BY c.status"
-            );
-            @SuppressWarnings("unchecked")
-            List<Object[]> statusResults = statusQuery.list();
-            java.util.Map<String, Long> casesByStatus = new java.util.HashMap<>();
-            for (Object[] result : statusResults) {
-                casesByStatus.put((String) result[0], (Long) result[1]);
-            }
-            stats.put("casesByStatus", casesByStatus);
-            
-            // Cases by type
-            Query typeQuery = session.createQuery(
-                "SELECT c.caseType, COUNT(*) FROM Case c GROUP BY c.caseType"
-            );
-            @SuppressWarnings("unchecked")
-            List<Object[]> typeResults = typeQuery.list();
-            java.util.Map<String, Long> casesByType = new java.util.HashMap<>();
-            for (Object[] result : typeResults) {
-                casesByType.put((String) result[0], (Long) result[1]);
-            }
-            stats.put("casesByType", casesByType);
-            
-            // Cases filed this month
-            Query monthQuery = session.createQuery(
-                "SELECT COUNT(*) FROM Case c WHERE YEAR(c.fileDate) = YEAR(CURRENT_DATE) " +
-                "AND MONTH(c.fileDate) = MONTH(CURRENT_DATE)"
-            );
-            Long casesThisMonth = (Long) monthQuery.uniqueResult();
-            stats.put("casesThisMonth", casesThisMonth);
-            
-            // Cases filed this year
-            Query yearQuery = session.createQuery(
-                "SELECT COUNT(*) FROM Case c WHERE YEAR(c.fileDate) = YEAR(CURRENT_DATE)"
-            );
-            Long casesThisYear = (Long) yearQuery.uniqueResult();
-            stats.put("casesThisYear", casesThisYear);
-            
-            session.close();
-            return stats;
+            return STATISTICS.toMap();
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return new java.util.HashMap<>();
     }
-}
\ No newline at end of file
+
+    /**
+     * Rebuilds the case search index from the database, e.g. after cases were changed by hand
+     *
+     * @return Number of cases indexed
+     */
+    public int rebuildCaseSearchIndex() {
+        try {
+            return SEARCH.rebuild();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Archives the next batch of cases closed longer than the retention period,
+     * as the background archiver would
+     *
+     * @return Number of cases archived
+     */
+    public int archiveClosedCases() {
+        try {
+            return ARCHIVER.archiveNow();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Finds a client's archived cases, most recently closed first
+     */
+    @SuppressWarnings("unchecked")
+    public List<ArchivedCase> findArchivedCasesByClient(int clientId) {
+        try {
+            return SessionTemplate.inSession("CaseDao.findArchivedCasesByClient", session -> {
+                Query query = session.createQuery(ARCHIVED_CASE_SELECT +
+                    "WHERE a.clientId = :clientId ORDER BY a.closingDate DESC");
+                query.setParameter("clientId", clientId);
+                return query.list();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Finds archived cases whose title contains some text, ignoring case, most recently closed first
+     */
+    @SuppressWarnings("unchecked")
+    public List<ArchivedCase> findArchivedCasesByTitle(String title) {
+        if (title == null || title.trim().isEmpty()) {
+            throw new IllegalArgumentException("Title to search for is required");
+        }
+        try {
+            return SessionTemplate.inSession("CaseDao.findArchivedCasesByTitle", session -> {
+                Query query = session.createQuery(ARCHIVED_CASE_SELECT +
+                    "WHERE LOWER(a.title) LIKE :title ORDER BY a.closingDate DESC");
+                query.setParameter("title", "%" + title.trim().toLowerCase() + "%");
+                return query.list();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets an archived case with the lists of its documents, events and
+     * invoices, without restoring it
+     *
+     * @return The archived case, or null if no case with that number is archived
+     */
+    public CaseArchive getArchivedCase(String caseNumber) {
+        try {
+            return SessionTemplate.inSession("CaseDao.getArchivedCase", session -> {
+                Query query = session.createQuery("SELECT a.payload FROM ArchivedCase a WHERE a.caseNumber = :caseNumber");
+                query.setParameter("caseNumber", caseNumber);
+                byte[] payload = (byte[]) query.uniqueResult();
+                return payload != null ? CaseArchiver.read(payload) : null;
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Moves an archived case with everything archived with it back into the
+     * live tables, under its original ids
+     *
+     * @return The restored case, or null if no case with that number is archived
+     */
+    public Case restoreArchivedCase(String caseNumber) {
+        try {
+            return SessionTemplate.inTransaction("CaseDao.restoreArchivedCase",
+                    session -> ARCHIVER.restore(session, caseNumber));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,274 @@
+package dao;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import model.Case;
+import org.hibernate.Session;
+
+/**
+ * Case counts for the dashboard, kept in memory.
+ *
+ * The counts are seeded with one grouped query when CaseDao is first loaded,
+ * then moved by the CaseDao write paths once their transaction has committed,
+ * so reading them costs no query at all. Changes made elsewhere (another
+ * server, a cascade from a deleted client, SQL run by hand) are picked up by a
+ * background reconcile that re-reads the counts every
+ * hibernate.statistics.reconcile_interval milliseconds. A reconcile cannot
+ * tell whether a change committed while it read the table is in what it read,
+ * so it reads again until no change committed during a read, up to
+ * {@link #RECONCILE_PASSES} times; when cases keep changing, the counts are
+ * left as they are until the next run.
+ */
+final class CaseStatistics {
+
+    private static final Logger logger = Logger.getLogger(CaseStatistics.class.getName());
+
+    private static final long RECONCILE_INTERVAL = HibernateUtil.getSetting("hibernate.statistics.reconcile_interval", 300000);
+    private static final int RECONCILE_PASSES = 3;
+
+    /**
+     * The attributes of one case that the counts are kept by
+     */
+    static final class Row {
+        final String status;
+        final String caseType;
+        final YearMonth filed;
+
+        Row(String status, String caseType, LocalDate fileDate) {
+            this.status = status;
+            this.caseType = caseType;
+            this.filed = fileDate != null ? YearMonth.from(fileDate) : null;
+        }
+
+        static Row of(Case legalCase) {
+            return new Row(legalCase.getStatus(), legalCase.getCaseType(), legalCase.getFileDate());
+        }
+
+        /**
+         * Reads a case's stored attributes, e.g. before it is updated; null if it does not exist
+         */
+        static Row load(Session session, int caseId) {
+            Object[] row = (Object[]) session.createQuery("SELECT c.status, c.caseType, c.fileDate FROM Case c WHERE c.id = :caseId")
+                    .setParameter("caseId", caseId)
+                    .uniqueResult();
+            return row != null ? new Row((String) row[0], (String) row[1], (LocalDate) row[2]) : null;
+        }
+    }
+
+    /**
+     * Immutable copy of the counts, replaced on every change
+     */
+    private static final class Snapshot {
+        final long total;
+        final Map<String, Long> byStatus;
+        final Map<String, Long> byType;
+        final Map<YearMonth, Long> byMonth;
+
+        Snapshot(long total, Map<String, Long> byStatus, Map<String, Long> byType, Map<YearMonth, Long> byMonth) {
+            this.total = total;
+            this.byStatus = Collections.unmodifiableMap(new HashMap<>(byStatus));
+            this.byType = Collections.unmodifiableMap(new HashMap<>(byType));
+            this.byMonth = Collections.unmodifiableMap(new HashMap<>(byMonth));
+        }
+    }
+
+    private final Object reconcileLock = new Object();
+    private final Map<String, Long> byStatus = new HashMap<>();
+    private final Map<String, Long> byType = new HashMap<>();
+    private final Map<YearMonth, Long> byMonth = new HashMap<>();
+    private long total;
+    private boolean reading;
+    private boolean changedDuringRead;
+    private int committing;
+    private volatile Snapshot snapshot;
+
+    CaseStatistics() {
+        ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "case-statistics-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile();
+            } catch (RuntimeException ex) {
+                logger.log(Level.WARNING, "Case statistics reconcile failed", ex);
+            }
+        }, 0, Math.max(1000, RECONCILE_INTERVAL), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Moves the counts from one state of a case to another once the session's
+     * transaction commits; nothing happens if it rolls back
+     *
+     * @param session Session whose transaction made the change
+     * @param before The case before the change, or null for a new case
+     * @param after The case after the change, or null for a deleted case
+     */
+    void afterCommit(Session session, Row before, Row after) {
+        if (!changes(before, after)) {
+            return;
+        }
+        session.getTransaction().registerSynchronization(new Synchronization() {
+            private boolean started;
+
+            @Override
+            public void beforeCompletion() {
+                started = true;
+                starting();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (started) {
+                    finished(before, after, status == Status.STATUS_COMMITTED);
+                }
+            }
+        });
+    }
+
+    private synchronized void starting() {
+        committing++;
+        // A reconcile reading the table now may or may not see this change; it reads again
+        changedDuringRead |= reading;
+    }
+
+    private synchronized void finished(Row before, Row after, boolean committed) {
+        committing--;
+        if (!committed || snapshot == null) {
+            return;
+        }
+        count(before, -1);
+        count(after, 1);
+        publish();
+    }
+
+    /**
+     * Gets the statistics in the form getCaseStatistics has always returned
+     */
+    Map<String, Object> toMap() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            reconcile();
+            current = snapshot;
+        }
+
+        long active = 0;
+        for (Map.Entry<String, Long> entry : current.byStatus.entrySet()) {
+            // Same as status NOT IN ('Closed', 'Cancelled'), which never matches a NULL status
+            if (entry.getKey() != null && !entry.getKey().equals("Closed") && !entry.getKey().equals("Cancelled")) {
+                active += entry.getValue();
+            }
+        }
+        YearMonth thisMonth = YearMonth.now();
+        long thisYear = 0;
+        for (int month = 1; month <= 12; month++) {
+            thisYear += current.byMonth.getOrDefault(YearMonth.of(thisMonth.getYear(), month), 0L);
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalCases", current.total);
+        stats.put("activeCases", active);
+        stats.put("casesByStatus", current.byStatus);
+        stats.put("casesByType", current.byType);
+        stats.put("casesThisMonth", current.byMonth.getOrDefault(thisMonth, 0L));
+        stats.put("casesThisYear", thisYear);
+        return stats;
+    }
+
+    /**
+     * Replaces the counts with the ones in the database
+     */
+    @SuppressWarnings("unchecked")
+    void reconcile() {
+        synchronized (reconcileLock) {
+            for (int pass = 1; pass <= RECONCILE_PASSES; pass++) {
+                boolean quiet;
+                synchronized (this) {
+                    // A commit already under way may land before or after the read
+                    quiet = committing == 0;
+                    reading = true;
+                    changedDuringRead = false;
+                }
+                List<Object[]> rows;
+                try {
+                    rows = SessionTemplate.inPrimarySession("CaseStatistics.reconcile", session -> session.createQuery(
+                        "SELECT c.status, c.caseType, c.fileDate, COUNT(*) FROM Case c GROUP BY c.status, c.caseType, c.fileDate"
+                    ).list());
+                } catch (RuntimeException ex) {
+                    synchronized (this) {
+                        reading = false;
+                    }
+                    throw ex;
+                }
+
+                synchronized (this) {
+                    quiet &= !changedDuringRead && committing == 0;
+                    reading = false;
+                    // With no counts yet, a read that may be a few changes off is better than none
+                    if (quiet || snapshot == null && pass == RECONCILE_PASSES) {
+                        replace(rows);
+                        return;
+                    }
+                }
+            }
+            logger.info("Case statistics not reconciled: cases changed during each of " + RECONCILE_PASSES + " reads");
+        }
+    }
+
+    private void replace(List<Object[]> rows) {
+        Snapshot before = snapshot;
+        total = 0;
+        byStatus.clear();
+        byType.clear();
+        byMonth.clear();
+        for (Object[] row : rows) {
+            count(new Row((String) row[0], (String) row[1], (LocalDate) row[2]), (Long) row[3]);
+        }
+        publish();
+        if (before != null && (before.total != total || !before.byStatus.equals(byStatus)
+                || !before.byType.equals(byType) || !before.byMonth.equals(byMonth))) {
+            logger.info("Case statistics corrected from the database: " + before.total + " -> " + total + " cases");
+        }
+    }
+
+    private void count(Row row, long delta) {
+        if (row == null) {
+            return;
+        }
+        total += delta;
+        add(byStatus, row.status, delta);
+        add(byType, row.caseType, delta);
+        add(byMonth, row.filed, delta);
+    }
+
+    private static <K> void add(Map<K, Long> counts, K key, long delta) {
+        long count = counts.getOrDefault(key, 0L) + delta;
+        if (count > 0) {
+            counts.put(key, count);
+        } else {
+            counts.remove(key);
+        }
+    }
+
+    private void publish() {
+        snapshot = new Snapshot(total, byStatus, byType, byMonth);
+    }
+
+    private static boolean changes(Row before, Row after) {
+        return before == null || after == null || !Objects.equals(before.status, after.status)
+                || !Objects.equals(before.caseType, after.caseType) || !Objects.equals(before.filed, after.filed);
+    }
+}
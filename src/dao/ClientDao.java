@@ -2,203 +2,215 @@ package dao;
 
 import java.util.List;
 import model.Client;
+import model.Suggestion;
 import org.hibernate.Query;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
 
 /**
  * Data Access Object for Client operations using Hibernate
  */
 public class ClientDao {
-    
+
+    private static final TypeaheadIndex TYPEAHEAD = new TypeaheadIndex("clients",
+            "SELECT new model.Suggestion(c.id, c.clientId, c.name, c.contactPerson) FROM Client c")
+            .key(Suggestion::getLabel, 1f)
+            .key(Suggestion::getCode, 0.9f)
+            .key(Suggestion::getDetail, 0.6f);
+
     /**
      * Creates a new client in the database
      */
     public Client createClient(Client client) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.save(client);
-            
-            transaction.commit();
-            session.close();
-            return client;
+            return SessionTemplate.inTransaction("ClientDao.createClient", session -> {
+                session.save(client);
+                TYPEAHEAD.afterCommit(session, suggestionOf(client));
+                return client;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Updates an existing client in the database
      */
     public Client updateClient(Client client) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.update(client);
-            
-            transaction.commit();
-            session.close();
-            return client;
+            return SessionTemplate.inTransaction("ClientDao.updateClient", session -> {
+                session.update(client);
+                TYPEAHEAD.afterCommit(session, suggestionOf(client));
+                return client;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Deletes a client from the database
      */
     public Client deleteClient(Client client) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            // Check if client has cases
-            Query query = session.createQuery("SELECT COUNT(c) FROM Case c WHERE c.client.id = :clientId");
-            query.setParameter("clientId", client.getId());
-            Long caseCount = (Long) query.uniqueResult();
-            
-            if (caseCount > 0) {
-                // Cannot delete client with cases
-                transaction.rollback();
-                session.close();
-                return null;
-            }
-            
-            session.delete(client);
-            
-            transaction.commit();
-            session.close();
-            return client;
+            return SessionTemplate.inTransaction("ClientDao.deleteClient", session -> {
+                // Check if client has cases
+                Query query = session.createQuery("SELECT COUNT(c) FROM Case c WHERE c.client.id = :clientId");
+                query.setParameter("clientId", client.getId());
+                Long caseCount = (Long) query.uniqueResult();
+
+                if (caseCount > 0) {
+                    // Cannot delete client with cases
+                    return null;
+                }
+
+                session.delete(client);
+                TYPEAHEAD.afterDelete(session, client.getId());
+                return client;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds a client by ID
      */
     public Client findClientById(Client client) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Client foundClient = (Client) session.get(Client.class, client.getId());
-            session.close();
-            return foundClient;
+            return SessionTemplate.inSession("ClientDao.findClientById",
+                    session -> (Client) session.get(Client.class, client.getId()));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
+    /**
+     * Gets a client with the associations named in a fetch spec, such as
+     * "cases[active].events[upcoming]"
+     *
+     * @throws IllegalArgumentException If the fetch spec is invalid
+     */
+    public Client getClientGraph(Client client, String fetchSpec) {
+        FetchGraph<Client> graph = FetchGraph.parse(Client.class, fetchSpec);
+        try {
+            return graph.load(client.getId(), "ClientDao.getClientGraph");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
     /**
      * Finds a client by client ID
      */
     public Client findClientByClientId(String clientId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Client c WHERE c.clientId = :clientId");
-            query.setParameter("clientId", clientId);
-            Client client = (Client) query.uniqueResult();
-            session.close();
-            return client;
+            return SessionTemplate.inSession("ClientDao.findClientByClientId",
+                    session -> (Client) session.bySimpleNaturalId(Client.class).load(clientId));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds clients by name or contact person
      */
     @SuppressWarnings("unchecked")
     public List<Client> findClientsByName(String name) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Client c WHERE c.name LIKE :name OR c.contactPerson LIKE :name");
-            query.setParameter("name", "%" + name + "%");
-            List<Client> clients = query.list();
-            session.close();
-            return clients;
+            return SessionTemplate.inSession("ClientDao.findClientsByName", session -> {
+                Query query = session.createQuery("FROM Client c WHERE c.name LIKE :name OR c.contactPerson LIKE :name");
+                query.setParameter("name", "%" + name + "%");
+                return query.list();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Suggests clients whose name, contact person or client ID starts with
+     * what has been typed, best match first, from memory
+     */
+    public List<Suggestion> suggestClients(String text, int limit) {
+        try {
+            return TYPEAHEAD.suggest(text, limit);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds a client by email
      */
     public Client findClientByEmail(String email) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Client c WHERE c.email = :email");
-            query.setParameter("email", email);
-            Client client = (Client) query.uniqueResult();
-            session.close();
-            return client;
+            return SessionTemplate.inSession("ClientDao.findClientByEmail", session -> {
+                Query query = session.createQuery("FROM Client c WHERE c.email = :email");
+                query.setParameter("email", email);
+                return (Client) query.uniqueResult();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds clients by client type
      */
     @SuppressWarnings("unchecked")
     public List<Client> findClientsByType(String clientType) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Client c WHERE c.clientType = :clientType");
-            query.setParameter("clientType", clientType);
-            List<Client> clients = query.list();
-            session.close();
-            return clients;
+            return SessionTemplate.inSession("ClientDao.findClientsByType", session -> {
+                Query query = session.createQuery("FROM Client c WHERE c.clientType = :clientType");
+                query.setParameter("clientType", clientType);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Gets all clients
      */
     @SuppressWarnings("unchecked")
     public List<Client> findAllClients() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Client c ORDER BY c.name");
-            List<Client> clients = query.list();
-            session.close();
-            return clients;
+            return SessionTemplate.inSession("ClientDao.findAllClients",
+                    session -> session.createQuery("FROM Client c ORDER BY c.name").list());
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Gets a client with all their cases loaded
      */
     public Client getClientWithCases(Client client) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Load client with eager fetching of cases
-            Query query = session.createQuery("FROM Client c LEFT JOIN FETCH c.cases WHERE c.id = :clientId");
-            query.setParameter("clientId", client.getId());
-            Client foundClient = (Client) query.uniqueResult();
-            
-            session.close();
-            return foundClient;
+            return SessionTemplate.inSession("ClientDao.getClientWithCases", session -> {
+                // Load client with eager fetching of cases
+                Query query = session.createQuery("FROM Client c LEFT JOIN FETCH c.cases WHERE c.id = :clientId");
+                query.setParameter("clientId", client.getId());
+                return (Client) query.uniqueResult();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-}
\ No newline at end of file
+
+    private static Suggestion suggestionOf(Client client) {
+        return new Suggestion(client.getId(), client.getClientId(), client.getName(), client.getContactPerson());
+    }
+}
@@ -0,0 +1,153 @@
+package dao;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import model.OTP;
+import org.hibernate.LockMode;
+import org.hibernate.LockOptions;
+import org.hibernate.Query;
+import org.hibernate.Session;
+
+/**
+ * Keeps OTPs in the otps table, so every server sharing the database accepts
+ * a code issued by any of them. Each issue, verification and cooldown check
+ * is a round trip to the database.
+ *
+ * A guess is checked against the email's latest unused code, whose row is
+ * locked while the guess is counted, and the code is burned after
+ * OTPDao.MAX_ATTEMPTS wrong guesses. A daemon thread deletes finished codes
+ * every hibernate.otp.cleanup_interval milliseconds; 0 leaves that to
+ * OTPDao.cleanupExpiredOTPs.
+ */
+final class DatabaseOTPStore implements OTPStore {
+
+    private static final Logger logger = Logger.getLogger(DatabaseOTPStore.class.getName());
+
+    private static final long CLEANUP_INTERVAL = HibernateUtil.getSetting("hibernate.otp.cleanup_interval", 600000);
+
+    DatabaseOTPStore() {
+        if (CLEANUP_INTERVAL > 0) {
+            ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "otp-cleanup");
+                thread.setDaemon(true);
+                return thread;
+            });
+            cleaner.scheduleWithFixedDelay(() -> {
+                try {
+                    purgeExpired();
+                } catch (RuntimeException ex) {
+                    logger.log(Level.WARNING, "OTP cleanup failed", ex);
+                }
+            }, CLEANUP_INTERVAL, CLEANUP_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public OTP issue(int userId, String email, String otpCode) {
+        OTP otp = new OTP(userId, email, otpCode);
+        otp.setExpiresAt(otp.getCreatedAt().plus(OTPDao.TTL, ChronoUnit.MILLIS));
+        return SessionTemplate.inTransaction("OTPDao.generateOTP", session -> {
+            invalidate(session, userId);
+            session.save(otp);
+            return otp;
+        });
+    }
+
+    @Override
+    public OTP verify(String email, String otpCode) {
+        return SessionTemplate.inTransaction("OTPDao.verifyOTP", session -> {
+            // The email's live code, locked (SELECT ... FOR UPDATE) so concurrent guesses are all counted
+            Query query = session.createQuery(
+                "FROM OTP o WHERE o.email = :email AND o.isUsed = false ORDER BY o.createdAt DESC"
+            );
+            query.setParameter("email", email);
+            query.setMaxResults(1);
+            query.setLockOptions(new LockOptions(LockMode.PESSIMISTIC_WRITE));
+
+            OTP otp = (OTP) query.uniqueResult();
+            if (otp == null) {
+                return null;
+            }
+
+            if (!matches(otp, otpCode)) {
+                otp.incrementAttemptCount();
+                if (otp.getAttemptCount() >= OTPDao.MAX_ATTEMPTS) {
+                    // Burned: no longer the live code, so later guesses find nothing
+                    otp.setUsed(true);
+                    logger.warning("OTP for " + email + " burned after " + OTPDao.MAX_ATTEMPTS + " wrong attempts");
+                }
+                session.update(otp);
+                return null;
+            }
+            if (otp.isExpired()) {
+                otp.incrementAttemptCount();
+                session.update(otp);
+                return null;
+            }
+            otp.markAsUsed();
+            session.update(otp);
+            return otp;
+        });
+    }
+
+    private static boolean matches(OTP otp, String code) {
+        return code != null && MessageDigest.isEqual(
+                otp.getOtpCode().getBytes(StandardCharsets.UTF_8), code.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public OTP latest(String email) {
+        return SessionTemplate.inSession("OTPDao.findLatestOTPByEmail", session -> {
+            Query query = session.createQuery(
+                "FROM OTP o WHERE o.email = :email ORDER BY o.createdAt DESC"
+            );
+            query.setParameter("email", email);
+            query.setMaxResults(1);
+            return (OTP) query.uniqueResult();
+        });
+    }
+
+    @Override
+    public int invalidate(int userId) {
+        return SessionTemplate.inTransaction("OTPDao.invalidateExistingOTPs", session -> invalidate(session, userId));
+    }
+
+    private static int invalidate(Session session, int userId) {
+        Query query = session.createQuery(
+            "UPDATE OTP o SET o.isUsed = true WHERE o.userId = :userId AND o.isUsed = false"
+        );
+        query.setParameter("userId", userId);
+        return query.executeUpdate();
+    }
+
+    @Override
+    public long cooldownRemaining(String email) {
+        OTP latest = latest(email);
+        if (latest == null) {
+            return 0;
+        }
+        LocalDateTime canRequestAt = latest.getCreatedAt().plus(OTPDao.COOLDOWN, ChronoUnit.MILLIS);
+        return Math.max(0, LocalDateTime.now().until(canRequestAt, ChronoUnit.MILLIS));
+    }
+
+    @Override
+    public int purgeExpired() {
+        return SessionTemplate.inTransaction("OTPDao.cleanupExpiredOTPs", session -> {
+            // Kept until the cooldown has passed too, since cooldownRemaining reads the latest code
+            LocalDateTime now = LocalDateTime.now();
+            Query query = session.createQuery(
+                "DELETE FROM OTP o WHERE o.expiresAt < :currentTime AND o.createdAt < :cooledDown"
+            );
+            query.setParameter("currentTime", now);
+            query.setParameter("cooledDown", now.minus(OTPDao.COOLDOWN, ChronoUnit.MILLIS));
+            return query.executeUpdate();
+        });
+    }
+}
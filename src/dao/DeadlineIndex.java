@@ -0,0 +1,290 @@
+package dao;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import model.Case;
+import model.Event;
+import org.hibernate.Session;
+
+/**
+ * In-memory index of the open events of open cases by event date, for the
+ * upcoming deadlines every attorney's home screen polls.
+ *
+ * Open events are held in a set sorted by date, and the ids of the open cases
+ * in a hash set, so "cases with a deadline in the next N days" is a range scan
+ * from today that keeps the first event of each open case it meets. Only the
+ * matching cases are then read, by primary key, instead of joining every case
+ * to every event.
+ *
+ * The index is read with two projection queries on first use and then kept
+ * current by the EventDao and CaseDao write paths once their transaction
+ * commits. Events that have passed are dropped as the date moves on.
+ */
+final class DeadlineIndex {
+
+    private static final Logger logger = Logger.getLogger(DeadlineIndex.class.getName());
+
+    private static final class Deadline {
+        final int eventId;
+        final int caseId;
+        final LocalDate date;
+
+        Deadline(int eventId, int caseId, LocalDate date) {
+            this.eventId = eventId;
+            this.caseId = caseId;
+            this.date = date;
+        }
+    }
+
+    private static final Comparator<Deadline> BY_DATE = Comparator
+            .comparing((Deadline deadline) -> deadline.date)
+            .thenComparingInt(deadline -> deadline.eventId);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Deadline> events = new HashMap<>();
+    private final NavigableSet<Deadline> byDate = new TreeSet<>(BY_DATE);
+    private final Set<Integer> openCases = new HashSet<>();
+    private volatile boolean loaded;
+    private List<Runnable> pending;
+
+    /**
+     * Whether an event still counts as a deadline; matches the status filter
+     * the deadline query used
+     */
+    static boolean isOpen(Event event) {
+        String status = event.getStatus();
+        return status != null && !"Completed".equals(status) && !"Cancelled".equals(status);
+    }
+
+    /**
+     * Whether a case still has deadlines worth showing
+     */
+    static boolean isOpen(Case legalCase) {
+        String status = legalCase.getStatus();
+        return status != null && !"Closed".equals(status) && !"Cancelled".equals(status);
+    }
+
+    /**
+     * Indexes an event as it is now once the session's transaction commits
+     */
+    void afterCommit(Session session, Event event) {
+        int eventId = event.getId();
+        Case legalCase = event.getCase();
+        if (legalCase == null || event.getEventDate() == null || !isOpen(event)) {
+            onCommit(session, () -> removeEvent(eventId));
+            return;
+        }
+        Deadline deadline = new Deadline(eventId, legalCase.getId(), event.getEventDate());
+        onCommit(session, () -> putEvent(deadline));
+    }
+
+    /**
+     * Removes an event once the session's transaction commits
+     */
+    void afterEventDelete(Session session, int eventId) {
+        onCommit(session, () -> removeEvent(eventId));
+    }
+
+    /**
+     * Records whether a case is open once the session's transaction commits
+     */
+    void afterCommit(Session session, Case legalCase) {
+        int caseId = legalCase.getId();
+        boolean open = isOpen(legalCase);
+        onCommit(session, () -> {
+            if (open) {
+                openCases.add(caseId);
+            } else {
+                openCases.remove(caseId);
+            }
+        });
+    }
+
+    /**
+     * Removes a case and the events deleted with it once the session's
+     * transaction commits
+     */
+    void afterCaseDelete(Session session, int caseId) {
+        onCommit(session, () -> {
+            openCases.remove(caseId);
+            byDate.removeIf(deadline -> deadline.caseId == caseId);
+            events.values().removeIf(deadline -> deadline.caseId == caseId);
+        });
+    }
+
+    private void onCommit(Session session, Runnable change) {
+        session.getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    apply(change);
+                }
+            }
+        });
+    }
+
+    private void apply(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(change);
+            } else if (loaded) {
+                change.run();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void putEvent(Deadline deadline) {
+        removeEvent(deadline.eventId);
+        events.put(deadline.eventId, deadline);
+        byDate.add(deadline);
+    }
+
+    private void removeEvent(int eventId) {
+        Deadline previous = events.remove(eventId);
+        if (previous != null) {
+            byDate.remove(previous);
+        }
+    }
+
+    /**
+     * Gets the cases with an open event between today and daysAhead days
+     * from now, nearest deadline first
+     */
+    @SuppressWarnings("unchecked")
+    List<Case> upcoming(Session session, int daysAhead) {
+        List<Integer> caseIds = upcomingCaseIds(LocalDate.now(), LocalDate.now().plusDays(daysAhead));
+        if (caseIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Case> cases = session.createQuery("FROM Case c WHERE c.id IN (:caseIds)")
+                .setParameterList("caseIds", caseIds)
+                .list();
+        Map<Integer, Case> byId = new HashMap<>();
+        for (Case legalCase : cases) {
+            byId.put(legalCase.getId(), legalCase);
+        }
+        List<Case> ordered = new ArrayList<>(cases.size());
+        for (Integer caseId : caseIds) {
+            Case legalCase = byId.get(caseId);
+            if (legalCase != null) {
+                ordered.add(legalCase);
+            }
+        }
+        return ordered;
+    }
+
+    private List<Integer> upcomingCaseIds(LocalDate from, LocalDate to) {
+        if (!loaded) {
+            load();
+        }
+        Set<Integer> caseIds = new LinkedHashSet<>();
+        boolean expired;
+        lock.readLock().lock();
+        try {
+            Deadline start = new Deadline(Integer.MIN_VALUE, 0, from);
+            for (Deadline deadline : byDate.tailSet(start, true)) {
+                if (deadline.date.isAfter(to)) {
+                    break;
+                }
+                if (openCases.contains(deadline.caseId)) {
+                    caseIds.add(deadline.caseId);
+                }
+            }
+            expired = !byDate.isEmpty() && byDate.first().date.isBefore(from);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (expired) {
+            expire(from);
+        }
+        return new ArrayList<>(caseIds);
+    }
+
+    /**
+     * Drops the events dated before a day
+     */
+    private void expire(LocalDate before) {
+        lock.writeLock().lock();
+        try {
+            NavigableSet<Deadline> passed = byDate.headSet(new Deadline(Integer.MIN_VALUE, 0, before), false);
+            for (Deadline deadline : passed) {
+                events.remove(deadline.eventId);
+            }
+            passed.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        LocalDate today = LocalDate.now();
+        List<Object[]> eventRows;
+        List<Integer> caseRows;
+        try {
+            eventRows = SessionTemplate.inPrimarySession("DeadlineIndex.load", session -> session.createQuery(
+                    "SELECT e.id, e.associatedCase.id, e.eventDate FROM Event e "
+                    + "WHERE e.eventDate >= :today AND e.status NOT IN ('Completed', 'Cancelled')")
+                    .setParameter("today", today)
+                    .list());
+            caseRows = SessionTemplate.inPrimarySession("DeadlineIndex.load", session -> session.createQuery(
+                    "SELECT c.id FROM Case c WHERE c.status NOT IN ('Closed', 'Cancelled')")
+                    .list());
+        } catch (RuntimeException ex) {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw ex;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : eventRows) {
+                putEvent(new Deadline((Integer) row[0], (Integer) row[1], (LocalDate) row[2]));
+            }
+            openCases.addAll(caseRows);
+            for (Runnable change : pending) {
+                change.run();
+            }
+            pending = null;
+            loaded = true;
+            logger.info("Loaded " + events.size() + " upcoming events of " + openCases.size() + " open cases into the deadline index");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -1,233 +1,394 @@
 package dao;
 
 import java.time.LocalDate;
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.Map;
 import model.Document;
+import model.DocumentSummary;
+import model.Page;
 import org.hibernate.Query;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
 
 /**
  * Data Access Object for Document operations using Hibernate
  */
 public class DocumentDao {
-    
+
+    private static final SequenceAllocator DOCUMENT_IDS = new SequenceAllocator("DOC",
+            "SELECT MAX(CAST(SUBSTRING(d.documentId, 4) AS integer)) FROM Document d WHERE d.documentId LIKE 'DOC%'");
+
+    private static final Keyset<Document> NEWEST_FIRST = new Keyset<>(Document.class, "d")
+            .desc("dateAdded", Document::getDateAdded, LocalDate::parse)
+            .desc("id", Document::getId, Integer::valueOf);
+
+    private static final Keyset<Document> BY_DOCUMENT_DATE = new Keyset<>(Document.class, "d")
+            .asc("documentDate", Document::getDocumentDate, LocalDate::parse)
+            .asc("id", Document::getId, Integer::valueOf);
+
+    static final TextIndex<Document> SEARCH = new TextIndex<>(Document.class, "d", Document::getId)
+            .field("title", Document::getTitle, 3f)
+            .field("documentType", Document::getDocumentType, 1.5f)
+            .field("description", Document::getDescription, 1f);
+
+    private static final Patch<Document> PATCH = new Patch<>(Document.class, Document::getVersion)
+            .requiredField("title", String.class, Document::getTitle, Document::setTitle)
+            .field("description", String.class, Document::getDescription, Document::setDescription)
+            .field("documentType", String.class, Document::getDocumentType, Document::setDocumentType)
+            .field("filePath", String.class, Document::getFilePath, Document::setFilePath)
+            .field("documentDate", LocalDate.class, Document::getDocumentDate, Document::setDocumentDate)
+            .field("status", String.class, Document::getStatus, Document::setStatus);
+
+    static final String DOCUMENT_SUMMARY_SELECT =
+            "SELECT new model.DocumentSummary(d.id, d.documentId, d.title, d.documentType, d.documentDate, d.dateAdded, " +
+            "d.status, c.caseNumber) FROM Document d JOIN d.associatedCase c ";
+
     /**
      * Creates a new document in the database
      */
     public Document createDocument(Document document) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.save(document);
-            
-            transaction.commit();
-            session.close();
-            return document;
+            return SessionTemplate.inTransaction("DocumentDao.createDocument", session -> {
+                session.save(document);
+                SEARCH.afterCommit(session, document);
+                return document;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Updates an existing document in the database
      */
     public Document updateDocument(Document document) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.update(document);
-            
-            transaction.commit();
-            session.close();
-            return document;
+            return SessionTemplate.inTransaction("DocumentDao.updateDocument", session -> {
+                session.update(document);
+                SEARCH.afterCommit(session, document);
+                return document;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Deletes a document from the database
      */
     public Document deleteDocument(Document document) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.delete(document);
-            
-            transaction.commit();
-            session.close();
-            return document;
+            return SessionTemplate.inTransaction("DocumentDao.deleteDocument", session -> {
+                session.delete(document);
+                SEARCH.afterDelete(session, document.getId());
+                return document;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Updates the status of a document
      */
     public Document updateDocumentStatus(Document document, String status) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            document.setStatus(status);
-            session.update(document);
-            
-            transaction.commit();
-            session.close();
-            return document;
+            return SessionTemplate.inTransaction("DocumentDao.updateDocumentStatus", session -> {
+                document.setStatus(status);
+                session.update(document);
+                SEARCH.afterCommit(session, document);
+                return document;
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Changes only the given properties of a document, if it is still at the
+     * version the caller read; properties already holding the new value are
+     * not written, and nothing is written if none differ
+     *
+     * @return The document as it now is, or null if it does not exist
+     * @throws IllegalArgumentException If a change names a property that cannot be patched or has the wrong type
+     * @throws ConcurrentModificationException If the document has been changed since that version
+     */
+    public Document patchDocument(int documentId, long version, Map<String, Object> changes) {
+        PATCH.check(changes);
+        try {
+            return SessionTemplate.inTransaction("DocumentDao.patchDocument", session -> {
+                Document document = PATCH.load(session, documentId, version);
+                if (document != null && PATCH.apply(session, document, documentId, changes)) {
+                    SEARCH.afterCommit(session, document);
+                }
+                return document;
+            });
+        } catch (ConcurrentModificationException ex) {
+            throw ex;
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds a document by ID
      */
     public Document findDocumentById(Document document) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Document foundDocument = (Document) session.get(Document.class, document.getId());
-            session.close();
-            return foundDocument;
+            return SessionTemplate.inSession("DocumentDao.findDocumentById",
+                    session -> (Document) session.get(Document.class, document.getId()));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds a document by document ID
      */
     public Document findDocumentByDocumentId(String documentId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Document d WHERE d.documentId = :documentId");
-            query.setParameter("documentId", documentId);
-            Document document = (Document) query.uniqueResult();
-            session.close();
-            return document;
+            return SessionTemplate.inSession("DocumentDao.findDocumentByDocumentId",
+                    session -> (Document) session.bySimpleNaturalId(Document.class).load(documentId));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
-     * Finds documents by title or description
+     * Finds documents by title, description or type, best match first
      */
-    @SuppressWarnings("unchecked")
     public List<Document> findDocumentsByText(String searchText) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Document d WHERE d.title LIKE :searchText OR d.description LIKE :searchText");
-            query.setParameter("searchText", "%" + searchText + "%");
-            List<Document> documents = query.list();
-            session.close();
-            return documents;
+            return SessionTemplate.inSession("DocumentDao.findDocumentsByText",
+                    session -> SEARCH.list(session, searchText));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds documents by case ID
      */
     @SuppressWarnings("unchecked")
     public List<Document> findDocumentsByCase(int caseId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Document d WHERE d.associatedCase.id = :caseId ORDER BY d.dateAdded DESC");
-            query.setParameter("caseId", caseId);
-            List<Document> documents = query.list();
-            session.close();
-            return documents;
+            return SessionTemplate.inSession("DocumentDao.findDocumentsByCase", session -> {
+                Query query = session.createQuery("FROM Document d WHERE d.associatedCase.id = :caseId ORDER BY d.dateAdded DESC");
+                query.setParameter("caseId", caseId);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds documents by document type
      */
     @SuppressWarnings("unchecked")
     public List<Document> findDocumentsByType(String documentType) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Document d WHERE d.documentType = :documentType");
-            query.setParameter("documentType", documentType);
-            List<Document> documents = query.list();
-            session.close();
-            return documents;
+            return SessionTemplate.inSession("DocumentDao.findDocumentsByType", session -> {
+                Query query = session.createQuery("FROM Document d WHERE d.documentType = :documentType");
+                query.setParameter("documentType", documentType);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds documents by date range
      */
     @SuppressWarnings("unchecked")
     public List<Document> findDocumentsByDateRange(LocalDate startDate, LocalDate endDate) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Document d WHERE d.documentDate BETWEEN :startDate AND :endDate");
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            List<Document> documents = query.list();
-            session.close();
-            return documents;
+            return SessionTemplate.inSession("DocumentDao.findDocumentsByDateRange", session -> {
+                Query query = session.createQuery("FROM Document d WHERE d.documentDate BETWEEN :startDate AND :endDate");
+                query.setParameter("startDate", startDate);
+                query.setParameter("endDate", endDate);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Gets all documents
      */
     @SuppressWarnings("unchecked")
     public List<Document> findAllDocuments() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Document d ORDER BY d.dateAdded DESC");
-            List<Document> documents = query.list();
-            session.close();
-            return documents;
+            return SessionTemplate.inSession("DocumentDao.findAllDocuments",
+                    session -> session.createQuery("FROM Document d ORDER BY d.dateAdded DESC").list());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets summaries of all documents, most recently added first
+     */
+    @SuppressWarnings("unchecked")
+    public List<DocumentSummary> findAllDocumentSummaries() {
+        try {
+            return SessionTemplate.inSession("DocumentDao.findAllDocumentSummaries",
+                    session -> session.createQuery(DOCUMENT_SUMMARY_SELECT + "ORDER BY d.dateAdded DESC").list());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets summaries of a case's documents, most recently added first
+     */
+    @SuppressWarnings("unchecked")
+    public List<DocumentSummary> findDocumentSummariesByCase(int caseId) {
+        try {
+            return SessionTemplate.inSession("DocumentDao.findDocumentSummariesByCase", session -> {
+                Query query = session.createQuery(DOCUMENT_SUMMARY_SELECT +
+                    "WHERE c.id = :caseId ORDER BY d.dateAdded DESC");
+                query.setParameter("caseId", caseId);
+                return query.list();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets summaries of the documents of a type, most recently added first
+     */
+    @SuppressWarnings("unchecked")
+    public List<DocumentSummary> findDocumentSummariesByType(String documentType) {
+        try {
+            return SessionTemplate.inSession("DocumentDao.findDocumentSummariesByType", session -> {
+                Query query = session.createQuery(DOCUMENT_SUMMARY_SELECT +
+                    "WHERE d.documentType = :documentType ORDER BY d.dateAdded DESC");
+                query.setParameter("documentType", documentType);
+                return query.list();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets one page of all documents, most recently added first
+     */
+    public Page<Document> findAllDocumentsPage(String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("DocumentDao.findAllDocumentsPage",
+                    session -> NEWEST_FIRST.page(session, cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Finds one page of documents by type, most recently added first
+     */
+    public Page<Document> findDocumentsByTypePage(String documentType, String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("DocumentDao.findDocumentsByTypePage", session -> NEWEST_FIRST.page(session,
+                    "d.documentType = :documentType",
+                    query -> query.setParameter("documentType", documentType),
+                    cursor, pageSize));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
+    /**
+     * Finds one page of documents by document date range, oldest first
+     */
+    public Page<Document> findDocumentsByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("DocumentDao.findDocumentsByDateRangePage", session -> BY_DOCUMENT_DATE.page(session,
+                    "d.documentDate BETWEEN :startDate AND :endDate",
+                    query -> {
+                        query.setParameter("startDate", startDate);
+                        query.setParameter("endDate", endDate);
+                    },
+                    cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Finds one page of documents by title, description or type, best match first
+     */
+    public Page<Document> searchDocumentsPage(String searchText, String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("DocumentDao.searchDocumentsPage",
+                    session -> SEARCH.page(session, searchText, cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
     /**
      * Gets a document with its case information
      */
     public Document getDocumentWithCase(Document document) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Load document with eager fetching of case
-            Query query = session.createQuery("FROM Document d LEFT JOIN FETCH d.associatedCase WHERE d.id = :documentId");
-            query.setParameter("documentId", document.getId());
-            Document foundDocument = (Document) query.uniqueResult();
-            
-            session.close();
-            return foundDocument;
+            return SessionTemplate.inSession("DocumentDao.getDocumentWithCase", session -> {
+                // Load document with eager fetching of case
+                Query query = session.createQuery("FROM Document d LEFT JOIN FETCH d.associatedCase WHERE d.id = :documentId");
+                query.setParameter("documentId", document.getId());
+                return (Document) query.uniqueResult();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-}
\ No newline at end of file
+
+    /**
+     * Generates the next document ID
+     */
+    public String generateNextDocumentId() {
+        try {
+            return String.format("DOC%06d", DOCUMENT_IDS.next());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            // Default format if error occurs
+            return "DOC" + System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Rebuilds the document search index from the database, e.g. after documents were changed by hand
+     *
+     * @return Number of documents indexed
+     */
+    public int rebuildDocumentSearchIndex() {
+        try {
+            return SEARCH.rebuild();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return 0;
+        }
+    }
+}
@@ -1,258 +1,441 @@
 package dao;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import model.Event;
+import model.EventSummary;
+import model.Page;
 import org.hibernate.Query;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
 
 /**
  * Data Access Object for Event operations using Hibernate
  */
 public class EventDao {
-    
+
+    private static final SequenceAllocator EVENT_IDS = new SequenceAllocator("EVT",
+            "SELECT MAX(CAST(SUBSTRING(e.eventId, 4) AS integer)) FROM Event e WHERE e.eventId LIKE 'EVT%'");
+
+    static final ReminderScheduler REMINDERS = new ReminderScheduler();
+
+    private static final Patch<Event> PATCH = new Patch<>(Event.class, Event::getVersion)
+            .requiredField("title", String.class, Event::getTitle, Event::setTitle)
+            .field("description", String.class, Event::getDescription, Event::setDescription)
+            .field("eventType", String.class, Event::getEventType, Event::setEventType)
+            .field("eventDate", LocalDate.class, Event::getEventDate, Event::setEventDate)
+            .field("startTime", LocalTime.class, Event::getStartTime, Event::setStartTime)
+            .field("endTime", LocalTime.class, Event::getEndTime, Event::setEndTime)
+            .field("location", String.class, Event::getLocation, Event::setLocation)
+            .field("status", String.class, Event::getStatus, Event::setStatus)
+            .requiredField("reminderSet", Boolean.class, Event::isReminderSet, Event::setReminderSet)
+            .requiredField("reminderDays", Integer.class, Event::getReminderDays, Event::setReminderDays);
+
+    private static final Keyset<Event> NEWEST_DAY_FIRST = new Keyset<>(Event.class, "e")
+            .desc("eventDate", Event::getEventDate, LocalDate::parse)
+            .asc("startTime", Event::getStartTime, LocalTime::parse)
+            .asc("id", Event::getId, Integer::valueOf);
+
+    private static final Keyset<Event> CHRONOLOGICAL = new Keyset<>(Event.class, "e")
+            .asc("eventDate", Event::getEventDate, LocalDate::parse)
+            .asc("startTime", Event::getStartTime, LocalTime::parse)
+            .asc("id", Event::getId, Integer::valueOf);
+
+    static final String EVENT_SUMMARY_SELECT =
+            "SELECT new model.EventSummary(e.id, e.eventId, e.title, e.eventType, e.eventDate, e.startTime, e.endTime, " +
+            "e.location, e.status, c.caseNumber) FROM Event e JOIN e.associatedCase c ";
+
     /**
      * Creates a new event in the database
      */
     public Event createEvent(Event event) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.save(event);
-            
-            transaction.commit();
-            session.close();
-            return event;
+            return SessionTemplate.inTransaction("EventDao.createEvent", session -> {
+                REMINDERS.prepare(session, event);
+                session.save(event);
+                REMINDERS.afterCommit(session, event);
+                CaseDao.DEADLINES.afterCommit(session, event);
+                return event;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Updates an existing event in the database
      */
     public Event updateEvent(Event event) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.update(event);
-            
-            transaction.commit();
-            session.close();
-            return event;
+            return SessionTemplate.inTransaction("EventDao.updateEvent", session -> {
+                REMINDERS.prepare(session, event);
+                session.update(event);
+                REMINDERS.afterCommit(session, event);
+                CaseDao.DEADLINES.afterCommit(session, event);
+                return event;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Deletes an event from the database
      */
     public Event deleteEvent(Event event) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.delete(event);
-            
-            transaction.commit();
-            session.close();
-            return event;
+            return SessionTemplate.inTransaction("EventDao.deleteEvent", session -> {
+                session.delete(event);
+                REMINDERS.afterDelete(session, event.getId());
+                CaseDao.DEADLINES.afterEventDelete(session, event.getId());
+                return event;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Updates the status of an event
      */
     public Event updateEventStatus(Event event, String status) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            event.setStatus(status);
-            session.update(event);
-            
-            transaction.commit();
-            session.close();
-            return event;
+            return SessionTemplate.inTransaction("EventDao.updateEventStatus", session -> {
+                event.setStatus(status);
+                REMINDERS.prepare(session, event);
+                session.update(event);
+                REMINDERS.afterCommit(session, event);
+                CaseDao.DEADLINES.afterCommit(session, event);
+                return event;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
+    /**
+     * Changes only the given properties of an event, if it is still at the
+     * version the caller read; properties already holding the new value are
+     * not written, and nothing is written if none differ
+     *
+     * @return The event as it now is, or null if it does not exist
+     * @throws IllegalArgumentException If a change names a property that cannot be patched or has the wrong type
+     * @throws ConcurrentModificationException If the event has been changed since that version
+     */
+    public Event patchEvent(int eventId, long version, Map<String, Object> changes) {
+        PATCH.check(changes);
+        try {
+            return SessionTemplate.inTransaction("EventDao.patchEvent", session -> {
+                Event event = PATCH.load(session, eventId, version);
+                if (event == null) {
+                    return null;
+                }
+                LocalDate reminderDate = event.getReminderDate();
+                boolean reminderFired = event.isReminderFired();
+                if (PATCH.apply(session, event, eventId, changes,
+                        changed -> REMINDERS.prepare(changed, reminderDate, reminderFired))) {
+                    REMINDERS.afterCommit(session, event);
+                    CaseDao.DEADLINES.afterCommit(session, event);
+                }
+                return event;
+            });
+        } catch (ConcurrentModificationException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
     /**
      * Finds an event by ID
      */
     public Event findEventById(Event event) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Event foundEvent = (Event) session.get(Event.class, event.getId());
-            session.close();
-            return foundEvent;
+            return SessionTemplate.inSession("EventDao.findEventById",
+                    session -> (Event) session.get(Event.class, event.getId()));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds an event by event ID
      */
     public Event findEventByEventId(String eventId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Event e WHERE e.eventId = :eventId");
-            query.setParameter("eventId", eventId);
-            Event event = (Event) query.uniqueResult();
-            session.close();
-            return event;
+            return SessionTemplate.inSession("EventDao.findEventByEventId",
+                    session -> (Event) session.bySimpleNaturalId(Event.class).load(eventId));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds events by case ID
      */
     @SuppressWarnings("unchecked")
     public List<Event> findEventsByCase(int caseId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Event e WHERE e.associatedCase.id = :caseId ORDER BY e.eventDate, e.startTime");
-            query.setParameter("caseId", caseId);
-            List<Event> events = query.list();
-            session.close();
-            return events;
+            return SessionTemplate.inSession("EventDao.findEventsByCase", session -> {
+                Query query = session.createQuery("FROM Event e WHERE e.associatedCase.id = :caseId ORDER BY e.eventDate, e.startTime");
+                query.setParameter("caseId", caseId);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds events by date
      */
     @SuppressWarnings("unchecked")
     public List<Event> findEventsByDate(LocalDate date) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Event e WHERE e.eventDate = :date ORDER BY e.startTime");
-            query.setParameter("date", date);
-            List<Event> events = query.list();
-            session.close();
-            return events;
+            return SessionTemplate.inSession("EventDao.findEventsByDate", session -> {
+                Query query = session.createQuery("FROM Event e WHERE e.eventDate = :date ORDER BY e.startTime");
+                query.setParameter("date", date);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds events by date range
      */
     @SuppressWarnings("unchecked")
     public List<Event> findEventsByDateRange(LocalDate startDate, LocalDate endDate) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Event e WHERE e.eventDate BETWEEN :startDate AND :endDate ORDER BY e.eventDate, e.startTime");
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            List<Event> events = query.list();
-            session.close();
-            return events;
+            return SessionTemplate.inSession("EventDao.findEventsByDateRange", session -> {
+                Query query = session.createQuery("FROM Event e WHERE e.eventDate BETWEEN :startDate AND :endDate ORDER BY e.eventDate, e.startTime");
+                query.setParameter("startDate", startDate);
+                query.setParameter("endDate", endDate);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds events by status
      */
     @SuppressWarnings("unchecked")
     public List<Event> findEventsByStatus(String status) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Event e WHERE e.status = :status ORDER BY e.eventDate, e.startTime");
-            query.setParameter("status", status);
-            List<Event> events = query.list();
-            session.close();
-            return events;
+            return SessionTemplate.inSession("EventDao.findEventsByStatus", session -> {
+                Query query = session.createQuery("FROM Event e WHERE e.status = :status ORDER BY e.eventDate, e.startTime");
+                query.setParameter("status", status);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds upcoming events with reminders due
      */
     @SuppressWarnings("unchecked")
     public List<Event> findUpcomingEventsWithReminders() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Find events where reminder is set and the event date minus reminder days equals today
-            Query query = session.createQuery(
-                "FROM Event e WHERE e.reminderSet = true " +
-                "AND DATEDIFF(e.eventDate, CURRENT_DATE) = e.reminderDays " +
-                "AND e.status != 'Completed' AND e.status != 'Cancelled' " +
-                "ORDER BY e.eventDate, e.startTime"
-            );
-            
-            List<Event> events = query.list();
-            session.close();
-            return events;
+            return SessionTemplate.inSession("EventDao.findUpcomingEventsWithReminders", session -> {
+                // The stored reminder date is the event date minus reminder days, and is
+                // only set while a reminder is set and the event is neither completed nor cancelled
+                Query query = session.createQuery(
+                    "FROM Event e WHERE e.reminderDate = :today " +
+                    "ORDER BY e.eventDate, e.startTime"
+                );
+                query.setParameter("today", LocalDate.now());
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Gets all events
      */
     @SuppressWarnings("unchecked")
     public List<Event> findAllEvents() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Event e ORDER BY e.eventDate DESC, e.startTime");
-            List<Event> events = query.list();
-            session.close();
-            return events;
+            return SessionTemplate.inSession("EventDao.findAllEvents",
+                    session -> session.createQuery("FROM Event e ORDER BY e.eventDate DESC, e.startTime").list());
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
+    /**
+     * Gets summaries of all events, latest day first
+     */
+    @SuppressWarnings("unchecked")
+    public List<EventSummary> findAllEventSummaries() {
+        try {
+            return SessionTemplate.inSession("EventDao.findAllEventSummaries",
+                    session -> session.createQuery(EVENT_SUMMARY_SELECT +
+                        "ORDER BY e.eventDate DESC, e.startTime").list());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets summaries of a case's events in date order
+     */
+    @SuppressWarnings("unchecked")
+    public List<EventSummary> findEventSummariesByCase(int caseId) {
+        try {
+            return SessionTemplate.inSession("EventDao.findEventSummariesByCase", session -> {
+                Query query = session.createQuery(EVENT_SUMMARY_SELECT +
+                    "WHERE c.id = :caseId ORDER BY e.eventDate, e.startTime");
+                query.setParameter("caseId", caseId);
+                return query.list();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets summaries of the events in a date range, in date order
+     */
+    @SuppressWarnings("unchecked")
+    public List<EventSummary> findEventSummariesByDateRange(LocalDate startDate, LocalDate endDate) {
+        try {
+            return SessionTemplate.inSession("EventDao.findEventSummariesByDateRange", session -> {
+                Query query = session.createQuery(EVENT_SUMMARY_SELECT +
+                    "WHERE e.eventDate BETWEEN :startDate AND :endDate ORDER BY e.eventDate, e.startTime");
+                query.setParameter("startDate", startDate);
+                query.setParameter("endDate", endDate);
+                return query.list();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets summaries of the events with a status, in date order
+     */
+    @SuppressWarnings("unchecked")
+    public List<EventSummary> findEventSummariesByStatus(String status) {
+        try {
+            return SessionTemplate.inSession("EventDao.findEventSummariesByStatus", session -> {
+                Query query = session.createQuery(EVENT_SUMMARY_SELECT +
+                    "WHERE e.status = :status ORDER BY e.eventDate, e.startTime");
+                query.setParameter("status", status);
+                return query.list();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets one page of all events, latest day first and by start time within a day
+     */
+    public Page<Event> findAllEventsPage(String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("EventDao.findAllEventsPage",
+                    session -> NEWEST_DAY_FIRST.page(session, cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Finds one page of events by status in date and start time order
+     */
+    public Page<Event> findEventsByStatusPage(String status, String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("EventDao.findEventsByStatusPage", session -> CHRONOLOGICAL.page(session,
+                    "e.status = :status",
+                    query -> query.setParameter("status", status),
+                    cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Finds one page of events by date range in date and start time order
+     */
+    public Page<Event> findEventsByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("EventDao.findEventsByDateRangePage", session -> CHRONOLOGICAL.page(session,
+                    "e.eventDate BETWEEN :startDate AND :endDate",
+                    query -> {
+                        query.setParameter("startDate", startDate);
+                        query.setParameter("endDate", endDate);
+                    },
+                    cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
     /**
      * Gets an event with its case information
      */
     public Event getEventWithCase(Event event) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Load event with eager fetching of case
-            Query query = session.createQuery("FROM Event e LEFT JOIN FETCH e.associatedCase WHERE e.id = :eventId");
-            query.setParameter("eventId", event.getId());
-            Event foundEvent = (Event) query.uniqueResult();
-            
-            session.close();
-            return foundEvent;
+            return SessionTemplate.inSession("EventDao.getEventWithCase", session -> {
+                // Load event with eager fetching of case
+                Query query = session.createQuery("FROM Event e LEFT JOIN FETCH e.associatedCase WHERE e.id = :eventId");
+                query.setParameter("eventId", event.getId());
+                return (Event) query.uniqueResult();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-}
\ No newline at end of file
+
+    /**
+     * Generates the next event ID
+     */
+    public String generateNextEventId() {
+        try {
+            return String.format("EVT%06d", EVENT_IDS.next());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            // Default format if error occurs
+            return "EVT" + System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Registers work to run once for each event reminder when it falls due,
+     * e.g. sending a notification; it runs inside the transaction that marks
+     * the reminder fired, so a failure leaves the reminder to be retried
+     */
+    public static void addReminderListener(Consumer<Event> listener) {
+        REMINDERS.addListener(listener);
+    }
+}
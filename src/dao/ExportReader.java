@@ -0,0 +1,145 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+/**
+ * Streams the rows of one HQL query a chunk at a time for bulk exports.
+ *
+ * The query runs once over a forward-only cursor with the driver's streaming
+ * fetch size, and each chunk is detached from the session as soon as it has
+ * been read, so memory use stays at one chunk however large the table is.
+ *
+ * Unlike the other DAO calls the reader keeps its session and connection open
+ * between chunks, so it must be closed; it closes itself after the last row.
+ */
+public final class ExportReader<T> implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(ExportReader.class.getName());
+
+    /**
+     * Fetch size for the export cursor. Connector/J only streams rows instead
+     * of buffering the whole result when this is Integer.MIN_VALUE.
+     */
+    private static final int FETCH_SIZE = (int) HibernateUtil.getSetting("hibernate.export.fetch_size", Integer.MIN_VALUE);
+
+    private final String name;
+    private final Session session;
+    private final ScrollableResults results;
+    private final long openedAt = System.nanoTime();
+    private int rowsRead;
+    private boolean exhausted;
+    private boolean closed;
+
+    /**
+     * Opens the export cursor
+     *
+     * @param name Name used for timings, e.g. "TimeEntryDao.openTimeEntryExport"
+     * @param hql Query selecting a single entity
+     * @param binder Binds the query's named parameters
+     */
+    ExportReader(String name, String hql, Consumer<Query> binder) {
+        this.name = name;
+        this.session = HibernateUtil.getSessionFactory().openSession();
+        try {
+            session.setDefaultReadOnly(true);
+            session.setCacheMode(CacheMode.IGNORE);
+            session.setFlushMode(FlushMode.MANUAL);
+
+            Query query = session.createQuery(hql);
+            binder.accept(query);
+            query.setReadOnly(true);
+            query.setFetchSize(FETCH_SIZE);
+            this.results = query.scroll(ScrollMode.FORWARD_ONLY);
+        } catch (RuntimeException ex) {
+            session.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads the next chunk of rows. An empty or short chunk means the export is
+     * finished and the reader has closed itself.
+     *
+     * @param maxRows Maximum number of rows to return
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized List<T> next(int maxRows) {
+        if (closed) {
+            if (exhausted) {
+                return new ArrayList<>();
+            }
+            throw new IllegalStateException("Export " + name + " is closed");
+        }
+        List<T> chunk = new ArrayList<>(maxRows);
+        boolean success = false;
+        try {
+            while (chunk.size() < maxRows) {
+                if (!results.next()) {
+                    exhausted = true;
+                    break;
+                }
+                chunk.add((T) results.get(0));
+            }
+            rowsRead += chunk.size();
+            success = true;
+        } finally {
+            // Drop the chunk from the persistence context so it can be collected once sent
+            session.clear();
+            if (exhausted || !success) {
+                close(success);
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Checks if every row has been read
+     */
+    public synchronized boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * Gets the number of rows read so far
+     */
+    public synchronized int getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Closes the cursor and hands the connection back to the pool
+     */
+    @Override
+    public synchronized void close() {
+        close(true);
+    }
+
+    private void close(boolean success) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            results.close();
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Failed to close export cursor for " + name, ex);
+        } finally {
+            try {
+                session.close();
+            } catch (RuntimeException ex) {
+                logger.log(Level.WARNING, "Failed to close session for " + name, ex);
+            }
+            SessionTemplate.record(name, System.nanoTime() - openedAt, success);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package dao;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import model.Case;
+import model.Event;
+import model.TimeEntry;
+import org.hibernate.FlushMode;
+import org.hibernate.JDBCException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.Type;
+
+/**
+ * Loads one entity with exactly the associations a caller names in a fetch
+ * spec, and returns it detached with all of them initialized.
+ *
+ * A spec is a comma-separated list of association paths, such as
+ * {@code "client, attorneys, events[upcoming], timeEntries.attorney"}. A
+ * collection may name one of the filters registered below in brackets, and
+ * then holds only the matching elements.
+ *
+ * Fetch-joining more than one collection in a single query makes the database
+ * return every combination of their rows, so each collection is read by its own
+ * query instead: the root is read with its single-valued associations, then
+ * every collection level is read with one query keyed on the ids of all its
+ * owners, again with the single-valued associations of its elements. The rows
+ * read add up to the sum of the collection sizes, and the number of queries
+ * depends only on the spec, not on the data.
+ *
+ * The graph is loaded in a session of its own that is never flushed, so that
+ * filtered collections can be handed back as plain lists without Hibernate
+ * treating them as edits; it does not take part in a {@link UnitOfWork}.
+ */
+final class FetchGraph<T> {
+
+    private static final Pattern SEGMENT = Pattern.compile("(\\w+)(?:\\[(\\w+)\\])?");
+    private static final int MAX_DEPTH = 4;
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    /** Filter conditions keyed by element entity and filter name; the element alias is "e" */
+    private static final Map<String, String> FILTERS = new HashMap<>();
+
+    static {
+        filter(Case.class, "active", "e.status NOT IN ('Closed', 'Cancelled')");
+        filter(Case.class, "closed", "e.status IN ('Closed', 'Cancelled')");
+        filter(Event.class, "upcoming", "e.eventDate >= :today AND e.status NOT IN ('Completed', 'Cancelled')");
+        filter(Event.class, "past", "e.eventDate < :today");
+        filter(TimeEntry.class, "unbilled", "e.billed = false");
+        filter(TimeEntry.class, "billed", "e.billed = true");
+    }
+
+    private static void filter(Class<?> entityClass, String name, String condition) {
+        FILTERS.put(entityClass.getName() + "[" + name + "]", condition);
+    }
+
+    private static final class Node {
+        final String property;
+        final boolean collection;
+        final ClassMetadata target;
+        final String filter;
+        final Map<String, Node> children = new LinkedHashMap<>();
+
+        Node(String property, boolean collection, ClassMetadata target, String filter) {
+            this.property = property;
+            this.collection = collection;
+            this.target = target;
+            this.filter = filter;
+        }
+    }
+
+    private final Class<T> rootClass;
+    private final ClassMetadata root;
+    private final Map<String, Node> children = new LinkedHashMap<>();
+
+    private FetchGraph(Class<T> rootClass, ClassMetadata root) {
+        this.rootClass = rootClass;
+        this.root = root;
+    }
+
+    /**
+     * Resolves a fetch spec against the mapping of its root entity
+     *
+     * @param rootClass Entity the paths start from
+     * @param spec Comma-separated association paths; null or empty loads the entity alone
+     * @throws IllegalArgumentException If a path does not name associations, or names an unknown filter
+     */
+    static <T> FetchGraph<T> parse(Class<T> rootClass, String spec) {
+        SessionFactory sessionFactory = HibernateUtil.getSessionFactory();
+        FetchGraph<T> graph = new FetchGraph<>(rootClass, sessionFactory.getClassMetadata(rootClass));
+        if (spec == null) {
+            return graph;
+        }
+        for (String path : spec.split(",")) {
+            path = path.trim();
+            if (path.isEmpty()) {
+                continue;
+            }
+            String[] segments = path.split("\\.");
+            if (segments.length > MAX_DEPTH) {
+                throw new IllegalArgumentException("Fetch path '" + path + "' is deeper than " + MAX_DEPTH);
+            }
+            Map<String, Node> level = graph.children;
+            ClassMetadata owner = graph.root;
+            for (String segment : segments) {
+                Node node = resolve(sessionFactory, owner, segment.trim(), path, level);
+                level = node.children;
+                owner = node.target;
+            }
+        }
+        return graph;
+    }
+
+    private static Node resolve(SessionFactory sessionFactory, ClassMetadata owner, String segment, String path,
+                                Map<String, Node> level) {
+        Matcher matcher = SEGMENT.matcher(segment);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid fetch path '" + path + "'");
+        }
+        String property = matcher.group(1);
+        String filterName = matcher.group(2);
+        if (!Arrays.asList(owner.getPropertyNames()).contains(property)) {
+            throw new IllegalArgumentException("Unknown property '" + property + "' in fetch path '" + path + "'");
+        }
+
+        Type type = owner.getPropertyType(property);
+        Type targetType = type.isCollectionType()
+                ? ((CollectionType) type).getElementType((SessionFactoryImplementor) sessionFactory)
+                : type;
+        if (!targetType.isEntityType()) {
+            throw new IllegalArgumentException("'" + property + "' in fetch path '" + path + "' is not an association");
+        }
+        ClassMetadata target = sessionFactory.getClassMetadata(targetType.getReturnedClass());
+
+        String filter = null;
+        if (filterName != null) {
+            if (!type.isCollectionType()) {
+                throw new IllegalArgumentException("Only collections can be filtered: '" + segment + "'");
+            }
+            filter = FILTERS.get(target.getEntityName() + "[" + filterName + "]");
+            if (filter == null) {
+                throw new IllegalArgumentException("Unknown filter '" + filterName + "' for '" + property + "'");
+            }
+        }
+
+        Node node = level.get(property);
+        if (node == null) {
+            node = new Node(property, type.isCollectionType(), target, filter);
+            level.put(property, node);
+        } else if (!Objects.equals(node.filter, filter)) {
+            throw new IllegalArgumentException("Fetch spec asks for '" + property + "' with different filters");
+        }
+        return node;
+    }
+
+    /**
+     * Loads the entity and the requested associations
+     *
+     * @param id Entity id
+     * @param operation Operation name used for timings, e.g. "CaseDao.getCaseGraph"
+     * @return The detached entity, or null if no entity has that id
+     */
+    T load(Serializable id, String operation) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Session replica = UnitOfWork.isActive() && !UnitOfWork.current().hasPrimarySession()
+                    ? ReplicaRouter.openReadSession() : null;
+            if (replica != null) {
+                try {
+                    T entity = load(replica, id);
+                    success = true;
+                    return entity;
+                } catch (JDBCException ex) {
+                    ReplicaRouter.failed(ex);
+                }
+            }
+            T entity = load(HibernateUtil.getSessionFactory().openSession(), id);
+            success = true;
+            return entity;
+        } finally {
+            SessionTemplate.record(operation, System.nanoTime() - start, success);
+        }
+    }
+
+    /**
+     * Loads the entity and the requested associations in a new session, which is closed afterwards
+     */
+    private T load(Session session, Serializable id) {
+        try {
+            session.setDefaultReadOnly(true);
+            session.setFlushMode(FlushMode.MANUAL);
+
+            StringBuilder hql = new StringBuilder("SELECT r FROM ").append(root.getEntityName()).append(" r");
+            joinSingleValued(hql, "r", children, new int[1]);
+            hql.append(" WHERE r.").append(root.getIdentifierPropertyName()).append(" = :id");
+            Object entity = session.createQuery(hql.toString()).setParameter("id", id).uniqueResult();
+            if (entity != null) {
+                entity = unproxy(entity);
+                loadCollections(session, Collections.singletonList(entity), root, children);
+            }
+            return rootClass.cast(entity);
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Appends fetch joins for the single-valued associations among the nodes,
+     * and recursively for theirs, since those add no rows
+     */
+    private static void joinSingleValued(StringBuilder hql, String alias, Map<String, Node> nodes, int[] aliasCount) {
+        for (Node node : nodes.values()) {
+            if (!node.collection) {
+                String joined = "f" + (++aliasCount[0]);
+                hql.append(" LEFT JOIN FETCH ").append(alias).append('.').append(node.property).append(' ').append(joined);
+                joinSingleValued(hql, joined, node.children, aliasCount);
+            }
+        }
+    }
+
+    /**
+     * Loads the collections among the nodes for all owners at once, then the
+     * levels below them. Single-valued nodes were fetched with their owners and
+     * are only walked to reach the collections beneath them.
+     */
+    private void loadCollections(Session session, List<Object> owners, ClassMetadata ownerMetadata,
+                                 Map<String, Node> nodes) {
+        if (owners.isEmpty()) {
+            return;
+        }
+        for (Node node : nodes.values()) {
+            List<Object> next;
+            if (node.collection) {
+                next = node.filter == null
+                        ? fetchCollection(session, owners, ownerMetadata, node)
+                        : fetchFiltered(session, owners, ownerMetadata, node);
+            } else {
+                Set<Object> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (Object owner : owners) {
+                    Object target = ownerMetadata.getPropertyValue(owner, node.property);
+                    if (target != null) {
+                        targets.add(unproxy(target));
+                    }
+                }
+                next = new ArrayList<>(targets);
+            }
+            loadCollections(session, next, node.target, node.children);
+        }
+    }
+
+    private List<Object> fetchCollection(Session session, List<Object> owners, ClassMetadata ownerMetadata, Node node) {
+        StringBuilder hql = new StringBuilder("SELECT o FROM ").append(ownerMetadata.getEntityName())
+                .append(" o LEFT JOIN FETCH o.").append(node.property).append(" e");
+        joinSingleValued(hql, "e", node.children, new int[1]);
+        hql.append(" WHERE o.").append(ownerMetadata.getIdentifierPropertyName()).append(" IN (:ids)");
+
+        // The rows are only read so that Hibernate fills the owners' collections
+        for (List<Serializable> ids : idSlices(session, owners)) {
+            session.createQuery(hql.toString()).setParameterList("ids", ids).list();
+        }
+        Set<Object> elements = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Object owner : owners) {
+            for (Object element : (Collection<?>) ownerMetadata.getPropertyValue(owner, node.property)) {
+                elements.add(unproxy(element));
+            }
+        }
+        return new ArrayList<>(elements);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> fetchFiltered(Session session, List<Object> owners, ClassMetadata ownerMetadata, Node node) {
+        StringBuilder hql = new StringBuilder("SELECT o.").append(ownerMetadata.getIdentifierPropertyName())
+                .append(", e FROM ").append(ownerMetadata.getEntityName())
+                .append(" o JOIN o.").append(node.property).append(" e");
+        joinSingleValued(hql, "e", node.children, new int[1]);
+        hql.append(" WHERE o.").append(ownerMetadata.getIdentifierPropertyName()).append(" IN (:ids)")
+                .append(" AND (").append(node.filter).append(")")
+                .append(" ORDER BY e.").append(node.target.getIdentifierPropertyName());
+
+        Map<Object, List<Object>> byOwner = new HashMap<>();
+        Set<Object> elements = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<Serializable> ids : idSlices(session, owners)) {
+            Query query = session.createQuery(hql.toString());
+            query.setParameterList("ids", ids);
+            if (node.filter.contains(":today")) {
+                query.setParameter("today", LocalDate.now());
+            }
+            for (Object[] row : (List<Object[]>) query.list()) {
+                Object element = unproxy(row[1]);
+                byOwner.computeIfAbsent(row[0], ownerId -> new ArrayList<>()).add(element);
+                elements.add(element);
+            }
+        }
+        // Plain lists, so the filtered collections never reach Hibernate's dirty checking
+        for (Object owner : owners) {
+            List<Object> matching = byOwner.get(session.getIdentifier(owner));
+            ownerMetadata.setPropertyValue(owner, node.property, matching != null ? matching : new ArrayList<>());
+        }
+        return new ArrayList<>(elements);
+    }
+
+    private static List<List<Serializable>> idSlices(Session session, List<Object> entities) {
+        List<List<Serializable>> slices = new ArrayList<>();
+        List<Serializable> slice = new ArrayList<>();
+        for (Object entity : entities) {
+            if (slice.size() == MAX_IDS_PER_QUERY) {
+                slices.add(slice);
+                slice = new ArrayList<>();
+            }
+            slice.add(session.getIdentifier(entity));
+        }
+        slices.add(slice);
+        return slices;
+    }
+
+    private static Object unproxy(Object entity) {
+        if (entity instanceof HibernateProxy) {
+            return ((HibernateProxy) entity).getHibernateLazyInitializer().getImplementation();
+        }
+        return entity;
+    }
+}
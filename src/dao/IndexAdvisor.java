@@ -0,0 +1,325 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+import model.Case;
+import model.Document;
+import model.Event;
+import model.Invoice;
+import model.OTP;
+import model.Payment;
+import model.TimeEntry;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.ForeignKey;
+import org.hibernate.mapping.Index;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.Table;
+
+/**
+ * Checks the indexes present in the database at startup.
+ *
+ * The managed index set is declared with {@code @Table(indexes = ...)} on the
+ * entities in model. The check compares the database against that set and
+ * against the predicates of the hot DAO queries listed below, and reports
+ * <ul>
+ * <li>managed indexes missing from the database,</li>
+ * <li>hot predicates that no index can seek on, or only on part of,</li>
+ * <li>indexes that neither a listed predicate nor a foreign key uses, and
+ * indexes that are a leading prefix of another index.</li>
+ * </ul>
+ *
+ * When hbm2ddl.auto is update, missing managed indexes are created here too.
+ * Hibernate's own CREATE INDEX fails on MySQL for the date columns, which hold
+ * serialized values in BLOB columns and can only be indexed on a key prefix.
+ */
+final class IndexAdvisor {
+
+    private static final Logger logger = Logger.getLogger(IndexAdvisor.class.getName());
+
+    /** Key prefix length for BLOB columns on MySQL; the serialized dates are well under it */
+    private static final int BLOB_KEY_PREFIX = 255;
+
+    private static final class Predicate {
+        final String query;
+        final Class<?> entityClass;
+        final String[] properties;
+
+        Predicate(String query, Class<?> entityClass, String[] properties) {
+            this.query = query;
+            this.entityClass = entityClass;
+            this.properties = properties;
+        }
+    }
+
+    private static final class DbIndex {
+        final String name;
+        final boolean unique;
+        final List<String> columns = new ArrayList<>();
+
+        DbIndex(String name, boolean unique) {
+            this.name = name;
+            this.unique = unique;
+        }
+    }
+
+    private static final List<Predicate> PREDICATES = new ArrayList<>();
+
+    static {
+        predicate("CaseDao.findCasesByStatus", Case.class, "status");
+        predicate("CaseDao.findCasesByType", Case.class, "caseType");
+        predicate("CaseDao.findCasesByDateRange", Case.class, "fileDate");
+        predicate("CaseDao.findCasesByClient", Case.class, "client");
+        predicate("TimeEntryDao.findUnbilledTimeEntriesByCase", TimeEntry.class, "associatedCase", "billed");
+        predicate("TimeEntryDao.findTimeEntriesByAttorney", TimeEntry.class, "attorney");
+        predicate("EventDao.findEventsByDateRange", Event.class, "eventDate");
+        predicate("DeadlineIndex.load", Event.class, "eventDate", "status");
+        predicate("EventDao.findEventsByCase", Event.class, "associatedCase");
+        predicate("EventDao.findUpcomingEventsWithReminders", Event.class, "reminderDate");
+        predicate("ReminderScheduler.refill", Event.class, "reminderFired", "reminderDate");
+        predicate("DocumentDao.findDocumentsByCase", Document.class, "associatedCase");
+        predicate("InvoiceDao.findInvoicesByStatus", Invoice.class, "status");
+        predicate("InvoiceDao.findOverdueInvoices", Invoice.class, "status", "dueDate");
+        predicate("InvoiceDao.findInvoicesByClient", Invoice.class, "client");
+        predicate("PaymentDao.findPaymentsByDateRange", Payment.class, "paymentDate");
+        predicate("PaymentDao.findPaymentsByInvoice", Payment.class, "invoice");
+        predicate("OTPDao.verifyOTP", OTP.class, "email", "createdAt");
+    }
+
+    private static void predicate(String query, Class<?> entityClass, String... properties) {
+        PREDICATES.add(new Predicate(query, entityClass, properties));
+    }
+
+    private IndexAdvisor() {
+    }
+
+    /**
+     * Runs the check and logs each finding
+     *
+     * @param configuration Configuration the SessionFactory was built from
+     * @param dataSource Database to inspect
+     * @param createMissing Whether to create missing managed indexes
+     * @return The findings, empty when the indexes match
+     */
+    static List<String> check(Configuration configuration, DataSource dataSource, boolean createMissing) {
+        List<String> findings = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            Map<String, Table> tables = new LinkedHashMap<>();
+            Map<String, List<DbIndex>> present = new LinkedHashMap<>();
+            for (Iterator<?> it = configuration.getTableMappings(); it.hasNext(); ) {
+                Table table = (Table) it.next();
+                if (table.isPhysicalTable()) {
+                    tables.put(key(table.getName()), table);
+                    present.put(key(table.getName()), readIndexes(connection, metaData, table.getName()));
+                }
+            }
+
+            for (Table table : tables.values()) {
+                checkManaged(connection, metaData, table, present.get(key(table.getName())), createMissing, findings);
+            }
+            Map<String, List<Set<String>>> predicateColumns = checkPredicates(configuration, present, findings);
+            for (Table table : tables.values()) {
+                checkUnused(table, present.get(key(table.getName())),
+                        predicateColumns.getOrDefault(key(table.getName()), Collections.emptyList()), findings);
+            }
+        } catch (SQLException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Index check failed", ex);
+            findings.add("Index check failed: " + ex.getMessage());
+            return findings;
+        }
+
+        for (String finding : findings) {
+            logger.warning(finding);
+        }
+        logger.info("Index check finished with " + findings.size() + " findings");
+        return findings;
+    }
+
+    private static void checkManaged(Connection connection, DatabaseMetaData metaData, Table table,
+                                     List<DbIndex> present, boolean createMissing, List<String> findings) throws SQLException {
+        for (Iterator<?> it = table.getIndexIterator(); it.hasNext(); ) {
+            Index index = (Index) it.next();
+            if (find(present, index.getName()) != null) {
+                continue;
+            }
+            List<String> columns = new ArrayList<>();
+            for (Iterator<?> columnIt = index.getColumnIterator(); columnIt.hasNext(); ) {
+                columns.add(((Column) columnIt.next()).getName());
+            }
+            String description = index.getName() + " on " + table.getName() + columns;
+            if (!createMissing) {
+                findings.add("Missing managed index " + description);
+                continue;
+            }
+            String ddl = createIndexSql(metaData, index.getName(), table.getName(), columns);
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate(ddl);
+                logger.info("Created index " + description);
+                DbIndex created = new DbIndex(index.getName(), false);
+                created.columns.addAll(lowerCase(columns));
+                present.add(created);
+            } catch (SQLException ex) {
+                findings.add("Missing managed index " + description + "; " + ddl + " failed: " + ex.getMessage());
+            }
+        }
+    }
+
+    private static Map<String, List<Set<String>>> checkPredicates(Configuration configuration,
+                                                                  Map<String, List<DbIndex>> present, List<String> findings) {
+        Map<String, List<Set<String>>> byTable = new LinkedHashMap<>();
+        for (Predicate predicate : PREDICATES) {
+            PersistentClass mapping = configuration.getClassMapping(predicate.entityClass.getName());
+            String table = mapping.getTable().getName();
+            Set<String> columns = new HashSet<>();
+            for (String property : predicate.properties) {
+                for (Iterator<?> it = mapping.getProperty(property).getColumnIterator(); it.hasNext(); ) {
+                    columns.add(((Column) it.next()).getName().toLowerCase(Locale.ROOT));
+                }
+            }
+            byTable.computeIfAbsent(key(table), name -> new ArrayList<>()).add(columns);
+
+            // An index serves the predicate when it leads with predicate columns only
+            int best = 0;
+            for (DbIndex index : present.getOrDefault(key(table), Collections.emptyList())) {
+                int usable = 0;
+                while (usable < index.columns.size() && columns.contains(index.columns.get(usable))) {
+                    usable++;
+                }
+                best = Math.max(best, usable);
+            }
+            String description = predicate.query + " (" + table + " " + columns + ")";
+            if (best == 0) {
+                findings.add("No index for " + description);
+            } else if (best < columns.size()) {
+                findings.add("Indexes cover only " + best + " of " + columns.size() + " columns of " + description);
+            }
+        }
+        return byTable;
+    }
+
+    private static void checkUnused(Table table, List<DbIndex> present, List<Set<String>> predicates, List<String> findings) {
+        Set<String> managed = new HashSet<>();
+        for (Iterator<?> it = table.getIndexIterator(); it.hasNext(); ) {
+            managed.add(key(((Index) it.next()).getName()));
+        }
+        Set<String> foreignKeyColumns = new HashSet<>();
+        for (Iterator<?> it = table.getForeignKeyIterator(); it.hasNext(); ) {
+            ForeignKey foreignKey = (ForeignKey) it.next();
+            foreignKeyColumns.add(foreignKey.getColumn(0).getName().toLowerCase(Locale.ROOT));
+        }
+
+        for (DbIndex index : present) {
+            if (index.unique || index.columns.isEmpty()) {
+                continue;
+            }
+            String leading = index.columns.get(0);
+            if (foreignKeyColumns.contains(leading)) {
+                // The database needs these for its foreign key checks
+                continue;
+            }
+            for (DbIndex other : present) {
+                if (other != index && other.columns.size() > index.columns.size()
+                        && other.columns.subList(0, index.columns.size()).equals(index.columns)) {
+                    findings.add("Index " + index.name + " on " + table.getName() + index.columns
+                            + " is redundant with " + other.name + other.columns);
+                    break;
+                }
+            }
+            boolean used = false;
+            for (Set<String> columns : predicates) {
+                used |= columns.contains(leading);
+            }
+            if (!used && !managed.contains(key(index.name))) {
+                findings.add("Index " + index.name + " on " + table.getName() + index.columns
+                        + " is not used by any listed query predicate");
+            }
+        }
+    }
+
+    private static List<DbIndex> readIndexes(Connection connection, DatabaseMetaData metaData, String table) throws SQLException {
+        Map<String, DbIndex> indexes = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, storedName(metaData, table), false, false)) {
+            while (rs.next()) {
+                String name = rs.getString("INDEX_NAME");
+                if (name == null || rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+                    continue;
+                }
+                DbIndex index = indexes.get(key(name));
+                if (index == null) {
+                    index = new DbIndex(name, !rs.getBoolean("NON_UNIQUE"));
+                    indexes.put(key(name), index);
+                }
+                index.columns.add(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+            }
+        }
+        return new ArrayList<>(indexes.values());
+    }
+
+    private static String createIndexSql(DatabaseMetaData metaData, String name, String table, List<String> columns)
+            throws SQLException {
+        boolean mysql = metaData.getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+        List<String> keyParts = new ArrayList<>();
+        for (String column : columns) {
+            keyParts.add(mysql && isBlob(metaData, table, column) ? column + "(" + BLOB_KEY_PREFIX + ")" : column);
+        }
+        return "CREATE INDEX " + name + " ON " + table + " (" + String.join(", ", keyParts) + ")";
+    }
+
+    private static boolean isBlob(DatabaseMetaData metaData, String table, String column) throws SQLException {
+        try (ResultSet rs = metaData.getColumns(metaData.getConnection().getCatalog(), null,
+                storedName(metaData, table), storedName(metaData, column))) {
+            if (rs.next()) {
+                String type = rs.getString("TYPE_NAME").toUpperCase(Locale.ROOT);
+                return type.contains("BLOB") || type.contains("TEXT");
+            }
+        }
+        return false;
+    }
+
+    private static String storedName(DatabaseMetaData metaData, String name) throws SQLException {
+        if (metaData.storesUpperCaseIdentifiers()) {
+            return name.toUpperCase(Locale.ROOT);
+        }
+        if (metaData.storesLowerCaseIdentifiers()) {
+            return name.toLowerCase(Locale.ROOT);
+        }
+        return name;
+    }
+
+    private static DbIndex find(List<DbIndex> indexes, String name) {
+        for (DbIndex index : indexes) {
+            if (index.name.equalsIgnoreCase(name)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private static List<String> lowerCase(List<String> names) {
+        List<String> lower = new ArrayList<>();
+        for (String name : names) {
+            lower.add(name.toLowerCase(Locale.ROOT));
+        }
+        return lower;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
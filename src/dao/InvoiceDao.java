@@ -2,416 +2,561 @@ package dao;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 import model.Invoice;
+import model.InvoiceSummary;
+import model.Page;
 import model.TimeEntry;
+import org.hibernate.LockMode;
+import org.hibernate.LockOptions;
 import org.hibernate.Query;
 import org.hibernate.Session;
-import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SessionImplementor;
 
 /**
  * Data Access Object for Invoice operations using Hibernate
  */
 public class InvoiceDao {
-    
+
+    private static final SequenceAllocator INVOICE_NUMBERS = new SequenceAllocator("INV",
+            "SELECT MAX(CAST(SUBSTRING(i.invoiceNumber, 4) AS integer)) FROM Invoice i WHERE i.invoiceNumber LIKE 'INV%'");
+
+    private static final Keyset<Invoice> NEWEST_FIRST = new Keyset<>(Invoice.class, "i")
+            .desc("issueDate", Invoice::getIssueDate, LocalDate::parse)
+            .desc("id", Invoice::getId, Integer::valueOf);
+
+    private static final Keyset<Invoice> OLDEST_FIRST = new Keyset<>(Invoice.class, "i")
+            .asc("issueDate", Invoice::getIssueDate, LocalDate::parse)
+            .asc("id", Invoice::getId, Integer::valueOf);
+
+    // Amounts are left out: amount follows the time entries and amount paid the payments
+    private static final Patch<Invoice> PATCH = new Patch<>(Invoice.class, Invoice::getVersion)
+            .field("issueDate", LocalDate.class, Invoice::getIssueDate, Invoice::setIssueDate)
+            .field("dueDate", LocalDate.class, Invoice::getDueDate, Invoice::setDueDate)
+            .field("status", String.class, Invoice::getStatus, Invoice::setStatus)
+            .field("notes", String.class, Invoice::getNotes, Invoice::setNotes);
+
+    private static final String DETAILS = "client, legalCase, timeEntries, payments";
+
+    static final String INVOICE_SUMMARY_SELECT =
+            "SELECT new model.InvoiceSummary(i.id, i.invoiceNumber, cl.name, c.caseNumber, i.issueDate, i.dueDate, " +
+            "i.amount, i.amountPaid, i.status) FROM Invoice i JOIN i.client cl JOIN i.legalCase c ";
+
     /**
      * Creates a new invoice in the database
      */
     public Invoice createInvoice(Invoice invoice) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.save(invoice);
-            
-            // Update time entries if they are associated with this invoice
-            if (invoice.getTimeEntries() != null && !invoice.getTimeEntries().isEmpty()) {
-                for (TimeEntry timeEntry : invoice.getTimeEntries()) {
-                    timeEntry.setBilled(true);
-                    timeEntry.setInvoice(invoice);
-                    session.update(timeEntry);
+            return SessionTemplate.inTransaction("InvoiceDao.createInvoice", session -> {
+                session.save(invoice);
+
+                // Update time entries if they are associated with this invoice
+                if (invoice.getTimeEntries() != null && !invoice.getTimeEntries().isEmpty()) {
+                    for (TimeEntry timeEntry : invoice.getTimeEntries()) {
+                        timeEntry.setBilled(true);
+                        timeEntry.setInvoice(invoice);
+                        session.update(timeEntry);
+                    }
                 }
-            }
-            
-            transaction.commit();
-            session.close();
-            return invoice;
+                return invoice;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Updates an existing invoice in the database
      */
     public Invoice updateInvoice(Invoice invoice) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.update(invoice);
-            
-            transaction.commit();
-            session.close();
-            return invoice;
+            return SessionTemplate.inTransaction("InvoiceDao.updateInvoice", session -> {
+                session.update(invoice);
+                return invoice;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Deletes an invoice from the database
      */
     public Invoice deleteInvoice(Invoice invoice) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            // Check if invoice has payments
-            Query paymentQuery = session.createQuery("SELECT COUNT(p) FROM Payment p WHERE p.invoice.id = :invoiceId");
-            paymentQuery.setParameter("invoiceId", invoice.getId());
-            Long paymentCount = (Long) paymentQuery.uniqueResult();
-            
-            if (paymentCount > 0) {
-                // Cannot delete invoice with payments
-                transaction.rollback();
-                session.close();
-                return null;
-            }
-            
-            // Update time entries to unbilled
-            Query timeEntryQuery = session.createQuery("UPDATE TimeEntry t SET t.billed = false, t.invoice = null WHERE t.invoice.id = :invoiceId");
-            timeEntryQuery.setParameter("invoiceId", invoice.getId());
-            timeEntryQuery.executeUpdate();
-            
-            session.delete(invoice);
-            
-            transaction.commit();
-            session.close();
-            return invoice;
+            return SessionTemplate.inTransaction("InvoiceDao.deleteInvoice", session -> {
+                // Check if invoice has payments
+                Query paymentQuery = session.createQuery("SELECT COUNT(p) FROM Payment p WHERE p.invoice.id = :invoiceId");
+                paymentQuery.setParameter("invoiceId", invoice.getId());
+                Long paymentCount = (Long) paymentQuery.uniqueResult();
+
+                if (paymentCount > 0) {
+                    // Cannot delete invoice with payments
+                    return null;
+                }
+
+                // Update time entries to unbilled. Plain SQL, since a bulk HQL UPDATE would empty the
+                // cached time entry number lookups; entries the session holds still show the invoice
+                SqlUpdate.execute(session, "UPDATE time_entries SET billed = ?, invoice_id = NULL WHERE invoice_id = ?",
+                        false, invoice.getId());
+                evictTimeEntries(session, invoice.getId());
+
+                session.delete(invoice);
+                return invoice;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Updates the status of an invoice
      */
     public Invoice updateInvoiceStatus(Invoice invoice, String status) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            invoice.setStatus(status);
-            session.update(invoice);
-            
-            transaction.commit();
-            session.close();
-            return invoice;
+            return SessionTemplate.inTransaction("InvoiceDao.updateInvoiceStatus", session -> {
+                invoice.setStatus(status);
+                session.update(invoice);
+                return invoice;
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Changes only the given properties of an invoice, if it is still at the
+     * version the caller read; properties already holding the new value are
+     * not written, and nothing is written if none differ
+     *
+     * @return The invoice as it now is, or null if it does not exist
+     * @throws IllegalArgumentException If a change names a property that cannot be patched or has the wrong type
+     * @throws ConcurrentModificationException If the invoice has been changed since that version
+     */
+    public Invoice patchInvoice(int invoiceId, long version, Map<String, Object> changes) {
+        PATCH.check(changes);
+        try {
+            return SessionTemplate.inTransaction("InvoiceDao.patchInvoice", session -> {
+                Invoice invoice = PATCH.load(session, invoiceId, version);
+                if (invoice != null) {
+                    PATCH.apply(session, invoice, invoiceId, changes);
+                }
+                return invoice;
+            });
+        } catch (ConcurrentModificationException ex) {
+            throw ex;
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds an invoice by ID
      */
     public Invoice findInvoiceById(Invoice invoice) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Invoice foundInvoice = (Invoice) session.get(Invoice.class, invoice.getId());
-            session.close();
-            return foundInvoice;
+            return SessionTemplate.inSession("InvoiceDao.findInvoiceById",
+                    session -> (Invoice) session.get(Invoice.class, invoice.getId()));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds an invoice by invoice number
      */
     public Invoice findInvoiceByInvoiceNumber(String invoiceNumber) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Invoice i WHERE i.invoiceNumber = :invoiceNumber");
-            query.setParameter("invoiceNumber", invoiceNumber);
-            Invoice invoice = (Invoice) query.uniqueResult();
-            session.close();
-            return invoice;
+            return SessionTemplate.inSession("InvoiceDao.findInvoiceByInvoiceNumber",
+                    session -> (Invoice) session.bySimpleNaturalId(Invoice.class).load(invoiceNumber));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds invoices by client ID
      */
     @SuppressWarnings("unchecked")
     public List<Invoice> findInvoicesByClient(int clientId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Invoice i WHERE i.client.id = :clientId ORDER BY i.issueDate DESC");
-            query.setParameter("clientId", clientId);
-            List<Invoice> invoices = query.list();
-            session.close();
-            return invoices;
+            return SessionTemplate.inSession("InvoiceDao.findInvoicesByClient", session -> {
+                Query query = session.createQuery("FROM Invoice i WHERE i.client.id = :clientId ORDER BY i.issueDate DESC");
+                query.setParameter("clientId", clientId);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds invoices by case ID
      */
     @SuppressWarnings("unchecked")
     public List<Invoice> findInvoicesByCase(int caseId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Invoice i WHERE i.legalCase.id = :caseId ORDER BY i.issueDate DESC");
-            query.setParameter("caseId", caseId);
-            List<Invoice> invoices = query.list();
-            session.close();
-            return invoices;
+            return SessionTemplate.inSession("InvoiceDao.findInvoicesByCase", session -> {
+                Query query = session.createQuery("FROM Invoice i WHERE i.legalCase.id = :caseId ORDER BY i.issueDate DESC");
+                query.setParameter("caseId", caseId);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds invoices by status
      */
     @SuppressWarnings("unchecked")
     public List<Invoice> findInvoicesByStatus(String status) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Invoice i WHERE i.status = :status ORDER BY i.issueDate DESC");
-            query.setParameter("status", status);
-            List<Invoice> invoices = query.list();
-            session.close();
-            return invoices;
+            return SessionTemplate.inSession("InvoiceDao.findInvoicesByStatus", session -> {
+                Query query = session.createQuery("FROM Invoice i WHERE i.status = :status ORDER BY i.issueDate DESC");
+                query.setParameter("status", status);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds invoices by date range
      */
     @SuppressWarnings("unchecked")
     public List<Invoice> findInvoicesByDateRange(LocalDate startDate, LocalDate endDate) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Invoice i WHERE i.issueDate BETWEEN :startDate AND :endDate ORDER BY i.issueDate");
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            List<Invoice> invoices = query.list();
-            session.close();
-            return invoices;
+            return SessionTemplate.inSession("InvoiceDao.findInvoicesByDateRange", session -> {
+                Query query = session.createQuery("FROM Invoice i WHERE i.issueDate BETWEEN :startDate AND :endDate ORDER BY i.issueDate");
+                query.setParameter("startDate", startDate);
+                query.setParameter("endDate", endDate);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds overdue invoices
      */
     @SuppressWarnings("unchecked")
     public List<Invoice> findOverdueInvoices() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM Invoice i WHERE i.dueDate < CURRENT_DATE " +
-                "AND i.status != :paid AND i.status != :cancelled ORDER BY i.dueDate"
-            );
-            query.setParameter("paid", Invoice.STATUS_PAID);
-            query.setParameter("cancelled", Invoice.STATUS_CANCELLED);
-            List<Invoice> invoices = query.list();
-            session.close();
-            return invoices;
+            return SessionTemplate.inSession("InvoiceDao.findOverdueInvoices", session -> {
+                Query query = session.createQuery(
+                    "FROM Invoice i WHERE i.dueDate < CURRENT_DATE " +
+                    "AND i.status != :paid AND i.status != :cancelled ORDER BY i.dueDate"
+                );
+                query.setParameter("paid", Invoice.STATUS_PAID);
+                query.setParameter("cancelled", Invoice.STATUS_CANCELLED);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Gets all invoices
      */
     @SuppressWarnings("unchecked")
     public List<Invoice> findAllInvoices() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Invoice i ORDER BY i.issueDate DESC");
-            List<Invoice> invoices = query.list();
-            session.close();
-            return invoices;
+            return SessionTemplate.inSession("InvoiceDao.findAllInvoices",
+                    session -> session.createQuery("FROM Invoice i ORDER BY i.issueDate DESC").list());
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
+    /**
+     * Gets summaries of all invoices, newest first
+     */
+    @SuppressWarnings("unchecked")
+    public List<InvoiceSummary> findAllInvoiceSummaries() {
+        try {
+            return SessionTemplate.inSession("InvoiceDao.findAllInvoiceSummaries",
+                    session -> session.createQuery(INVOICE_SUMMARY_SELECT + "ORDER BY i.issueDate DESC").list());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets summaries of the invoices with a status, newest first
+     */
+    @SuppressWarnings("unchecked")
+    public List<InvoiceSummary> findInvoiceSummariesByStatus(String status) {
+        try {
+            return SessionTemplate.inSession("InvoiceDao.findInvoiceSummariesByStatus", session -> {
+                Query query = session.createQuery(INVOICE_SUMMARY_SELECT +
+                    "WHERE i.status = :status ORDER BY i.issueDate DESC");
+                query.setParameter("status", status);
+                return query.list();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets summaries of a client's invoices, newest first
+     */
+    @SuppressWarnings("unchecked")
+    public List<InvoiceSummary> findInvoiceSummariesByClient(int clientId) {
+        try {
+            return SessionTemplate.inSession("InvoiceDao.findInvoiceSummariesByClient", session -> {
+                Query query = session.createQuery(INVOICE_SUMMARY_SELECT +
+                    "WHERE i.client.id = :clientId ORDER BY i.issueDate DESC");
+                query.setParameter("clientId", clientId);
+                return query.list();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets summaries of overdue invoices, earliest due date first
+     */
+    @SuppressWarnings("unchecked")
+    public List<InvoiceSummary> findOverdueInvoiceSummaries() {
+        try {
+            return SessionTemplate.inSession("InvoiceDao.findOverdueInvoiceSummaries", session -> {
+                Query query = session.createQuery(INVOICE_SUMMARY_SELECT +
+                    "WHERE i.dueDate < CURRENT_DATE AND i.status != :paid AND i.status != :cancelled ORDER BY i.dueDate");
+                query.setParameter("paid", Invoice.STATUS_PAID);
+                query.setParameter("cancelled", Invoice.STATUS_CANCELLED);
+                return query.list();
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets one page of all invoices, newest issue date first
+     */
+    public Page<Invoice> findAllInvoicesPage(String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("InvoiceDao.findAllInvoicesPage",
+                    session -> NEWEST_FIRST.page(session, cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Finds one page of invoices by status, newest issue date first
+     */
+    public Page<Invoice> findInvoicesByStatusPage(String status, String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("InvoiceDao.findInvoicesByStatusPage", session -> NEWEST_FIRST.page(session,
+                    "i.status = :status",
+                    query -> query.setParameter("status", status),
+                    cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Finds one page of invoices by issue date range, oldest first
+     */
+    public Page<Invoice> findInvoicesByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("InvoiceDao.findInvoicesByDateRangePage", session -> OLDEST_FIRST.page(session,
+                    "i.issueDate BETWEEN :startDate AND :endDate",
+                    query -> {
+                        query.setParameter("startDate", startDate);
+                        query.setParameter("endDate", endDate);
+                    },
+                    cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
     /**
      * Gets an invoice with all related details (client, case, time entries, payments)
      */
     public Invoice getInvoiceWithDetails(Invoice invoice) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Load invoice with eager fetching of all relationships
-            Query query = session.createQuery(
-                "FROM Invoice i " +
-                "LEFT JOIN FETCH i.client " +
-                "LEFT JOIN FETCH i.legalCase " +
-                "LEFT JOIN FETCH i.timeEntries " +
-                "LEFT JOIN FETCH i.payments " +
-                "WHERE i.id = :invoiceId"
-            );
-            query.setParameter("invoiceId", invoice.getId());
-            Invoice foundInvoice = (Invoice) query.uniqueResult();
-            
-            session.close();
-            return foundInvoice;
+            return FetchGraph.parse(Invoice.class, DETAILS).load(invoice.getId(), "InvoiceDao.getInvoiceWithDetails");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets an invoice with the associations named in a fetch spec, such as
+     * "client, legalCase, payments"
+     *
+     * @throws IllegalArgumentException If the fetch spec is invalid
+     */
+    public Invoice getInvoiceGraph(Invoice invoice, String fetchSpec) {
+        FetchGraph<Invoice> graph = FetchGraph.parse(Invoice.class, fetchSpec);
+        try {
+            return graph.load(invoice.getId(), "InvoiceDao.getInvoiceGraph");
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Updates the paid amount for an invoice based on payments
      */
     public Invoice updateInvoicePaidAmount(int invoiceId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            // Get the invoice
-            Invoice invoice = (Invoice) session.get(Invoice.class, invoiceId);
-            if (invoice == null) {
-                transaction.rollback();
-                session.close();
-                return null;
-            }
-            
-            // Recalculate amount paid
-            invoice.recalculateAmountPaid();
-            
-            // Update the invoice
-            session.update(invoice);
-            
-            transaction.commit();
-            session.close();
-            return invoice;
+            return SessionTemplate.inTransaction("InvoiceDao.updateInvoicePaidAmount", session -> {
+                // Rebuild the ledger from the payments, then read the invoice as stored
+                InvoiceLedger.rebuild(session, invoiceId);
+                return (Invoice) session.get(Invoice.class, invoiceId);
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Creates a new invoice from unbilled time entries for a case
      */
     public Invoice createInvoiceFromUnbilledTimeEntries(int caseId, String invoiceNumber, LocalDate dueDate) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            // Get case information
-            Query caseQuery = session.createQuery("FROM Case c WHERE c.id = :caseId");
-            caseQuery.setParameter("caseId", caseId);
-            model.Case legalCase = (model.Case) caseQuery.uniqueResult();
-            
-            if (legalCase == null) {
-                transaction.rollback();
-                session.close();
-                return null;
-            }
-            
-            // Get unbilled time entries
-            Query timeQuery = session.createQuery("FROM TimeEntry t WHERE t.associatedCase.id = :caseId AND t.billed = false");
-            timeQuery.setParameter("caseId", caseId);
-            @SuppressWarnings("unchecked")
-            List<TimeEntry> unbilledEntries = timeQuery.list();
-            
-            if (unbilledEntries.isEmpty()) {
-                transaction.rollback();
-                session.close();
-                return null;
-            }
-            
-            // Create invoice
-            Invoice invoice = new Invoice();
-            invoice.setInvoiceNumber(invoiceNumber);
-            invoice.setClient(legalCase.getClient());
-            invoice.setCase(legalCase);
-            invoice.setIssueDate(LocalDate.now());
-            invoice.setDueDate(dueDate);
-            invoice.setStatus(Invoice.STATUS_ISSUED);
-            
-            // Calculate total amount
-            BigDecimal totalAmount = BigDecimal.ZERO;
-            for (TimeEntry entry : unbilledEntries) {
-                if (entry.getHourlyRate() != null) {
-                    BigDecimal entryAmount = entry.getHourlyRate().multiply(new BigDecimal(entry.getHours()));
-                    totalAmount = totalAmount.add(entryAmount);
-                }
-            }
-            invoice.setAmount(totalAmount);
-            invoice.setAmountPaid(BigDecimal.ZERO);
-            
-            // Save invoice
-            session.save(invoice);
-            
-            // Mark time entries as billed
-            for (TimeEntry entry : unbilledEntries) {
-                entry.setBilled(true);
-                entry.setInvoice(invoice);
-                session.update(entry);
-            }
-            
-            // Set time entries
-            invoice.setTimeEntries(unbilledEntries);
-            
-            transaction.commit();
-            session.close();
-            return invoice;
+            return SessionTemplate.inTransaction("InvoiceDao.createInvoiceFromUnbilledTimeEntries",
+                    session -> billUnbilledTime(session, caseId, () -> invoiceNumber, dueDate));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
+    /**
+     * Bills a case's unbilled time entries as one new invoice, in its own transaction.
+     * Used by billing runs; unlike the other DAO methods, failures are thrown so the run can report them.
+     *
+     * @param caseId Case to bill
+     * @param invoiceNumbers Supplies the invoice number; only called if there is something to bill
+     * @param dueDate Due date of the invoice
+     * @return The new invoice, or null if the case has no unbilled time
+     */
+    public Invoice billCase(int caseId, Supplier<String> invoiceNumbers, LocalDate dueDate) {
+        return SessionTemplate.inTransaction("InvoiceDao.billCase",
+                session -> billUnbilledTime(session, caseId, invoiceNumbers, dueDate));
+    }
+
+    /**
+     * Finds the IDs of all cases that have unbilled time entries
+     */
+    @SuppressWarnings("unchecked")
+    public List<Integer> findCaseIdsWithUnbilledTime() {
+        try {
+            return SessionTemplate.inSession("InvoiceDao.findCaseIdsWithUnbilledTime", session -> session
+                    .createQuery("SELECT DISTINCT t.associatedCase.id FROM TimeEntry t WHERE t.billed = false ORDER BY t.associatedCase.id")
+                    .list());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Evicts the loaded time entries of an invoice, after they were changed by SQL
+     */
+    private static void evictTimeEntries(Session session, int invoiceId) {
+        List<Object> loaded = new ArrayList<>(((SessionImplementor) session).getPersistenceContext().getEntitiesByKey().values());
+        for (Object entity : loaded) {
+            if (entity instanceof TimeEntry) {
+                TimeEntry entry = (TimeEntry) entity;
+                if (entry.getInvoice() != null && entry.getInvoice().getId() == invoiceId) {
+                    session.evict(entry);
+                }
+            }
+        }
+    }
+
+    private static Invoice billUnbilledTime(Session session, int caseId, Supplier<String> invoiceNumbers, LocalDate dueDate) {
+        // Lock this case's unbilled entries (SELECT ... FOR UPDATE) so a concurrent call waits here
+        // and then finds them billed, instead of billing them twice. Other cases' entries are not locked.
+        Query timeQuery = session.createQuery("FROM TimeEntry t WHERE t.associatedCase.id = :caseId AND t.billed = false ORDER BY t.id");
+        timeQuery.setParameter("caseId", caseId);
+        timeQuery.setLockOptions(new LockOptions(LockMode.PESSIMISTIC_WRITE));
+        // Read-only, so marking them billed below is not flushed as one UPDATE per entry
+        timeQuery.setReadOnly(true);
+        @SuppressWarnings("unchecked")
+        List<TimeEntry> unbilledEntries = timeQuery.list();
+
+        if (unbilledEntries.isEmpty()) {
+            return null;
+        }
+        model.Case legalCase = (model.Case) session.get(model.Case.class, caseId);
+
+        // Create invoice; setTimeEntries totals the amount
+        Invoice invoice = new Invoice();
+        invoice.setInvoiceNumber(invoiceNumbers.get());
+        invoice.setClient(legalCase.getClient());
+        invoice.setCase(legalCase);
+        invoice.setIssueDate(LocalDate.now());
+        invoice.setDueDate(dueDate);
+        invoice.setStatus(Invoice.STATUS_ISSUED);
+        invoice.setAmountPaid(BigDecimal.ZERO);
+        invoice.setTimeEntries(unbilledEntries);
+        session.save(invoice);
+
+        // Mark exactly the entries totalled above as billed, in one statement. Plain SQL, since a
+        // bulk HQL UPDATE would empty the cached time entry number lookups once per invoice.
+        StringBuilder sql = new StringBuilder("UPDATE time_entries SET billed = ?, invoice_id = ? WHERE id IN (");
+        List<Object> parameters = new ArrayList<>(unbilledEntries.size() + 2);
+        parameters.add(true);
+        parameters.add(invoice.getId());
+        for (TimeEntry entry : unbilledEntries) {
+            sql.append(parameters.size() > 2 ? ", ?" : "?");
+            parameters.add(entry.getId());
+        }
+        SqlUpdate.execute(session, sql.append(")").toString(), parameters.toArray());
+        return invoice;
+    }
+
     /**
-     * Generates the next invoice number based on the current highest number
+     * Generates the next invoice number
      */
     public String generateNextInvoiceNumber() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Get the maximum invoice number
-            Query query = session.createQuery("SELECT MAX(CAST(SUBSTRING(i.invoiceNumber, 4) AS integer)) FROM Invoice i WHERE i.invoiceNumber LIKE 'INV%'");
-            Integer maxNum = (Integer) query.uniqueResult();
-            
-            session.close();
-            
-            // Format next invoice number
-            int nextNum = (maxNum != null ? maxNum : 0) + 1;
-            return String.format("INV%06d", nextNum);
+            return String.format("INV%06d", INVOICE_NUMBERS.next());
         } catch (Exception ex) {
             ex.printStackTrace();
             // Default format if error occurs
             return "INV" + System.currentTimeMillis();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,144 @@
+package dao;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import model.Invoice;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+
+/**
+ * Keeps invoices.amount_paid in step with the invoice's payments.
+ *
+ * Posting a payment moves amount_paid by the payment's amount in one UPDATE of
+ * the invoice row, which re-derives the status in the same statement, so it
+ * costs the same however many payments the invoice already has and two
+ * payments posted at once cannot overwrite each other. The UPDATE bumps the
+ * invoice's version, so an edit made from a copy read before the payment is
+ * rejected rather than writing back the old amount. The UPDATE is plain SQL
+ * through {@link SqlUpdate}, because a bulk HQL UPDATE would empty the cached
+ * invoice number lookups on every payment. A background reconcile
+ * compares every ledger against SUM(payments) every
+ * hibernate.ledger.reconcile_interval milliseconds and rebuilds the ones that
+ * have drifted, e.g. after payments were changed by hand.
+ */
+final class InvoiceLedger {
+
+    private static final Logger logger = Logger.getLogger(InvoiceLedger.class.getName());
+
+    private static final long RECONCILE_INTERVAL = HibernateUtil.getSetting("hibernate.ledger.reconcile_interval", 600000);
+
+    private static final String PAYMENTS_TOTAL = "(SELECT COALESCE(SUM(p.amount), 0) FROM Payment p WHERE p.invoice.id = i.id)";
+
+    private static final String PAYMENTS_TOTAL_SQL = "(SELECT COALESCE(SUM(p.amount), 0) FROM payments p WHERE p.invoice_id = i.id)";
+
+    InvoiceLedger() {
+        ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "invoice-ledger-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile();
+            } catch (RuntimeException ex) {
+                logger.log(Level.WARNING, "Invoice ledger reconcile failed", ex);
+            }
+        }, Math.max(1000, RECONCILE_INTERVAL), Math.max(1000, RECONCILE_INTERVAL), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Moves an invoice's amount paid by a signed amount and re-derives its status
+     *
+     * @param session Session whose transaction posts the payment
+     * @param invoiceId ID of the invoice the payment belongs to
+     * @param delta Amount to add; negative to take a payment back
+     */
+    static void post(Session session, int invoiceId, BigDecimal delta) {
+        if (delta.signum() == 0) {
+            return;
+        }
+        String paid = "COALESCE(i.amount_paid, 0) + ?";
+        SqlUpdate.execute(session, "UPDATE invoices i SET " + assignments(paid) + " WHERE i.id = ?",
+                delta, delta, LocalDate.now(), delta, invoiceId);
+    }
+
+    /**
+     * Sets an invoice's amount paid to the sum of its payments
+     *
+     * @return true if the stored amount was wrong and has been corrected
+     */
+    static boolean rebuild(Session session, int invoiceId) {
+        int updated = SqlUpdate.execute(session, "UPDATE invoices i SET " + assignments(PAYMENTS_TOTAL_SQL)
+                + " WHERE i.id = ? AND (i.amount_paid IS NULL OR i.amount_paid <> " + PAYMENTS_TOTAL_SQL + ")",
+                LocalDate.now(), invoiceId);
+        return updated > 0;
+    }
+
+    /**
+     * Rebuilds every invoice whose amount paid differs from the sum of its payments
+     *
+     * @return Number of invoices corrected
+     */
+    @SuppressWarnings("unchecked")
+    int reconcile() {
+        List<Object[]> drifted = SessionTemplate.inSession("InvoiceLedger.reconcile", session -> session.createQuery(
+                "SELECT i.id, i.invoiceNumber, i.amountPaid, " + PAYMENTS_TOTAL + " FROM Invoice i"
+                + " WHERE i.amountPaid IS NULL OR i.amountPaid <> " + PAYMENTS_TOTAL
+        ).list());
+
+        int corrected = 0;
+        for (Object[] row : drifted) {
+            // Re-checked inside the UPDATE, so a payment posted since the query is not undone
+            int invoiceId = (Integer) row[0];
+            if (SessionTemplate.inTransaction("InvoiceLedger.rebuild", session -> rebuild(session, invoiceId))) {
+                logger.warning("Invoice " + row[1] + " amount paid corrected from " + row[2] + " to its payments total " + row[3]);
+                corrected++;
+            }
+        }
+        return corrected;
+    }
+
+    /**
+     * Builds the SQL SET clause for a new amount paid and bumps the version.
+     * The status comes first and reads the new amount from the expression
+     * rather than the column, because MySQL assigns left to right and would
+     * otherwise see the column already changed while other databases would
+     * not. Mirrors Invoice.updateStatus. If paid has a parameter, it is bound
+     * three times, before and after the one for today.
+     */
+    private static String assignments(String paid) {
+        return "i.status = CASE"
+                + " WHEN i.status IN ('" + Invoice.STATUS_DRAFT + "', '" + Invoice.STATUS_CANCELLED + "') THEN i.status"
+                + " WHEN " + paid + " >= i.amount THEN '" + Invoice.STATUS_PAID + "'"
+                + " WHEN " + paid + " > 0 THEN '" + Invoice.STATUS_PARTIALLY_PAID + "'"
+                + " WHEN i.due_date < ? THEN '" + Invoice.STATUS_OVERDUE + "'"
+                + " ELSE '" + Invoice.STATUS_ISSUED + "' END,"
+                + " i.amount_paid = " + paid + ","
+                + " i.version = i.version + 1";
+    }
+
+    /**
+     * Brings the caller's copy of the invoice up to date with the row just
+     * written, without touching its payments collection
+     */
+    static void refresh(Session session, Invoice invoice) {
+        if (session.contains(invoice)) {
+            session.refresh(invoice);
+        } else if (Hibernate.isInitialized(invoice)) {
+            Object[] row = (Object[]) session.createQuery("SELECT i.amountPaid, i.status, i.version FROM Invoice i WHERE i.id = :invoiceId")
+                    .setParameter("invoiceId", invoice.getId())
+                    .uniqueResult();
+            if (row != null) {
+                invoice.setAmountPaid((BigDecimal) row[0]);
+                invoice.setStatus((String) row[1]);
+                invoice.setVersion((Long) row[2]);
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import model.Page;
+import org.hibernate.Query;
+import org.hibernate.Session;
+
+/**
+ * Keyset ("seek") pagination over one entity.
+ *
+ * Rows are ordered by a fixed list of sort keys ending in the id, and the next
+ * page is read by asking for the rows that sort after the last row of the
+ * previous page. The database can seek straight to that position instead of
+ * stepping over every earlier row the way OFFSET does, so page 500 costs the
+ * same as page 1, and rows inserted or deleted between requests do not shift
+ * later pages. The position travels to the client as an opaque cursor token
+ * holding the last row's key values.
+ *
+ * NULL sort values are treated as lower than any other value, which is how
+ * MySQL orders them, so rows without a date come first in ascending pages and
+ * last in descending ones rather than being skipped.
+ */
+final class Keyset<T> {
+
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 500;
+
+    private static final String SEPARATOR = "|";
+    private static final String NULL_VALUE = "~";
+
+    private static final class Key<T> {
+        final String property;
+        final boolean descending;
+        final Function<T, ?> getter;
+        final Function<String, ?> parser;
+
+        Key(String property, boolean descending, Function<T, ?> getter, Function<String, ?> parser) {
+            this.property = property;
+            this.descending = descending;
+            this.getter = getter;
+            this.parser = parser;
+        }
+    }
+
+    private final String entityName;
+    private final String alias;
+    private final List<Key<T>> keys = new ArrayList<>();
+
+    /**
+     * @param entityClass Entity to page over
+     * @param alias HQL alias used by the where clauses passed to {@link #page}
+     */
+    Keyset(Class<T> entityClass, String alias) {
+        this.entityName = entityClass.getSimpleName();
+        this.alias = alias;
+    }
+
+    /**
+     * Adds an ascending sort key
+     *
+     * @param property Entity property
+     * @param getter Reads the key value from a row
+     * @param parser Rebuilds the key value from its toString() form
+     */
+    Keyset<T> asc(String property, Function<T, ?> getter, Function<String, ?> parser) {
+        keys.add(new Key<>(property, false, getter, parser));
+        return this;
+    }
+
+    /**
+     * Adds a descending sort key
+     *
+     * @param property Entity property
+     * @param getter Reads the key value from a row
+     * @param parser Rebuilds the key value from its toString() form
+     */
+    Keyset<T> desc(String property, Function<T, ?> getter, Function<String, ?> parser) {
+        keys.add(new Key<>(property, true, getter, parser));
+        return this;
+    }
+
+    /**
+     * Reads one page of the whole table
+     */
+    Page<T> page(Session session, String cursor, int pageSize) {
+        return page(session, null, query -> { }, cursor, pageSize);
+    }
+
+    /**
+     * Reads one page of the rows matching a where clause
+     *
+     * @param session Session to query with
+     * @param where HQL condition using this keyset's alias, or null for all rows
+     * @param binder Binds the condition's named parameters
+     * @param cursor Cursor from the previous page, or null for the first page
+     * @param pageSize Rows per page; non-positive means the default, and it is capped at {@link #MAX_PAGE_SIZE}
+     */
+    @SuppressWarnings("unchecked")
+    Page<T> page(Session session, String where, Consumer<Query> binder, String cursor, int pageSize) {
+        int size = pageSize <= 0 ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+
+        List<String> conditions = new ArrayList<>();
+        if (where != null) {
+            conditions.add("(" + where + ")");
+        }
+        Object[] after = cursor != null && !cursor.isEmpty() ? decode(cursor) : null;
+        if (after != null) {
+            conditions.add(seekCondition(after));
+        }
+
+        StringBuilder hql = new StringBuilder("FROM ").append(entityName).append(' ').append(alias);
+        if (!conditions.isEmpty()) {
+            hql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        hql.append(" ORDER BY ");
+        for (int i = 0; i < keys.size(); i++) {
+            Key<T> key = keys.get(i);
+            hql.append(i > 0 ? ", " : "").append(alias).append('.').append(key.property)
+                    .append(key.descending ? " DESC" : " ASC");
+        }
+
+        Query query = session.createQuery(hql.toString());
+        binder.accept(query);
+        if (after != null) {
+            for (int i = 0; i < after.length; i++) {
+                if (after[i] != null) {
+                    query.setParameter("keyset" + i, after[i]);
+                }
+            }
+        }
+        // One extra row tells us whether there is a next page without a COUNT
+        query.setMaxResults(size + 1);
+
+        List<T> rows = query.list();
+        if (rows.size() <= size) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = new ArrayList<>(rows.subList(0, size));
+        return new Page<>(items, encode(items.get(size - 1)));
+    }
+
+    /**
+     * Builds "sorts after the cursor row" as an OR of prefixes:
+     * (k0 after) OR (k0 equal AND k1 after) OR ...
+     */
+    private String seekCondition(Object[] after) {
+        List<String> alternatives = new ArrayList<>();
+        StringBuilder equalPrefix = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++) {
+            String strictlyAfter = strictlyAfter(i, after[i]);
+            if (strictlyAfter != null) {
+                alternatives.add("(" + equalPrefix + strictlyAfter + ")");
+            }
+            equalPrefix.append(path(i)).append(after[i] == null ? " IS NULL" : " = :keyset" + i).append(" AND ");
+        }
+        if (alternatives.isEmpty()) {
+            // The cursor row is the last possible position
+            return "1 = 0";
+        }
+        return "(" + String.join(" OR ", alternatives) + ")";
+    }
+
+    /**
+     * Condition for key i sorting strictly after the cursor value, or null if
+     * nothing can (a NULL at the end of a descending key)
+     */
+    private String strictlyAfter(int i, Object value) {
+        String path = path(i);
+        if (keys.get(i).descending) {
+            return value == null ? null : "(" + path + " < :keyset" + i + " OR " + path + " IS NULL)";
+        }
+        return value == null ? path + " IS NOT NULL" : path + " > :keyset" + i;
+    }
+
+    private String path(int i) {
+        return alias + "." + keys.get(i).property;
+    }
+
+    private String encode(T row) {
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++) {
+            Object value = keys.get(i).getter.apply(row);
+            token.append(i > 0 ? SEPARATOR : "").append(value == null ? NULL_VALUE : value.toString());
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Object[] decode(String cursor) {
+        try {
+            String token = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = token.split("\\" + SEPARATOR, -1);
+            if (parts.length != keys.size()) {
+                throw new IllegalArgumentException("Cursor does not match this query");
+            }
+            Object[] values = new Object[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                values[i] = NULL_VALUE.equals(parts[i]) ? null : keys.get(i).parser.apply(parts[i]);
+            }
+            return values;
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Invalid page cursor: " + cursor, ex);
+        }
+    }
+}
@@ -3,9 +3,9 @@ package dao;
 import model.User;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Date;
 import java.sql.Timestamp;
@@ -18,14 +18,25 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Base64;
+import javax.sql.DataSource;
 
 /**
  * Data Access Object for user login and authentication operations.
+ * 
+ * Connections are borrowed from the pooled DataSource shared with the Hibernate
+ * layer and are always returned through try-with-resources.
  */
 public class LoginDao {
-    private String db_url = "jdbc:mysql://localhost:3306/legalcasemgmtdb";
-    private String db_username = "root";
-    private String db_passwd = "Ornella12345!";
+    
+    private final DataSource dataSource;
+    
+    public LoginDao() {
+        this(HibernateUtil.getDataSource());
+    }
+    
+    public LoginDao(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
     
     /**
      * Authenticates a user by username and password
@@ -35,34 +46,34 @@ public class LoginDao {
      * @return User object if authentication successful, null otherwise
      */
     public User authenticateUser(String username, String password) {
-        try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "SELECT id, password_hash, password_salt FROM users WHERE username = ? AND active = TRUE";
-            PreparedStatement pst = con.prepareStatement(sql);
+        String sql = "SELECT id, password_hash, password_salt FROM users WHERE username = ? AND active = TRUE";
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setString(1, username);
             
-            ResultSet rs = pst.executeQuery();
+            int userId = -1;
+            String storedHash = null;
+            String salt = null;
+            try (ResultSet rs = pst.executeQuery()) {
+                if (rs.next()) {
+                    userId = rs.getInt("id");
+                    storedHash = rs.getString("password_hash");
+                    salt = rs.getString("password_salt");
+                }
+            }
             
-            if (rs.next()) {
-                int userId = rs.getInt("id");
-                String storedHash = rs.getString("password_hash");
-                String salt = rs.getString("password_salt");
-                
+            if (storedHash != null) {
                 // Compute hash of provided password
                 String computedHash = hashPassword(password, salt);
                 
                 // Compare hashes
                 if (storedHash.equals(computedHash)) {
-                    // Update last login time
-                    updateLastLogin(userId);
-                    
-                    // Get the full user details and return
-                    User user = findUserById(userId);
-                    return user;
+                    // Update last login time and load the user on the same connection
+                    updateLastLogin(con, userId);
+                    return findUserById(con, userId);
                 }
             }
             
-            con.close();
             return null;  // Authentication failed
             
         } catch (Exception ex) {
@@ -79,9 +90,12 @@ public class LoginDao {
      * @return User object with ID populated if creation successful, null otherwise
      */
     public User createUser(User user, String password) {
-        try {
+        String sql = "INSERT INTO users (username, password_hash, password_salt, email, full_name, " +
+                     "role, registration_date, last_login, active) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, NULL, ?)";
+        try (Connection con = dataSource.getConnection()) {
             // Check if username already exists
-            if (isUsernameExists(user.getUsername())) {
+            if (isUsernameExists(con, user.getUsername())) {
                 return null;
             }
             
@@ -89,34 +103,28 @@ public class LoginDao {
             String salt = generateSalt();
             String passwordHash = hashPassword(password, salt);
             
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "INSERT INTO users (username, password_hash, password_salt, email, full_name, " +
-                         "role, registration_date, last_login, active) " +
-                         "VALUES (?, ?, ?, ?, ?, ?, ?, NULL, ?)";
-            PreparedStatement pst = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-            
-            pst.setString(1, user.getUsername());
-            pst.setString(2, passwordHash);
-            pst.setString(3, salt);
-            pst.setString(4, user.getEmail());
-            pst.setString(5, user.getFullName());
-            pst.setString(6, user.getRole());
-            pst.setDate(7, Date.valueOf(user.getRegistrationDate()));
-            pst.setBoolean(8, user.isActive());
-            
-            int rowsAffected = pst.executeUpdate();
-            
-            if (rowsAffected > 0) {
-                ResultSet rs = pst.getGeneratedKeys();
-                if (rs.next()) {
-                    user.setId(rs.getInt(1));
+            try (PreparedStatement pst = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                pst.setString(1, user.getUsername());
+                pst.setString(2, passwordHash);
+                pst.setString(3, salt);
+                pst.setString(4, user.getEmail());
+                pst.setString(5, user.getFullName());
+                pst.setString(6, user.getRole());
+                pst.setDate(7, Date.valueOf(user.getRegistrationDate()));
+                pst.setBoolean(8, user.isActive());
+                
+                int rowsAffected = pst.executeUpdate();
+                
+                if (rowsAffected > 0) {
+                    try (ResultSet rs = pst.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            user.setId(rs.getInt(1));
+                        }
+                    }
+                    return user;
                 }
-                rs.close();
-                con.close();
-                return user;
             }
             
-            con.close();
             return null;
             
         } catch (Exception ex) {
@@ -132,48 +140,36 @@ public class LoginDao {
      * @return true if username exists, false otherwise
      */
     public boolean isUsernameExists(String username) {
-        try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "SELECT COUNT(*) AS count FROM users WHERE username = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
-            pst.setString(1, username);
-            
-            ResultSet rs = pst.executeQuery();
-            boolean exists = false;
-            
-            if (rs.next()) {
-                exists = rs.getInt("count") > 0;
-            }
-            
-            con.close();
-            return exists;
-            
+        try (Connection con = dataSource.getConnection()) {
+            return isUsernameExists(con, username);
         } catch (Exception ex) {
             ex.printStackTrace();
             return false;
         }
     }
     
+    private boolean isUsernameExists(Connection con, String username) throws SQLException {
+        String sql = "SELECT COUNT(*) AS count FROM users WHERE username = ?";
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setString(1, username);
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next() && rs.getInt("count") > 0;
+            }
+        }
+    }
+    
     /**
      * Updates the last login timestamp for a user
      * 
+     * @param con The connection to run the update on
      * @param userId The ID of the user
      * @return Number of rows affected
      */
-    private int updateLastLogin(int userId) {
-        try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "UPDATE users SET last_login = NOW() WHERE id = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
+    private int updateLastLogin(Connection con, int userId) throws SQLException {
+        String sql = "UPDATE users SET last_login = NOW() WHERE id = ?";
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setInt(1, userId);
-            
-            int rowsAffected = pst.executeUpdate();
-            con.close();
-            return rowsAffected;
-            
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return 0;
+            return evictCachedUser(userId, pst.executeUpdate());
         }
     }
     
@@ -186,19 +182,22 @@ public class LoginDao {
      * @return true if password changed successfully, false otherwise
      */
     public boolean changePassword(int userId, String currentPassword, String newPassword) {
-        try {
+        String sql = "SELECT password_hash, password_salt FROM users WHERE id = ?";
+        try (Connection con = dataSource.getConnection()) {
             // First verify the current password
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "SELECT password_hash, password_salt FROM users WHERE id = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
-            pst.setInt(1, userId);
-            
-            ResultSet rs = pst.executeQuery();
+            String storedHash = null;
+            String salt = null;
+            try (PreparedStatement pst = con.prepareStatement(sql)) {
+                pst.setInt(1, userId);
+                try (ResultSet rs = pst.executeQuery()) {
+                    if (rs.next()) {
+                        storedHash = rs.getString("password_hash");
+                        salt = rs.getString("password_salt");
+                    }
+                }
+            }
             
-            if (rs.next()) {
-                String storedHash = rs.getString("password_hash");
-                String salt = rs.getString("password_salt");
-                
+            if (storedHash != null) {
                 // Compute hash of provided current password
                 String computedHash = hashPassword(currentPassword, salt);
                 
@@ -207,20 +206,10 @@ public class LoginDao {
                     // Current password is correct, update to new password
                     String newSalt = generateSalt();
                     String newPasswordHash = hashPassword(newPassword, newSalt);
-                    
-                    sql = "UPDATE users SET password_hash = ?, password_salt = ? WHERE id = ?";
-                    PreparedStatement updatePst = con.prepareStatement(sql);
-                    updatePst.setString(1, newPasswordHash);
-                    updatePst.setString(2, newSalt);
-                    updatePst.setInt(3, userId);
-                    
-                    int rowsAffected = updatePst.executeUpdate();
-                    con.close();
-                    return rowsAffected > 0;
+                    return updatePasswordHash(con, userId, newPasswordHash, newSalt) > 0;
                 }
             }
             
-            con.close();
             return false;  // Current password is incorrect
             
         } catch (Exception ex) {
@@ -236,39 +225,31 @@ public class LoginDao {
      * @return The new password if reset successful, null otherwise
      */
     public String resetPassword(String email) {
-        try {
+        String sql = "SELECT id FROM users WHERE email = ?";
+        try (Connection con = dataSource.getConnection()) {
             // First check if email exists
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "SELECT id FROM users WHERE email = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
-            pst.setString(1, email);
-            
-            ResultSet rs = pst.executeQuery();
+            int userId = -1;
+            try (PreparedStatement pst = con.prepareStatement(sql)) {
+                pst.setString(1, email);
+                try (ResultSet rs = pst.executeQuery()) {
+                    if (rs.next()) {
+                        userId = rs.getInt("id");
+                    }
+                }
+            }
             
-            if (rs.next()) {
-                int userId = rs.getInt("id");
-                
+            if (userId != -1) {
                 // Generate new random password
                 String newPassword = generateRandomPassword();
                 String newSalt = generateSalt();
                 String newPasswordHash = hashPassword(newPassword, newSalt);
                 
                 // Update user's password
-                sql = "UPDATE users SET password_hash = ?, password_salt = ? WHERE id = ?";
-                PreparedStatement updatePst = con.prepareStatement(sql);
-                updatePst.setString(1, newPasswordHash);
-                updatePst.setString(2, newSalt);
-                updatePst.setInt(3, userId);
-                
-                int rowsAffected = updatePst.executeUpdate();
-                con.close();
-                
-                if (rowsAffected > 0) {
+                if (updatePasswordHash(con, userId, newPasswordHash, newSalt) > 0) {
                     return newPassword;
                 }
             }
             
-            con.close();
             return null;  // Email not found or update failed
             
         } catch (Exception ex) {
@@ -277,6 +258,16 @@ public class LoginDao {
         }
     }
     
+    private int updatePasswordHash(Connection con, int userId, String passwordHash, String salt) throws SQLException {
+        String sql = "UPDATE users SET password_hash = ?, password_salt = ? WHERE id = ?";
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setString(1, passwordHash);
+            pst.setString(2, salt);
+            pst.setInt(3, userId);
+            return evictCachedUser(userId, pst.executeUpdate());
+        }
+    }
+    
     /**
      * Deactivates a user account
      * 
@@ -284,20 +275,7 @@ public class LoginDao {
      * @return true if deactivation successful, false otherwise
      */
     public boolean deactivateUser(int userId) {
-        try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "UPDATE users SET active = FALSE WHERE id = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
-            pst.setInt(1, userId);
-            
-            int rowsAffected = pst.executeUpdate();
-            con.close();
-            return rowsAffected > 0;
-            
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            return false;
-        }
+        return setActive(userId, false);
     }
     
     /**
@@ -307,15 +285,16 @@ public class LoginDao {
      * @return true if reactivation successful, false otherwise
      */
     public boolean reactivateUser(int userId) {
-        try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "UPDATE users SET active = TRUE WHERE id = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
-            pst.setInt(1, userId);
-            
-            int rowsAffected = pst.executeUpdate();
-            con.close();
-            return rowsAffected > 0;
+        return setActive(userId, true);
+    }
+    
+    private boolean setActive(int userId, boolean active) {
+        String sql = "UPDATE users SET active = ? WHERE id = ?";
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setBoolean(1, active);
+            pst.setInt(2, userId);
+            return evictCachedUser(userId, pst.executeUpdate()) > 0;
             
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -330,28 +309,21 @@ public class LoginDao {
      * @return User object if found, null otherwise
      */
     public User findUserById(int userId) {
-        try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "SELECT * FROM users WHERE id = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
-            pst.setInt(1, userId);
-            
-            ResultSet rs = pst.executeQuery();
-            User user = null;
-            
-            if (rs.next()) {
-                user = extractUserFromResultSet(rs);
-            }
-            
-            con.close();
-            return user;
-            
+        try (Connection con = dataSource.getConnection()) {
+            return findUserById(con, userId);
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
         }
     }
     
+    private User findUserById(Connection con, int userId) throws Exception {
+        try (PreparedStatement pst = con.prepareStatement("SELECT * FROM users WHERE id = ?")) {
+            pst.setInt(1, userId);
+            return findSingleUser(pst);
+        }
+    }
+    
     /**
      * Finds a user by username
      * 
@@ -359,21 +331,10 @@ public class LoginDao {
      * @return User object if found, null otherwise
      */
     public User findUserByUsername(String username) {
-        try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "SELECT * FROM users WHERE username = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement pst = con.prepareStatement("SELECT * FROM users WHERE username = ?")) {
             pst.setString(1, username);
-            
-            ResultSet rs = pst.executeQuery();
-            User user = null;
-            
-            if (rs.next()) {
-                user = extractUserFromResultSet(rs);
-            }
-            
-            con.close();
-            return user;
+            return findSingleUser(pst);
             
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -388,21 +349,10 @@ public class LoginDao {
      * @return User object if found, null otherwise
      */
     public User findUserByEmail(String email) {
-        try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "SELECT * FROM users WHERE email = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement pst = con.prepareStatement("SELECT * FROM users WHERE email = ?")) {
             pst.setString(1, email);
-            
-            ResultSet rs = pst.executeQuery();
-            User user = null;
-            
-            if (rs.next()) {
-                user = extractUserFromResultSet(rs);
-            }
-            
-            con.close();
-            return user;
+            return findSingleUser(pst);
             
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -416,21 +366,9 @@ public class LoginDao {
      * @return List of active users
      */
     public List<User> findAllActiveUsers() {
-        try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "SELECT * FROM users WHERE active = TRUE ORDER BY username";
-            PreparedStatement pst = con.prepareStatement(sql);
-            
-            ResultSet rs = pst.executeQuery();
-            List<User> userList = new ArrayList<>();
-            
-            while (rs.next()) {
-                User user = extractUserFromResultSet(rs);
-                userList.add(user);
-            }
-            
-            con.close();
-            return userList;
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement pst = con.prepareStatement("SELECT * FROM users WHERE active = TRUE ORDER BY username")) {
+            return findUsers(pst);
             
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -445,22 +383,10 @@ public class LoginDao {
      * @return List of users with the specified role
      */
     public List<User> findUsersByRole(String role) {
-        try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "SELECT * FROM users WHERE role = ? AND active = TRUE ORDER BY full_name";
-            PreparedStatement pst = con.prepareStatement(sql);
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement pst = con.prepareStatement("SELECT * FROM users WHERE role = ? AND active = TRUE ORDER BY full_name")) {
             pst.setString(1, role);
-            
-            ResultSet rs = pst.executeQuery();
-            List<User> userList = new ArrayList<>();
-            
-            while (rs.next()) {
-                User user = extractUserFromResultSet(rs);
-                userList.add(user);
-            }
-            
-            con.close();
-            return userList;
+            return findUsers(pst);
             
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -475,20 +401,16 @@ public class LoginDao {
      * @return true if update successful, false otherwise
      */
     public boolean updateUser(User user) {
-        try {
-            Connection con = DriverManager.getConnection(db_url, db_username, db_passwd);
-            String sql = "UPDATE users SET email = ?, full_name = ?, role = ?, active = ? WHERE id = ?";
-            PreparedStatement pst = con.prepareStatement(sql);
-            
+        String sql = "UPDATE users SET email = ?, full_name = ?, role = ?, active = ? WHERE id = ?";
+        try (Connection con = dataSource.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setString(1, user.getEmail());
             pst.setString(2, user.getFullName());
             pst.setString(3, user.getRole());
             pst.setBoolean(4, user.isActive());
             pst.setInt(5, user.getId());
             
-            int rowsAffected = pst.executeUpdate();
-            con.close();
-            return rowsAffected > 0;
+            return evictCachedUser(user.getId(), pst.executeUpdate()) > 0;
             
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -496,6 +418,33 @@ public class LoginDao {
         }
     }
     
+    /**
+     * Drops a user changed through JDBC from Hibernate's second-level cache
+     * so UserDao does not serve the old row
+     */
+    private int evictCachedUser(int userId, int rowsAffected) {
+        if (rowsAffected > 0) {
+            HibernateUtil.evictEntity(User.class, userId);
+        }
+        return rowsAffected;
+    }
+    
+    private User findSingleUser(PreparedStatement pst) throws Exception {
+        try (ResultSet rs = pst.executeQuery()) {
+            return rs.next() ? extractUserFromResultSet(rs) : null;
+        }
+    }
+    
+    private List<User> findUsers(PreparedStatement pst) throws Exception {
+        List<User> userList = new ArrayList<>();
+        try (ResultSet rs = pst.executeQuery()) {
+            while (rs.next()) {
+                userList.add(extractUserFromResultSet(rs));
+            }
+        }
+        return userList;
+    }
+    
     /**
      * Extract user data from a ResultSet row
      * 
@@ -0,0 +1,300 @@
+package dao;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import model.OTP;
+
+/**
+ * Keeps OTPs in memory, so logging in with a code touches no database row.
+ *
+ * Codes are held in a concurrent map by email. Issuing replaces the email's
+ * entry, and verifying, invalidating and counting wrong attempts change the
+ * entry with compare-and-set, so concurrent logins never wait on each other or
+ * on a lock. A code is burned after OTPDao.MAX_ATTEMPTS wrong guesses.
+ *
+ * Entries are also placed on a timing wheel of one-second slots, in the slot
+ * of the moment they can be dropped, which is when the code has expired and
+ * the email's cooldown has passed. A daemon thread clears one slot a second,
+ * so expiry costs nothing per request and never scans the map.
+ *
+ * With hibernate.otp.audit set to true, each code is also written to the otps
+ * table once it is used, replaced, burned or expired. The rows are written in
+ * batches every hibernate.otp.audit_interval milliseconds by another thread,
+ * off the login path; rows still queued when the server stops are lost.
+ *
+ * The codes live in this server only. When logins are spread over several
+ * servers that do not share sessions, use the database store instead.
+ */
+final class MemoryOTPStore implements OTPStore {
+
+    private static final Logger logger = Logger.getLogger(MemoryOTPStore.class.getName());
+
+    private static final long TICK = 1000;
+    private static final int WHEEL_SLOTS = 1024;  // About 17 minutes per turn; later entries go round again
+    private static final boolean AUDIT = Boolean.parseBoolean(HibernateUtil.getSetting("hibernate.otp.audit", "false"));
+    private static final long AUDIT_INTERVAL = Math.max(100, HibernateUtil.getSetting("hibernate.otp.audit_interval", 5000));
+    private static final int AUDIT_BATCH = 500;
+    private static final int AUDIT_QUEUE_LIMIT = 100000;
+
+    private static final int OPEN = 0;
+    private static final int USED = 1;
+    private static final int INVALIDATED = 2;
+    private static final int BURNED = 3;
+    private static final int EXPIRED = 4;
+
+    /**
+     * One issued code and what has happened to it
+     */
+    private static final class Entry {
+        final int userId;
+        final String email;
+        final String otpCode;
+        final long createdAt;
+        final long expiresAt;
+        final long dropAt;
+        final AtomicInteger state = new AtomicInteger(OPEN);
+        final AtomicInteger attempts = new AtomicInteger();
+        volatile long verifiedAt;
+
+        Entry(int userId, String email, String otpCode, long createdAt) {
+            this.userId = userId;
+            this.email = email;
+            this.otpCode = otpCode;
+            this.createdAt = createdAt;
+            this.expiresAt = createdAt + OTPDao.TTL;
+            this.dropAt = Math.max(expiresAt, createdAt + OTPDao.COOLDOWN);
+        }
+
+        boolean matches(String code) {
+            return code != null && MessageDigest.isEqual(
+                    otpCode.getBytes(StandardCharsets.UTF_8), code.getBytes(StandardCharsets.UTF_8));
+        }
+
+        OTP toOTP() {
+            OTP otp = new OTP(userId, email, otpCode);
+            otp.setCreatedAt(toDateTime(createdAt));
+            otp.setExpiresAt(toDateTime(expiresAt));
+            otp.setUsed(state.get() != OPEN && state.get() != EXPIRED);
+            otp.setAttemptCount(attempts.get());
+            long verified = verifiedAt;
+            otp.setVerifiedAt(verified != 0 ? toDateTime(verified) : null);
+            return otp;
+        }
+
+        private static LocalDateTime toDateTime(long millis) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final List<Queue<Entry>> wheel = new ArrayList<>(WHEEL_SLOTS);
+    private long lastTick = System.currentTimeMillis() / TICK;  // Only touched on the expiry thread
+    private final Queue<OTP> audit = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger auditQueued = new AtomicInteger();
+    private volatile boolean auditFull;
+
+    MemoryOTPStore() {
+        for (int slot = 0; slot < WHEEL_SLOTS; slot++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+        ScheduledExecutorService expiry = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "otp-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        expiry.scheduleAtFixedRate(this::advance, TICK, TICK, TimeUnit.MILLISECONDS);
+
+        if (AUDIT) {
+            ScheduledExecutorService auditor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "otp-audit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            auditor.scheduleWithFixedDelay(() -> {
+                try {
+                    writeAudit();
+                } catch (RuntimeException ex) {
+                    logger.log(Level.WARNING, "Writing the OTP audit failed", ex);
+                }
+            }, AUDIT_INTERVAL, AUDIT_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public OTP issue(int userId, String email, String otpCode) {
+        Entry entry = new Entry(userId, email, otpCode, System.currentTimeMillis());
+        Entry previous = entries.put(email, entry);
+        if (previous != null) {
+            finish(previous, INVALIDATED);
+        }
+        schedule(entry);
+        return entry.toOTP();
+    }
+
+    @Override
+    public OTP verify(String email, String otpCode) {
+        Entry entry = entries.get(email);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.matches(otpCode)) {
+            if (entry.attempts.incrementAndGet() >= OTPDao.MAX_ATTEMPTS && finish(entry, BURNED)) {
+                logger.warning("OTP for " + email + " burned after " + OTPDao.MAX_ATTEMPTS + " wrong attempts");
+            }
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now > entry.expiresAt) {
+            entry.attempts.incrementAndGet();
+            finish(entry, EXPIRED);
+            return null;
+        }
+        if (!entry.state.compareAndSet(OPEN, USED)) {
+            // Used, replaced or burned already; a concurrent login with the same code lost the race
+            entry.attempts.incrementAndGet();
+            return null;
+        }
+        entry.verifiedAt = now;
+        record(entry);
+        return entry.toOTP();
+    }
+
+    @Override
+    public OTP latest(String email) {
+        Entry entry = entries.get(email);
+        return entry != null ? entry.toOTP() : null;
+    }
+
+    @Override
+    public int invalidate(int userId) {
+        int invalidated = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.userId == userId && finish(entry, INVALIDATED)) {
+                invalidated++;
+            }
+        }
+        return invalidated;
+    }
+
+    @Override
+    public long cooldownRemaining(String email) {
+        Entry entry = entries.get(email);
+        if (entry == null) {
+            return 0;
+        }
+        return Math.max(0, entry.createdAt + OTPDao.COOLDOWN - System.currentTimeMillis());
+    }
+
+    @Override
+    public int purgeExpired() {
+        long now = System.currentTimeMillis();
+        int dropped = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.dropAt <= now && drop(entry)) {
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Moves an open entry to its final state and queues it for the audit
+     *
+     * @return true if this call closed the entry
+     */
+    private boolean finish(Entry entry, int state) {
+        if (!entry.state.compareAndSet(OPEN, state)) {
+            return false;
+        }
+        record(entry);
+        return true;
+    }
+
+    private void record(Entry entry) {
+        if (!AUDIT) {
+            return;
+        }
+        if (auditQueued.incrementAndGet() <= AUDIT_QUEUE_LIMIT) {
+            audit.add(entry.toOTP());
+        } else {
+            auditQueued.decrementAndGet();
+            if (!auditFull) {
+                auditFull = true;
+                logger.warning("OTP audit queue is full; OTPs are not recorded until it drains");
+            }
+        }
+    }
+
+    /**
+     * Removes an entry whose time is up, unless a newer code has replaced it
+     */
+    private boolean drop(Entry entry) {
+        finish(entry, EXPIRED);
+        return entries.remove(entry.email, entry);
+    }
+
+    private void schedule(Entry entry) {
+        // The first tick at or after dropAt, so the entry is due when its slot is cleared
+        long tick = (entry.dropAt + TICK - 1) / TICK;
+        wheel.get((int) (tick % WHEEL_SLOTS)).add(entry);
+    }
+
+    /**
+     * Clears the slots of the ticks passed since the last run; entries due on
+     * a later turn of the wheel are put back
+     */
+    private void advance() {
+        try {
+            long now = System.currentTimeMillis();
+            long tick = now / TICK;
+            // After a long pause, one full turn visits every slot
+            long from = Math.max(lastTick + 1, tick - WHEEL_SLOTS + 1);
+            for (long t = from; t <= tick; t++) {
+                Queue<Entry> slot = wheel.get((int) (t % WHEEL_SLOTS));
+                List<Entry> later = new ArrayList<>();
+                for (Entry entry; (entry = slot.poll()) != null; ) {
+                    if (entry.dropAt <= now) {
+                        drop(entry);
+                    } else {
+                        later.add(entry);
+                    }
+                }
+                slot.addAll(later);
+            }
+            lastTick = tick;
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "OTP expiry failed", ex);
+        }
+    }
+
+    private void writeAudit() {
+        while (!audit.isEmpty()) {
+            List<OTP> batch = new ArrayList<>(AUDIT_BATCH);
+            for (OTP otp; batch.size() < AUDIT_BATCH && (otp = audit.poll()) != null; ) {
+                batch.add(otp);
+            }
+            auditQueued.addAndGet(-batch.size());
+            auditFull = false;
+            SessionTemplate.inTransaction("MemoryOTPStore.writeAudit", session -> {
+                for (OTP otp : batch) {
+                    session.save(otp);
+                }
+                return null;
+            });
+        }
+    }
+}
@@ -3,15 +3,29 @@ package dao;
 import model.OTP;
 import model.User;
 import java.security.SecureRandom;
-import java.time.LocalDateTime;
-import org.hibernate.Query;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Data Access Object for OTP operations using Hibernate
+ * Data Access Object for OTP operations. Codes are kept in the
+ * {@link OTPStore} named by hibernate.otp.store, in memory by default.
  */
 public class OTPDao {
+
+    private static final Logger logger = Logger.getLogger(OTPDao.class.getName());
+
+    /** How long a code stays valid, in milliseconds */
+    static final long TTL = HibernateUtil.getSetting("hibernate.otp.ttl", 600000);
+
+    /** How long an email must wait between codes, in milliseconds */
+    static final long COOLDOWN = HibernateUtil.getSetting("hibernate.otp.cooldown", 120000);
+
+    /** Wrong codes after which the email's code stops working */
+    static final int MAX_ATTEMPTS = (int) Math.max(1, HibernateUtil.getSetting("hibernate.otp.max_attempts", 5));
+
+    private static final OTPStore STORE = createStore(HibernateUtil.getSetting("hibernate.otp.store", "memory"));
+
+    private static final SecureRandom RANDOM = new SecureRandom();
     
     /**
      * Generates and stores a new OTP for a user
@@ -21,26 +35,8 @@ public class OTPDao {
      */
     public OTP generateOTP(User user) {
         try {
-            // First, invalidate any existing OTPs for this user
-            invalidateExistingOTPs(user.getId());
-            
-            // Generate 6-digit OTP
-            String otpCode = generateOTPCode();
-            
-            // Create OTP object
-            OTP otp = new OTP(user.getId(), user.getEmail(), otpCode);
-            
-            // Save to database using Hibernate
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.save(otp);
-            
-            transaction.commit();
-            session.close();
-            
-            return otp;
-            
+            // Replaces any code the user still has
+            return STORE.issue(user.getId(), user.getEmail(), generateOTPCode());
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -56,40 +52,7 @@ public class OTPDao {
      */
     public OTP verifyOTP(String email, String otpCode) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM OTP o WHERE o.email = :email AND o.otpCode = :otpCode AND o.isUsed = false " +
-                "ORDER BY o.createdAt DESC"
-            );
-            query.setParameter("email", email);
-            query.setParameter("otpCode", otpCode);
-            query.setMaxResults(1);
-            
-            OTP otp = (OTP) query.uniqueResult();
-            
-            if (otp != null) {
-                // Check if OTP is valid (not expired and not used)
-                if (otp.isValid()) {
-                    // Mark OTP as used
-                    Transaction transaction = session.beginTransaction();
-                    otp.markAsUsed();
-                    session.update(otp);
-                    transaction.commit();
-                    
-                    session.close();
-                    return otp;
-                } else {
-                    // Increment attempt count for invalid attempts
-                    Transaction transaction = session.beginTransaction();
-                    otp.incrementAttemptCount();
-                    session.update(otp);
-                    transaction.commit();
-                }
-            }
-            
-            session.close();
-            return null;
-            
+            return STORE.verify(email, otpCode);
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
@@ -104,24 +67,28 @@ public class OTPDao {
      */
     public OTP findLatestOTPByEmail(String email) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery(
-                "FROM OTP o WHERE o.email = :email ORDER BY o.createdAt DESC"
-            );
-            query.setParameter("email", email);
-            query.setMaxResults(1);
-            
-            OTP otp = (OTP) query.uniqueResult();
-            session.close();
-            
-            return otp;
-            
+            return STORE.latest(email);
         } catch (Exception ex) {
             ex.printStackTrace();
             return null;
         }
     }
     
+    /**
+     * Gets how long an email must wait before it can be sent a new OTP
+     * 
+     * @param email The user's email
+     * @return Remaining milliseconds, 0 if a new OTP can be sent now
+     */
+    public long getRemainingCooldownMillis(String email) {
+        try {
+            return STORE.cooldownRemaining(email);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return COOLDOWN;
+        }
+    }
+    
     /**
      * Invalidates all existing OTPs for a user
      * 
@@ -130,20 +97,7 @@ public class OTPDao {
      */
     public int invalidateExistingOTPs(int userId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            Query query = session.createQuery(
-                "UPDATE OTP o SET o.isUsed = true WHERE o.userId = :userId AND o.isUsed = false"
-            );
-            query.setParameter("userId", userId);
-            
-            int rowsAffected = query.executeUpdate();
-            transaction.commit();
-            session.close();
-            
-            return rowsAffected;
-            
+            return STORE.invalidate(userId);
         } catch (Exception ex) {
             ex.printStackTrace();
             return 0;
@@ -151,26 +105,13 @@ public class OTPDao {
     }
     
     /**
-     * Cleans up expired OTPs from the database
+     * Cleans up expired OTPs from the store
      * 
      * @return Number of expired OTPs cleaned up
      */
     public int cleanupExpiredOTPs() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            Query query = session.createQuery(
-                "DELETE FROM OTP o WHERE o.expiresAt < :currentTime"
-            );
-            query.setParameter("currentTime", LocalDateTime.now());
-            
-            int rowsAffected = query.executeUpdate();
-            transaction.commit();
-            session.close();
-            
-            return rowsAffected;
-            
+            return STORE.purgeExpired();
         } catch (Exception ex) {
             ex.printStackTrace();
             return 0;
@@ -183,8 +124,22 @@ public class OTPDao {
      * @return 6-digit OTP code as string
      */
     private String generateOTPCode() {
-        SecureRandom random = new SecureRandom();
-        int otp = 100000 + random.nextInt(900000); // Generates number between 100000-999999
+        int otp = 100000 + RANDOM.nextInt(900000); // Generates number between 100000-999999
         return String.valueOf(otp);
     }
+
+    private static OTPStore createStore(String store) {
+        if ("memory".equalsIgnoreCase(store)) {
+            return new MemoryOTPStore();
+        }
+        if ("database".equalsIgnoreCase(store)) {
+            return new DatabaseOTPStore();
+        }
+        try {
+            return Class.forName(store).asSubclass(OTPStore.class).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException ex) {
+            logger.log(Level.SEVERE, "Cannot use OTP store " + store + ", keeping OTPs in memory", ex);
+            return new MemoryOTPStore();
+        }
+    }
 }
\ No newline at end of file
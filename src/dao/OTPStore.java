@@ -0,0 +1,56 @@
+package dao;
+
+import model.OTP;
+
+/**
+ * Where OTPDao keeps one-time passwords. A user has at most one live code,
+ * keyed by email; issuing a new one replaces it.
+ *
+ * The store is chosen with hibernate.otp.store: "memory" (the default) for
+ * {@link MemoryOTPStore}, "database" for the otps table, or the class name of
+ * another implementation with a public no-argument constructor. Lifetime,
+ * cooldown and attempt limits come from OTPDao.
+ */
+public interface OTPStore {
+
+    /**
+     * Stores a new code for a user, invalidating the code the email had before
+     *
+     * @return The stored OTP
+     */
+    OTP issue(int userId, String email, String otpCode);
+
+    /**
+     * Uses up the email's code if it matches, is unused and has not expired
+     *
+     * @return The OTP, marked used, or null if verification failed
+     */
+    OTP verify(String email, String otpCode);
+
+    /**
+     * Gets the code most recently issued to an email, used or not, while the
+     * store still holds it
+     */
+    OTP latest(String email);
+
+    /**
+     * Invalidates a user's unused codes
+     *
+     * @return Number of codes invalidated
+     */
+    int invalidate(int userId);
+
+    /**
+     * Gets how long an email must wait before another code may be issued
+     *
+     * @return Milliseconds left, or 0 if a code may be issued now
+     */
+    long cooldownRemaining(String email);
+
+    /**
+     * Drops codes that have expired and whose cooldown has passed
+     *
+     * @return Number of codes dropped
+     */
+    int purgeExpired();
+}
@@ -0,0 +1,164 @@
+package dao;
+
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import org.hibernate.Session;
+import org.hibernate.StaleStateException;
+
+/**
+ * Field-level changes to one entity, sent as a map of property name to new
+ * value instead of the whole detached object.
+ *
+ * The row is read in the session, each named property that really differs is
+ * set on it, and the session is flushed. Entities using this are mapped with
+ * dynamic update, so Hibernate's dirty check writes only the changed columns
+ * plus the version; when nothing differs no UPDATE is sent at all. The caller
+ * names the version it last read, and a row changed since then, before or
+ * during the patch, is reported as a {@link ConcurrentModificationException}
+ * instead of being overwritten.
+ */
+final class Patch<T> {
+
+    private static final class Field<T, V> {
+        final Class<V> type;
+        final Function<T, V> getter;
+        final BiConsumer<T, V> setter;
+        final boolean required;
+
+        Field(Class<V> type, Function<T, V> getter, BiConsumer<T, V> setter, boolean required) {
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+            this.required = required;
+        }
+
+        /**
+         * Sets the value if it differs from the current one
+         *
+         * @return true if the entity changed
+         */
+        boolean set(T entity, Object value) {
+            V typed = type.cast(value);
+            if (Objects.equals(getter.apply(entity), typed)) {
+                return false;
+            }
+            setter.accept(entity, typed);
+            return true;
+        }
+    }
+
+    private final Class<T> entityClass;
+    private final ToLongFunction<T> version;
+    private final Map<String, Field<T, ?>> fields = new LinkedHashMap<>();
+
+    /**
+     * @param entityClass Entity class, which must have a version property
+     * @param version Reads the entity's version
+     */
+    Patch(Class<T> entityClass, ToLongFunction<T> version) {
+        this.entityClass = entityClass;
+        this.version = version;
+    }
+
+    /**
+     * Allows a property to be patched, including to null
+     */
+    <V> Patch<T> field(String name, Class<V> type, Function<T, V> getter, BiConsumer<T, V> setter) {
+        fields.put(name, new Field<>(type, getter, setter, false));
+        return this;
+    }
+
+    /**
+     * Allows a property to be patched to any value but null
+     */
+    <V> Patch<T> requiredField(String name, Class<V> type, Function<T, V> getter, BiConsumer<T, V> setter) {
+        fields.put(name, new Field<>(type, getter, setter, true));
+        return this;
+    }
+
+    /**
+     * Checks that every change names a patchable property and has a value of its type
+     *
+     * @throws IllegalArgumentException If a change is not allowed
+     */
+    void check(Map<String, Object> changes) {
+        if (changes == null) {
+            throw new IllegalArgumentException("No changes given for " + entityClass.getSimpleName());
+        }
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            Field<T, ?> field = fields.get(change.getKey());
+            if (field == null) {
+                throw new IllegalArgumentException(entityClass.getSimpleName() + "." + change.getKey()
+                        + " cannot be patched; patchable properties are " + fields.keySet());
+            }
+            Object value = change.getValue();
+            if (value == null ? field.required : !field.type.isInstance(value)) {
+                throw new IllegalArgumentException(entityClass.getSimpleName() + "." + change.getKey() + " must be "
+                        + (field.required ? "a non-null " : "null or a ") + field.type.getSimpleName());
+            }
+        }
+    }
+
+    /**
+     * Reads the row to patch
+     *
+     * @param expectedVersion Version the caller last read
+     * @return The entity, or null if there is no such row
+     * @throws ConcurrentModificationException If the row has changed since that version
+     */
+    T load(Session session, int id, long expectedVersion) {
+        T entity = entityClass.cast(session.get(entityClass, id));
+        if (entity != null && version.applyAsLong(entity) != expectedVersion) {
+            throw conflict(id, expectedVersion);
+        }
+        return entity;
+    }
+
+    /**
+     * Sets the changed properties on a loaded entity and writes them
+     *
+     * @return true if anything changed, false if every value was already current
+     * @throws ConcurrentModificationException If another transaction changed the row first
+     */
+    boolean apply(Session session, T entity, int id, Map<String, Object> changes) {
+        return apply(session, entity, id, changes, changed -> { });
+    }
+
+    /**
+     * Sets the changed properties on a loaded entity and writes them
+     *
+     * @param beforeWrite Updates properties derived from the patched ones;
+     *                    runs only if something changed, before the write
+     * @return true if anything changed, false if every value was already current
+     * @throws ConcurrentModificationException If another transaction changed the row first
+     */
+    boolean apply(Session session, T entity, int id, Map<String, Object> changes, Consumer<T> beforeWrite) {
+        long expectedVersion = version.applyAsLong(entity);
+        boolean changed = false;
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            changed |= fields.get(change.getKey()).set(entity, change.getValue());
+        }
+        if (changed) {
+            beforeWrite.accept(entity);
+            try {
+                session.flush();
+            } catch (StaleStateException ex) {
+                ConcurrentModificationException conflict = conflict(id, expectedVersion);
+                conflict.initCause(ex);
+                throw conflict;
+            }
+        }
+        return changed;
+    }
+
+    private ConcurrentModificationException conflict(int id, long expectedVersion) {
+        return new ConcurrentModificationException(entityClass.getSimpleName() + " " + id
+                + " has been changed by someone else since version " + expectedVersion);
+    }
+}
@@ -3,296 +3,365 @@ package dao;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import model.Page;
 import model.Payment;
+import org.hibernate.LockMode;
+import org.hibernate.LockOptions;
 import org.hibernate.Query;
 import org.hibernate.Session;
-import org.hibernate.Transaction;
 
 /**
  * Data Access Object for Payment operations using Hibernate
  */
 public class PaymentDao {
-    
+
+    // Checks the invoice ledgers in the background for as long as the DAO is in use
+    private static final InvoiceLedger LEDGER = new InvoiceLedger();
+
+    private static final SequenceAllocator PAYMENT_IDS = new SequenceAllocator("PMT",
+            "SELECT MAX(CAST(SUBSTRING(p.paymentId, 4) AS integer)) FROM Payment p WHERE p.paymentId LIKE 'PMT%'");
+
+    private static final Keyset<Payment> NEWEST_FIRST = new Keyset<>(Payment.class, "p")
+            .desc("paymentDate", Payment::getPaymentDate, LocalDate::parse)
+            .desc("id", Payment::getId, Integer::valueOf);
+
+    private static final Keyset<Payment> OLDEST_FIRST = new Keyset<>(Payment.class, "p")
+            .asc("paymentDate", Payment::getPaymentDate, LocalDate::parse)
+            .asc("id", Payment::getId, Integer::valueOf);
+
     /**
      * Creates a new payment in the database
      */
     public Payment createPayment(Payment payment) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.save(payment);
-            
-            // Update invoice payment amount
-            if (payment.getInvoice() != null) {
-                payment.getInvoice().recalculateAmountPaid();
-                session.update(payment.getInvoice());
-            }
-            
-            transaction.commit();
-            session.close();
-            return payment;
+            return SessionTemplate.inTransaction("PaymentDao.createPayment", session -> {
+                session.save(payment);
+
+                // Post the payment to its invoice's ledger
+                if (payment.getInvoice() != null) {
+                    InvoiceLedger.post(session, payment.getInvoice().getId(), amountOf(payment.getAmount()));
+                    InvoiceLedger.refresh(session, payment.getInvoice());
+                }
+                return payment;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Updates an existing payment in the database
      */
     public Payment updatePayment(Payment payment) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.update(payment);
-            
-            // Update invoice payment amount
-            if (payment.getInvoice() != null) {
-                payment.getInvoice().recalculateAmountPaid();
-                session.update(payment.getInvoice());
-            }
-            
-            transaction.commit();
-            session.close();
-            return payment;
+            return SessionTemplate.inTransaction("PaymentDao.updatePayment", session -> {
+                // Take back what was posted for the stored payment, then post the new one
+                Object[] stored = stored(session, payment.getId());
+                session.update(payment);
+
+                Integer oldInvoiceId = stored != null ? (Integer) stored[1] : null;
+                Integer newInvoiceId = payment.getInvoice() != null ? payment.getInvoice().getId() : null;
+                BigDecimal oldAmount = stored != null ? amountOf((BigDecimal) stored[0]) : BigDecimal.ZERO;
+                BigDecimal newAmount = amountOf(payment.getAmount());
+                if (oldInvoiceId != null && oldInvoiceId.equals(newInvoiceId)) {
+                    InvoiceLedger.post(session, newInvoiceId, newAmount.subtract(oldAmount));
+                } else {
+                    if (oldInvoiceId != null) {
+                        InvoiceLedger.post(session, oldInvoiceId, oldAmount.negate());
+                    }
+                    if (newInvoiceId != null) {
+                        InvoiceLedger.post(session, newInvoiceId, newAmount);
+                    }
+                }
+                if (payment.getInvoice() != null) {
+                    InvoiceLedger.refresh(session, payment.getInvoice());
+                }
+                return payment;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Deletes a payment from the database
      */
     public Payment deletePayment(Payment payment) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            // Store invoice reference before deletion
-            model.Invoice invoice = payment.getInvoice();
-            
-            session.delete(payment);
-            
-            // Update invoice payment amount
-            if (invoice != null) {
-                invoice.recalculateAmountPaid();
-                session.update(invoice);
-            }
-            
-            transaction.commit();
-            session.close();
-            return payment;
+            return SessionTemplate.inTransaction("PaymentDao.deletePayment", session -> {
+                // Take back what was posted for the payment as stored, not as the caller has it
+                Object[] stored = stored(session, payment.getId());
+                model.Invoice invoice = payment.getInvoice();
+
+                session.delete(payment);
+
+                if (stored != null && stored[1] != null) {
+                    InvoiceLedger.post(session, (Integer) stored[1], amountOf((BigDecimal) stored[0]).negate());
+                }
+                if (invoice != null) {
+                    InvoiceLedger.refresh(session, invoice);
+                }
+                return payment;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds a payment by ID
      */
     public Payment findPaymentById(Payment payment) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Payment foundPayment = (Payment) session.get(Payment.class, payment.getId());
-            session.close();
-            return foundPayment;
+            return SessionTemplate.inSession("PaymentDao.findPaymentById",
+                    session -> (Payment) session.get(Payment.class, payment.getId()));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds a payment by payment ID
      */
     public Payment findPaymentByPaymentId(String paymentId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Payment p WHERE p.paymentId = :paymentId");
-            query.setParameter("paymentId", paymentId);
-            Payment payment = (Payment) query.uniqueResult();
-            session.close();
-            return payment;
+            return SessionTemplate.inSession("PaymentDao.findPaymentByPaymentId",
+                    session -> (Payment) session.bySimpleNaturalId(Payment.class).load(paymentId));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds payments by invoice ID
      */
     @SuppressWarnings("unchecked")
     public List<Payment> findPaymentsByInvoice(int invoiceId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Payment p WHERE p.invoice.id = :invoiceId ORDER BY p.paymentDate DESC");
-            query.setParameter("invoiceId", invoiceId);
-            List<Payment> payments = query.list();
-            session.close();
-            return payments;
+            return SessionTemplate.inSession("PaymentDao.findPaymentsByInvoice", session -> {
+                Query query = session.createQuery("FROM Payment p WHERE p.invoice.id = :invoiceId ORDER BY p.paymentDate DESC");
+                query.setParameter("invoiceId", invoiceId);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds payments by client ID
      */
     @SuppressWarnings("unchecked")
     public List<Payment> findPaymentsByClient(int clientId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Payment p WHERE p.client.id = :clientId ORDER BY p.paymentDate DESC");
-            query.setParameter("clientId", clientId);
-            List<Payment> payments = query.list();
-            session.close();
-            return payments;
+            return SessionTemplate.inSession("PaymentDao.findPaymentsByClient", session -> {
+                Query query = session.createQuery("FROM Payment p WHERE p.client.id = :clientId ORDER BY p.paymentDate DESC");
+                query.setParameter("clientId", clientId);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds payments by payment method
      */
     @SuppressWarnings("unchecked")
     public List<Payment> findPaymentsByMethod(String paymentMethod) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Payment p WHERE p.paymentMethod = :paymentMethod ORDER BY p.paymentDate DESC");
-            query.setParameter("paymentMethod", paymentMethod);
-            List<Payment> payments = query.list();
-            session.close();
-            return payments;
+            return SessionTemplate.inSession("PaymentDao.findPaymentsByMethod", session -> {
+                Query query = session.createQuery("FROM Payment p WHERE p.paymentMethod = :paymentMethod ORDER BY p.paymentDate DESC");
+                query.setParameter("paymentMethod", paymentMethod);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds payments by date range
      */
     @SuppressWarnings("unchecked")
     public List<Payment> findPaymentsByDateRange(LocalDate startDate, LocalDate endDate) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Payment p WHERE p.paymentDate BETWEEN :startDate AND :endDate ORDER BY p.paymentDate");
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            List<Payment> payments = query.list();
-            session.close();
-            return payments;
+            return SessionTemplate.inSession("PaymentDao.findPaymentsByDateRange", session -> {
+                Query query = session.createQuery("FROM Payment p WHERE p.paymentDate BETWEEN :startDate AND :endDate ORDER BY p.paymentDate");
+                query.setParameter("startDate", startDate);
+                query.setParameter("endDate", endDate);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Gets all payments
      */
     @SuppressWarnings("unchecked")
     public List<Payment> findAllPayments() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM Payment p ORDER BY p.paymentDate DESC");
-            List<Payment> payments = query.list();
-            session.close();
-            return payments;
+            return SessionTemplate.inSession("PaymentDao.findAllPayments",
+                    session -> session.createQuery("FROM Payment p ORDER BY p.paymentDate DESC").list());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets one page of all payments, newest first
+     */
+    public Page<Payment> findAllPaymentsPage(String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("PaymentDao.findAllPaymentsPage",
+                    session -> NEWEST_FIRST.page(session, cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Finds one page of payments by payment method, newest first
+     */
+    public Page<Payment> findPaymentsByMethodPage(String paymentMethod, String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("PaymentDao.findPaymentsByMethodPage", session -> NEWEST_FIRST.page(session,
+                    "p.paymentMethod = :paymentMethod",
+                    query -> query.setParameter("paymentMethod", paymentMethod),
+                    cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Finds one page of payments by date range, oldest first
+     */
+    public Page<Payment> findPaymentsByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("PaymentDao.findPaymentsByDateRangePage", session -> OLDEST_FIRST.page(session,
+                    "p.paymentDate BETWEEN :startDate AND :endDate",
+                    query -> {
+                        query.setParameter("startDate", startDate);
+                        query.setParameter("endDate", endDate);
+                    },
+                    cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Opens a streaming export of all payments in id order; the caller must close it
+     */
+    public ExportReader<Payment> openPaymentExport() {
+        try {
+            return new ExportReader<>("PaymentDao.openPaymentExport", "FROM Payment p ORDER BY p.id", query -> { });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Gets a payment with invoice and client information
      */
     public Payment getPaymentWithDetails(Payment payment) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Load payment with eager fetching of invoice and client
-            Query query = session.createQuery(
-                "FROM Payment p " +
-                "LEFT JOIN FETCH p.invoice " +
-                "LEFT JOIN FETCH p.client " +
-                "WHERE p.id = :paymentId"
-            );
-            query.setParameter("paymentId", payment.getId());
-            Payment foundPayment = (Payment) query.uniqueResult();
-            
-            session.close();
-            return foundPayment;
+            return SessionTemplate.inSession("PaymentDao.getPaymentWithDetails", session -> {
+                // Load payment with eager fetching of invoice and client
+                Query query = session.createQuery(
+                    "FROM Payment p " +
+                    "LEFT JOIN FETCH p.invoice " +
+                    "LEFT JOIN FETCH p.client " +
+                    "WHERE p.id = :paymentId"
+                );
+                query.setParameter("paymentId", payment.getId());
+                return (Payment) query.uniqueResult();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Gets the total payments received for a client
      */
     public BigDecimal getTotalPaymentsByClient(int clientId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("SELECT SUM(p.amount) FROM Payment p WHERE p.client.id = :clientId");
-            query.setParameter("clientId", clientId);
-            BigDecimal totalAmount = (BigDecimal) query.uniqueResult();
-            session.close();
+            BigDecimal totalAmount = SessionTemplate.inSession("PaymentDao.getTotalPaymentsByClient", session -> {
+                Query query = session.createQuery("SELECT SUM(p.amount) FROM Payment p WHERE p.client.id = :clientId");
+                query.setParameter("clientId", clientId);
+                return (BigDecimal) query.uniqueResult();
+            });
             return totalAmount != null ? totalAmount : BigDecimal.ZERO;
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return BigDecimal.ZERO;
     }
-    
+
     /**
      * Gets the total payments received for a date range
      */
     public BigDecimal getTotalPaymentsByDateRange(LocalDate startDate, LocalDate endDate) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("SELECT SUM(p.amount) FROM Payment p WHERE p.paymentDate BETWEEN :startDate AND :endDate");
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            BigDecimal totalAmount = (BigDecimal) query.uniqueResult();
-            session.close();
+            BigDecimal totalAmount = SessionTemplate.inSession("PaymentDao.getTotalPaymentsByDateRange", session -> {
+                Query query = session.createQuery("SELECT SUM(p.amount) FROM Payment p WHERE p.paymentDate BETWEEN :startDate AND :endDate");
+                query.setParameter("startDate", startDate);
+                query.setParameter("endDate", endDate);
+                return (BigDecimal) query.uniqueResult();
+            });
             return totalAmount != null ? totalAmount : BigDecimal.ZERO;
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return BigDecimal.ZERO;
     }
-    
+
     /**
-     * Generates the next payment ID based on the current highest number
+     * Generates the next payment ID
      */
     public String generateNextPaymentId() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Get the maximum payment number
-            Query query = session.createQuery("SELECT MAX(CAST(SUBSTRING(p.paymentId, 4) AS integer)) FROM Payment p WHERE p.paymentId LIKE 'PMT%'");
-            Integer maxNum = (Integer) query.uniqueResult();
-            
-            session.close();
-            
-            // Format next payment ID
-            int nextNum = (maxNum != null ? maxNum : 0) + 1;
-            return String.format("PMT%06d", nextNum);
+            return String.format("PMT%06d", PAYMENT_IDS.next());
         } catch (Exception ex) {
             ex.printStackTrace();
             // Default format if error occurs
             return "PMT" + System.currentTimeMillis();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Reads a payment's stored amount and invoice ID; null if it does not exist.
+     * The row is locked (SELECT ... FOR UPDATE) until the transaction ends, so a
+     * concurrent update or delete of the same payment waits and then reads what
+     * this one stored, instead of posting its change from the same old amount.
+     */
+    private static Object[] stored(Session session, int paymentId) {
+        return (Object[]) session.createQuery("SELECT p.amount, p.invoice.id FROM Payment p WHERE p.id = :paymentId")
+                .setParameter("paymentId", paymentId)
+                .setLockOptions(new LockOptions(LockMode.PESSIMISTIC_WRITE))
+                .uniqueResult();
+    }
+
+    private static BigDecimal amountOf(BigDecimal amount) {
+        return amount != null ? amount : BigDecimal.ZERO;
+    }
+}
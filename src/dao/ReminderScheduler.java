@@ -0,0 +1,303 @@
+package dao;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import model.Event;
+import org.hibernate.Session;
+
+/**
+ * Fires event reminders from a precomputed reminder date.
+ *
+ * EventDao stores each event's reminder day in events.reminder_date whenever
+ * it saves the event, so finding the due reminders is an index range read
+ * rather than a DATEDIFF over the whole table. The reminders due within the
+ * next hibernate.reminders.horizon_days days are held in a delay queue, which
+ * is refilled from the database at startup and every
+ * hibernate.reminders.refill_interval milliseconds; reschedules and
+ * cancellations made through EventDao move them once their transaction
+ * commits. A reminder fires at hibernate.reminders.fire_hour o'clock on its
+ * day, or straight away if that has passed while the event is still ahead.
+ *
+ * Firing claims the reminder with a conditional UPDATE of reminder_fired, in
+ * the same transaction as the reminder work, so each reminder runs once even
+ * with several servers sharing the database, and runs again if the work
+ * fails.
+ */
+final class ReminderScheduler {
+
+    private static final Logger logger = Logger.getLogger(ReminderScheduler.class.getName());
+
+    private static final long HORIZON_DAYS = Math.max(1, HibernateUtil.getSetting("hibernate.reminders.horizon_days", 2));
+    private static final long REFILL_INTERVAL = HibernateUtil.getSetting("hibernate.reminders.refill_interval", 3600000);
+    private static final int FIRE_HOUR = (int) Math.min(23, Math.max(0, HibernateUtil.getSetting("hibernate.reminders.fire_hour", 8)));
+    private static final long RETRY_DELAY = 60000;
+
+    /**
+     * One reminder waiting in the queue
+     */
+    private static final class Due implements Delayed {
+        final int eventId;
+        final LocalDate reminderDate;
+        final long fireAt;
+
+        Due(int eventId, LocalDate reminderDate, long fireAt) {
+            this.eventId = eventId;
+            this.reminderDate = reminderDate;
+            this.fireAt = fireAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(fireAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(fireAt, ((Due) other).fireAt);
+        }
+    }
+
+    private final DelayQueue<Due> queue = new DelayQueue<>();
+    private final Map<Integer, Due> scheduled = new ConcurrentHashMap<>();
+    private final List<Consumer<Event>> listeners = new CopyOnWriteArrayList<>();
+    private volatile LocalDate horizon;
+
+    ReminderScheduler() {
+        ScheduledExecutorService loader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reminder-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        loader.execute(() -> {
+            try {
+                backfill();
+            } catch (RuntimeException ex) {
+                logger.log(Level.WARNING, "Reminder date backfill failed", ex);
+            }
+        });
+        loader.scheduleWithFixedDelay(() -> {
+            try {
+                refill();
+            } catch (RuntimeException ex) {
+                logger.log(Level.WARNING, "Reminder refill failed", ex);
+            }
+        }, 0, Math.max(60000, REFILL_INTERVAL), TimeUnit.MILLISECONDS);
+
+        Thread firer = new Thread(this::run, "reminder-scheduler");
+        firer.setDaemon(true);
+        firer.start();
+    }
+
+    /**
+     * Registers work to run when a reminder fires, inside the transaction that
+     * claims it; with none registered, reminders are only logged
+     */
+    void addListener(Consumer<Event> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Sets the reminder date of an event about to be saved. An event whose
+     * reminder day is unchanged keeps its stored fired flag, so saving a copy
+     * read before the reminder fired does not make it fire again.
+     */
+    void prepare(Session session, Event event) {
+        LocalDate storedDate = null;
+        boolean storedFired = false;
+        if (event.getId() != 0) {
+            Object[] stored = (Object[]) session.createQuery("SELECT e.reminderDate, e.reminderFired FROM Event e WHERE e.id = :eventId")
+                    .setParameter("eventId", event.getId())
+                    .uniqueResult();
+            if (stored != null) {
+                storedDate = (LocalDate) stored[0];
+                storedFired = (Boolean) stored[1];
+            }
+        }
+        prepare(event, storedDate, storedFired);
+    }
+
+    /**
+     * Sets the reminder date of an event loaded in the session, given the
+     * reminder values it was read with
+     */
+    void prepare(Event event, LocalDate storedDate, boolean storedFired) {
+        LocalDate reminderDate = event.computeReminderDate();
+        event.setReminderDate(reminderDate);
+        event.setReminderFired(storedFired && Objects.equals(storedDate, reminderDate));
+    }
+
+    /**
+     * Queues, moves or drops an event's reminder once the session's
+     * transaction commits
+     */
+    void afterCommit(Session session, Event event) {
+        int eventId = event.getId();
+        LocalDate reminderDate = event.isReminderFired() ? null : event.getReminderDate();
+        onCommit(session, () -> schedule(eventId, reminderDate));
+    }
+
+    /**
+     * Drops a deleted event's reminder once the session's transaction commits
+     */
+    void afterDelete(Session session, int eventId) {
+        onCommit(session, () -> schedule(eventId, null));
+    }
+
+    private static void onCommit(Session session, Runnable change) {
+        session.getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    change.run();
+                }
+            }
+        });
+    }
+
+    private void schedule(int eventId, LocalDate reminderDate) {
+        Due previous = scheduled.remove(eventId);
+        if (previous != null) {
+            queue.remove(previous);
+        }
+        LocalDate loadedUpTo = horizon;
+        if (reminderDate != null && loadedUpTo != null && !reminderDate.isAfter(loadedUpTo)) {
+            enqueue(new Due(eventId, reminderDate, fireTime(reminderDate)));
+        }
+    }
+
+    private void enqueue(Due due) {
+        if (scheduled.putIfAbsent(due.eventId, due) == null) {
+            queue.add(due);
+        }
+    }
+
+    private static long fireTime(LocalDate reminderDate) {
+        return reminderDate.atTime(FIRE_HOUR, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Loads the reminders due up to the new horizon. Reminders missed while
+     * the server was down fire now if their event is still ahead; those whose
+     * event has passed are marked fired without running.
+     */
+    @SuppressWarnings("unchecked")
+    void refill() {
+        LocalDate today = LocalDate.now();
+        LocalDate end = today.plusDays(HORIZON_DAYS);
+        // Set first, so reschedules committed while the query runs are queued too
+        horizon = end;
+
+        List<Object[]> rows = SessionTemplate.inSession("ReminderScheduler.refill", session -> session.createQuery(
+                "SELECT e.id, e.reminderDate, e.eventDate FROM Event e "
+                + "WHERE e.reminderFired = false AND e.reminderDate <= :end")
+                .setParameter("end", end)
+                .list());
+
+        int missed = 0;
+        for (Object[] row : rows) {
+            int eventId = (Integer) row[0];
+            LocalDate reminderDate = (LocalDate) row[1];
+            LocalDate eventDate = (LocalDate) row[2];
+            if (eventDate != null && eventDate.isBefore(today)) {
+                missed += SessionTemplate.inTransaction("ReminderScheduler.expire", session -> claim(session, eventId, reminderDate));
+            } else {
+                enqueue(new Due(eventId, reminderDate, fireTime(reminderDate)));
+            }
+        }
+        if (missed > 0) {
+            logger.info("Skipped " + missed + " reminders for events that have already taken place");
+        }
+    }
+
+    /**
+     * Fills in reminder_date for events saved before it existed
+     */
+    @SuppressWarnings("unchecked")
+    private void backfill() {
+        int filled = SessionTemplate.inTransaction("ReminderScheduler.backfill", session -> {
+            List<Event> events = session.createQuery(
+                    "FROM Event e WHERE e.reminderDate IS NULL AND e.reminderSet = true AND e.eventDate IS NOT NULL "
+                    + "AND e.status NOT IN ('Completed', 'Cancelled')").list();
+            LocalDate today = LocalDate.now();
+            for (Event event : events) {
+                event.setReminderDate(event.computeReminderDate());
+                event.setReminderFired(event.getEventDate().isBefore(today));
+            }
+            return events.size();
+        });
+        if (filled > 0) {
+            logger.info("Computed reminder dates for " + filled + " existing events");
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Due due;
+            try {
+                due = queue.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!scheduled.remove(due.eventId, due)) {
+                // Rescheduled or cancelled since it was queued
+                continue;
+            }
+            try {
+                fire(due);
+            } catch (RuntimeException ex) {
+                logger.log(Level.WARNING, "Reminder for event " + due.eventId + " failed, retrying", ex);
+                enqueue(new Due(due.eventId, due.reminderDate, System.currentTimeMillis() + RETRY_DELAY));
+            }
+        }
+    }
+
+    private void fire(Due due) {
+        SessionTemplate.inTransaction("ReminderScheduler.fire", session -> {
+            if (claim(session, due.eventId, due.reminderDate) == 0) {
+                // Fired by another server, or the event changed since it was queued
+                return null;
+            }
+            Event event = (Event) session.get(Event.class, due.eventId);
+            if (listeners.isEmpty()) {
+                logger.info("Reminder due: " + event.getDisplayText() + " [" + event.getEventId() + "]");
+            }
+            for (Consumer<Event> listener : listeners) {
+                listener.accept(event);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Marks a reminder fired if it is still unfired and still due that day.
+     * Plain SQL, so firing a batch of reminders leaves the cached event
+     * number lookups alone.
+     *
+     * @return 1 if this call claimed it, otherwise 0
+     */
+    private static int claim(Session session, int eventId, LocalDate reminderDate) {
+        return SqlUpdate.execute(session, "UPDATE events SET reminder_fired = ? "
+                + "WHERE id = ? AND reminder_fired = ? AND reminder_date = ?",
+                true, eventId, false, reminderDate);
+    }
+}
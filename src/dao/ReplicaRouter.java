@@ -0,0 +1,191 @@
+package dao;
+
+import java.rmi.server.RemoteServer;
+import java.rmi.server.ServerNotActiveException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import model.ReplicaHeartbeat;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+/**
+ * Decides whether a read may be served by the read replica.
+ *
+ * Only reads made inside a service call's {@link UnitOfWork} are routed, and
+ * only until the unit first writes; background jobs and in-memory indexes
+ * always read the primary. A monitor thread rewrites the
+ * {@link ReplicaHeartbeat} row on the primary every
+ * hibernate.replica.check_interval milliseconds and reads it back from the
+ * replica. The replica is used while that read succeeds and the beat it shows
+ * is no older than hibernate.replica.max_lag milliseconds.
+ *
+ * For read-your-writes, the time of each commit is kept per RMI client host.
+ * That client reads the primary until the replica shows a beat written after
+ * its last commit, which is when the replica has applied the commit.
+ *
+ * The host is only an approximation of the client, since the remote services
+ * carry no user or session token. All clients on one host, or behind one NAT
+ * address, share an entry: a commit by any of them keeps all of them on the
+ * primary until the replica catches up. That costs replica reads but never
+ * shows a client a state older than its own commit. Calls made inside the
+ * server share the entry "local" in the same way.
+ */
+public final class ReplicaRouter {
+
+    private static final Logger logger = Logger.getLogger(ReplicaRouter.class.getName());
+
+    private static final SessionFactory replica = HibernateUtil.getReplicaSessionFactory();
+    private static final long MAX_LAG = HibernateUtil.getSetting("hibernate.replica.max_lag", 5000);
+    private static final long CHECK_INTERVAL = Math.max(100, HibernateUtil.getSetting("hibernate.replica.check_interval", 1000));
+
+    // Primary clock time of the newest beat seen on the replica; 0 until one is seen
+    private static volatile long replicatedUpTo;
+    private static volatile boolean replicaUp;
+    private static volatile long lastCheck;
+    private static final Map<String, Long> lastCommits = new ConcurrentHashMap<>();
+
+    static {
+        if (replica != null) {
+            ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-monitor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            monitor.scheduleWithFixedDelay(ReplicaRouter::check, 0, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private ReplicaRouter() {
+    }
+
+    /**
+     * Opens a read-only session on the replica if the calling client may read
+     * from it now
+     *
+     * @return The session, or null if the read should go to the primary
+     */
+    static Session openReadSession() {
+        if (replica == null || !replicaUp) {
+            return null;
+        }
+        long upTo = replicatedUpTo;
+        if (System.currentTimeMillis() - upTo > MAX_LAG) {
+            return null;
+        }
+        Long lastCommit = lastCommits.get(caller());
+        if (lastCommit != null && lastCommit >= upTo) {
+            return null;
+        }
+        Session session = replica.openSession();
+        session.setDefaultReadOnly(true);
+        session.setFlushMode(FlushMode.MANUAL);
+        return session;
+    }
+
+    /**
+     * Records that the calling client has just committed, so its reads stay
+     * on the primary until the replica has the commit
+     */
+    static void committed() {
+        if (replica != null) {
+            lastCommits.put(caller(), System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Stops routing reads to the replica after a read on it failed; the
+     * monitor turns it back on once the replica answers again
+     */
+    static void failed(RuntimeException ex) {
+        if (replicaUp) {
+            replicaUp = false;
+            logger.log(Level.WARNING, "Read replica failed, reading from the primary", ex);
+        }
+    }
+
+    /**
+     * Identifies the client for read-your-writes: the RMI client's host, or
+     * "local" for calls made inside the server. Clients sharing a host share
+     * the key.
+     */
+    private static String caller() {
+        try {
+            return RemoteServer.getClientHost();
+        } catch (ServerNotActiveException ex) {
+            return "local";
+        }
+    }
+
+    private static void check() {
+        long now = System.currentTimeMillis();
+        try {
+            SessionTemplate.inTransaction("ReplicaRouter.beat", session -> {
+                int updated = session.createQuery("UPDATE ReplicaHeartbeat h SET h.beatAt = :now WHERE h.id = :id")
+                        .setParameter("now", now)
+                        .setParameter("id", ReplicaHeartbeat.ID)
+                        .executeUpdate();
+                if (updated == 0) {
+                    session.save(new ReplicaHeartbeat(now));
+                }
+                return null;
+            });
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Could not write the replica heartbeat", ex);
+        }
+
+        Session session = null;
+        try {
+            session = replica.openSession();
+            Long beat = (Long) session.createQuery("SELECT h.beatAt FROM ReplicaHeartbeat h WHERE h.id = :id")
+                    .setParameter("id", ReplicaHeartbeat.ID)
+                    .uniqueResult();
+            if (beat != null && beat > replicatedUpTo) {
+                replicatedUpTo = beat;
+            }
+            if (!replicaUp) {
+                replicaUp = true;
+                logger.info("Read replica is answering, routing reads to it while it lags no more than " + MAX_LAG + " ms");
+            }
+        } catch (RuntimeException ex) {
+            if (replicaUp) {
+                replicaUp = false;
+                logger.log(Level.WARNING, "Read replica is not answering, reading from the primary", ex);
+            }
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+        lastCheck = now;
+
+        // Clients whose last commit has reached the replica can read from it again
+        long upTo = replicatedUpTo;
+        lastCommits.values().removeIf(commit -> commit < upTo);
+    }
+
+    /**
+     * Gets whether the replica is configured and in use, how far behind it is
+     * and how many clients are reading the primary until it catches up
+     */
+    public static Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("configured", replica != null);
+        if (replica != null) {
+            long upTo = replicatedUpTo;
+            long lag = upTo == 0 ? -1 : Math.max(0, lastCheck - upTo);
+            status.put("up", replicaUp);
+            status.put("lagMillis", lag);
+            status.put("maxLagMillis", MAX_LAG);
+            status.put("routing", replicaUp && upTo != 0 && System.currentTimeMillis() - upTo <= MAX_LAG);
+            status.put("clientsOnPrimary", lastCommits.size());
+        }
+        return status;
+    }
+}
@@ -0,0 +1,101 @@
+package dao;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import model.IdSequence;
+import org.hibernate.LockOptions;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.LockAcquisitionException;
+
+/**
+ * Hands out the numbers of one named sequence from blocks reserved in the
+ * id_sequences table.
+ *
+ * Reserving a block locks the sequence's row, advances it by the block size
+ * and commits straight away, so every server process sharing the database gets
+ * its own range and a number is never handed out twice. Numbers within a block
+ * come from memory. Reservations run in a short transaction of their own,
+ * outside any {@link UnitOfWork}, so the row lock is not held while the
+ * caller's work goes on. Numbers left in a block when the server stops are
+ * skipped, so a sequence can have gaps.
+ *
+ * The first reservation of a sequence with no row yet seeds it from the
+ * highest number already in use.
+ */
+final class SequenceAllocator {
+
+    private static final Logger logger = Logger.getLogger(SequenceAllocator.class.getName());
+
+    private static final int BLOCK_SIZE = (int) Math.max(1, HibernateUtil.getSetting("hibernate.sequence.block_size", 20));
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final String name;
+    private final String seedQuery;
+    private long next;
+    private long limit;
+
+    /**
+     * @param name Sequence name, e.g. "CASE"
+     * @param seedQuery HQL returning the highest number in use, or null when there is none
+     */
+    SequenceAllocator(String name, String seedQuery) {
+        this.name = name;
+        this.seedQuery = seedQuery;
+    }
+
+    /**
+     * Gets the next number of the sequence
+     */
+    synchronized long next() {
+        if (next >= limit) {
+            next = reserve();
+            limit = next + BLOCK_SIZE;
+        }
+        return next++;
+    }
+
+    private long reserve() {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return reserveOnce();
+            } catch (ConstraintViolationException | LockAcquisitionException ex) {
+                // Another server created the sequence row at the same time; lock that one instead
+                if (attempt == MAX_ATTEMPTS) {
+                    throw ex;
+                }
+                logger.log(Level.FINE, "Sequence " + name + " was created concurrently, retrying", ex);
+            }
+        }
+    }
+
+    private long reserveOnce() {
+        long started = System.nanoTime();
+        boolean success = false;
+        Session session = HibernateUtil.getSessionFactory().openSession();
+        Transaction transaction = null;
+        try {
+            transaction = session.beginTransaction();
+            IdSequence sequence = (IdSequence) session.get(IdSequence.class, name, LockOptions.UPGRADE);
+            if (sequence == null) {
+                Number highest = (Number) session.createQuery(seedQuery).uniqueResult();
+                sequence = new IdSequence(name, (highest != null ? highest.longValue() : 0) + 1);
+                session.save(sequence);
+                session.flush();
+            }
+            long start = sequence.getNextValue();
+            sequence.setNextValue(start + BLOCK_SIZE);
+            transaction.commit();
+            success = true;
+            logger.fine("Reserved " + name + " numbers " + start + " to " + (start + BLOCK_SIZE - 1));
+            return start;
+        } finally {
+            if (!success && transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            session.close();
+            SessionTemplate.record("SequenceAllocator.reserve", System.nanoTime() - started, success);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package dao;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import util.LogUtil;
+
+/**
+ * Tracks open Hibernate sessions and reports any held longer than a threshold,
+ * together with the stack trace of the code that opened it.
+ */
+public class SessionLeakDetector {
+
+    private static final Logger logger = Logger.getLogger(SessionLeakDetector.class.getName());
+
+    private final long thresholdMillis;
+    private final Map<Long, Lease> leases = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong leaksReported = new AtomicLong();
+
+    /**
+     * Creates a detector; a threshold of zero or less disables it
+     */
+    public SessionLeakDetector(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+        if (thresholdMillis > 0) {
+            long interval = Math.max(1000, thresholdMillis / 2);
+            ScheduledExecutorService scanner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "session-leak-detector");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scanner.scheduleWithFixedDelay(this::scan, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Starts tracking a session opened for the given operation
+     */
+    public Lease track(String operation) {
+        if (thresholdMillis <= 0) {
+            return null;
+        }
+        Lease lease = new Lease(sequence.incrementAndGet(), operation);
+        leases.put(lease.id, lease);
+        return lease;
+    }
+
+    /**
+     * Stops tracking a session once it has been closed
+     */
+    public void release(Lease lease) {
+        if (lease == null) {
+            return;
+        }
+        leases.remove(lease.id);
+        if (lease.reported) {
+            LogUtil.logSystem(LogUtil.LOG_LEVEL_WARNING, "Session for " + lease.operation
+                    + " was finally closed after " + (System.currentTimeMillis() - lease.openedAt) + "ms");
+        }
+    }
+
+    /**
+     * Gets the number of sessions currently open
+     */
+    public int getOpenSessions() {
+        return leases.size();
+    }
+
+    /**
+     * Gets the number of sessions reported as possible leaks since startup
+     */
+    public long getLeaksReported() {
+        return leaksReported.get();
+    }
+
+    private void scan() {
+        long now = System.currentTimeMillis();
+        for (Lease lease : leases.values()) {
+            long heldFor = now - lease.openedAt;
+            if (!lease.reported && heldFor > thresholdMillis) {
+                lease.reported = true;
+                leaksReported.incrementAndGet();
+                String message = "Possible session leak: session for " + lease.operation + " held for " + heldFor
+                        + "ms by thread " + lease.threadName;
+                LogUtil.logSystem(LogUtil.LOG_LEVEL_WARNING, message);
+                logger.log(Level.WARNING, message, lease.origin);
+            }
+        }
+    }
+
+    /**
+     * An open session being tracked
+     */
+    public static class Lease {
+        private final long id;
+        private final String operation;
+        private final String threadName = Thread.currentThread().getName();
+        private final long openedAt = System.currentTimeMillis();
+        private final Throwable origin = new Throwable("Session opened here");
+        private volatile boolean reported;
+
+        Lease(long id, String operation) {
+            this.id = id;
+            this.operation = operation;
+        }
+    }
+}
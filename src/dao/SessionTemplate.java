@@ -0,0 +1,193 @@
+package dao;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.hibernate.JDBCException;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import util.LogUtil;
+import util.OperationTimer;
+
+/**
+ * Runs DAO work inside a Hibernate session (and optionally a transaction).
+ *
+ * The session is always closed and the transaction is always rolled back when
+ * the work fails, so a failing DAO method can no longer leak a connection.
+ * Every call is timed per operation and watched by a {@link SessionLeakDetector}.
+ * When a {@link UnitOfWork} is active on the calling thread the work joins its
+ * session and transaction instead, and read-only work may be served by the
+ * unit's replica session; if a read fails there it is run again on the primary.
+ */
+public final class SessionTemplate {
+
+    private static final Logger logger = Logger.getLogger(SessionTemplate.class.getName());
+
+    private static final OperationTimer timer = new OperationTimer();
+    private static final SessionLeakDetector leakDetector =
+            new SessionLeakDetector(HibernateUtil.getSetting("hibernate.session.leak_threshold", 30000));
+    private static final long slowThresholdMillis = HibernateUtil.getSetting("hibernate.session.slow_threshold", 1000);
+
+    /**
+     * Work to run against an open session
+     */
+    public interface SessionCallback<T> {
+        T doInSession(Session session);
+    }
+
+    private SessionTemplate() {
+    }
+
+    /**
+     * Runs read-only work in a new session
+     *
+     * @param operation Operation name used for timings and leak reports, e.g. "CaseDao.findAllCases"
+     * @param callback The work to run
+     * @return The callback's result
+     */
+    public static <T> T inSession(String operation, SessionCallback<T> callback) {
+        return execute(operation, false, callback);
+    }
+
+    /**
+     * Runs read-only work that must see every commit, such as loading an
+     * in-memory index, so it is never served by the read replica. Inside a
+     * unit of work that has not used the primary yet, it runs in a session of
+     * its own.
+     *
+     * @param operation Operation name used for timings and leak reports, e.g. "TypeaheadIndex.load"
+     * @param callback The work to run
+     * @return The callback's result
+     */
+    public static <T> T inPrimarySession(String operation, SessionCallback<T> callback) {
+        UnitOfWork unit = UnitOfWork.current();
+        if (unit != null && unit.hasPrimarySession()) {
+            return join(unit, operation, false, callback);
+        }
+        return run(operation, false, callback);
+    }
+
+    /**
+     * Runs work in a new session and transaction, committing on success and rolling back on failure
+     *
+     * @param operation Operation name used for timings and leak reports, e.g. "CaseDao.createCase"
+     * @param callback The work to run
+     * @return The callback's result
+     */
+    public static <T> T inTransaction(String operation, SessionCallback<T> callback) {
+        return execute(operation, true, callback);
+    }
+
+    private static <T> T execute(String operation, boolean transactional, SessionCallback<T> callback) {
+        UnitOfWork unit = UnitOfWork.current();
+        if (unit != null) {
+            return join(unit, operation, transactional, callback);
+        }
+        return run(operation, transactional, callback);
+    }
+
+    private static <T> T run(String operation, boolean transactional, SessionCallback<T> callback) {
+        long start = System.nanoTime();
+        boolean success = false;
+        Session session = HibernateUtil.getSessionFactory().openSession();
+        SessionLeakDetector.Lease lease = leakDetector.track(operation);
+        Transaction transaction = null;
+        try {
+            if (transactional) {
+                transaction = session.beginTransaction();
+            }
+            T result = callback.doInSession(session);
+            if (transaction != null) {
+                transaction.commit();
+            }
+            success = true;
+            return result;
+        } catch (RuntimeException | Error ex) {
+            rollback(transaction, operation, ex);
+            throw ex;
+        } finally {
+            close(session, operation);
+            leakDetector.release(lease);
+            record(operation, System.nanoTime() - start, success);
+        }
+    }
+
+    private static <T> T join(UnitOfWork unit, String operation, boolean transactional, SessionCallback<T> callback) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Session session = transactional ? unit.getWriteSession() : unit.getReadSession();
+            T result;
+            try {
+                result = callback.doInSession(session);
+            } catch (JDBCException ex) {
+                if (!unit.isReplica(session)) {
+                    throw ex;
+                }
+                ReplicaRouter.failed(ex);
+                result = callback.doInSession(unit.getSession());
+            }
+            if (transactional) {
+                // Surface constraint violations here, where the DAO handles them, not at the unit's commit
+                session.flush();
+            }
+            success = true;
+            return result;
+        } catch (RuntimeException | Error ex) {
+            unit.setRollbackOnly();
+            throw ex;
+        } finally {
+            record(operation, System.nanoTime() - start, success);
+        }
+    }
+
+    private static void rollback(Transaction transaction, String operation, Throwable cause) {
+        if (transaction == null) {
+            return;
+        }
+        try {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+        } catch (RuntimeException rollbackEx) {
+            logger.log(Level.WARNING, "Rollback failed for " + operation, rollbackEx);
+            cause.addSuppressed(rollbackEx);
+        }
+    }
+
+    private static void close(Session session, String operation) {
+        try {
+            if (session.isOpen()) {
+                session.close();
+            }
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Failed to close session for " + operation, ex);
+        }
+    }
+
+    static void record(String operation, long nanos, boolean success) {
+        timer.record(operation, nanos, success);
+        long millis = nanos / 1000000;
+        if (millis >= slowThresholdMillis) {
+            LogUtil.logPerformance(operation, millis);
+        }
+    }
+
+    /**
+     * Gets call counts, failures and latency for every DAO operation run so far
+     */
+    public static Map<String, Map<String, Object>> getOperationStatistics() {
+        return timer.snapshot();
+    }
+
+    static SessionLeakDetector getLeakDetector() {
+        return leakDetector;
+    }
+
+    /**
+     * Gets the number of sessions currently open through the template
+     */
+    public static int getOpenSessions() {
+        return leakDetector.getOpenSessions();
+    }
+}
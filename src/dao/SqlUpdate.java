@@ -0,0 +1,48 @@
+package dao;
+
+import java.sql.PreparedStatement;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.type.Type;
+
+/**
+ * Runs a plain SQL UPDATE on the session's own connection and transaction.
+ *
+ * After a bulk HQL or native UPDATE, Hibernate empties the natural-id cache
+ * region of every entity mapped to the table, whatever columns the statement
+ * changed. Hot updates that never touch a natural id go through here instead,
+ * so the cached number lookups survive them. The session is flushed first,
+ * because the statement is not part of Hibernate's own flush; entities already
+ * loaded in the session are not updated, and callers refresh the ones they
+ * hand back.
+ */
+final class SqlUpdate {
+
+    private SqlUpdate() {
+    }
+
+    /**
+     * Executes an UPDATE, binding each parameter with the Hibernate type of
+     * its class, so dates are written in the same form as entity properties
+     *
+     * @param sql Statement with one ? per parameter
+     * @param parameters Non-null parameter values, in order
+     * @return Number of rows changed
+     */
+    static int execute(Session session, String sql, Object... parameters) {
+        SessionImplementor sessionImpl = (SessionImplementor) session;
+        Type[] types = new Type[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            types[i] = sessionImpl.getFactory().getTypeHelper().heuristicType(parameters[i].getClass().getName());
+        }
+        session.flush();
+        return session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < parameters.length; i++) {
+                    types[i].nullSafeSet(statement, parameters[i], i + 1, sessionImpl);
+                }
+                return statement.executeUpdate();
+            }
+        });
+    }
+}
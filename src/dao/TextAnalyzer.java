@@ -0,0 +1,417 @@
+package dao;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Turns free text into the terms the full-text index is keyed by.
+ *
+ * Text is split on anything that is not a letter or digit, accents are
+ * dropped and letters lower-cased, common English stop words are skipped and
+ * the remaining words are reduced to their stem with the Porter algorithm, so
+ * "Negligence", "negligent" and "NEGLIGENTLY" all index and search as the same
+ * term.
+ */
+final class TextAnalyzer {
+
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "from", "has", "have", "if", "in",
+            "into", "is", "it", "its", "no", "not", "of", "on", "or", "such", "that", "the", "their", "then",
+            "there", "these", "they", "this", "to", "was", "were", "will", "with"));
+
+    private TextAnalyzer() {
+    }
+
+    /**
+     * Gets the terms of a text in order, repeats included; empty for null text
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        String folded = fold(text);
+
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = folded.substring(start, Math.min(i, start + MAX_TERM_LENGTH));
+                if (!STOP_WORDS.contains(word)) {
+                    terms.add(stem(word));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Drops accents and lower-cases a text, so "Müller" compares equal to "muller"
+     */
+    static String fold(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Reduces a lower-case word to its stem (M.F. Porter, "An algorithm for
+     * suffix stripping", 1980). Words of two letters or fewer and words with
+     * digits are returned unchanged.
+     */
+    static String stem(String word) {
+        if (word.length() <= 2) {
+            return word;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z') {
+                return word;
+            }
+        }
+        return new Stemmer(word).stem();
+    }
+
+    /**
+     * Working state of one Porter stemming run; b[0..k] is the word so far and
+     * j marks the end of the stem while a suffix is being tested
+     */
+    private static final class Stemmer {
+        private final char[] b;
+        private int k;
+        private int j;
+
+        Stemmer(String word) {
+            this.b = word.toCharArray();
+            this.k = b.length - 1;
+        }
+
+        String stem() {
+            step1ab();
+            if (k > 0) {
+                step1c();
+                step2();
+                step3();
+                step4();
+                step5();
+            }
+            return new String(b, 0, k + 1);
+        }
+
+        private boolean consonant(int i) {
+            switch (b[i]) {
+                case 'a': case 'e': case 'i': case 'o': case 'u':
+                    return false;
+                case 'y':
+                    return i == 0 || !consonant(i - 1);
+                default:
+                    return true;
+            }
+        }
+
+        /**
+         * Number of vowel-consonant sequences in b[0..j]
+         */
+        private int measure() {
+            int n = 0;
+            int i = 0;
+            while (true) {
+                if (i > j) {
+                    return n;
+                }
+                if (!consonant(i)) {
+                    break;
+                }
+                i++;
+            }
+            i++;
+            while (true) {
+                while (true) {
+                    if (i > j) {
+                        return n;
+                    }
+                    if (consonant(i)) {
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                n++;
+                while (true) {
+                    if (i > j) {
+                        return n;
+                    }
+                    if (!consonant(i)) {
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+            }
+        }
+
+        private boolean vowelInStem() {
+            for (int i = 0; i <= j; i++) {
+                if (!consonant(i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean doubleConsonant(int i) {
+            return i >= 1 && b[i] == b[i - 1] && consonant(i);
+        }
+
+        /**
+         * True if b[i-2..i] is consonant-vowel-consonant and the last is not w, x or y
+         */
+        private boolean cvc(int i) {
+            if (i < 2 || !consonant(i) || consonant(i - 1) || !consonant(i - 2)) {
+                return false;
+            }
+            return b[i] != 'w' && b[i] != 'x' && b[i] != 'y';
+        }
+
+        private boolean endsWith(String suffix) {
+            int length = suffix.length();
+            int offset = k - length + 1;
+            if (offset < 0) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (b[offset + i] != suffix.charAt(i)) {
+                    return false;
+                }
+            }
+            j = k - length;
+            return true;
+        }
+
+        /**
+         * Replaces b[j+1..k] with s
+         */
+        private void setTo(String s) {
+            int length = s.length();
+            for (int i = 0; i < length; i++) {
+                b[j + 1 + i] = s.charAt(i);
+            }
+            k = j + length;
+        }
+
+        private void replaceIfMeasured(String s) {
+            if (measure() > 0) {
+                setTo(s);
+            }
+        }
+
+        /**
+         * Plurals and -ed or -ing, e.g. caresses to caress, agreed to agree, hopping to hop
+         */
+        private void step1ab() {
+            if (b[k] == 's') {
+                if (endsWith("sses")) {
+                    k -= 2;
+                } else if (endsWith("ies")) {
+                    setTo("i");
+                } else if (b[k - 1] != 's') {
+                    k--;
+                }
+            }
+            if (endsWith("eed")) {
+                if (measure() > 0) {
+                    k--;
+                }
+            } else if ((endsWith("ed") || endsWith("ing")) && vowelInStem()) {
+                k = j;
+                if (endsWith("at")) {
+                    setTo("ate");
+                } else if (endsWith("bl")) {
+                    setTo("ble");
+                } else if (endsWith("iz")) {
+                    setTo("ize");
+                } else if (doubleConsonant(k)) {
+                    k--;
+                    char c = b[k];
+                    if (c == 'l' || c == 's' || c == 'z') {
+                        k++;
+                    }
+                } else {
+                    j = k;
+                    if (measure() == 1 && cvc(k)) {
+                        setTo("e");
+                    }
+                }
+            }
+        }
+
+        /**
+         * Terminal y to i when there is another vowel in the stem
+         */
+        private void step1c() {
+            if (endsWith("y") && vowelInStem()) {
+                b[k] = 'i';
+            }
+        }
+
+        /**
+         * Double suffixes to single ones, e.g. -ization to -ize
+         */
+        private void step2() {
+            if (k == 0) {
+                return;
+            }
+            switch (b[k - 1]) {
+                case 'a':
+                    if (endsWith("ational")) { replaceIfMeasured("ate"); break; }
+                    if (endsWith("tional")) { replaceIfMeasured("tion"); break; }
+                    break;
+                case 'c':
+                    if (endsWith("enci")) { replaceIfMeasured("ence"); break; }
+                    if (endsWith("anci")) { replaceIfMeasured("ance"); break; }
+                    break;
+                case 'e':
+                    if (endsWith("izer")) { replaceIfMeasured("ize"); break; }
+                    break;
+                case 'l':
+                    if (endsWith("bli")) { replaceIfMeasured("ble"); break; }
+                    if (endsWith("alli")) { replaceIfMeasured("al"); break; }
+                    if (endsWith("entli")) { replaceIfMeasured("ent"); break; }
+                    if (endsWith("eli")) { replaceIfMeasured("e"); break; }
+                    if (endsWith("ousli")) { replaceIfMeasured("ous"); break; }
+                    break;
+                case 'o':
+                    if (endsWith("ization")) { replaceIfMeasured("ize"); break; }
+                    if (endsWith("ation")) { replaceIfMeasured("ate"); break; }
+                    if (endsWith("ator")) { replaceIfMeasured("ate"); break; }
+                    break;
+                case 's':
+                    if (endsWith("alism")) { replaceIfMeasured("al"); break; }
+                    if (endsWith("iveness")) { replaceIfMeasured("ive"); break; }
+                    if (endsWith("fulness")) { replaceIfMeasured("ful"); break; }
+                    if (endsWith("ousness")) { replaceIfMeasured("ous"); break; }
+                    break;
+                case 't':
+                    if (endsWith("aliti")) { replaceIfMeasured("al"); break; }
+                    if (endsWith("iviti")) { replaceIfMeasured("ive"); break; }
+                    if (endsWith("biliti")) { replaceIfMeasured("ble"); break; }
+                    break;
+                case 'g':
+                    if (endsWith("logi")) { replaceIfMeasured("log"); break; }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * -ic-, -full, -ness and similar, e.g. electrical to electric
+         */
+        private void step3() {
+            switch (b[k]) {
+                case 'e':
+                    if (endsWith("icate")) { replaceIfMeasured("ic"); break; }
+                    if (endsWith("ative")) { replaceIfMeasured(""); break; }
+                    if (endsWith("alize")) { replaceIfMeasured("al"); break; }
+                    break;
+                case 'i':
+                    if (endsWith("iciti")) { replaceIfMeasured("ic"); break; }
+                    break;
+                case 'l':
+                    if (endsWith("ical")) { replaceIfMeasured("ic"); break; }
+                    if (endsWith("ful")) { replaceIfMeasured(""); break; }
+                    break;
+                case 's':
+                    if (endsWith("ness")) { replaceIfMeasured(""); break; }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * -ant, -ence and similar in context &lt;c&gt;vcvc&lt;v&gt;
+         */
+        private void step4() {
+            if (k == 0) {
+                return;
+            }
+            switch (b[k - 1]) {
+                case 'a':
+                    if (endsWith("al")) break;
+                    return;
+                case 'c':
+                    if (endsWith("ance")) break;
+                    if (endsWith("ence")) break;
+                    return;
+                case 'e':
+                    if (endsWith("er")) break;
+                    return;
+                case 'i':
+                    if (endsWith("ic")) break;
+                    return;
+                case 'l':
+                    if (endsWith("able")) break;
+                    if (endsWith("ible")) break;
+                    return;
+                case 'n':
+                    if (endsWith("ant")) break;
+                    if (endsWith("ement")) break;
+                    if (endsWith("ment")) break;
+                    if (endsWith("ent")) break;
+                    return;
+                case 'o':
+                    if (endsWith("ion") && j >= 0 && (b[j] == 's' || b[j] == 't')) break;
+                    if (endsWith("ou")) break;
+                    return;
+                case 's':
+                    if (endsWith("ism")) break;
+                    return;
+                case 't':
+                    if (endsWith("ate")) break;
+                    if (endsWith("iti")) break;
+                    return;
+                case 'u':
+                    if (endsWith("ous")) break;
+                    return;
+                case 'v':
+                    if (endsWith("ive")) break;
+                    return;
+                case 'z':
+                    if (endsWith("ize")) break;
+                    return;
+                default:
+                    return;
+            }
+            if (measure() > 1) {
+                k = j;
+            }
+        }
+
+        /**
+         * Final -e and a double l, e.g. probate to probat, controll to control
+         */
+        private void step5() {
+            j = k;
+            if (b[k] == 'e') {
+                int m = measure();
+                if (m > 1 || m == 1 && !cvc(k - 1)) {
+                    k--;
+                }
+            }
+            if (b[k] == 'l' && doubleConsonant(k) && measure() > 1) {
+                k--;
+            }
+        }
+    }
+}
@@ -0,0 +1,862 @@
+package dao;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import model.Page;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+/**
+ * Full-text index over a few text properties of one entity, kept in this
+ * process and on local disk.
+ *
+ * Each property is split into terms by {@link TextAnalyzer} and every term
+ * points at the rows that contain it, so a search looks up its terms instead
+ * of scanning the table with LIKE '%text%'. A row must contain every term of
+ * the search to match, and matches are ranked by BM25 with a per-property
+ * boost, so a hit in the title counts for more than one in the description.
+ *
+ * The DAO write paths pass each changed row in once its transaction commits.
+ * Changes collect in memory and are written every
+ * hibernate.search.flush_interval milliseconds as a small immutable segment
+ * file under hibernate.search.index_dir; searches read the segments through
+ * memory maps. When there are more than {@link #MAX_SEGMENTS} segments they
+ * are merged into one. Rows changed by other servers or by hand are only
+ * picked up by {@link #rebuild}, which re-reads the whole table and also runs
+ * on the first search when the index does not hold as many rows as the table.
+ * Rows a search finds in the index but cannot load are dropped by the same
+ * thread that writes the segments, once the primary database confirms they
+ * are gone.
+ */
+final class TextIndex<T> {
+
+    private static final Logger logger = Logger.getLogger(TextIndex.class.getName());
+
+    private static final String DIRECTORY = HibernateUtil.getSetting("hibernate.search.index_dir", "search-index");
+    private static final long FLUSH_INTERVAL = HibernateUtil.getSetting("hibernate.search.flush_interval", 5000);
+    private static final int MAX_SEGMENTS = 8;
+    private static final int IN_LIST_SIZE = 1000;
+
+    // BM25 term frequency saturation and length normalisation
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final class Field<T> {
+        final String property;
+        final Function<T, String> getter;
+        final float boost;
+
+        Field(String property, Function<T, String> getter, float boost) {
+            this.property = property;
+            this.getter = getter;
+            this.boost = boost;
+        }
+    }
+
+    /**
+     * The analysed text of one row: boosted count per term, and the boosted
+     * number of terms as its length
+     */
+    private static final class Doc {
+        final Map<String, Float> frequencies = new HashMap<>();
+        float length;
+
+        void add(String term, float weight) {
+            frequencies.merge(term, weight, Float::sum);
+            length += weight;
+        }
+    }
+
+    /**
+     * Where the current version of a row is; segment is null while it is only in memory
+     */
+    private static final class Live {
+        final Segment segment;
+        final float length;
+
+        Live(Segment segment, float length) {
+            this.segment = segment;
+            this.length = length;
+        }
+    }
+
+    private final String entityName;
+    private final String alias;
+    private final ToIntFunction<T> id;
+    private final List<Field<T>> fields = new ArrayList<>();
+    private final Path directory;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<Integer, Doc> buffer = new HashMap<>();
+    private final Set<Integer> tombstones = new HashSet<>();
+    private final Map<Integer, Live> live = new HashMap<>();
+    private double totalLength;
+    private long nextGeneration;
+    private boolean opened;
+    private List<Object[]> pending;
+    private volatile boolean checked;
+    private final Set<Integer> missing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param entityClass Entity to index
+     * @param alias HQL alias used to read the indexed properties
+     * @param id Gets an entity's id
+     */
+    TextIndex(Class<T> entityClass, String alias, ToIntFunction<T> id) {
+        this.entityName = entityClass.getSimpleName();
+        this.alias = alias;
+        this.id = id;
+        this.directory = Paths.get(DIRECTORY, entityName.toLowerCase(Locale.ROOT));
+
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "text-index-" + entityName.toLowerCase(Locale.ROOT));
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(100, FLUSH_INTERVAL);
+        flusher.scheduleWithFixedDelay(() -> {
+            pruneQuietly();
+            flushQuietly();
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushQuietly));
+    }
+
+    /**
+     * Adds an indexed property
+     *
+     * @param property Entity property name
+     * @param getter Reads the property from an entity
+     * @param boost Weight of a term found in this property
+     */
+    TextIndex<T> field(String property, Function<T, String> getter, float boost) {
+        fields.add(new Field<>(property, getter, boost));
+        return this;
+    }
+
+    /**
+     * Indexes an entity as it is now once the session's transaction commits;
+     * nothing happens if it rolls back
+     */
+    void afterCommit(Session session, T entity) {
+        String[] values = new String[fields.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = fields.get(i).getter.apply(entity);
+        }
+        int entityId = id.applyAsInt(entity);
+        Doc doc = analyse(values);
+        onCommit(session, () -> put(entityId, doc));
+    }
+
+    /**
+     * Removes a row from the index once the session's transaction commits
+     */
+    void afterDelete(Session session, int entityId) {
+        onCommit(session, () -> remove(entityId));
+    }
+
+    private static void onCommit(Session session, Runnable change) {
+        session.getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    change.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads one page of the rows matching a search, best match first
+     *
+     * @param session Session to load the matching entities with
+     * @param text Search text; every term in it must be present
+     * @param cursor Cursor from the previous page, or null for the first page
+     * @param pageSize Rows per page; non-positive means the default, and it is capped at {@link Keyset#MAX_PAGE_SIZE}
+     */
+    Page<T> page(Session session, String text, String cursor, int pageSize) {
+        int size = pageSize <= 0 ? Keyset.DEFAULT_PAGE_SIZE : Math.min(pageSize, Keyset.MAX_PAGE_SIZE);
+        int offset = 0;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                offset = Integer.parseInt(cursor);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor, ex);
+            }
+            if (offset < 0) {
+                throw new IllegalArgumentException("Invalid page cursor: " + cursor);
+            }
+        }
+
+        List<Integer> ranked = search(text);
+        if (offset >= ranked.size()) {
+            return new Page<>(new ArrayList<>(), null);
+        }
+        int end = Math.min(ranked.size(), offset + size);
+        List<T> items = load(session, ranked.subList(offset, end));
+        return new Page<>(items, end < ranked.size() ? String.valueOf(end) : null);
+    }
+
+    /**
+     * Reads every row matching a search, best match first
+     */
+    List<T> list(Session session, String text) {
+        return load(session, search(text));
+    }
+
+    /**
+     * Gets the ids of the rows matching a search, best match first
+     */
+    List<Integer> search(String text) {
+        if (!checked) {
+            check();
+        }
+        Set<String> terms = new LinkedHashSet<>(TextAnalyzer.terms(text));
+
+        lock.readLock().lock();
+        try {
+            if (terms.isEmpty() || live.isEmpty()) {
+                return new ArrayList<>();
+            }
+            List<Map<Integer, Float>> postings = new ArrayList<>();
+            for (String term : terms) {
+                Map<Integer, Float> matches = postings(term);
+                if (matches.isEmpty()) {
+                    return new ArrayList<>();
+                }
+                postings.add(matches);
+            }
+            // Intersect starting from the rarest term
+            postings.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+            int rows = live.size();
+            double averageLength = Math.max(totalLength / rows, 1e-6);
+            Map<Integer, Double> scores = new HashMap<>();
+            for (Integer candidate : postings.get(0).keySet()) {
+                scores.put(candidate, 0.0);
+            }
+            for (Map<Integer, Float> matches : postings) {
+                double idf = Math.log(1 + (rows - matches.size() + 0.5) / (matches.size() + 0.5));
+                scores.entrySet().removeIf(entry -> {
+                    Float frequency = matches.get(entry.getKey());
+                    if (frequency == null) {
+                        return true;
+                    }
+                    double length = live.get(entry.getKey()).length;
+                    double norm = K1 * (1 - B + B * length / averageLength);
+                    entry.setValue(entry.getValue() + idf * frequency * (K1 + 1) / (frequency + norm));
+                    return false;
+                });
+            }
+
+            List<Map.Entry<Integer, Double>> ordered = new ArrayList<>(scores.entrySet());
+            ordered.sort((a, b) -> {
+                int byScore = Double.compare(b.getValue(), a.getValue());
+                return byScore != 0 ? byScore : Integer.compare(b.getKey(), a.getKey());
+            });
+            List<Integer> ids = new ArrayList<>(ordered.size());
+            for (Map.Entry<Integer, Double> entry : ordered) {
+                ids.add(entry.getKey());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Collects the current rows holding a term, from the segments and from memory
+     */
+    private Map<Integer, Float> postings(String term) {
+        Map<Integer, Float> matches = new HashMap<>();
+        for (Segment segment : segments) {
+            segment.postings(term, (docId, frequency) -> {
+                Live current = live.get(docId);
+                if (current != null && current.segment == segment) {
+                    matches.put(docId, frequency);
+                }
+            });
+        }
+        for (Map.Entry<Integer, Doc> entry : buffer.entrySet()) {
+            Float frequency = entry.getValue().frequencies.get(term);
+            if (frequency != null) {
+                matches.put(entry.getKey(), frequency);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Loads entities by id in the given order, skipping ids the session cannot
+     * see. The row may be gone, e.g. deleted by a cascade, or only be newer than
+     * the session's snapshot or its replica, so the id is left for {@link #prune}.
+     */
+    @SuppressWarnings("unchecked")
+    private List<T> load(Session session, List<Integer> ids) {
+        Map<Integer, T> byId = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += IN_LIST_SIZE) {
+            List<Integer> slice = ids.subList(from, Math.min(ids.size(), from + IN_LIST_SIZE));
+            List<T> rows = session.createQuery("FROM " + entityName + " " + alias + " WHERE " + alias + ".id IN (:ids)")
+                    .setParameterList("ids", slice)
+                    .list();
+            for (T row : rows) {
+                byId.put(id.applyAsInt(row), row);
+            }
+        }
+        List<T> ordered = new ArrayList<>(ids.size());
+        for (Integer entityId : ids) {
+            T row = byId.get(entityId);
+            if (row != null) {
+                ordered.add(row);
+            } else {
+                missing.add(entityId);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Replaces the index with the rows now in the database
+     *
+     * @return Number of rows indexed
+     */
+    synchronized int rebuild() {
+        lock.writeLock().lock();
+        try {
+            open();
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Integer, Doc> docs = new HashMap<>();
+        try {
+            StringBuilder hql = new StringBuilder("SELECT ").append(alias).append(".id");
+            for (Field<T> field : fields) {
+                hql.append(", ").append(alias).append('.').append(field.property);
+            }
+            hql.append(" FROM ").append(entityName).append(' ').append(alias);
+            SessionTemplate.inPrimarySession("TextIndex.rebuild", session -> {
+                ScrollableResults rows = session.createQuery(hql.toString())
+                        .setReadOnly(true)
+                        .setFetchSize(1000)
+                        .scroll(ScrollMode.FORWARD_ONLY);
+                try {
+                    while (rows.next()) {
+                        Object[] row = rows.get();
+                        String[] values = new String[fields.size()];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = (String) row[i + 1];
+                        }
+                        docs.put((Integer) row[0], analyse(values));
+                    }
+                } finally {
+                    rows.close();
+                }
+                return null;
+            });
+        } catch (RuntimeException ex) {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw ex;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Segment base = Segment.write(segmentFile(nextGeneration++), true, docs, Collections.<Integer>emptySet());
+            replaceAll(base, docs);
+            // Replay what committed while the table was being read
+            List<Object[]> changes = pending;
+            pending = null;
+            for (Object[] change : changes) {
+                if (change[1] != null) {
+                    put((Integer) change[0], (Doc) change[1]);
+                } else {
+                    remove((Integer) change[0]);
+                }
+            }
+            checked = true;
+            logger.info("Rebuilt the " + entityName + " text index with " + docs.size() + " rows");
+            return docs.size();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not write the " + entityName + " text index", ex);
+        } finally {
+            pending = null;
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index on first use if it does not hold as many rows as the
+     * table, e.g. when it is new or changes were lost in a crash
+     */
+    private synchronized void check() {
+        if (checked) {
+            return;
+        }
+        int indexed;
+        lock.writeLock().lock();
+        try {
+            open();
+            indexed = live.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Number rows = SessionTemplate.inPrimarySession("TextIndex.check",
+                session -> (Number) session.createQuery("SELECT COUNT(*) FROM " + entityName + " " + alias).uniqueResult());
+        if (rows.intValue() != indexed) {
+            logger.info("The " + entityName + " text index holds " + indexed + " of " + rows + " rows, rebuilding it");
+            rebuild();
+        }
+        checked = true;
+    }
+
+    private Doc analyse(String[] values) {
+        Doc doc = new Doc();
+        for (int i = 0; i < values.length; i++) {
+            float boost = fields.get(i).boost;
+            for (String term : TextAnalyzer.terms(values[i])) {
+                doc.add(term, boost);
+            }
+        }
+        return doc;
+    }
+
+    private void put(int entityId, Doc doc) {
+        lock.writeLock().lock();
+        try {
+            open();
+            if (pending != null) {
+                pending.add(new Object[] {entityId, doc});
+            }
+            forget(entityId);
+            buffer.put(entityId, doc);
+            live.put(entityId, new Live(null, doc.length));
+            totalLength += doc.length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(int entityId) {
+        lock.writeLock().lock();
+        try {
+            open();
+            if (pending != null) {
+                pending.add(new Object[] {entityId, null});
+            }
+            forget(entityId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void forget(int entityId) {
+        Live previous = live.remove(entityId);
+        if (previous != null) {
+            totalLength -= previous.length;
+            if (previous.segment != null) {
+                tombstones.add(entityId);
+            }
+        }
+        buffer.remove(entityId);
+    }
+
+    /**
+     * Writes the changes held in memory as a new segment, then merges the
+     * segments if there are too many
+     */
+    void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!opened || buffer.isEmpty() && tombstones.isEmpty()) {
+                return;
+            }
+            Segment segment = Segment.write(segmentFile(nextGeneration++), false, buffer, tombstones);
+            segments.add(segment);
+            for (Map.Entry<Integer, Doc> entry : buffer.entrySet()) {
+                live.put(entry.getKey(), new Live(segment, entry.getValue().length));
+            }
+            buffer.clear();
+            tombstones.clear();
+
+            if (segments.size() > MAX_SEGMENTS) {
+                Map<Integer, Doc> docs = new HashMap<>();
+                for (Segment old : segments) {
+                    old.forEachPosting((term, docId, frequency) -> {
+                        Live current = live.get(docId);
+                        if (current != null && current.segment == old) {
+                            docs.computeIfAbsent(docId, key -> new Doc()).frequencies.put(term, frequency);
+                        }
+                    });
+                }
+                for (Map.Entry<Integer, Doc> entry : docs.entrySet()) {
+                    entry.getValue().length = live.get(entry.getKey()).length;
+                }
+                replaceAll(Segment.write(segmentFile(nextGeneration++), true, docs, Collections.<Integer>emptySet()), docs);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the rows searches could not load whose row is not in the primary
+     * database either; the others are kept
+     */
+    @SuppressWarnings("unchecked")
+    private void prune() {
+        if (missing.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(missing);
+        missing.removeAll(ids);
+        Set<Integer> gone = new HashSet<>(ids);
+        // This thread is in no unit of work, so each check is a new session on the primary
+        for (int from = 0; from < ids.size(); from += IN_LIST_SIZE) {
+            List<Integer> slice = ids.subList(from, Math.min(ids.size(), from + IN_LIST_SIZE));
+            List<Integer> found = SessionTemplate.inPrimarySession("TextIndex.prune", session -> session
+                    .createQuery("SELECT " + alias + ".id FROM " + entityName + " " + alias + " WHERE " + alias + ".id IN (:ids)")
+                    .setParameterList("ids", slice)
+                    .list());
+            gone.removeAll(found);
+        }
+        for (Integer entityId : gone) {
+            remove(entityId);
+        }
+    }
+
+    private void pruneQuietly() {
+        try {
+            prune();
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Could not prune the " + entityName + " text index", ex);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Could not write the " + entityName + " text index", ex);
+        }
+    }
+
+    /**
+     * Makes a newly written base segment the whole index and deletes the older files
+     */
+    private void replaceAll(Segment base, Map<Integer, Doc> docs) {
+        for (Segment old : segments) {
+            old.delete();
+        }
+        segments.clear();
+        segments.add(base);
+        buffer.clear();
+        tombstones.clear();
+        live.clear();
+        totalLength = 0;
+        for (Map.Entry<Integer, Doc> entry : docs.entrySet()) {
+            live.put(entry.getKey(), new Live(base, entry.getValue().length));
+            totalLength += entry.getValue().length;
+        }
+    }
+
+    /**
+     * Maps the segment files on first use. Must hold the write lock.
+     */
+    private void open() {
+        if (opened) {
+            return;
+        }
+        opened = true;
+        try {
+            Files.createDirectories(directory);
+            TreeMap<Long, Path> files = new TreeMap<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path file : entries) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".tmp")) {
+                        Files.deleteIfExists(file);
+                    } else if (name.startsWith("segment-") && name.endsWith(".idx")) {
+                        files.put(Long.parseLong(name.substring(8, name.length() - 4)), file);
+                    }
+                }
+            }
+            for (Map.Entry<Long, Path> file : files.entrySet()) {
+                Segment segment = Segment.open(file.getValue());
+                if (segment.base) {
+                    // Left over from a merge or rebuild that did not get to delete the files it replaced
+                    for (Segment old : segments) {
+                        old.delete();
+                    }
+                    segments.clear();
+                    live.clear();
+                    totalLength = 0;
+                }
+                segment.forEachTombstone(entityId -> {
+                    Live previous = live.remove(entityId);
+                    if (previous != null) {
+                        totalLength -= previous.length;
+                    }
+                });
+                segment.forEachDoc((entityId, length) -> {
+                    Live previous = live.put(entityId, new Live(segment, length));
+                    totalLength += length - (previous != null ? previous.length : 0);
+                });
+                segments.add(segment);
+                nextGeneration = file.getKey() + 1;
+            }
+        } catch (IOException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Could not read the " + entityName + " text index in " + directory + ", starting empty", ex);
+            for (Segment old : segments) {
+                old.delete();
+            }
+            segments.clear();
+            live.clear();
+            totalLength = 0;
+            nextGeneration = System.currentTimeMillis();
+        }
+    }
+
+    private Path segmentFile(long generation) {
+        return directory.resolve(String.format("segment-%019d.idx", generation));
+    }
+
+    private interface DocConsumer {
+        void accept(int docId, float value);
+    }
+
+    private interface PostingConsumer {
+        void accept(String term, int docId, float frequency);
+    }
+
+    private interface IdConsumer {
+        void accept(int docId);
+    }
+
+    /**
+     * One immutable index file, read through a memory map.
+     *
+     * Layout, all numbers big-endian: a header of magic, version, base flag,
+     * doc count, tombstone count and term count; the docs as (id, length)
+     * sorted by id; the tombstoned ids, which hide older versions in earlier
+     * segments; the term dictionary sorted by term as (term offset, postings
+     * offset, postings count); the terms as length-prefixed UTF-8; and the
+     * postings as (doc index, frequency). A base segment replaces every
+     * earlier one.
+     */
+    private static final class Segment {
+        private static final int MAGIC = 0x4c545849;
+        private static final int VERSION = 1;
+        private static final int HEADER_SIZE = 24;
+
+        final Path file;
+        final boolean base;
+        private final ByteBuffer data;
+        private final int docCount;
+        private final int tombstoneCount;
+        private final int termCount;
+
+        private Segment(Path file, ByteBuffer data) throws IOException {
+            this.file = file;
+            this.data = data;
+            if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+                throw new IOException("Not a text index segment: " + file);
+            }
+            this.base = data.getInt(8) != 0;
+            this.docCount = data.getInt(12);
+            this.tombstoneCount = data.getInt(16);
+            this.termCount = data.getInt(20);
+        }
+
+        static Segment open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return new Segment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        /**
+         * Writes a segment to a temporary file, moves it into place and maps it
+         */
+        static Segment write(Path file, boolean base, Map<Integer, Doc> docs, Collection<Integer> tombstones) throws IOException {
+            List<Integer> ids = new ArrayList<>(docs.keySet());
+            Collections.sort(ids);
+            TreeMap<String, List<long[]>> terms = new TreeMap<>();
+            for (int index = 0; index < ids.size(); index++) {
+                for (Map.Entry<String, Float> entry : docs.get(ids.get(index)).frequencies.entrySet()) {
+                    terms.computeIfAbsent(entry.getKey(), key -> new ArrayList<>())
+                            .add(new long[] {index, Float.floatToIntBits(entry.getValue())});
+                }
+            }
+            List<byte[]> names = new ArrayList<>(terms.size());
+            int namesSize = 0;
+            for (String term : terms.keySet()) {
+                byte[] name = term.getBytes(StandardCharsets.UTF_8);
+                names.add(name);
+                namesSize += 2 + name.length;
+            }
+
+            int dictionaryAt = HEADER_SIZE + ids.size() * 8 + tombstones.size() * 4;
+            int namesAt = dictionaryAt + terms.size() * 12;
+            int postingsAt = namesAt + namesSize;
+
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(base ? 1 : 0);
+                out.writeInt(ids.size());
+                out.writeInt(tombstones.size());
+                out.writeInt(terms.size());
+                for (Integer entityId : ids) {
+                    out.writeInt(entityId);
+                    out.writeFloat(docs.get(entityId).length);
+                }
+                for (Integer entityId : tombstones) {
+                    out.writeInt(entityId);
+                }
+                int nameOffset = namesAt;
+                int postingOffset = postingsAt;
+                int i = 0;
+                for (List<long[]> postings : terms.values()) {
+                    out.writeInt(nameOffset);
+                    out.writeInt(postingOffset);
+                    out.writeInt(postings.size());
+                    nameOffset += 2 + names.get(i++).length;
+                    postingOffset += postings.size() * 8;
+                }
+                for (byte[] name : names) {
+                    out.writeShort(name.length);
+                    out.write(name);
+                }
+                for (List<long[]> postings : terms.values()) {
+                    for (long[] posting : postings) {
+                        out.writeInt((int) posting[0]);
+                        out.writeInt((int) posting[1]);
+                    }
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return open(file);
+        }
+
+        void forEachDoc(DocConsumer consumer) {
+            for (int i = 0; i < docCount; i++) {
+                consumer.accept(docId(i), data.getFloat(HEADER_SIZE + i * 8 + 4));
+            }
+        }
+
+        void forEachTombstone(IdConsumer consumer) {
+            int at = HEADER_SIZE + docCount * 8;
+            for (int i = 0; i < tombstoneCount; i++) {
+                consumer.accept(data.getInt(at + i * 4));
+            }
+        }
+
+        /**
+         * Calls back with each (doc id, frequency) posted under a term; binary
+         * search over the sorted dictionary
+         */
+        void postings(String term, DocConsumer consumer) {
+            int low = 0;
+            int high = termCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = term(middle).compareTo(term);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    readPostings(middle, consumer);
+                    return;
+                }
+            }
+        }
+
+        void forEachPosting(PostingConsumer consumer) {
+            for (int t = 0; t < termCount; t++) {
+                String term = term(t);
+                readPostings(t, (docId, frequency) -> consumer.accept(term, docId, frequency));
+            }
+        }
+
+        private void readPostings(int termIndex, DocConsumer consumer) {
+            int entry = dictionaryAt() + termIndex * 12;
+            int at = data.getInt(entry + 4);
+            int count = data.getInt(entry + 8);
+            for (int i = 0; i < count; i++) {
+                consumer.accept(docId(data.getInt(at + i * 8)), data.getFloat(at + i * 8 + 4));
+            }
+        }
+
+        private String term(int termIndex) {
+            int at = data.getInt(dictionaryAt() + termIndex * 12);
+            byte[] name = new byte[data.getShort(at)];
+            for (int i = 0; i < name.length; i++) {
+                name[i] = data.get(at + 2 + i);
+            }
+            return new String(name, StandardCharsets.UTF_8);
+        }
+
+        private int docId(int index) {
+            return data.getInt(HEADER_SIZE + index * 8);
+        }
+
+        private int dictionaryAt() {
+            return HEADER_SIZE + docCount * 8 + tombstoneCount * 4;
+        }
+
+        void delete() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                // Still mapped on some platforms; a later base segment supersedes it anyway
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+}
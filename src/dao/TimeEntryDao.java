@@ -2,299 +2,440 @@ package dao;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import model.BatchInsertResult;
+import model.Page;
 import model.TimeEntry;
 import org.hibernate.Query;
 import org.hibernate.Session;
-import org.hibernate.Transaction;
 
 /**
  * Data Access Object for TimeEntry operations using Hibernate
  */
 public class TimeEntryDao {
-    
+
+    private static final SequenceAllocator TIME_ENTRY_IDS = new SequenceAllocator("TE",
+            "SELECT MAX(CAST(SUBSTRING(t.entryId, 3) AS integer)) FROM TimeEntry t WHERE t.entryId LIKE 'TE%'");
+
+    private static final Keyset<TimeEntry> NEWEST_FIRST = new Keyset<>(TimeEntry.class, "t")
+            .desc("entryDate", TimeEntry::getEntryDate, LocalDate::parse)
+            .desc("id", TimeEntry::getId, Integer::valueOf);
+
+    private static final Keyset<TimeEntry> OLDEST_FIRST = new Keyset<>(TimeEntry.class, "t")
+            .asc("entryDate", TimeEntry::getEntryDate, LocalDate::parse)
+            .asc("id", TimeEntry::getId, Integer::valueOf);
+
     /**
      * Creates a new time entry in the database
      */
     public TimeEntry createTimeEntry(TimeEntry timeEntry) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.save(timeEntry);
-            
-            transaction.commit();
-            session.close();
-            return timeEntry;
+            return SessionTemplate.inTransaction("TimeEntryDao.createTimeEntry", session -> {
+                session.save(timeEntry);
+                return timeEntry;
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Creates many time entries in one transaction using batched inserts.
+     * Entries that fail validation are skipped and reported; the rest are saved.
+     */
+    public BatchInsertResult createTimeEntries(List<TimeEntry> timeEntries) {
+        try {
+            return SessionTemplate.inTransaction("TimeEntryDao.createTimeEntries", session -> {
+                Map<Integer, String> failures = validateNewTimeEntries(session, timeEntries);
+
+                List<TimeEntry> valid = new ArrayList<>();
+                for (int i = 0; i < timeEntries.size(); i++) {
+                    if (!failures.containsKey(i)) {
+                        valid.add(timeEntries.get(i));
+                    }
+                }
+                Iterator<Integer> generated = valid.isEmpty()
+                        ? Collections.<Integer>emptyIterator()
+                        : BatchInsert.insert(session, TimeEntry.class, valid).iterator();
+
+                List<Integer> ids = new ArrayList<>(timeEntries.size());
+                for (int i = 0; i < timeEntries.size(); i++) {
+                    ids.add(failures.containsKey(i) ? null : generated.next());
+                }
+                return new BatchInsertResult(ids, failures);
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
+    /**
+     * Checks a list of new time entries with one query per kind of reference,
+     * returning the reason for each rejected entry keyed by its index
+     */
+    private Map<Integer, String> validateNewTimeEntries(Session session, List<TimeEntry> timeEntries) {
+        Set<Integer> caseIds = new HashSet<>();
+        Set<Integer> attorneyIds = new HashSet<>();
+        Set<String> entryIds = new HashSet<>();
+        for (TimeEntry entry : timeEntries) {
+            if (entry == null) {
+                continue;
+            }
+            if (entry.getCase() != null) {
+                caseIds.add(entry.getCase().getId());
+            }
+            if (entry.getAttorney() != null) {
+                attorneyIds.add(entry.getAttorney().getId());
+            }
+            if (entry.getEntryId() != null) {
+                entryIds.add(entry.getEntryId());
+            }
+        }
+        Set<Integer> knownCases = findExisting(session, "SELECT c.id FROM Case c WHERE c.id IN (:keys)", caseIds);
+        Set<Integer> knownAttorneys = findExisting(session, "SELECT a.id FROM Attorney a WHERE a.id IN (:keys)", attorneyIds);
+        Set<String> takenEntryIds = findExisting(session, "SELECT t.entryId FROM TimeEntry t WHERE t.entryId IN (:keys)", entryIds);
+
+        Map<Integer, String> failures = new TreeMap<>();
+        Set<String> seenEntryIds = new HashSet<>();
+        for (int i = 0; i < timeEntries.size(); i++) {
+            TimeEntry entry = timeEntries.get(i);
+            String failure = null;
+            if (entry == null) {
+                failure = "Time entry is missing";
+            } else if (entry.getEntryId() == null || entry.getEntryId().trim().isEmpty()) {
+                failure = "Entry ID is required";
+            } else if (takenEntryIds.contains(entry.getEntryId())) {
+                failure = "Entry ID " + entry.getEntryId() + " already exists";
+            } else if (!seenEntryIds.add(entry.getEntryId())) {
+                failure = "Entry ID " + entry.getEntryId() + " appears more than once";
+            } else if (entry.getCase() == null || !knownCases.contains(entry.getCase().getId())) {
+                failure = "Case not found";
+            } else if (entry.getAttorney() == null || !knownAttorneys.contains(entry.getAttorney().getId())) {
+                failure = "Attorney not found";
+            } else if (entry.getEntryDate() == null) {
+                failure = "Entry date is required";
+            } else if (entry.getHours() <= 0 || entry.getHours() > 24) {
+                failure = "Hours must be more than 0 and at most 24";
+            }
+            if (failure != null) {
+                failures.put(i, failure);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Runs an "IN (:keys)" query in slices and returns the keys that exist
+     */
+    @SuppressWarnings("unchecked")
+    private static <K> Set<K> findExisting(Session session, String hql, Set<K> keys) {
+        Set<K> found = new HashSet<>();
+        List<K> remaining = new ArrayList<>(keys);
+        for (int from = 0; from < remaining.size(); from += 1000) {
+            Query query = session.createQuery(hql);
+            query.setParameterList("keys", remaining.subList(from, Math.min(from + 1000, remaining.size())));
+            found.addAll(query.list());
+        }
+        return found;
+    }
+
     /**
      * Updates an existing time entry in the database
      */
     public TimeEntry updateTimeEntry(TimeEntry timeEntry) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.update(timeEntry);
-            
-            transaction.commit();
-            session.close();
-            return timeEntry;
+            return SessionTemplate.inTransaction("TimeEntryDao.updateTimeEntry", session -> {
+                session.update(timeEntry);
+                return timeEntry;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Deletes a time entry from the database
      */
     public TimeEntry deleteTimeEntry(TimeEntry timeEntry) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            // Check if time entry is billed
-            if (timeEntry.isBilled()) {
-                // Cannot delete billed time entry
-                transaction.rollback();
-                session.close();
-                return null;
-            }
-            
-            session.delete(timeEntry);
-            
-            transaction.commit();
-            session.close();
-            return timeEntry;
+            return SessionTemplate.inTransaction("TimeEntryDao.deleteTimeEntry", session -> {
+                // Check if time entry is billed
+                if (timeEntry.isBilled()) {
+                    // Cannot delete billed time entry
+                    return null;
+                }
+
+                session.delete(timeEntry);
+                return timeEntry;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Marks a time entry as billed
      */
     public TimeEntry markTimeEntryAsBilled(TimeEntry timeEntry, int invoiceId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            timeEntry.setBilled(true);
-            // Note: You would need to set the invoice object here if you have it
-            session.update(timeEntry);
-            
-            transaction.commit();
-            session.close();
-            return timeEntry;
+            return SessionTemplate.inTransaction("TimeEntryDao.markTimeEntryAsBilled", session -> {
+                timeEntry.setBilled(true);
+                // Note: You would need to set the invoice object here if you have it
+                session.update(timeEntry);
+                return timeEntry;
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds a time entry by ID
      */
     public TimeEntry findTimeEntryById(TimeEntry timeEntry) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            TimeEntry foundTimeEntry = (TimeEntry) session.get(TimeEntry.class, timeEntry.getId());
-            session.close();
-            return foundTimeEntry;
+            return SessionTemplate.inSession("TimeEntryDao.findTimeEntryById",
+                    session -> (TimeEntry) session.get(TimeEntry.class, timeEntry.getId()));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds a time entry by entry ID
      */
     public TimeEntry findTimeEntryByEntryId(String entryId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM TimeEntry t WHERE t.entryId = :entryId");
-            query.setParameter("entryId", entryId);
-            TimeEntry timeEntry = (TimeEntry) query.uniqueResult();
-            session.close();
-            return timeEntry;
+            return SessionTemplate.inSession("TimeEntryDao.findTimeEntryByEntryId",
+                    session -> (TimeEntry) session.bySimpleNaturalId(TimeEntry.class).load(entryId));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds time entries by case ID
      */
     @SuppressWarnings("unchecked")
     public List<TimeEntry> findTimeEntriesByCase(int caseId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM TimeEntry t WHERE t.associatedCase.id = :caseId ORDER BY t.entryDate DESC");
-            query.setParameter("caseId", caseId);
-            List<TimeEntry> timeEntries = query.list();
-            session.close();
-            return timeEntries;
+            return SessionTemplate.inSession("TimeEntryDao.findTimeEntriesByCase", session -> {
+                Query query = session.createQuery("FROM TimeEntry t WHERE t.associatedCase.id = :caseId ORDER BY t.entryDate DESC");
+                query.setParameter("caseId", caseId);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds time entries by attorney ID
      */
     @SuppressWarnings("unchecked")
     public List<TimeEntry> findTimeEntriesByAttorney(int attorneyId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM TimeEntry t WHERE t.attorney.id = :attorneyId ORDER BY t.entryDate DESC");
-            query.setParameter("attorneyId", attorneyId);
-            List<TimeEntry> timeEntries = query.list();
-            session.close();
-            return timeEntries;
+            return SessionTemplate.inSession("TimeEntryDao.findTimeEntriesByAttorney", session -> {
+                Query query = session.createQuery("FROM TimeEntry t WHERE t.attorney.id = :attorneyId ORDER BY t.entryDate DESC");
+                query.setParameter("attorneyId", attorneyId);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds time entries by date range
      */
     @SuppressWarnings("unchecked")
     public List<TimeEntry> findTimeEntriesByDateRange(LocalDate startDate, LocalDate endDate) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM TimeEntry t WHERE t.entryDate BETWEEN :startDate AND :endDate ORDER BY t.entryDate");
-            query.setParameter("startDate", startDate);
-            query.setParameter("endDate", endDate);
-            List<TimeEntry> timeEntries = query.list();
-            session.close();
-            return timeEntries;
+            return SessionTemplate.inSession("TimeEntryDao.findTimeEntriesByDateRange", session -> {
+                Query query = session.createQuery("FROM TimeEntry t WHERE t.entryDate BETWEEN :startDate AND :endDate ORDER BY t.entryDate");
+                query.setParameter("startDate", startDate);
+                query.setParameter("endDate", endDate);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds unbilled time entries for a case
      */
     @SuppressWarnings("unchecked")
     public List<TimeEntry> findUnbilledTimeEntriesByCase(int caseId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM TimeEntry t WHERE t.associatedCase.id = :caseId AND t.billed = false ORDER BY t.entryDate");
-            query.setParameter("caseId", caseId);
-            List<TimeEntry> timeEntries = query.list();
-            session.close();
-            return timeEntries;
+            return SessionTemplate.inSession("TimeEntryDao.findUnbilledTimeEntriesByCase", session -> {
+                Query query = session.createQuery("FROM TimeEntry t WHERE t.associatedCase.id = :caseId AND t.billed = false ORDER BY t.entryDate");
+                query.setParameter("caseId", caseId);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Finds time entries by invoice ID
      */
     @SuppressWarnings("unchecked")
     public List<TimeEntry> findTimeEntriesByInvoice(int invoiceId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM TimeEntry t WHERE t.invoice.id = :invoiceId ORDER BY t.entryDate");
-            query.setParameter("invoiceId", invoiceId);
-            List<TimeEntry> timeEntries = query.list();
-            session.close();
-            return timeEntries;
+            return SessionTemplate.inSession("TimeEntryDao.findTimeEntriesByInvoice", session -> {
+                Query query = session.createQuery("FROM TimeEntry t WHERE t.invoice.id = :invoiceId ORDER BY t.entryDate");
+                query.setParameter("invoiceId", invoiceId);
+                return query.list();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Gets all time entries
      */
     @SuppressWarnings("unchecked")
     public List<TimeEntry> findAllTimeEntries() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM TimeEntry t ORDER BY t.entryDate DESC");
-            List<TimeEntry> timeEntries = query.list();
-            session.close();
-            return timeEntries;
+            return SessionTemplate.inSession("TimeEntryDao.findAllTimeEntries",
+                    session -> session.createQuery("FROM TimeEntry t ORDER BY t.entryDate DESC").list());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets one page of all time entries, newest first
+     */
+    public Page<TimeEntry> findAllTimeEntriesPage(String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("TimeEntryDao.findAllTimeEntriesPage",
+                    session -> NEWEST_FIRST.page(session, cursor, pageSize));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Finds one page of time entries by date range, oldest first
+     */
+    public Page<TimeEntry> findTimeEntriesByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) {
+        try {
+            return SessionTemplate.inSession("TimeEntryDao.findTimeEntriesByDateRangePage", session -> OLDEST_FIRST.page(session,
+                    "t.entryDate BETWEEN :startDate AND :endDate",
+                    query -> {
+                        query.setParameter("startDate", startDate);
+                        query.setParameter("endDate", endDate);
+                    },
+                    cursor, pageSize));
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
+    /**
+     * Opens a streaming export of all time entries in id order; the caller must close it
+     */
+    public ExportReader<TimeEntry> openTimeEntryExport() {
+        try {
+            return new ExportReader<>("TimeEntryDao.openTimeEntryExport", "FROM TimeEntry t ORDER BY t.id", query -> { });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
     /**
      * Gets a time entry with case and attorney information
      */
     public TimeEntry getTimeEntryWithDetails(TimeEntry timeEntry) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            
-            // Load time entry with eager fetching of case and attorney
-            Query query = session.createQuery(
-                "FROM TimeEntry t " +
-                "LEFT JOIN FETCH t.associatedCase " +
-                "LEFT JOIN FETCH t.attorney " +
-                "WHERE t.id = :timeEntryId"
-            );
-            query.setParameter("timeEntryId", timeEntry.getId());
-            TimeEntry foundTimeEntry = (TimeEntry) query.uniqueResult();
-            
-            session.close();
-            return foundTimeEntry;
+            return SessionTemplate.inSession("TimeEntryDao.getTimeEntryWithDetails", session -> {
+                // Load time entry with eager fetching of case and attorney
+                Query query = session.createQuery(
+                    "FROM TimeEntry t " +
+                    "LEFT JOIN FETCH t.associatedCase " +
+                    "LEFT JOIN FETCH t.attorney " +
+                    "WHERE t.id = :timeEntryId"
+                );
+                query.setParameter("timeEntryId", timeEntry.getId());
+                return (TimeEntry) query.uniqueResult();
+            });
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return null;
     }
-    
+
     /**
      * Gets the total hours worked on a case
      */
     public double getTotalHoursByCase(int caseId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("SELECT SUM(t.hours) FROM TimeEntry t WHERE t.associatedCase.id = :caseId");
-            query.setParameter("caseId", caseId);
-            Double totalHours = (Double) query.uniqueResult();
-            session.close();
+            Double totalHours = SessionTemplate.inSession("TimeEntryDao.getTotalHoursByCase", session -> {
+                Query query = session.createQuery("SELECT SUM(t.hours) FROM TimeEntry t WHERE t.associatedCase.id = :caseId");
+                query.setParameter("caseId", caseId);
+                return (Double) query.uniqueResult();
+            });
             return totalHours != null ? totalHours : 0.0;
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return 0.0;
     }
-    
+
     /**
      * Gets the total billable amount for a case
      */
     public BigDecimal getTotalAmountByCase(int caseId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("SELECT SUM(t.hours * t.hourlyRate) FROM TimeEntry t WHERE t.associatedCase.id = :caseId");
-            query.setParameter("caseId", caseId);
-            BigDecimal totalAmount = (BigDecimal) query.uniqueResult();
-            session.close();
+            BigDecimal totalAmount = SessionTemplate.inSession("TimeEntryDao.getTotalAmountByCase", session -> {
+                Query query = session.createQuery("SELECT SUM(t.hours * t.hourlyRate) FROM TimeEntry t WHERE t.associatedCase.id = :caseId");
+                query.setParameter("caseId", caseId);
+                return (BigDecimal) query.uniqueResult();
+            });
             return totalAmount != null ? totalAmount : BigDecimal.ZERO;
         } catch (Exception ex) {
             ex.printStackTrace();
         }
         return BigDecimal.ZERO;
     }
-}
\ No newline at end of file
+
+    /**
+     * Generates the next time entry ID
+     */
+    public String generateNextTimeEntryId() {
+        try {
+            return String.format("TE%06d", TIME_ENTRY_IDS.next());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            // Default format if error occurs
+            return "TE" + System.currentTimeMillis();
+        }
+    }
+}
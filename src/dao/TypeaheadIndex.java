@@ -0,0 +1,428 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import model.Suggestion;
+import org.hibernate.Session;
+
+/**
+ * In-memory lookup of rows by the start of any word in their names, for
+ * lookup boxes that search on every keystroke.
+ *
+ * Every row is held as a {@link Suggestion}. Its keys (e.g. name, contact
+ * person, business id) are folded to lower case without accents and indexed
+ * two ways: each word in a sorted map, so "smi" finds "Smith" by a range scan,
+ * and each run of three characters, so "mith" still finds "Smith" the way
+ * LIKE '%mith%' did. A query only scores the rows those lookups return and
+ * keeps the best few in a small heap, so it never touches the database.
+ *
+ * The rows are read with one projection query on first use and then kept
+ * current by the DAO write paths once their transaction commits.
+ */
+final class TypeaheadIndex {
+
+    private static final Logger logger = Logger.getLogger(TypeaheadIndex.class.getName());
+
+    static final int DEFAULT_LIMIT = 10;
+    static final int MAX_LIMIT = 50;
+
+    private static final class Key {
+        final Function<Suggestion, String> getter;
+        final float weight;
+
+        Key(Function<Suggestion, String> getter, float weight) {
+            this.getter = getter;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Entry {
+        final Suggestion suggestion;
+        final String[] keys;
+
+        Entry(Suggestion suggestion, String[] keys) {
+            this.suggestion = suggestion;
+            this.keys = keys;
+        }
+    }
+
+    private static final class Match {
+        final Entry entry;
+        final double score;
+
+        Match(Entry entry, double score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+
+    private final String name;
+    private final String loadQuery;
+    private final List<Key> keys = new ArrayList<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final NavigableMap<String, Set<Integer>> words = new TreeMap<>();
+    private final Map<String, Set<Integer>> trigrams = new HashMap<>();
+    private volatile boolean loaded;
+    private List<Object[]> pending;
+
+    /**
+     * @param name Name used in logs and timings, e.g. "clients"
+     * @param loadQuery HQL selecting every row as a new model.Suggestion(...)
+     */
+    TypeaheadIndex(String name, String loadQuery) {
+        this.name = name;
+        this.loadQuery = loadQuery;
+    }
+
+    /**
+     * Adds a searchable part of the suggestion
+     *
+     * @param getter Reads the key from a suggestion; a null key is skipped
+     * @param weight How much a match on this key counts
+     */
+    TypeaheadIndex key(Function<Suggestion, String> getter, float weight) {
+        keys.add(new Key(getter, weight));
+        return this;
+    }
+
+    /**
+     * Indexes a row as it is now once the session's transaction commits;
+     * nothing happens if it rolls back
+     */
+    void afterCommit(Session session, Suggestion suggestion) {
+        onCommit(session, suggestion.getId(), suggestion);
+    }
+
+    /**
+     * Removes a row once the session's transaction commits
+     */
+    void afterDelete(Session session, int id) {
+        onCommit(session, id, null);
+    }
+
+    private void onCommit(Session session, int id, Suggestion suggestion) {
+        session.getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    apply(id, suggestion);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the best matches for what has been typed so far
+     *
+     * @param text Typed text; every word in it must start a word of the row,
+     *             or the whole text must appear inside one of its keys
+     * @param limit Most suggestions to return; non-positive means the default, and it is capped at {@link #MAX_LIMIT}
+     */
+    List<Suggestion> suggest(String text, int limit) {
+        int size = limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        String query = normalize(text);
+        if (query.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (!loaded) {
+            load();
+        }
+        String[] queryWords = query.split(" ");
+
+        lock.readLock().lock();
+        try {
+            Set<Integer> candidates = null;
+            for (String word : queryWords) {
+                Set<Integer> matches = new HashSet<>();
+                for (Set<Integer> ids : words.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+                    matches.addAll(ids);
+                }
+                if (candidates == null) {
+                    candidates = matches;
+                } else {
+                    candidates.retainAll(matches);
+                }
+            }
+            if (query.length() >= 3) {
+                candidates.addAll(containing(query));
+            }
+
+            // Min-heap of the best matches so far; the weakest is dropped when it overflows
+            PriorityQueue<Match> best = new PriorityQueue<>(size + 1, (a, b) -> {
+                int byScore = Double.compare(a.score, b.score);
+                return byScore != 0 ? byScore : compareLabels(b.entry, a.entry);
+            });
+            for (Integer id : candidates) {
+                Entry entry = entries.get(id);
+                double score = score(entry, query, queryWords);
+                if (score > 0) {
+                    best.add(new Match(entry, score));
+                    if (best.size() > size) {
+                        best.poll();
+                    }
+                }
+            }
+
+            List<Suggestion> suggestions = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                suggestions.add(best.poll().entry.suggestion);
+            }
+            Collections.reverse(suggestions);
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rows that may contain the text anywhere, from the trigrams they share
+     * with it; {@link #score} checks the ones that only share trigrams
+     */
+    private Set<Integer> containing(String query) {
+        Set<Integer> matches = null;
+        for (String trigram : trigramsOf(query)) {
+            Set<Integer> ids = trigrams.get(trigram);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            if (matches == null) {
+                matches = new HashSet<>(ids);
+            } else {
+                matches.retainAll(ids);
+            }
+            if (matches.isEmpty()) {
+                break;
+            }
+        }
+        return matches != null ? matches : Collections.<Integer>emptySet();
+    }
+
+    /**
+     * Scores a row against the query: the whole key typed beats a key that
+     * starts with the query, which beats every word starting a word of one
+     * key, then of any key, then the query appearing inside a key. Shorter
+     * labels win ties, so "Smith" comes before "Smithson".
+     */
+    private double score(Entry entry, String query, String[] queryWords) {
+        double best = 0;
+        boolean wordsInAnyKey = true;
+        for (String word : queryWords) {
+            boolean found = false;
+            for (String key : entry.keys) {
+                if (key != null && startsWord(key, word)) {
+                    found = true;
+                    break;
+                }
+            }
+            wordsInAnyKey &= found;
+        }
+
+        for (int i = 0; i < entry.keys.length; i++) {
+            String key = entry.keys[i];
+            if (key == null) {
+                continue;
+            }
+            double match;
+            if (key.equals(query)) {
+                match = 1.0;
+            } else if (key.startsWith(query)) {
+                match = 0.8;
+            } else if (allStartWords(key, queryWords)) {
+                match = 0.7;
+            } else if (wordsInAnyKey) {
+                match = 0.5;
+            } else if (key.contains(query)) {
+                match = 0.3;
+            } else {
+                continue;
+            }
+            best = Math.max(best, match * keys.get(i).weight);
+        }
+        if (best == 0) {
+            return 0;
+        }
+        String label = entry.suggestion.getLabel();
+        return best - Math.min(label != null ? label.length() : 0, 100) * 1e-4;
+    }
+
+    private static boolean allStartWords(String key, String[] queryWords) {
+        for (String word : queryWords) {
+            if (!startsWord(key, word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWord(String key, String word) {
+        for (int at = key.indexOf(word); at >= 0; at = key.indexOf(word, at + 1)) {
+            if (at == 0 || key.charAt(at - 1) == ' ') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int compareLabels(Entry a, Entry b) {
+        String left = a.suggestion.getLabel() != null ? a.suggestion.getLabel() : "";
+        String right = b.suggestion.getLabel() != null ? b.suggestion.getLabel() : "";
+        int byLabel = left.compareToIgnoreCase(right);
+        return byLabel != 0 ? byLabel : Integer.compare(a.suggestion.getId(), b.suggestion.getId());
+    }
+
+    /**
+     * Reads every row on first use. Changes committed while the query runs
+     * are replayed afterwards, since the query may not have seen them.
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Suggestion> rows;
+        try {
+            rows = SessionTemplate.inPrimarySession("TypeaheadIndex.load", session -> session.createQuery(loadQuery).list());
+        } catch (RuntimeException ex) {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw ex;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Suggestion row : rows) {
+                put(row.getId(), row);
+            }
+            for (Object[] change : pending) {
+                put((Integer) change[0], (Suggestion) change[1]);
+            }
+            pending = null;
+            loaded = true;
+            logger.info("Loaded " + entries.size() + " " + name + " into the typeahead index");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(int id, Suggestion suggestion) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(new Object[] {id, suggestion});
+            } else if (loaded) {
+                put(id, suggestion);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces or, for a null suggestion, removes a row. Must hold the write lock.
+     */
+    private void put(int id, Suggestion suggestion) {
+        Entry previous = entries.remove(id);
+        if (previous != null) {
+            for (String key : previous.keys) {
+                unindex(id, key);
+            }
+        }
+        if (suggestion == null) {
+            return;
+        }
+        String[] normalized = new String[keys.size()];
+        for (int i = 0; i < normalized.length; i++) {
+            String key = normalize(keys.get(i).getter.apply(suggestion));
+            normalized[i] = key.isEmpty() ? null : key;
+            if (normalized[i] != null) {
+                for (String word : key.split(" ")) {
+                    words.computeIfAbsent(word, k -> new HashSet<>()).add(id);
+                }
+                for (String trigram : trigramsOf(key)) {
+                    trigrams.computeIfAbsent(trigram, k -> new HashSet<>()).add(id);
+                }
+            }
+        }
+        entries.put(id, new Entry(suggestion, normalized));
+    }
+
+    private void unindex(int id, String key) {
+        if (key == null) {
+            return;
+        }
+        for (String word : key.split(" ")) {
+            remove(words, word, id);
+        }
+        for (String trigram : trigramsOf(key)) {
+            remove(trigrams, trigram, id);
+        }
+    }
+
+    private static void remove(Map<String, Set<Integer>> index, String token, int id) {
+        Set<Integer> ids = index.get(token);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            index.remove(token);
+        }
+    }
+
+    private static Set<String> trigramsOf(String text) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            result.add(text.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    /**
+     * Folds a text, drops apostrophes so "O'Brien" is one word, and reduces
+     * everything else but letters and digits to single spaces
+     */
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        for (char c : TextAnalyzer.fold(text).toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+            } else if (c == '\'' || c == '\u2019') {
+                continue;
+            } else if (normalized.length() > 0 && normalized.charAt(normalized.length() - 1) != ' ') {
+                normalized.append(' ');
+            }
+        }
+        int end = normalized.length();
+        return end > 0 && normalized.charAt(end - 1) == ' ' ? normalized.substring(0, end - 1) : normalized.toString();
+    }
+}
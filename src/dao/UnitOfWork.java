@@ -0,0 +1,217 @@
+package dao;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+/**
+ * A session and transaction bound to the current thread for the length of one
+ * service call.
+ *
+ * While a unit of work is active every {@link SessionTemplate} call made on the
+ * thread joins it instead of opening its own session, so a remote call that
+ * touches several DAO methods checks out one connection and commits once. The
+ * session is opened lazily by the first DAO call; a call that never reaches the
+ * database costs nothing.
+ *
+ * Reads made before the unit's first write may be served by a read-only
+ * session on the read replica, when {@link ReplicaRouter} allows it. The
+ * first write closes that session and moves the unit to the primary for good.
+ */
+public final class UnitOfWork {
+
+    private static final Logger logger = Logger.getLogger(UnitOfWork.class.getName());
+
+    private static final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+
+    /**
+     * Work to run inside a unit of work
+     */
+    public interface Work<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private final String name;
+    private Session session;
+    private Transaction transaction;
+    private SessionLeakDetector.Lease lease;
+    private boolean rollbackOnly;
+    private boolean wrote;
+    private Session replicaSession;
+    private SessionLeakDetector.Lease replicaLease;
+    private boolean routed;
+    private boolean usedReplica;
+
+    private UnitOfWork(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Runs work inside a unit of work, committing it if the work completes and
+     * rolling it back if the work throws or any DAO call inside it failed. A
+     * nested call joins the unit that is already active on the thread.
+     *
+     * @param name Name used for timings and leak reports, e.g. "CaseService.createCase"
+     * @param work The work to run
+     * @return The work's result
+     */
+    public static <T, E extends Exception> T execute(String name, Work<T, E> work) throws E {
+        if (current.get() != null) {
+            return work.run();
+        }
+
+        UnitOfWork unit = new UnitOfWork(name);
+        current.set(unit);
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = work.run();
+            success = true;
+            return result;
+        } finally {
+            current.remove();
+            try {
+                unit.end(success);
+            } finally {
+                if (unit.session != null || unit.usedReplica) {
+                    SessionTemplate.record(name, System.nanoTime() - start, success && !unit.rollbackOnly);
+                }
+            }
+        }
+    }
+
+    /**
+     * Commits the work done so far in the active unit, if any, and hands its
+     * connection back to the pool. The next DAO call starts a new transaction on
+     * the same session. Call this before slow non-database work such as sending
+     * email so the connection is not held while it runs.
+     */
+    public static void commit() {
+        UnitOfWork unit = current.get();
+        if (unit != null && !unit.rollbackOnly && unit.transaction != null && unit.transaction.isActive()) {
+            unit.transaction.commit();
+            unit.transaction = null;
+            if (unit.wrote) {
+                ReplicaRouter.committed();
+            }
+        }
+    }
+
+    /**
+     * Checks if a unit of work is active on the current thread
+     */
+    public static boolean isActive() {
+        return current.get() != null;
+    }
+
+    static UnitOfWork current() {
+        return current.get();
+    }
+
+    Session getSession() {
+        if (session == null) {
+            closeReplicaSession();
+            session = HibernateUtil.getSessionFactory().openSession();
+            lease = SessionTemplate.getLeakDetector().track(name);
+        }
+        if (transaction == null || !transaction.isActive()) {
+            transaction = session.beginTransaction();
+        }
+        return session;
+    }
+
+    /**
+     * Gets the primary session for work that writes
+     */
+    Session getWriteSession() {
+        Session primary = getSession();
+        wrote = true;
+        return primary;
+    }
+
+    /**
+     * Gets a session for reading: the replica's if the unit has not touched
+     * the primary yet and the router allows it, otherwise the primary's
+     */
+    Session getReadSession() {
+        if (session == null && !routed) {
+            routed = true;
+            replicaSession = ReplicaRouter.openReadSession();
+            if (replicaSession != null) {
+                usedReplica = true;
+                replicaLease = SessionTemplate.getLeakDetector().track(name + " (replica)");
+            }
+        }
+        return replicaSession != null ? replicaSession : getSession();
+    }
+
+    /**
+     * Checks if a session is the unit's replica session
+     */
+    boolean isReplica(Session candidate) {
+        return candidate != null && candidate == replicaSession;
+    }
+
+    /**
+     * Checks if the unit is already working on the primary
+     */
+    boolean hasPrimarySession() {
+        return session != null;
+    }
+
+    private void closeReplicaSession() {
+        if (replicaSession == null) {
+            return;
+        }
+        try {
+            if (replicaSession.isOpen()) {
+                replicaSession.close();
+            }
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Failed to close replica session for " + name, ex);
+        } finally {
+            replicaSession = null;
+            SessionTemplate.getLeakDetector().release(replicaLease);
+        }
+    }
+
+    void setRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    private void end(boolean success) {
+        closeReplicaSession();
+        if (session == null) {
+            return;
+        }
+        boolean commit = success && !rollbackOnly;
+        try {
+            if (transaction != null && transaction.isActive()) {
+                if (commit) {
+                    transaction.commit();
+                    if (wrote) {
+                        ReplicaRouter.committed();
+                    }
+                } else {
+                    transaction.rollback();
+                }
+            }
+        } catch (RuntimeException ex) {
+            if (commit) {
+                throw ex;
+            }
+            logger.log(Level.WARNING, "Rollback failed for " + name, ex);
+        } finally {
+            try {
+                if (session.isOpen()) {
+                    session.close();
+                }
+            } catch (RuntimeException ex) {
+                logger.log(Level.WARNING, "Failed to close session for " + name, ex);
+            } finally {
+                SessionTemplate.getLeakDetector().release(lease);
+            }
+        }
+    }
+}
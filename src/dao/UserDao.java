@@ -12,8 +12,6 @@ import model.User;
 import model.OTP;
 import service.EmailService;
 import org.hibernate.Query;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
 
 /**
  * Enhanced Data Access Object for User operations and authentication using Hibernate with OTP support and debug logging
@@ -41,10 +39,11 @@ public class UserDao {
     public User authenticateUser(String username, String password) {
         logger.info("Starting traditional authentication for username: " + username);
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM User u WHERE u.username = :username AND u.active = true");
-            query.setParameter("username", username);
-            User user = (User) query.uniqueResult();
+            User user = SessionTemplate.inSession("UserDao.authenticateUser", session -> {
+                Query query = session.createQuery("FROM User u WHERE u.username = :username AND u.active = true");
+                query.setParameter("username", username);
+                return (User) query.uniqueResult();
+            });
             
             if (user != null) {
                 logger.info("User found in database: " + username);
@@ -56,7 +55,6 @@ public class UserDao {
                     logger.info("Password verification successful for user: " + username);
                     // Update last login time
                     updateLastLogin(user.getId());
-                    session.close();
                     return user;
                 } else {
                     logger.warning("Password verification failed for user: " + username);
@@ -65,7 +63,6 @@ public class UserDao {
                 logger.warning("User not found or inactive: " + username);
             }
             
-            session.close();
             return null; // Authentication failed
         } catch (Exception ex) {
             logger.log(Level.SEVERE, "Error during traditional authentication for user: " + username, ex);
@@ -108,6 +105,9 @@ public class UserDao {
             
             logger.info("OTP generated successfully. OTP ID: " + otp.getId() + ", Code: " + otp.getOtpCode());
             
+            // Commit the OTP and release the connection before talking to the mail server
+            UnitOfWork.commit();
+            
             // Send OTP via email
             logger.info("Attempting to send OTP email to: " + user.getEmail());
             boolean emailSent = emailService.sendOTPEmail(user.getEmail(), otp.getOtpCode(), user.getFullName());
@@ -177,15 +177,7 @@ public class UserDao {
      */
     public boolean canRequestNewOTP(String email) {
         try {
-            OTP latestOTP = otpDao.findLatestOTPByEmail(email);
-            if (latestOTP == null) {
-                logger.fine("No previous OTP found for email: " + email + " - can request new OTP");
-                return true;
-            }
-            
-            // Check if at least 2 minutes have passed since last OTP
-            LocalDateTime twoMinutesAgo = LocalDateTime.now().minusMinutes(2);
-            boolean canRequest = latestOTP.getCreatedAt().isBefore(twoMinutesAgo);
+            boolean canRequest = otpDao.getRemainingCooldownMillis(email) == 0;
             logger.fine("OTP rate limiting check for " + email + ": " + canRequest);
             return canRequest;
             
@@ -204,19 +196,8 @@ public class UserDao {
      */
     public long getRemainingCooldownSeconds(String email) {
         try {
-            OTP latestOTP = otpDao.findLatestOTPByEmail(email);
-            if (latestOTP == null) {
-                return 0;
-            }
-            
-            LocalDateTime canRequestAt = latestOTP.getCreatedAt().plusMinutes(2);
-            LocalDateTime now = LocalDateTime.now();
-            
-            if (now.isAfter(canRequestAt)) {
-                return 0;
-            }
-            
-            return java.time.Duration.between(now, canRequestAt).getSeconds();
+            // Round up, so a caller told 0 seconds is never refused
+            return (otpDao.getRemainingCooldownMillis(email) + 999) / 1000;
             
         } catch (Exception ex) {
             logger.log(Level.SEVERE, "Error getting cooldown time for email: " + email, ex);
@@ -244,13 +225,7 @@ public class UserDao {
             user.setPasswordSalt(salt);
             user.setPasswordHash(passwordHash);
             
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.save(user);
-            
-            transaction.commit();
-            session.close();
+            SessionTemplate.inTransaction("UserDao.createUser", session -> session.save(user));
             logger.info("User created successfully: " + user.getUsername());
             return user;
         } catch (Exception ex) {
@@ -266,13 +241,10 @@ public class UserDao {
     public User updateUser(User user) {
         logger.info("Updating user: " + user.getUsername());
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            session.update(user);
-            
-            transaction.commit();
-            session.close();
+            SessionTemplate.inTransaction("UserDao.updateUser", session -> {
+                session.update(user);
+                return user;
+            });
             logger.info("User updated successfully: " + user.getUsername());
             return user;
         } catch (Exception ex) {
@@ -287,11 +259,11 @@ public class UserDao {
      */
     public boolean isUsernameExists(String username) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("SELECT COUNT(u) FROM User u WHERE u.username = :username");
-            query.setParameter("username", username);
-            Long count = (Long) query.uniqueResult();
-            session.close();
+            Long count = SessionTemplate.inSession("UserDao.isUsernameExists", session -> {
+                Query query = session.createQuery("SELECT COUNT(u) FROM User u WHERE u.username = :username");
+                query.setParameter("username", username);
+                return (Long) query.uniqueResult();
+            });
             boolean exists = count > 0;
             logger.fine("Username existence check for '" + username + "': " + exists);
             return exists;
@@ -307,18 +279,18 @@ public class UserDao {
      */
     private boolean updateLastLogin(int userId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            Query query = session.createQuery("UPDATE User u SET u.lastLogin = :currentTime WHERE u.id = :userId");
-            query.setParameter("currentTime", LocalDateTime.now());
-            query.setParameter("userId", userId);
-            int rowsAffected = query.executeUpdate();
-            
-            transaction.commit();
-            session.close();
+            // Update through the entity rather than a bulk HQL update, which would
+            // flush the whole User cache region on every login
+            boolean updated = SessionTemplate.inTransaction("UserDao.updateLastLogin", session -> {
+                User user = (User) session.get(User.class, userId);
+                if (user == null) {
+                    return false;
+                }
+                user.setLastLogin(LocalDateTime.now());
+                return true;
+            });
             logger.fine("Last login updated for user ID: " + userId);
-            return rowsAffected > 0;
+            return updated;
         } catch (Exception ex) {
             logger.log(Level.SEVERE, "Error updating last login for user ID: " + userId, ex);
             ex.printStackTrace();
@@ -332,41 +304,35 @@ public class UserDao {
     public boolean changePassword(int userId, String currentPassword, String newPassword) {
         logger.info("Changing password for user ID: " + userId);
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            
-            // First verify the current password
-            User user = (User) session.get(User.class, userId);
-            if (user == null) {
-                logger.warning("User not found for password change: " + userId);
-                session.close();
-                return false;
-            }
-            
-            // Compute hash of provided current password
-            String computedHash = hashPassword(currentPassword, user.getPasswordSalt());
-            
-            // Compare hashes
-            if (user.getPasswordHash().equals(computedHash)) {
-                // Current password is correct, update to new password
-                Transaction transaction = session.beginTransaction();
+            return SessionTemplate.inTransaction("UserDao.changePassword", session -> {
+                // First verify the current password
+                User user = (User) session.get(User.class, userId);
+                if (user == null) {
+                    logger.warning("User not found for password change: " + userId);
+                    return false;
+                }
                 
-                String newSalt = generateSalt();
-                String newPasswordHash = hashPassword(newPassword, newSalt);
+                // Compute hash of provided current password
+                String computedHash = hashPassword(currentPassword, user.getPasswordSalt());
                 
-                user.setPasswordHash(newPasswordHash);
-                user.setPasswordSalt(newSalt);
-                session.update(user);
+                // Compare hashes
+                if (user.getPasswordHash().equals(computedHash)) {
+                    // Current password is correct, update to new password
+                    String newSalt = generateSalt();
+                    String newPasswordHash = hashPassword(newPassword, newSalt);
+                    
+                    user.setPasswordHash(newPasswordHash);
+                    user.setPasswordSalt(newSalt);
+                    session.update(user);
+                    
+                    logger.info("Password changed successfully for user ID: " + userId);
+                    return true;
+                } else {
+                    logger.warning("Current password verification failed for user ID: " + userId);
+                }
                 
-                transaction.commit();
-                session.close();
-                logger.info("Password changed successfully for user ID: " + userId);
-                return true;
-            } else {
-                logger.warning("Current password verification failed for user ID: " + userId);
-            }
-            
-            session.close();
-            return false; // Current password is incorrect
+                return false; // Current password is incorrect
+            });
         } catch (Exception ex) {
             logger.log(Level.SEVERE, "Error changing password for user ID: " + userId, ex);
             ex.printStackTrace();
@@ -380,37 +346,36 @@ public class UserDao {
     public String resetPassword(String email) {
         logger.info("Resetting password for email: " + email);
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM User u WHERE u.email = :email");
-            query.setParameter("email", email);
-            User user = (User) query.uniqueResult();
+            // Generate new random password
+            String newPassword = generateRandomPassword();
+            String newSalt = generateSalt();
+            String newPasswordHash = hashPassword(newPassword, newSalt);
+            
+            User user = SessionTemplate.inTransaction("UserDao.resetPassword", session -> {
+                Query query = session.createQuery("FROM User u WHERE u.email = :email");
+                query.setParameter("email", email);
+                User found = (User) query.uniqueResult();
+                
+                if (found != null) {
+                    // Update user's password
+                    found.setPasswordHash(newPasswordHash);
+                    found.setPasswordSalt(newSalt);
+                    session.update(found);
+                }
+                return found;
+            });
             
             if (user != null) {
-                Transaction transaction = session.beginTransaction();
-                
-                // Generate new random password
-                String newPassword = generateRandomPassword();
-                String newSalt = generateSalt();
-                String newPasswordHash = hashPassword(newPassword, newSalt);
-                
-                // Update user's password
-                user.setPasswordHash(newPasswordHash);
-                user.setPasswordSalt(newSalt);
-                session.update(user);
-                
-                transaction.commit();
-                
-                // Send password reset email
+                // Send password reset email once the new password is committed
+                UnitOfWork.commit();
                 emailService.sendPasswordResetEmail(email, newPassword, user.getFullName());
                 
-                session.close();
                 logger.info("Password reset successfully for email: " + email);
                 return newPassword;
             } else {
                 logger.warning("User not found for password reset: " + email);
             }
             
-            session.close();
             return null; // Email not found
         } catch (Exception ex) {
             logger.log(Level.SEVERE, "Error resetting password for email: " + email, ex);
@@ -425,14 +390,11 @@ public class UserDao {
     public boolean deactivateUser(User user) {
         logger.info("Deactivating user: " + user.getUsername());
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            user.setActive(false);
-            session.update(user);
-            
-            transaction.commit();
-            session.close();
+            SessionTemplate.inTransaction("UserDao.deactivateUser", session -> {
+                user.setActive(false);
+                session.update(user);
+                return user;
+            });
             logger.info("User deactivated successfully: " + user.getUsername());
             return true;
         } catch (Exception ex) {
@@ -448,14 +410,11 @@ public class UserDao {
     public boolean reactivateUser(User user) {
         logger.info("Reactivating user: " + user.getUsername());
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Transaction transaction = session.beginTransaction();
-            
-            user.setActive(true);
-            session.update(user);
-            
-            transaction.commit();
-            session.close();
+            SessionTemplate.inTransaction("UserDao.reactivateUser", session -> {
+                user.setActive(true);
+                session.update(user);
+                return user;
+            });
             logger.info("User reactivated successfully: " + user.getUsername());
             return true;
         } catch (Exception ex) {
@@ -477,9 +436,8 @@ public class UserDao {
      */
     public User findUserById(int userId) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            User foundUser = (User) session.get(User.class, userId);
-            session.close();
+            User foundUser = SessionTemplate.inSession("UserDao.findUserById",
+                    session -> (User) session.get(User.class, userId));
             logger.fine("Find user by ID " + userId + ": " + (foundUser != null ? "found" : "not found"));
             return foundUser;
         } catch (Exception ex) {
@@ -494,11 +452,11 @@ public class UserDao {
      */
     public User findUserByUsername(String username) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM User u WHERE u.username = :username");
-            query.setParameter("username", username);
-            User user = (User) query.uniqueResult();
-            session.close();
+            User user = SessionTemplate.inSession("UserDao.findUserByUsername", session -> {
+                Query query = session.createQuery("FROM User u WHERE u.username = :username");
+                query.setParameter("username", username);
+                return (User) query.uniqueResult();
+            });
             logger.fine("Find user by username '" + username + "': " + (user != null ? "found" : "not found"));
             return user;
         } catch (Exception ex) {
@@ -514,14 +472,14 @@ public class UserDao {
     public User findUserByEmail(String email) {
         logger.fine("Finding user by email: " + email);
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            System.out.println("In user finding");
-            Query query = session.createQuery("FROM User u WHERE u.email = :email");
-            query.setParameter("email", email);
-            System.out.println("email: " +email);
-            User user = (User) query.uniqueResult();
+            User user = SessionTemplate.inSession("UserDao.findUserByEmail", session -> {
+                System.out.println("In user finding");
+                Query query = session.createQuery("FROM User u WHERE u.email = :email");
+                query.setParameter("email", email);
+                System.out.println("email: " +email);
+                return (User) query.uniqueResult();
+            });
             System.out.println(user);
-            session.close();
             logger.fine("Find user by email '" + email + "': " + (user != null ? "found - " + user.getUsername() : "not found"));
             return user;
         } catch (Exception ex) {
@@ -537,10 +495,8 @@ public class UserDao {
     @SuppressWarnings("unchecked")
     public List<User> findAllActiveUsers() {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM User u WHERE u.active = true ORDER BY u.username");
-            List<User> users = query.list();
-            session.close();
+            List<User> users = SessionTemplate.inSession("UserDao.findAllActiveUsers",
+                    session -> session.createQuery("FROM User u WHERE u.active = true ORDER BY u.username").list());
             logger.fine("Found " + (users != null ? users.size() : 0) + " active users");
             return users;
         } catch (Exception ex) {
@@ -556,11 +512,11 @@ public class UserDao {
     @SuppressWarnings("unchecked")
     public List<User> findUsersByRole(String role) {
         try {
-            Session session = HibernateUtil.getSessionFactory().openSession();
-            Query query = session.createQuery("FROM User u WHERE u.role = :role AND u.active = true ORDER BY u.fullName");
-            query.setParameter("role", role);
-            List<User> users = query.list();
-            session.close();
+            List<User> users = SessionTemplate.inSession("UserDao.findUsersByRole", session -> {
+                Query query = session.createQuery("FROM User u WHERE u.role = :role AND u.active = true ORDER BY u.fullName");
+                query.setParameter("role", role);
+                return query.list();
+            });
             logger.fine("Found " + (users != null ? users.size() : 0) + " users with role: " + role);
             return users;
         } catch (Exception ex) {
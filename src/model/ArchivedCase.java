@@ -0,0 +1,115 @@
+package model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import javax.persistence.*;
+
+/**
+ * A closed case moved out of the live tables by the archiver. The columns
+ * shown in archive lists are kept as plain values, since the client may be
+ * all that is left of the case; the case with its attorneys, documents,
+ * events, invoices, time entries and payments is kept in payload, compressed,
+ * so it can be shown in full or put back exactly as it was.
+ */
+@Entity
+@Table(name = "archived_cases", indexes = {
+    @Index(name = "idx_archived_cases_client", columnList = "client_id")
+})
+public class ArchivedCase implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private int id;  // The case's own id, reused when it is restored
+
+    @Column(name = "case_number", unique = true, nullable = false)
+    private String caseNumber;
+
+    @Column(nullable = false)
+    private String title;
+
+    @Column(name = "case_type")
+    private String caseType;
+
+    private String status;
+
+    @Column(name = "client_id", nullable = false)
+    private int clientId;
+
+    @Column(name = "client_name")
+    private String clientName;
+
+    @Column(name = "file_date")
+    private LocalDate fileDate;
+
+    @Column(name = "closing_date")
+    private LocalDate closingDate;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDate archivedAt;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] payload;  // GZIP-compressed; null in archive lists
+
+    /**
+     * Default constructor
+     */
+    public ArchivedCase() {
+    }
+
+    /**
+     * Constructor for archive lists, which leave out the payload
+     */
+    public ArchivedCase(int id, String caseNumber, String title, String caseType, String status, int clientId,
+                        String clientName, LocalDate fileDate, LocalDate closingDate, LocalDate archivedAt) {
+        this.id = id;
+        this.caseNumber = caseNumber;
+        this.title = title;
+        this.caseType = caseType;
+        this.status = status;
+        this.clientId = clientId;
+        this.clientName = clientName;
+        this.fileDate = fileDate;
+        this.closingDate = closingDate;
+        this.archivedAt = archivedAt;
+    }
+
+    // Getters and Setters
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    public String getCaseNumber() { return caseNumber; }
+    public void setCaseNumber(String caseNumber) { this.caseNumber = caseNumber; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public String getCaseType() { return caseType; }
+    public void setCaseType(String caseType) { this.caseType = caseType; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public int getClientId() { return clientId; }
+    public void setClientId(int clientId) { this.clientId = clientId; }
+
+    public String getClientName() { return clientName; }
+    public void setClientName(String clientName) { this.clientName = clientName; }
+
+    public LocalDate getFileDate() { return fileDate; }
+    public void setFileDate(LocalDate fileDate) { this.fileDate = fileDate; }
+
+    public LocalDate getClosingDate() { return closingDate; }
+    public void setClosingDate(LocalDate closingDate) { this.closingDate = closingDate; }
+
+    public LocalDate getArchivedAt() { return archivedAt; }
+    public void setArchivedAt(LocalDate archivedAt) { this.archivedAt = archivedAt; }
+
+    public byte[] getPayload() { return payload; }
+    public void setPayload(byte[] payload) { this.payload = payload; }
+
+    @Override
+    public String toString() {
+        return caseNumber + " - " + title + " (archived " + archivedAt + ")";
+    }
+}
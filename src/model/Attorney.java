@@ -4,12 +4,19 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import javax.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 /**
  * Represents an attorney in the legal system.
  */
 @Entity
 @Table(name = "attorneys")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 public class Attorney implements Serializable {
     private static final long serialVersionUID = 1L;
     
@@ -17,6 +24,7 @@ public class Attorney implements Serializable {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
     
+    @NaturalId(mutable = true)
     @Column(name = "attorney_id", unique = true, nullable = false)
     private String attorneyId;
     
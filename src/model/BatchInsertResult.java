@@ -0,0 +1,41 @@
+package model;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a bulk insert.
+ * Rows that failed validation are skipped and reported by their position in
+ * the submitted list; the other rows are inserted.
+ */
+public class BatchInsertResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Integer> ids;
+    private final Map<Integer, String> failures;
+
+    /**
+     * @param ids Generated id for each submitted row, null where the row was rejected
+     * @param failures Reason for each rejected row, keyed by its index in the submitted list
+     */
+    public BatchInsertResult(List<Integer> ids, Map<Integer, String> failures) {
+        this.ids = ids;
+        this.failures = failures;
+    }
+
+    // Getters
+    public List<Integer> getIds() { return ids; }
+    public Map<Integer, String> getFailures() { return failures; }
+
+    public int getInsertedCount() { return ids.size() - failures.size(); }
+    public boolean hasFailures() { return !failures.isEmpty(); }
+
+    @Override
+    public String toString() {
+        return "BatchInsertResult{" +
+                "inserted=" + getInsertedCount() +
+                ", failed=" + failures.size() +
+                '}';
+    }
+}
@@ -0,0 +1,70 @@
+package model;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of a billing run's progress, and its summary once finished.
+ */
+public class BillingRunStatus implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int totalCases;
+    private final int processedCases;
+    private final List<String> invoiceNumbers;
+    private final BigDecimal totalAmount;
+    private final Map<Integer, String> skippedCases;
+    private final Map<Integer, String> failedCases;
+    private final boolean finished;
+    private final boolean cancelled;
+    private final long elapsedMillis;
+
+    public BillingRunStatus(int totalCases, int processedCases, List<String> invoiceNumbers, BigDecimal totalAmount,
+                            Map<Integer, String> skippedCases, Map<Integer, String> failedCases,
+                            boolean finished, boolean cancelled, long elapsedMillis) {
+        this.totalCases = totalCases;
+        this.processedCases = processedCases;
+        this.invoiceNumbers = invoiceNumbers;
+        this.totalAmount = totalAmount;
+        this.skippedCases = skippedCases;
+        this.failedCases = failedCases;
+        this.finished = finished;
+        this.cancelled = cancelled;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    // Getters
+    public int getTotalCases() { return totalCases; }
+    public int getProcessedCases() { return processedCases; }
+    public List<String> getInvoiceNumbers() { return invoiceNumbers; }
+    public int getInvoicesCreated() { return invoiceNumbers.size(); }
+    public BigDecimal getTotalAmount() { return totalAmount; }
+
+    /**
+     * Gets the cases that were not billed, with the reason, keyed by case ID
+     */
+    public Map<Integer, String> getSkippedCases() { return skippedCases; }
+
+    /**
+     * Gets the cases whose billing failed and was rolled back, with the error, keyed by case ID
+     */
+    public Map<Integer, String> getFailedCases() { return failedCases; }
+
+    public boolean isFinished() { return finished; }
+    public boolean isCancelled() { return cancelled; }
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    @Override
+    public String toString() {
+        return "BillingRunStatus{" +
+                "processed=" + processedCases + "/" + totalCases +
+                ", invoices=" + invoiceNumbers.size() +
+                ", amount=" + totalAmount +
+                ", skipped=" + skippedCases.size() +
+                ", failed=" + failedCases.size() +
+                ", finished=" + finished +
+                '}';
+    }
+}
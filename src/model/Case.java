@@ -5,13 +5,22 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import javax.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 /**
  * Represents a legal case in the system.
  * Contains case details and relationships to clients, attorneys, documents, etc.
  */
 @Entity
-@Table(name = "cases")
+@Table(name = "cases", indexes = {
+    @Index(name = "idx_cases_status", columnList = "status"),
+    @Index(name = "idx_cases_case_type", columnList = "case_type"),
+    @Index(name = "idx_cases_file_date", columnList = "file_date")
+})
+@NaturalIdCache
+@DynamicUpdate
 public class Case implements Serializable {
     private static final long serialVersionUID = 1L;
     
@@ -19,6 +28,11 @@ public class Case implements Serializable {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
     
+    @Version
+    @Column(nullable = false)
+    private long version;  // Bumped on every write; a write from an older copy is rejected
+    
+    @NaturalId(mutable = true)
     @Column(name = "case_number", unique = true, nullable = false)
     private String caseNumber;
     
@@ -37,6 +51,10 @@ public class Case implements Serializable {
     @Column(name = "closing_date")
     private LocalDate closingDate;
     
+    // Set only when the case is restored from the archive, never by a write of the entity
+    @Column(name = "restored_at", insertable = false, updatable = false)
+    private LocalDate restoredAt;
+    
     private String court;
     private String judge;
     
@@ -90,6 +108,9 @@ public class Case implements Serializable {
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
     
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    
     public String getCaseNumber() { return caseNumber; }
     public void setCaseNumber(String caseNumber) { this.caseNumber = caseNumber; }
     
@@ -111,6 +132,9 @@ public class Case implements Serializable {
     public LocalDate getClosingDate() { return closingDate; }
     public void setClosingDate(LocalDate closingDate) { this.closingDate = closingDate; }
     
+    public LocalDate getRestoredAt() { return restoredAt; }
+    public void setRestoredAt(LocalDate restoredAt) { this.restoredAt = restoredAt; }
+    
     public String getCourt() { return court; }
     public void setCourt(String court) { this.court = court; }
     
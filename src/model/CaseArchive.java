@@ -0,0 +1,44 @@
+package model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * An archived case as it stood when it was archived: the case as shown in
+ * case lists plus the lists of its documents, events and invoices, read from
+ * the archive without restoring it.
+ */
+public class CaseArchive implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final CaseSummary legalCase;
+    private final LocalDate closingDate;
+    private final LocalDate archivedAt;
+    private final List<DocumentSummary> documents;
+    private final List<EventSummary> events;
+    private final List<InvoiceSummary> invoices;
+
+    public CaseArchive(CaseSummary legalCase, LocalDate closingDate, LocalDate archivedAt,
+                       List<DocumentSummary> documents, List<EventSummary> events, List<InvoiceSummary> invoices) {
+        this.legalCase = legalCase;
+        this.closingDate = closingDate;
+        this.archivedAt = archivedAt;
+        this.documents = documents;
+        this.events = events;
+        this.invoices = invoices;
+    }
+
+    // Getters
+    public CaseSummary getCase() { return legalCase; }
+    public LocalDate getClosingDate() { return closingDate; }
+    public LocalDate getArchivedAt() { return archivedAt; }
+    public List<DocumentSummary> getDocuments() { return documents; }
+    public List<EventSummary> getEvents() { return events; }
+    public List<InvoiceSummary> getInvoices() { return invoices; }
+
+    @Override
+    public String toString() {
+        return legalCase + ", archived " + archivedAt;
+    }
+}
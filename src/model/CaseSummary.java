@@ -0,0 +1,49 @@
+package model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * A case as shown in case lists: a few columns plus the client's name and the
+ * number of assigned attorneys, read by one projection query instead of
+ * loading the case with its associations.
+ */
+public class CaseSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
+    private final String caseNumber;
+    private final String title;
+    private final String caseType;
+    private final String status;
+    private final LocalDate fileDate;
+    private final String clientName;
+    private final long attorneyCount;
+
+    public CaseSummary(int id, String caseNumber, String title, String caseType, String status,
+                       LocalDate fileDate, String clientName, long attorneyCount) {
+        this.id = id;
+        this.caseNumber = caseNumber;
+        this.title = title;
+        this.caseType = caseType;
+        this.status = status;
+        this.fileDate = fileDate;
+        this.clientName = clientName;
+        this.attorneyCount = attorneyCount;
+    }
+
+    // Getters
+    public int getId() { return id; }
+    public String getCaseNumber() { return caseNumber; }
+    public String getTitle() { return title; }
+    public String getCaseType() { return caseType; }
+    public String getStatus() { return status; }
+    public LocalDate getFileDate() { return fileDate; }
+    public String getClientName() { return clientName; }
+    public long getAttorneyCount() { return attorneyCount; }
+
+    @Override
+    public String toString() {
+        return caseNumber + " - " + title + " (" + status + ")";
+    }
+}
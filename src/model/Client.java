@@ -5,6 +5,10 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import javax.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 /**
  * Represents a client in the legal system.
@@ -12,6 +16,9 @@ import javax.persistence.*;
  */
 @Entity
 @Table(name = "clients")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 public class Client implements Serializable {
     private static final long serialVersionUID = 1L;
     
@@ -19,6 +26,7 @@ public class Client implements Serializable {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
     
+    @NaturalId(mutable = true)
     @Column(name = "client_id", unique = true, nullable = false)
     private String clientId;
     
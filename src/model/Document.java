@@ -3,12 +3,17 @@ package model;
 import java.io.Serializable;
 import java.time.LocalDate;
 import javax.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 /**
  * Represents a legal document in the system.
  */
 @Entity
 @Table(name = "documents")
+@NaturalIdCache
+@DynamicUpdate
 public class Document implements Serializable {
     private static final long serialVersionUID = 1L;
     
@@ -16,6 +21,11 @@ public class Document implements Serializable {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
     
+    @Version
+    @Column(nullable = false)
+    private long version;
+    
+    @NaturalId(mutable = true)
     @Column(name = "document_id", unique = true, nullable = false)
     private String documentId;
     
@@ -68,6 +78,9 @@ public class Document implements Serializable {
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
     
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    
     public String getDocumentId() { return documentId; }
     public void setDocumentId(String documentId) { this.documentId = documentId; }
     
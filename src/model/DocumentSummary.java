@@ -0,0 +1,48 @@
+package model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * A document as shown in document lists, with the case number in place of the
+ * case entity.
+ */
+public class DocumentSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
+    private final String documentId;
+    private final String title;
+    private final String documentType;
+    private final LocalDate documentDate;
+    private final LocalDate dateAdded;
+    private final String status;
+    private final String caseNumber;
+
+    public DocumentSummary(int id, String documentId, String title, String documentType, LocalDate documentDate,
+                           LocalDate dateAdded, String status, String caseNumber) {
+        this.id = id;
+        this.documentId = documentId;
+        this.title = title;
+        this.documentType = documentType;
+        this.documentDate = documentDate;
+        this.dateAdded = dateAdded;
+        this.status = status;
+        this.caseNumber = caseNumber;
+    }
+
+    // Getters
+    public int getId() { return id; }
+    public String getDocumentId() { return documentId; }
+    public String getTitle() { return title; }
+    public String getDocumentType() { return documentType; }
+    public LocalDate getDocumentDate() { return documentDate; }
+    public LocalDate getDateAdded() { return dateAdded; }
+    public String getStatus() { return status; }
+    public String getCaseNumber() { return caseNumber; }
+
+    @Override
+    public String toString() {
+        return title + " (" + documentType + ")";
+    }
+}
@@ -4,13 +4,22 @@ import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import javax.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 /**
  * Represents an event or deadline in the legal system.
  * Can be associated with a specific case.
  */
 @Entity
-@Table(name = "events")
+@Table(name = "events", indexes = {
+    @Index(name = "idx_events_date_status", columnList = "event_date, status"),
+    @Index(name = "idx_events_reminder_date", columnList = "reminder_date"),
+    @Index(name = "idx_events_reminder_due", columnList = "reminder_fired, reminder_date")
+})
+@NaturalIdCache
+@DynamicUpdate
 public class Event implements Serializable {
     private static final long serialVersionUID = 1L;
     
@@ -18,6 +27,11 @@ public class Event implements Serializable {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
     
+    @Version
+    @Column(nullable = false)
+    private long version;
+    
+    @NaturalId(mutable = true)
     @Column(name = "event_id", unique = true, nullable = false)
     private String eventId;
     
@@ -51,6 +65,12 @@ public class Event implements Serializable {
     @Column(name = "reminder_days")
     private int reminderDays;
     
+    @Column(name = "reminder_date")
+    private LocalDate reminderDate;  // Day the reminder fires, kept by EventDao; null when there is none
+    
+    @Column(name = "reminder_fired", nullable = false)
+    private boolean reminderFired;
+    
     /**
      * Default constructor
      */
@@ -76,6 +96,9 @@ public class Event implements Serializable {
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
     
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    
     public String getEventId() { return eventId; }
     public void setEventId(String eventId) { this.eventId = eventId; }
     
@@ -112,6 +135,25 @@ public class Event implements Serializable {
     public int getReminderDays() { return reminderDays; }
     public void setReminderDays(int reminderDays) { this.reminderDays = reminderDays; }
     
+    public LocalDate getReminderDate() { return reminderDate; }
+    public void setReminderDate(LocalDate reminderDate) { this.reminderDate = reminderDate; }
+    
+    public boolean isReminderFired() { return reminderFired; }
+    public void setReminderFired(boolean reminderFired) { this.reminderFired = reminderFired; }
+    
+    /**
+     * Gets the day a reminder for this event is due: the event date less the
+     * reminder days, or null if no reminder is set or the event is completed
+     * or cancelled
+     */
+    public LocalDate computeReminderDate() {
+        if (!reminderSet || eventDate == null
+                || "Completed".equalsIgnoreCase(status) || "Cancelled".equalsIgnoreCase(status)) {
+            return null;
+        }
+        return eventDate.minusDays(reminderDays);
+    }
+    
     /**
      * Check if the event is upcoming
      */
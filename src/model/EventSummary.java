@@ -0,0 +1,56 @@
+package model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * An event as shown in calendars and event lists, with the case number in place
+ * of the case entity.
+ */
+public class EventSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
+    private final String eventId;
+    private final String title;
+    private final String eventType;
+    private final LocalDate eventDate;
+    private final LocalTime startTime;
+    private final LocalTime endTime;
+    private final String location;
+    private final String status;
+    private final String caseNumber;
+
+    public EventSummary(int id, String eventId, String title, String eventType, LocalDate eventDate,
+                        LocalTime startTime, LocalTime endTime, String location, String status,
+                        String caseNumber) {
+        this.id = id;
+        this.eventId = eventId;
+        this.title = title;
+        this.eventType = eventType;
+        this.eventDate = eventDate;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.location = location;
+        this.status = status;
+        this.caseNumber = caseNumber;
+    }
+
+    // Getters
+    public int getId() { return id; }
+    public String getEventId() { return eventId; }
+    public String getTitle() { return title; }
+    public String getEventType() { return eventType; }
+    public LocalDate getEventDate() { return eventDate; }
+    public LocalTime getStartTime() { return startTime; }
+    public LocalTime getEndTime() { return endTime; }
+    public String getLocation() { return location; }
+    public String getStatus() { return status; }
+    public String getCaseNumber() { return caseNumber; }
+
+    @Override
+    public String toString() {
+        return title + " (" + (eventDate != null ? eventDate.toString() : "No date") + " - " + eventType + ")";
+    }
+}
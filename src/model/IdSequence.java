@@ -0,0 +1,48 @@
+package model;
+
+import java.io.Serializable;
+import javax.persistence.*;
+
+/**
+ * Represents one named number sequence, such as the case numbers.
+ * The row holds the first number of the next block still to be handed out;
+ * servers reserve blocks by advancing it under a row lock.
+ */
+@Entity
+@Table(name = "id_sequences")
+public class IdSequence implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "name", length = 32)
+    private String name;
+
+    @Column(name = "next_value", nullable = false)
+    private long nextValue;
+
+    /**
+     * Default constructor
+     */
+    public IdSequence() {
+    }
+
+    /**
+     * Constructor with essential fields
+     */
+    public IdSequence(String name, long nextValue) {
+        this.name = name;
+        this.nextValue = nextValue;
+    }
+
+    // Getters and Setters
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public long getNextValue() { return nextValue; }
+    public void setNextValue(long nextValue) { this.nextValue = nextValue; }
+
+    @Override
+    public String toString() {
+        return "IdSequence [name=" + name + ", nextValue=" + nextValue + "]";
+    }
+}
@@ -6,13 +6,20 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import javax.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 /**
  * Represents an invoice in the legal system.
  * Used for billing clients for legal services.
  */
 @Entity
-@Table(name = "invoices")
+@Table(name = "invoices", indexes = {
+    @Index(name = "idx_invoices_status_due", columnList = "status, due_date")
+})
+@NaturalIdCache
+@DynamicUpdate
 public class Invoice implements Serializable {
     private static final long serialVersionUID = 1L;
     
@@ -20,6 +27,11 @@ public class Invoice implements Serializable {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
     
+    @Version
+    @Column(nullable = false)
+    private long version;  // Also bumped when a payment is posted
+    
+    @NaturalId(mutable = true)
     @Column(name = "invoice_number", unique = true, nullable = false)
     private String invoiceNumber;
     
@@ -86,6 +98,9 @@ public class Invoice implements Serializable {
     public int getId() { return id; }
     public void setId(int id) { this.id = id; }
     
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    
     public String getInvoiceNumber() { return invoiceNumber; }
     public void setInvoiceNumber(String invoiceNumber) { this.invoiceNumber = invoiceNumber; }
     
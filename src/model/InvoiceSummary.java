@@ -0,0 +1,52 @@
+package model;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * An invoice as shown in invoice lists, with the client's name and the case
+ * number in place of the client and case entities.
+ */
+public class InvoiceSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
+    private final String invoiceNumber;
+    private final String clientName;
+    private final String caseNumber;
+    private final LocalDate issueDate;
+    private final LocalDate dueDate;
+    private final BigDecimal amount;
+    private final BigDecimal amountPaid;
+    private final String status;
+
+    public InvoiceSummary(int id, String invoiceNumber, String clientName, String caseNumber, LocalDate issueDate,
+                          LocalDate dueDate, BigDecimal amount, BigDecimal amountPaid, String status) {
+        this.id = id;
+        this.invoiceNumber = invoiceNumber;
+        this.clientName = clientName;
+        this.caseNumber = caseNumber;
+        this.issueDate = issueDate;
+        this.dueDate = dueDate;
+        this.amount = amount;
+        this.amountPaid = amountPaid;
+        this.status = status;
+    }
+
+    // Getters
+    public int getId() { return id; }
+    public String getInvoiceNumber() { return invoiceNumber; }
+    public String getClientName() { return clientName; }
+    public String getCaseNumber() { return caseNumber; }
+    public LocalDate getIssueDate() { return issueDate; }
+    public LocalDate getDueDate() { return dueDate; }
+    public BigDecimal getAmount() { return amount; }
+    public BigDecimal getAmountPaid() { return amountPaid; }
+    public String getStatus() { return status; }
+
+    @Override
+    public String toString() {
+        return invoiceNumber + " - " + clientName + " (" + status + ")";
+    }
+}
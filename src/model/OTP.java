@@ -8,7 +8,9 @@ import javax.persistence.*;
  * Represents an OTP (One Time Password) for user authentication.
  */
 @Entity
-@Table(name = "otps")
+@Table(name = "otps", indexes = {
+    @Index(name = "idx_otps_email_created", columnList = "email, created_at")
+})
 public class OTP implements Serializable {
     private static final long serialVersionUID = 1L;
     
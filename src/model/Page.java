@@ -0,0 +1,38 @@
+package model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One page of a paginated finder result.
+ * Pass the next cursor back to the same finder to read the following page.
+ */
+public class Page<T> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters
+    public List<T> getItems() { return items; }
+
+    /**
+     * Gets the cursor for the next page, or null if this is the last page
+     */
+    public String getNextCursor() { return nextCursor; }
+
+    public boolean hasMore() { return nextCursor != null; }
+
+    @Override
+    public String toString() {
+        return "Page{" +
+                "items=" + items.size() +
+                ", hasMore=" + hasMore() +
+                '}';
+    }
+}
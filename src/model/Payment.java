@@ -4,12 +4,17 @@ import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import javax.persistence.*;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 /**
  * Represents a payment made by a client for an invoice.
  */
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+    @Index(name = "idx_payments_date", columnList = "payment_date")
+})
+@NaturalIdCache
 public class Payment implements Serializable {
     private static final long serialVersionUID = 1L;
     
@@ -17,6 +22,7 @@ public class Payment implements Serializable {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
     
+    @NaturalId(mutable = true)
     @Column(name = "payment_id", unique = true, nullable = false)
     private String paymentId;
     
@@ -0,0 +1,49 @@
+package model;
+
+import java.io.Serializable;
+import javax.persistence.*;
+
+/**
+ * The single row the server rewrites on the primary database every few
+ * seconds. Reading it back from the read replica tells how far behind the
+ * replica is: it has applied every commit made before the beat it shows.
+ */
+@Entity
+@Table(name = "replica_heartbeat")
+public class ReplicaHeartbeat implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int ID = 1;
+
+    @Id
+    private int id;
+
+    @Column(name = "beat_at", nullable = false)
+    private long beatAt;  // Primary server's clock, in epoch milliseconds
+
+    /**
+     * Default constructor
+     */
+    public ReplicaHeartbeat() {
+    }
+
+    /**
+     * Constructor with essential fields
+     */
+    public ReplicaHeartbeat(long beatAt) {
+        this.id = ID;
+        this.beatAt = beatAt;
+    }
+
+    // Getters and Setters
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    public long getBeatAt() { return beatAt; }
+    public void setBeatAt(long beatAt) { this.beatAt = beatAt; }
+
+    @Override
+    public String toString() {
+        return "ReplicaHeartbeat [beatAt=" + beatAt + "]";
+    }
+}
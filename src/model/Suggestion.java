@@ -0,0 +1,39 @@
+package model;
+
+import java.io.Serializable;
+
+/**
+ * One entry offered by a lookup box while the user types: the row's id and
+ * business id, the name to show and a line of detail under it, such as a
+ * client's contact person.
+ */
+public class Suggestion implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
+    private final String code;
+    private final String label;
+    private final String detail;
+
+    public Suggestion(int id, String code, String label, String detail) {
+        this.id = id;
+        this.code = code;
+        this.label = label;
+        this.detail = detail;
+    }
+
+    // Getters
+    public int getId() { return id; }
+
+    /**
+     * Gets the business id, e.g. the client ID or attorney ID
+     */
+    public String getCode() { return code; }
+    public String getLabel() { return label; }
+    public String getDetail() { return detail; }
+
+    @Override
+    public String toString() {
+        return label + " (" + code + ")";
+    }
+}
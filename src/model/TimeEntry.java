@@ -4,13 +4,18 @@ import java.io.Serializable;
 import java.time.LocalDate;
 import java.math.BigDecimal;
 import javax.persistence.*;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 /**
  * Represents a time entry for billing purposes.
  * Records time spent on a case by an attorney.
  */
 @Entity
-@Table(name = "time_entries")
+@Table(name = "time_entries", indexes = {
+    @Index(name = "idx_time_entries_case_billed", columnList = "case_id, billed")
+})
+@NaturalIdCache
 public class TimeEntry implements Serializable {
     private static final long serialVersionUID = 1L;
     
@@ -18,6 +23,7 @@ public class TimeEntry implements Serializable {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
     
+    @NaturalId(mutable = true)
     @Column(name = "entry_id", unique = true, nullable = false)
     private String entryId;
     
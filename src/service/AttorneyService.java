@@ -4,6 +4,7 @@ import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.List;
 import model.Attorney;
+import model.Suggestion;
 
 /**
  * Remote service interface for Attorney operations
@@ -30,6 +31,12 @@ public interface AttorneyService extends Remote {
      */
     Attorney findAttorneyById(Attorney attorney) throws RemoteException;
     
+    /**
+     * Gets an attorney with only the associations named in the fetch spec, e.g.
+     * "cases[active], timeEntries[unbilled]"; see CaseService.getCaseGraph for the format
+     */
+    Attorney getAttorneyGraph(Attorney attorney, String fetchSpec) throws RemoteException;
+    
     /**
      * Finds an attorney by attorney ID
      */
@@ -40,6 +47,14 @@ public interface AttorneyService extends Remote {
      */
     List<Attorney> findAttorneysByName(String name) throws RemoteException;
     
+    /**
+     * Suggests attorneys for a lookup box by first, last or full name or attorney ID, best match first
+     *
+     * @param text What has been typed so far
+     * @param limit Most suggestions to return
+     */
+    List<Suggestion> suggestAttorneys(String text, int limit) throws RemoteException;
+    
     /**
      * Finds attorneys by specialization
      */
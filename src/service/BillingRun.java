@@ -0,0 +1,29 @@
+package service;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import model.BillingRunStatus;
+
+/**
+ * Remote handle on a billing run executing on the server.
+ * Poll it for progress; the final status is the run's summary.
+ */
+public interface BillingRun extends Remote {
+
+    /**
+     * Gets the current progress
+     */
+    BillingRunStatus getStatus() throws RemoteException;
+
+    /**
+     * Waits until the run finishes or the timeout passes, then gets the status
+     *
+     * @param timeoutMillis Longest time to wait, in milliseconds
+     */
+    BillingRunStatus awaitCompletion(long timeoutMillis) throws RemoteException;
+
+    /**
+     * Stops the run after the cases already in progress; the rest are skipped
+     */
+    void cancel() throws RemoteException;
+}
@@ -4,7 +4,12 @@ import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import model.ArchivedCase;
 import model.Case;
+import model.CaseArchive;
+import model.CaseSummary;
+import model.Page;
 
 /**
  * Remote service interface for Case operations
@@ -31,6 +36,20 @@ public interface CaseService extends Remote {
      */
     Case updateCaseStatus(Case legalCase, String status) throws RemoteException;
     
+    /**
+     * Changes only the named properties of a case, given as property name to
+     * new value. Patchable properties are title, caseType, status,
+     * description, fileDate, closingDate, court, judge, opposingParty and
+     * opposingCounsel; values that are already current are not written.
+     * The version is the one on the caller's copy; if the case has changed
+     * since, nothing is written and java.util.ConcurrentModificationException
+     * is thrown. An unknown property or a value of the wrong type throws
+     * IllegalArgumentException.
+     *
+     * @return The case as it now is, with its new version, or null if it does not exist
+     */
+    Case patchCase(int caseId, long version, Map<String, Object> changes) throws RemoteException;
+    
     /**
      * Finds a case by ID
      */
@@ -42,7 +61,7 @@ public interface CaseService extends Remote {
     Case findCaseByCaseNumber(String caseNumber) throws RemoteException;
     
     /**
-     * Finds cases by title or description
+     * Finds cases by title, description, court, judge or opposing party, best match first
      */
     List<Case> findCasesByText(String searchText) throws RemoteException;
     
@@ -76,11 +95,51 @@ public interface CaseService extends Remote {
      */
     List<Case> findAllCases() throws RemoteException;
     
+    /**
+     * Gets one page of all cases, newest filing date first
+     */
+    Page<Case> findAllCasesPage(String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Finds one page of cases by status, newest filing date first
+     */
+    Page<Case> findCasesByStatusPage(String status, String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Finds one page of cases by case type, newest filing date first
+     */
+    Page<Case> findCasesByTypePage(String caseType, String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Finds one page of cases by filing date range, oldest first
+     */
+    Page<Case> findCasesByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Finds one page of cases by title, description, court, judge or opposing party, best match first
+     */
+    Page<Case> searchCasesPage(String searchText, String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Opens a streaming export of the cases filed in a year, read in chunks of chunkSize rows
+     */
+    ExportCursor<Case> exportCasesFiledIn(int year, int chunkSize) throws RemoteException;
+    
     /**
      * Gets a case with all its details including client, attorneys, documents, events, and time entries
      */
     Case getCaseWithDetails(Case legalCase) throws RemoteException;
     
+    /**
+     * Gets a case with only the associations named in the fetch spec, all initialized.
+     * The spec lists association paths separated by commas, e.g.
+     * "client, attorneys, events[upcoming], timeEntries[unbilled].attorney"; a
+     * bracketed filter limits a collection to matching elements. Filters are
+     * active/closed on cases, upcoming/past on events and unbilled/billed on time entries.
+     * An invalid spec throws IllegalArgumentException.
+     */
+    Case getCaseGraph(Case legalCase, String fetchSpec) throws RemoteException;
+    
     /**
      * Assigns an attorney to a case
      */
@@ -101,6 +160,31 @@ public interface CaseService extends Remote {
      */
     List<Case> getActiveCases() throws RemoteException;
     
+    /**
+     * Gets summaries of all cases, newest filing date first
+     */
+    List<CaseSummary> findAllCaseSummaries() throws RemoteException;
+    
+    /**
+     * Gets summaries of the cases with a status, newest filing date first
+     */
+    List<CaseSummary> findCaseSummariesByStatus(String status) throws RemoteException;
+    
+    /**
+     * Gets summaries of a client's cases, newest filing date first
+     */
+    List<CaseSummary> findCaseSummariesByClient(int clientId) throws RemoteException;
+    
+    /**
+     * Gets summaries of the cases an attorney is assigned to, newest filing date first
+     */
+    List<CaseSummary> findCaseSummariesByAttorney(int attorneyId) throws RemoteException;
+    
+    /**
+     * Gets summaries of active cases (not closed or cancelled), newest filing date first
+     */
+    List<CaseSummary> getActiveCaseSummaries() throws RemoteException;
+    
     /**
      * Gets cases with upcoming deadlines
      */
@@ -115,4 +199,38 @@ public interface CaseService extends Remote {
      * Gets case statistics for dashboard
      */
     java.util.Map<String, Object> getCaseStatistics() throws RemoteException;
+    
+    /**
+     * Rebuilds the case search index from the database
+     */
+    int rebuildCaseSearchIndex() throws RemoteException;
+    
+    /**
+     * Archives the next batch of cases closed longer than the retention period
+     *
+     * @return Number of cases archived
+     */
+    int archiveClosedCases() throws RemoteException;
+    
+    /**
+     * Finds a client's archived cases, most recently closed first
+     */
+    List<ArchivedCase> findArchivedCasesByClient(int clientId) throws RemoteException;
+    
+    /**
+     * Finds archived cases whose title contains some text, most recently closed first
+     */
+    List<ArchivedCase> findArchivedCasesByTitle(String title) throws RemoteException;
+    
+    /**
+     * Gets an archived case with its documents, events and invoices, without restoring it
+     */
+    CaseArchive getArchivedCase(String caseNumber) throws RemoteException;
+    
+    /**
+     * Moves an archived case back into the live tables
+     *
+     * @return The restored case, or null if no case with that number is archived
+     */
+    Case restoreArchivedCase(String caseNumber) throws RemoteException;
 }
\ No newline at end of file
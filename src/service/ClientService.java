@@ -4,6 +4,7 @@ import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.List;
 import model.Client;
+import model.Suggestion;
 
 /**
  * Remote service interface for Client operations
@@ -30,6 +31,12 @@ public interface ClientService extends Remote {
      */
     Client findClientById(Client client) throws RemoteException;
     
+    /**
+     * Gets a client with only the associations named in the fetch spec, e.g.
+     * "cases[active].events[upcoming]"; see CaseService.getCaseGraph for the format
+     */
+    Client getClientGraph(Client client, String fetchSpec) throws RemoteException;
+    
     /**
      * Finds a client by client ID
      */
@@ -40,6 +47,14 @@ public interface ClientService extends Remote {
      */
     List<Client> findClientsByName(String name) throws RemoteException;
     
+    /**
+     * Suggests clients for a lookup box by name, contact person or client ID, best match first
+     *
+     * @param text What has been typed so far
+     * @param limit Most suggestions to return
+     */
+    List<Suggestion> suggestClients(String text, int limit) throws RemoteException;
+    
     /**
      * Finds a client by email
      */
@@ -4,7 +4,10 @@ import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import model.Document;
+import model.DocumentSummary;
+import model.Page;
 
 /**
  * Remote service interface for Document operations
@@ -31,6 +34,18 @@ public interface DocumentService extends Remote {
      */
     Document updateDocumentStatus(Document document, String status) throws RemoteException;
     
+    /**
+     * Changes only the named properties of a document, given as property name
+     * to new value: title, description, documentType, filePath, documentDate
+     * or status. Values that are already current are not written. If the
+     * document has changed since the given version, nothing is written and
+     * java.util.ConcurrentModificationException is thrown; an unknown property
+     * or a value of the wrong type throws IllegalArgumentException.
+     *
+     * @return The document as it now is, with its new version, or null if it does not exist
+     */
+    Document patchDocument(int documentId, long version, Map<String, Object> changes) throws RemoteException;
+    
     /**
      * Finds a document by ID
      */
@@ -42,7 +57,7 @@ public interface DocumentService extends Remote {
     Document findDocumentByDocumentId(String documentId) throws RemoteException;
     
     /**
-     * Finds documents by title or description
+     * Finds documents by title, description or type, best match first
      */
     List<Document> findDocumentsByText(String searchText) throws RemoteException;
     
@@ -66,8 +81,53 @@ public interface DocumentService extends Remote {
      */
     List<Document> findAllDocuments() throws RemoteException;
     
+    /**
+     * Gets summaries of all documents, most recently added first
+     */
+    List<DocumentSummary> findAllDocumentSummaries() throws RemoteException;
+    
+    /**
+     * Gets summaries of a case's documents, most recently added first
+     */
+    List<DocumentSummary> findDocumentSummariesByCase(int caseId) throws RemoteException;
+    
+    /**
+     * Gets summaries of the documents of a type, most recently added first
+     */
+    List<DocumentSummary> findDocumentSummariesByType(String documentType) throws RemoteException;
+    
+    /**
+     * Gets one page of all documents, most recently added first
+     */
+    Page<Document> findAllDocumentsPage(String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Finds one page of documents by type, most recently added first
+     */
+    Page<Document> findDocumentsByTypePage(String documentType, String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Finds one page of documents by document date range, oldest first
+     */
+    Page<Document> findDocumentsByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Finds one page of documents by title, description or type, best match first
+     */
+    Page<Document> searchDocumentsPage(String searchText, String cursor, int pageSize) throws RemoteException;
+    
     /**
      * Gets a document with its case information
      */
     Document getDocumentWithCase(Document document) throws RemoteException;
+    
+    /**
+     * Generates the next document ID
+     */
+    String generateNextDocumentId() throws RemoteException;
+    
+    /**
+     * Rebuilds the document search index from the database
+     */
+    int rebuildDocumentSearchIndex() throws RemoteException;
 }
\ No newline at end of file
@@ -4,7 +4,10 @@ import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import model.Event;
+import model.EventSummary;
+import model.Page;
 
 /**
  * Remote service interface for Event operations
@@ -31,6 +34,20 @@ public interface EventService extends Remote {
      */
     Event updateEventStatus(Event event, String status) throws RemoteException;
     
+    /**
+     * Changes only the named properties of an event, given as property name
+     * to new value. Patchable properties are title, description, eventType,
+     * eventDate, startTime, endTime, location, status, reminderSet and
+     * reminderDays; the reminder is moved to match. Values that are already
+     * current are not written. If the event has changed since the given
+     * version, nothing is written and java.util.ConcurrentModificationException
+     * is thrown; an unknown property or a value of the wrong type throws
+     * IllegalArgumentException.
+     *
+     * @return The event as it now is, with its new version, or null if it does not exist
+     */
+    Event patchEvent(int eventId, long version, Map<String, Object> changes) throws RemoteException;
+    
     /**
      * Finds an event by ID
      */
@@ -71,8 +88,48 @@ public interface EventService extends Remote {
      */
     List<Event> findAllEvents() throws RemoteException;
     
+    /**
+     * Gets summaries of all events, latest day first
+     */
+    List<EventSummary> findAllEventSummaries() throws RemoteException;
+    
+    /**
+     * Gets summaries of a case's events in date order
+     */
+    List<EventSummary> findEventSummariesByCase(int caseId) throws RemoteException;
+    
+    /**
+     * Gets summaries of the events in a date range, in date order
+     */
+    List<EventSummary> findEventSummariesByDateRange(LocalDate startDate, LocalDate endDate) throws RemoteException;
+    
+    /**
+     * Gets summaries of the events with a status, in date order
+     */
+    List<EventSummary> findEventSummariesByStatus(String status) throws RemoteException;
+    
+    /**
+     * Gets one page of all events, latest day first and by start time within a day
+     */
+    Page<Event> findAllEventsPage(String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Finds one page of events by status in date and start time order
+     */
+    Page<Event> findEventsByStatusPage(String status, String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Finds one page of events by date range in date and start time order
+     */
+    Page<Event> findEventsByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) throws RemoteException;
+    
     /**
      * Gets an event with its case information
      */
     Event getEventWithCase(Event event) throws RemoteException;
+    
+    /**
+     * Generates the next event ID
+     */
+    String generateNextEventId() throws RemoteException;
 }
\ No newline at end of file
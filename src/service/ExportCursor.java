@@ -0,0 +1,33 @@
+package service;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Remote iterator over a bulk export, read one chunk per call.
+ * Close it when done; the server also closes cursors left idle or abandoned
+ * by a disconnected client.
+ */
+public interface ExportCursor<T> extends Remote {
+
+    /**
+     * Gets the next chunk of rows; an empty list means the export is finished
+     */
+    List<T> nextChunk() throws RemoteException;
+
+    /**
+     * Checks if more rows may follow
+     */
+    boolean hasMore() throws RemoteException;
+
+    /**
+     * Gets the number of rows delivered so far
+     */
+    int getRowsRead() throws RemoteException;
+
+    /**
+     * Closes the export and releases its database connection
+     */
+    void close() throws RemoteException;
+}
@@ -4,7 +4,10 @@ import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import model.Invoice;
+import model.InvoiceSummary;
+import model.Page;
 
 /**
  * Remote service interface for Invoice operations
@@ -31,6 +34,19 @@ public interface InvoiceService extends Remote {
      */
     Invoice updateInvoiceStatus(Invoice invoice, String status) throws RemoteException;
     
+    /**
+     * Changes only the named properties of an invoice, given as property name
+     * to new value: issueDate, dueDate, status or notes. Values that are
+     * already current are not written. Posting a payment also changes the
+     * invoice's version, so if anything has changed it since the given version,
+     * nothing is written and java.util.ConcurrentModificationException is
+     * thrown. An unknown property or a value of the wrong type throws
+     * IllegalArgumentException.
+     *
+     * @return The invoice as it now is, with its new version, or null if it does not exist
+     */
+    Invoice patchInvoice(int invoiceId, long version, Map<String, Object> changes) throws RemoteException;
+    
     /**
      * Finds an invoice by ID
      */
@@ -71,11 +87,52 @@ public interface InvoiceService extends Remote {
      */
     List<Invoice> findAllInvoices() throws RemoteException;
     
+    /**
+     * Gets summaries of all invoices, newest first
+     */
+    List<InvoiceSummary> findAllInvoiceSummaries() throws RemoteException;
+    
+    /**
+     * Gets summaries of the invoices with a status, newest first
+     */
+    List<InvoiceSummary> findInvoiceSummariesByStatus(String status) throws RemoteException;
+    
+    /**
+     * Gets summaries of a client's invoices, newest first
+     */
+    List<InvoiceSummary> findInvoiceSummariesByClient(int clientId) throws RemoteException;
+    
+    /**
+     * Gets summaries of overdue invoices, earliest due date first
+     */
+    List<InvoiceSummary> findOverdueInvoiceSummaries() throws RemoteException;
+    
+    /**
+     * Gets one page of all invoices, newest issue date first
+     */
+    Page<Invoice> findAllInvoicesPage(String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Finds one page of invoices by status, newest issue date first
+     */
+    Page<Invoice> findInvoicesByStatusPage(String status, String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Finds one page of invoices by issue date range, oldest first
+     */
+    Page<Invoice> findInvoicesByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) throws RemoteException;
+    
     /**
      * Gets an invoice with all related details (client, case, time entries, payments)
      */
     Invoice getInvoiceWithDetails(Invoice invoice) throws RemoteException;
     
+    /**
+     * Gets an invoice with only the associations named in the fetch spec, e.g.
+     * "client, legalCase, payments"; see CaseService.getCaseGraph for the format
+     */
+    Invoice getInvoiceGraph(Invoice invoice, String fetchSpec) throws RemoteException;
+    
     /**
      * Updates the paid amount for an invoice based on payments
      */
@@ -86,6 +143,12 @@ public interface InvoiceService extends Remote {
      */
     Invoice createInvoiceFromUnbilledTimeEntries(int caseId, String invoiceNumber, LocalDate dueDate) throws RemoteException;
     
+    /**
+     * Starts a billing run that invoices every case with unbilled time, several cases at a time.
+     * Poll the returned handle for progress and the final summary.
+     */
+    BillingRun startBillingRun(LocalDate dueDate, int workers) throws RemoteException;
+    
     /**
      * Generates the next invoice number
      */
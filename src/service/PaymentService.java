@@ -5,6 +5,7 @@ import java.rmi.RemoteException;
 import java.time.LocalDate;
 import java.math.BigDecimal;
 import java.util.List;
+import model.Page;
 import model.Payment;
 
 /**
@@ -62,6 +63,26 @@ public interface PaymentService extends Remote {
      */
     List<Payment> findAllPayments() throws RemoteException;
     
+    /**
+     * Gets one page of all payments, newest first
+     */
+    Page<Payment> findAllPaymentsPage(String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Finds one page of payments by payment method, newest first
+     */
+    Page<Payment> findPaymentsByMethodPage(String paymentMethod, String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Finds one page of payments by date range, oldest first
+     */
+    Page<Payment> findPaymentsByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Opens a streaming export of all payments, read in chunks of chunkSize rows
+     */
+    ExportCursor<Payment> exportPayments(int chunkSize) throws RemoteException;
+    
     /**
      * Gets a payment with invoice and client information
      */
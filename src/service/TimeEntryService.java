@@ -5,6 +5,8 @@ import java.rmi.RemoteException;
 import java.time.LocalDate;
 import java.math.BigDecimal;
 import java.util.List;
+import model.BatchInsertResult;
+import model.Page;
 import model.TimeEntry;
 
 /**
@@ -17,6 +19,12 @@ public interface TimeEntryService extends Remote {
      */
     TimeEntry createTimeEntry(TimeEntry timeEntry) throws RemoteException;
     
+    /**
+     * Creates many time entries in one call, e.g. a day's or week's sync.
+     * Invalid entries are skipped and reported by their position in the list.
+     */
+    BatchInsertResult createTimeEntries(List<TimeEntry> timeEntries) throws RemoteException;
+    
     /**
      * Updates an existing time entry
      */
@@ -72,6 +80,21 @@ public interface TimeEntryService extends Remote {
      */
     List<TimeEntry> findAllTimeEntries() throws RemoteException;
     
+    /**
+     * Gets one page of all time entries, newest first
+     */
+    Page<TimeEntry> findAllTimeEntriesPage(String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Finds one page of time entries by date range, oldest first
+     */
+    Page<TimeEntry> findTimeEntriesByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) throws RemoteException;
+    
+    /**
+     * Opens a streaming export of all time entries, read in chunks of chunkSize rows
+     */
+    ExportCursor<TimeEntry> exportTimeEntries(int chunkSize) throws RemoteException;
+    
     /**
      * Gets a time entry with case and attorney information
      */
@@ -86,4 +109,9 @@ public interface TimeEntryService extends Remote {
      * Gets the total billable amount for a case
      */
     BigDecimal getTotalAmountByCase(int caseId) throws RemoteException;
+    
+    /**
+     * Generates the next time entry ID
+     */
+    String generateNextTimeEntryId() throws RemoteException;
 }
\ No newline at end of file
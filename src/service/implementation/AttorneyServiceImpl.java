@@ -1,10 +1,12 @@
 package service.implementation;
 
 import dao.AttorneyDao;
+import dao.UnitOfWork;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.List;
 import model.Attorney;
+import model.Suggestion;
 import service.AttorneyService;
 
 /**
@@ -20,51 +22,61 @@ public class AttorneyServiceImpl extends UnicastRemoteObject implements Attorney
 
     @Override
     public Attorney createAttorney(Attorney attorney) throws RemoteException {
-        return attorneyDao.createAttorney(attorney);
+        return UnitOfWork.execute("AttorneyService.createAttorney", () -> attorneyDao.createAttorney(attorney));
     }
 
     @Override
     public Attorney updateAttorney(Attorney attorney) throws RemoteException {
-        return attorneyDao.updateAttorney(attorney);
+        return UnitOfWork.execute("AttorneyService.updateAttorney", () -> attorneyDao.updateAttorney(attorney));
     }
 
     @Override
     public Attorney deleteAttorney(Attorney attorney) throws RemoteException {
-        return attorneyDao.deleteAttorney(attorney);
+        return UnitOfWork.execute("AttorneyService.deleteAttorney", () -> attorneyDao.deleteAttorney(attorney));
     }
 
     @Override
     public Attorney findAttorneyById(Attorney attorney) throws RemoteException {
-        return attorneyDao.findAttorneyById(attorney);
+        return UnitOfWork.execute("AttorneyService.findAttorneyById", () -> attorneyDao.findAttorneyById(attorney));
+    }
+
+    @Override
+    public Attorney getAttorneyGraph(Attorney attorney, String fetchSpec) throws RemoteException {
+        return UnitOfWork.execute("AttorneyService.getAttorneyGraph", () -> attorneyDao.getAttorneyGraph(attorney, fetchSpec));
     }
 
     @Override
     public Attorney findAttorneyByAttorneyId(String attorneyId) throws RemoteException {
-        return attorneyDao.findAttorneyByAttorneyId(attorneyId);
+        return UnitOfWork.execute("AttorneyService.findAttorneyByAttorneyId", () -> attorneyDao.findAttorneyByAttorneyId(attorneyId));
     }
 
     @Override
     public List<Attorney> findAttorneysByName(String name) throws RemoteException {
-        return attorneyDao.findAttorneysByName(name);
+        return UnitOfWork.execute("AttorneyService.findAttorneysByName", () -> attorneyDao.findAttorneysByName(name));
+    }
+
+    @Override
+    public List<Suggestion> suggestAttorneys(String text, int limit) throws RemoteException {
+        return UnitOfWork.execute("AttorneyService.suggestAttorneys", () -> attorneyDao.suggestAttorneys(text, limit));
     }
 
     @Override
     public List<Attorney> findAttorneysBySpecialization(String specialization) throws RemoteException {
-        return attorneyDao.findAttorneysBySpecialization(specialization);
+        return UnitOfWork.execute("AttorneyService.findAttorneysBySpecialization", () -> attorneyDao.findAttorneysBySpecialization(specialization));
     }
 
     @Override
     public List<Attorney> findAttorneysByCase(int caseId) throws RemoteException {
-        return attorneyDao.findAttorneysByCase(caseId);
+        return UnitOfWork.execute("AttorneyService.findAttorneysByCase", () -> attorneyDao.findAttorneysByCase(caseId));
     }
 
     @Override
     public List<Attorney> findAllAttorneys() throws RemoteException {
-        return attorneyDao.findAllAttorneys();
+        return UnitOfWork.execute("AttorneyService.findAllAttorneys", () -> attorneyDao.findAllAttorneys());
     }
 
     @Override
     public Attorney getAttorneyWithCases(Attorney attorney) throws RemoteException {
-        return attorneyDao.getAttorneyWithCases(attorney);
+        return UnitOfWork.execute("AttorneyService.getAttorneyWithCases", () -> attorneyDao.getAttorneyWithCases(attorney));
     }
 }
\ No newline at end of file
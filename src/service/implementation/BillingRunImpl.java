@@ -0,0 +1,182 @@
+package service.implementation;
+
+import dao.HibernateUtil;
+import dao.InvoiceDao;
+import java.math.BigDecimal;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.rmi.server.Unreferenced;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import model.BillingRunStatus;
+import model.Invoice;
+import service.BillingRun;
+
+/**
+ * Implementation of BillingRun for RMI: bills every case with unbilled time,
+ * one invoice per case.
+ *
+ * Cases are queued on a fixed pool of worker threads, and each case is billed
+ * in its own transaction, so a failure rolls back only that case and a slow
+ * case holds up only its own worker. The run keeps going if the client
+ * disconnects; the handle is unexported once the run has finished and no
+ * client references it.
+ */
+public class BillingRunImpl extends UnicastRemoteObject implements BillingRun, Unreferenced {
+
+    private static final Logger logger = Logger.getLogger(BillingRunImpl.class.getName());
+
+    static final int DEFAULT_WORKERS = 4;
+    static final int MAX_WORKERS = 16;
+
+    private static final AtomicInteger runSequence = new AtomicInteger();
+
+    private final InvoiceDao invoiceDao;
+    private final LocalDate dueDate;
+    private final int totalCases;
+    private final long startedAt = System.currentTimeMillis();
+
+    private final AtomicInteger processedCases = new AtomicInteger();
+    private final List<String> invoiceNumbers = new ArrayList<>();
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+    private final Map<Integer, String> skippedCases = new ConcurrentSkipListMap<>();
+    private final Map<Integer, String> failedCases = new ConcurrentSkipListMap<>();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile boolean cancelled;
+    private volatile long finishedAt;
+    private volatile boolean unreferenced;
+
+    private BillingRunImpl(InvoiceDao invoiceDao, LocalDate dueDate, int totalCases) throws RemoteException {
+        super();
+        this.invoiceDao = invoiceDao;
+        this.dueDate = dueDate;
+        this.totalCases = totalCases;
+    }
+
+    /**
+     * Starts a billing run over every case that has unbilled time
+     *
+     * @param invoiceDao DAO used to find and bill the cases
+     * @param dueDate Due date for the new invoices
+     * @param workers Number of cases billed in parallel; non-positive means the default
+     * @return Handle on the running billing run, or null if the cases could not be read
+     */
+    static BillingRun start(InvoiceDao invoiceDao, LocalDate dueDate, int workers) throws RemoteException {
+        List<Integer> caseIds = invoiceDao.findCaseIdsWithUnbilledTime();
+        if (caseIds == null) {
+            return null;
+        }
+        BillingRunImpl run = new BillingRunImpl(invoiceDao, dueDate, caseIds.size());
+
+        // Leave half the connection pool for interactive users
+        int poolLimit = Math.max(1, HibernateUtil.getConnectionPool().getMaxSize() / 2);
+        int threads = Math.min(workers <= 0 ? DEFAULT_WORKERS : Math.min(workers, MAX_WORKERS), poolLimit);
+        int runNumber = runSequence.incrementAndGet();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "billing-run-" + runNumber + "-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        logger.info("Billing run " + runNumber + " started for " + caseIds.size() + " cases on " + threads + " workers");
+        if (caseIds.isEmpty()) {
+            run.finish();
+        }
+        for (Integer caseId : caseIds) {
+            executor.execute(() -> run.bill(caseId));
+        }
+        executor.shutdown();
+        return run;
+    }
+
+    private void bill(int caseId) {
+        try {
+            if (cancelled) {
+                skippedCases.put(caseId, "Run cancelled");
+                return;
+            }
+            Invoice invoice = invoiceDao.billCase(caseId, invoiceDao::generateNextInvoiceNumber, dueDate);
+            if (invoice == null) {
+                skippedCases.put(caseId, "No unbilled time");
+            } else {
+                synchronized (this) {
+                    invoiceNumbers.add(invoice.getInvoiceNumber());
+                    totalAmount = totalAmount.add(invoice.getAmount());
+                }
+            }
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Billing failed for case " + caseId, ex);
+            failedCases.put(caseId, String.valueOf(ex.getMessage()));
+        } finally {
+            if (processedCases.incrementAndGet() == totalCases) {
+                finish();
+            }
+        }
+    }
+
+    private void finish() {
+        finishedAt = System.currentTimeMillis();
+        finished.countDown();
+        BillingRunStatus summary = snapshot();
+        logger.info("Billing run finished: " + summary);
+        if (unreferenced) {
+            unexport();
+        }
+    }
+
+    private synchronized BillingRunStatus snapshot() {
+        boolean done = finished.getCount() == 0;
+        return new BillingRunStatus(totalCases, processedCases.get(), new ArrayList<>(invoiceNumbers), totalAmount,
+                new TreeMap<>(skippedCases), new TreeMap<>(failedCases), done, cancelled,
+                (done ? finishedAt : System.currentTimeMillis()) - startedAt);
+    }
+
+    @Override
+    public BillingRunStatus getStatus() throws RemoteException {
+        return snapshot();
+    }
+
+    @Override
+    public BillingRunStatus awaitCompletion(long timeoutMillis) throws RemoteException {
+        try {
+            finished.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return snapshot();
+    }
+
+    @Override
+    public void cancel() throws RemoteException {
+        cancelled = true;
+    }
+
+    @Override
+    public void unreferenced() {
+        unreferenced = true;
+        if (finished.getCount() == 0) {
+            unexport();
+        }
+    }
+
+    private void unexport() {
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (NoSuchObjectException ex) {
+            // Already unexported
+        }
+    }
+}
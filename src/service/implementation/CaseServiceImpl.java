@@ -1,12 +1,18 @@
 package service.implementation;
 
 import dao.CaseDao;
+import dao.UnitOfWork;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import model.ArchivedCase;
 import model.Case;
+import model.CaseArchive;
+import model.CaseSummary;
+import model.Page;
+import service.ExportCursor;
 import service.CaseService;
 
 /**
@@ -22,106 +28,201 @@ public class CaseServiceImpl extends UnicastRemoteObject implements CaseService
 
     @Override
     public Case createCase(Case legalCase) throws RemoteException {
-        return caseDao.createCase(legalCase);
+        return UnitOfWork.execute("CaseService.createCase", () -> caseDao.createCase(legalCase));
     }
 
     @Override
     public Case updateCase(Case legalCase) throws RemoteException {
-        return caseDao.updateCase(legalCase);
+        return UnitOfWork.execute("CaseService.updateCase", () -> caseDao.updateCase(legalCase));
     }
 
     @Override
     public Case deleteCase(Case legalCase) throws RemoteException {
-        return caseDao.deleteCase(legalCase);
+        return UnitOfWork.execute("CaseService.deleteCase", () -> caseDao.deleteCase(legalCase));
     }
 
     @Override
     public Case updateCaseStatus(Case legalCase, String status) throws RemoteException {
-        return caseDao.updateCaseStatus(legalCase, status);
+        return UnitOfWork.execute("CaseService.updateCaseStatus", () -> caseDao.updateCaseStatus(legalCase, status));
+    }
+
+    @Override
+    public Case patchCase(int caseId, long version, Map<String, Object> changes) throws RemoteException {
+        return UnitOfWork.execute("CaseService.patchCase", () -> caseDao.patchCase(caseId, version, changes));
     }
 
     @Override
     public Case findCaseById(Case legalCase) throws RemoteException {
-        return caseDao.findCaseById(legalCase);
+        return UnitOfWork.execute("CaseService.findCaseById", () -> caseDao.findCaseById(legalCase));
     }
 
     @Override
     public Case findCaseByCaseNumber(String caseNumber) throws RemoteException {
-        return caseDao.findCaseByCaseNumber(caseNumber);
+        return UnitOfWork.execute("CaseService.findCaseByCaseNumber", () -> caseDao.findCaseByCaseNumber(caseNumber));
     }
 
     @Override
     public List<Case> findCasesByText(String searchText) throws RemoteException {
-        return caseDao.findCasesByText(searchText);
+        return UnitOfWork.execute("CaseService.findCasesByText", () -> caseDao.findCasesByText(searchText));
     }
 
     @Override
     public List<Case> findCasesByClient(int clientId) throws RemoteException {
-        return caseDao.findCasesByClient(clientId);
+        return UnitOfWork.execute("CaseService.findCasesByClient", () -> caseDao.findCasesByClient(clientId));
     }
 
     @Override
     public List<Case> findCasesByAttorney(int attorneyId) throws RemoteException {
-        return caseDao.findCasesByAttorney(attorneyId);
+        return UnitOfWork.execute("CaseService.findCasesByAttorney", () -> caseDao.findCasesByAttorney(attorneyId));
     }
 
     @Override
     public List<Case> findCasesByStatus(String status) throws RemoteException {
-        return caseDao.findCasesByStatus(status);
+        return UnitOfWork.execute("CaseService.findCasesByStatus", () -> caseDao.findCasesByStatus(status));
     }
 
     @Override
     public List<Case> findCasesByType(String caseType) throws RemoteException {
-        return caseDao.findCasesByType(caseType);
+        return UnitOfWork.execute("CaseService.findCasesByType", () -> caseDao.findCasesByType(caseType));
     }
 
     @Override
     public List<Case> findCasesByDateRange(LocalDate startDate, LocalDate endDate) throws RemoteException {
-        return caseDao.findCasesByDateRange(startDate, endDate);
+        return UnitOfWork.execute("CaseService.findCasesByDateRange", () -> caseDao.findCasesByDateRange(startDate, endDate));
     }
 
     @Override
     public List<Case> findAllCases() throws RemoteException {
-        return caseDao.findAllCases();
+        return UnitOfWork.execute("CaseService.findAllCases", () -> caseDao.findAllCases());
+    }
+
+    @Override
+    public Page<Case> findAllCasesPage(String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("CaseService.findAllCasesPage", () -> caseDao.findAllCasesPage(cursor, pageSize));
+    }
+
+    @Override
+    public Page<Case> findCasesByStatusPage(String status, String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("CaseService.findCasesByStatusPage", () -> caseDao.findCasesByStatusPage(status, cursor, pageSize));
+    }
+
+    @Override
+    public Page<Case> findCasesByTypePage(String caseType, String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("CaseService.findCasesByTypePage", () -> caseDao.findCasesByTypePage(caseType, cursor, pageSize));
+    }
+
+    @Override
+    public Page<Case> findCasesByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("CaseService.findCasesByDateRangePage", () -> caseDao.findCasesByDateRangePage(startDate, endDate, cursor, pageSize));
+    }
+
+    @Override
+    public Page<Case> searchCasesPage(String searchText, String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("CaseService.searchCasesPage", () -> caseDao.searchCasesPage(searchText, cursor, pageSize));
+    }
+
+    @Override
+    public ExportCursor<Case> exportCasesFiledIn(int year, int chunkSize) throws RemoteException {
+        return ExportCursorImpl.open(caseDao.openCaseExport(year), chunkSize);
     }
 
     @Override
     public Case getCaseWithDetails(Case legalCase) throws RemoteException {
-        return caseDao.getCaseWithDetails(legalCase);
+        return UnitOfWork.execute("CaseService.getCaseWithDetails", () -> caseDao.getCaseWithDetails(legalCase));
+    }
+
+    @Override
+    public Case getCaseGraph(Case legalCase, String fetchSpec) throws RemoteException {
+        return UnitOfWork.execute("CaseService.getCaseGraph", () -> caseDao.getCaseGraph(legalCase, fetchSpec));
     }
 
     @Override
     public boolean assignAttorneyToCase(int caseId, int attorneyId) throws RemoteException {
-        return caseDao.assignAttorneyToCase(caseId, attorneyId);
+        return UnitOfWork.execute("CaseService.assignAttorneyToCase", () -> caseDao.assignAttorneyToCase(caseId, attorneyId));
     }
 
     @Override
     public boolean removeAttorneyFromCase(int caseId, int attorneyId) throws RemoteException {
-        return caseDao.removeAttorneyFromCase(caseId, attorneyId);
+        return UnitOfWork.execute("CaseService.removeAttorneyFromCase", () -> caseDao.removeAttorneyFromCase(caseId, attorneyId));
     }
 
     @Override
     public List<Case> getCasesDueForReview(int daysBefore) throws RemoteException {
-        return caseDao.getCasesDueForReview(daysBefore);
+        return UnitOfWork.execute("CaseService.getCasesDueForReview", () -> caseDao.getCasesDueForReview(daysBefore));
     }
 
     @Override
     public List<Case> getActiveCases() throws RemoteException {
-        return caseDao.getActiveCases();
+        return UnitOfWork.execute("CaseService.getActiveCases", () -> caseDao.getActiveCases());
+    }
+
+    @Override
+    public List<CaseSummary> findAllCaseSummaries() throws RemoteException {
+        return UnitOfWork.execute("CaseService.findAllCaseSummaries", () -> caseDao.findAllCaseSummaries());
+    }
+
+    @Override
+    public List<CaseSummary> findCaseSummariesByStatus(String status) throws RemoteException {
+        return UnitOfWork.execute("CaseService.findCaseSummariesByStatus", () -> caseDao.findCaseSummariesByStatus(status));
+    }
+
+    @Override
+    public List<CaseSummary> findCaseSummariesByClient(int clientId) throws RemoteException {
+        return UnitOfWork.execute("CaseService.findCaseSummariesByClient", () -> caseDao.findCaseSummariesByClient(clientId));
+    }
+
+    @Override
+    public List<CaseSummary> findCaseSummariesByAttorney(int attorneyId) throws RemoteException {
+        return UnitOfWork.execute("CaseService.findCaseSummariesByAttorney", () -> caseDao.findCaseSummariesByAttorney(attorneyId));
+    }
+
+    @Override
+    public List<CaseSummary> getActiveCaseSummaries() throws RemoteException {
+        return UnitOfWork.execute("CaseService.getActiveCaseSummaries", () -> caseDao.getActiveCaseSummaries());
     }
 
     @Override
     public List<Case> getCasesWithUpcomingDeadlines(int daysAhead) throws RemoteException {
-        return caseDao.getCasesWithUpcomingDeadlines(daysAhead);
+        return UnitOfWork.execute("CaseService.getCasesWithUpcomingDeadlines", () -> caseDao.getCasesWithUpcomingDeadlines(daysAhead));
     }
 
     @Override
     public String generateNextCaseNumber() throws RemoteException {
-        return caseDao.generateNextCaseNumber();
+        return UnitOfWork.execute("CaseService.generateNextCaseNumber", () -> caseDao.generateNextCaseNumber());
     }
 
     @Override
     public Map<String, Object> getCaseStatistics() throws RemoteException {
-        return caseDao.getCaseStatistics();
+        return UnitOfWork.execute("CaseService.getCaseStatistics", () -> caseDao.getCaseStatistics());
+    }
+
+    @Override
+    public int rebuildCaseSearchIndex() throws RemoteException {
+        return UnitOfWork.execute("CaseService.rebuildCaseSearchIndex", () -> caseDao.rebuildCaseSearchIndex());
+    }
+
+    @Override
+    public int archiveClosedCases() throws RemoteException {
+        return UnitOfWork.execute("CaseService.archiveClosedCases", () -> caseDao.archiveClosedCases());
+    }
+
+    @Override
+    public List<ArchivedCase> findArchivedCasesByClient(int clientId) throws RemoteException {
+        return UnitOfWork.execute("CaseService.findArchivedCasesByClient", () -> caseDao.findArchivedCasesByClient(clientId));
+    }
+
+    @Override
+    public List<ArchivedCase> findArchivedCasesByTitle(String title) throws RemoteException {
+        return UnitOfWork.execute("CaseService.findArchivedCasesByTitle", () -> caseDao.findArchivedCasesByTitle(title));
+    }
+
+    @Override
+    public CaseArchive getArchivedCase(String caseNumber) throws RemoteException {
+        return UnitOfWork.execute("CaseService.getArchivedCase", () -> caseDao.getArchivedCase(caseNumber));
+    }
+
+    @Override
+    public Case restoreArchivedCase(String caseNumber) throws RemoteException {
+        return UnitOfWork.execute("CaseService.restoreArchivedCase", () -> caseDao.restoreArchivedCase(caseNumber));
     }
 }
\ No newline at end of file
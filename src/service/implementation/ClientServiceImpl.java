@@ -1,10 +1,12 @@
 package service.implementation;
 
 import dao.ClientDao;
+import dao.UnitOfWork;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.List;
 import model.Client;
+import model.Suggestion;
 import service.ClientService;
 
 /**
@@ -20,51 +22,61 @@ public class ClientServiceImpl extends UnicastRemoteObject implements ClientServ
 
     @Override
     public Client createClient(Client client) throws RemoteException {
-        return clientDao.createClient(client);
+        return UnitOfWork.execute("ClientService.createClient", () -> clientDao.createClient(client));
     }
 
     @Override
     public Client updateClient(Client client) throws RemoteException {
-        return clientDao.updateClient(client);
+        return UnitOfWork.execute("ClientService.updateClient", () -> clientDao.updateClient(client));
     }
 
     @Override
     public Client deleteClient(Client client) throws RemoteException {
-        return clientDao.deleteClient(client);
+        return UnitOfWork.execute("ClientService.deleteClient", () -> clientDao.deleteClient(client));
     }
 
     @Override
     public Client findClientById(Client client) throws RemoteException {
-        return clientDao.findClientById(client);
+        return UnitOfWork.execute("ClientService.findClientById", () -> clientDao.findClientById(client));
+    }
+
+    @Override
+    public Client getClientGraph(Client client, String fetchSpec) throws RemoteException {
+        return UnitOfWork.execute("ClientService.getClientGraph", () -> clientDao.getClientGraph(client, fetchSpec));
     }
 
     @Override
     public Client findClientByClientId(String clientId) throws RemoteException {
-        return clientDao.findClientByClientId(clientId);
+        return UnitOfWork.execute("ClientService.findClientByClientId", () -> clientDao.findClientByClientId(clientId));
     }
 
     @Override
     public List<Client> findClientsByName(String name) throws RemoteException {
-        return clientDao.findClientsByName(name);
+        return UnitOfWork.execute("ClientService.findClientsByName", () -> clientDao.findClientsByName(name));
+    }
+
+    @Override
+    public List<Suggestion> suggestClients(String text, int limit) throws RemoteException {
+        return UnitOfWork.execute("ClientService.suggestClients", () -> clientDao.suggestClients(text, limit));
     }
 
     @Override
     public Client findClientByEmail(String email) throws RemoteException {
-        return clientDao.findClientByEmail(email);
+        return UnitOfWork.execute("ClientService.findClientByEmail", () -> clientDao.findClientByEmail(email));
     }
 
     @Override
     public List<Client> findClientsByType(String clientType) throws RemoteException {
-        return clientDao.findClientsByType(clientType);
+        return UnitOfWork.execute("ClientService.findClientsByType", () -> clientDao.findClientsByType(clientType));
     }
 
     @Override
     public List<Client> findAllClients() throws RemoteException {
-        return clientDao.findAllClients();
+        return UnitOfWork.execute("ClientService.findAllClients", () -> clientDao.findAllClients());
     }
 
     @Override
     public Client getClientWithCases(Client client) throws RemoteException {
-        return clientDao.getClientWithCases(client);
+        return UnitOfWork.execute("ClientService.getClientWithCases", () -> clientDao.getClientWithCases(client));
     }
 }
\ No newline at end of file
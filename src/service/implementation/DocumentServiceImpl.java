@@ -1,11 +1,15 @@
 package service.implementation;
 
 import dao.DocumentDao;
+import dao.UnitOfWork;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import model.Document;
+import model.DocumentSummary;
+import model.Page;
 import service.DocumentService;
 
 /**
@@ -21,61 +25,111 @@ public class DocumentServiceImpl extends UnicastRemoteObject implements Document
 
     @Override
     public Document createDocument(Document document) throws RemoteException {
-        return documentDao.createDocument(document);
+        return UnitOfWork.execute("DocumentService.createDocument", () -> documentDao.createDocument(document));
     }
 
     @Override
     public Document updateDocument(Document document) throws RemoteException {
-        return documentDao.updateDocument(document);
+        return UnitOfWork.execute("DocumentService.updateDocument", () -> documentDao.updateDocument(document));
     }
 
     @Override
     public Document deleteDocument(Document document) throws RemoteException {
-        return documentDao.deleteDocument(document);
+        return UnitOfWork.execute("DocumentService.deleteDocument", () -> documentDao.deleteDocument(document));
     }
 
     @Override
     public Document updateDocumentStatus(Document document, String status) throws RemoteException {
-        return documentDao.updateDocumentStatus(document, status);
+        return UnitOfWork.execute("DocumentService.updateDocumentStatus", () -> documentDao.updateDocumentStatus(document, status));
+    }
+
+    @Override
+    public Document patchDocument(int documentId, long version, Map<String, Object> changes) throws RemoteException {
+        return UnitOfWork.execute("DocumentService.patchDocument", () -> documentDao.patchDocument(documentId, version, changes));
     }
 
     @Override
     public Document findDocumentById(Document document) throws RemoteException {
-        return documentDao.findDocumentById(document);
+        return UnitOfWork.execute("DocumentService.findDocumentById", () -> documentDao.findDocumentById(document));
     }
 
     @Override
     public Document findDocumentByDocumentId(String documentId) throws RemoteException {
-        return documentDao.findDocumentByDocumentId(documentId);
+        return UnitOfWork.execute("DocumentService.findDocumentByDocumentId", () -> documentDao.findDocumentByDocumentId(documentId));
     }
 
     @Override
     public List<Document> findDocumentsByText(String searchText) throws RemoteException {
-        return documentDao.findDocumentsByText(searchText);
+        return UnitOfWork.execute("DocumentService.findDocumentsByText", () -> documentDao.findDocumentsByText(searchText));
     }
 
     @Override
     public List<Document> findDocumentsByCase(int caseId) throws RemoteException {
-        return documentDao.findDocumentsByCase(caseId);
+        return UnitOfWork.execute("DocumentService.findDocumentsByCase", () -> documentDao.findDocumentsByCase(caseId));
     }
 
     @Override
     public List<Document> findDocumentsByType(String documentType) throws RemoteException {
-        return documentDao.findDocumentsByType(documentType);
+        return UnitOfWork.execute("DocumentService.findDocumentsByType", () -> documentDao.findDocumentsByType(documentType));
     }
 
     @Override
     public List<Document> findDocumentsByDateRange(LocalDate startDate, LocalDate endDate) throws RemoteException {
-        return documentDao.findDocumentsByDateRange(startDate, endDate);
+        return UnitOfWork.execute("DocumentService.findDocumentsByDateRange", () -> documentDao.findDocumentsByDateRange(startDate, endDate));
     }
 
     @Override
     public List<Document> findAllDocuments() throws RemoteException {
-        return documentDao.findAllDocuments();
+        return UnitOfWork.execute("DocumentService.findAllDocuments", () -> documentDao.findAllDocuments());
+    }
+
+    @Override
+    public List<DocumentSummary> findAllDocumentSummaries() throws RemoteException {
+        return UnitOfWork.execute("DocumentService.findAllDocumentSummaries", () -> documentDao.findAllDocumentSummaries());
+    }
+
+    @Override
+    public List<DocumentSummary> findDocumentSummariesByCase(int caseId) throws RemoteException {
+        return UnitOfWork.execute("DocumentService.findDocumentSummariesByCase", () -> documentDao.findDocumentSummariesByCase(caseId));
+    }
+
+    @Override
+    public List<DocumentSummary> findDocumentSummariesByType(String documentType) throws RemoteException {
+        return UnitOfWork.execute("DocumentService.findDocumentSummariesByType", () -> documentDao.findDocumentSummariesByType(documentType));
+    }
+
+    @Override
+    public Page<Document> findAllDocumentsPage(String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("DocumentService.findAllDocumentsPage", () -> documentDao.findAllDocumentsPage(cursor, pageSize));
+    }
+
+    @Override
+    public Page<Document> findDocumentsByTypePage(String documentType, String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("DocumentService.findDocumentsByTypePage", () -> documentDao.findDocumentsByTypePage(documentType, cursor, pageSize));
+    }
+
+    @Override
+    public Page<Document> findDocumentsByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("DocumentService.findDocumentsByDateRangePage", () -> documentDao.findDocumentsByDateRangePage(startDate, endDate, cursor, pageSize));
+    }
+
+    @Override
+    public Page<Document> searchDocumentsPage(String searchText, String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("DocumentService.searchDocumentsPage", () -> documentDao.searchDocumentsPage(searchText, cursor, pageSize));
     }
 
     @Override
     public Document getDocumentWithCase(Document document) throws RemoteException {
-        return documentDao.getDocumentWithCase(document);
+        return UnitOfWork.execute("DocumentService.getDocumentWithCase", () -> documentDao.getDocumentWithCase(document));
+    }
+
+    @Override
+    public String generateNextDocumentId() throws RemoteException {
+        return UnitOfWork.execute("DocumentService.generateNextDocumentId", () -> documentDao.generateNextDocumentId());
+    }
+
+    @Override
+    public int rebuildDocumentSearchIndex() throws RemoteException {
+        return UnitOfWork.execute("DocumentService.rebuildDocumentSearchIndex", () -> documentDao.rebuildDocumentSearchIndex());
     }
 }
\ No newline at end of file
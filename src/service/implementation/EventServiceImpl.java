@@ -1,11 +1,15 @@
 package service.implementation;
 
 import dao.EventDao;
+import dao.UnitOfWork;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import model.Event;
+import model.EventSummary;
+import model.Page;
 import service.EventService;
 
 /**
@@ -21,66 +25,111 @@ public class EventServiceImpl extends UnicastRemoteObject implements EventServic
 
     @Override
     public Event createEvent(Event event) throws RemoteException {
-        return eventDao.createEvent(event);
+        return UnitOfWork.execute("EventService.createEvent", () -> eventDao.createEvent(event));
     }
 
     @Override
     public Event updateEvent(Event event) throws RemoteException {
-        return eventDao.updateEvent(event);
+        return UnitOfWork.execute("EventService.updateEvent", () -> eventDao.updateEvent(event));
     }
 
     @Override
     public Event deleteEvent(Event event) throws RemoteException {
-        return eventDao.deleteEvent(event);
+        return UnitOfWork.execute("EventService.deleteEvent", () -> eventDao.deleteEvent(event));
     }
 
     @Override
     public Event updateEventStatus(Event event, String status) throws RemoteException {
-        return eventDao.updateEventStatus(event, status);
+        return UnitOfWork.execute("EventService.updateEventStatus", () -> eventDao.updateEventStatus(event, status));
+    }
+
+    @Override
+    public Event patchEvent(int eventId, long version, Map<String, Object> changes) throws RemoteException {
+        return UnitOfWork.execute("EventService.patchEvent", () -> eventDao.patchEvent(eventId, version, changes));
     }
 
     @Override
     public Event findEventById(Event event) throws RemoteException {
-        return eventDao.findEventById(event);
+        return UnitOfWork.execute("EventService.findEventById", () -> eventDao.findEventById(event));
     }
 
     @Override
     public Event findEventByEventId(String eventId) throws RemoteException {
-        return eventDao.findEventByEventId(eventId);
+        return UnitOfWork.execute("EventService.findEventByEventId", () -> eventDao.findEventByEventId(eventId));
     }
 
     @Override
     public List<Event> findEventsByCase(int caseId) throws RemoteException {
-        return eventDao.findEventsByCase(caseId);
+        return UnitOfWork.execute("EventService.findEventsByCase", () -> eventDao.findEventsByCase(caseId));
     }
 
     @Override
     public List<Event> findEventsByDate(LocalDate date) throws RemoteException {
-        return eventDao.findEventsByDate(date);
+        return UnitOfWork.execute("EventService.findEventsByDate", () -> eventDao.findEventsByDate(date));
     }
 
     @Override
     public List<Event> findEventsByDateRange(LocalDate startDate, LocalDate endDate) throws RemoteException {
-        return eventDao.findEventsByDateRange(startDate, endDate);
+        return UnitOfWork.execute("EventService.findEventsByDateRange", () -> eventDao.findEventsByDateRange(startDate, endDate));
     }
 
     @Override
     public List<Event> findEventsByStatus(String status) throws RemoteException {
-        return eventDao.findEventsByStatus(status);
+        return UnitOfWork.execute("EventService.findEventsByStatus", () -> eventDao.findEventsByStatus(status));
     }
 
     @Override
     public List<Event> findUpcomingEventsWithReminders() throws RemoteException {
-        return eventDao.findUpcomingEventsWithReminders();
+        return UnitOfWork.execute("EventService.findUpcomingEventsWithReminders", () -> eventDao.findUpcomingEventsWithReminders());
     }
 
     @Override
     public List<Event> findAllEvents() throws RemoteException {
-        return eventDao.findAllEvents();
+        return UnitOfWork.execute("EventService.findAllEvents", () -> eventDao.findAllEvents());
+    }
+
+    @Override
+    public List<EventSummary> findAllEventSummaries() throws RemoteException {
+        return UnitOfWork.execute("EventService.findAllEventSummaries", () -> eventDao.findAllEventSummaries());
+    }
+
+    @Override
+    public List<EventSummary> findEventSummariesByCase(int caseId) throws RemoteException {
+        return UnitOfWork.execute("EventService.findEventSummariesByCase", () -> eventDao.findEventSummariesByCase(caseId));
+    }
+
+    @Override
+    public List<EventSummary> findEventSummariesByDateRange(LocalDate startDate, LocalDate endDate) throws RemoteException {
+        return UnitOfWork.execute("EventService.findEventSummariesByDateRange", () -> eventDao.findEventSummariesByDateRange(startDate, endDate));
+    }
+
+    @Override
+    public List<EventSummary> findEventSummariesByStatus(String status) throws RemoteException {
+        return UnitOfWork.execute("EventService.findEventSummariesByStatus", () -> eventDao.findEventSummariesByStatus(status));
+    }
+
+    @Override
+    public Page<Event> findAllEventsPage(String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("EventService.findAllEventsPage", () -> eventDao.findAllEventsPage(cursor, pageSize));
+    }
+
+    @Override
+    public Page<Event> findEventsByStatusPage(String status, String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("EventService.findEventsByStatusPage", () -> eventDao.findEventsByStatusPage(status, cursor, pageSize));
+    }
+
+    @Override
+    public Page<Event> findEventsByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("EventService.findEventsByDateRangePage", () -> eventDao.findEventsByDateRangePage(startDate, endDate, cursor, pageSize));
     }
 
     @Override
     public Event getEventWithCase(Event event) throws RemoteException {
-        return eventDao.getEventWithCase(event);
+        return UnitOfWork.execute("EventService.getEventWithCase", () -> eventDao.getEventWithCase(event));
+    }
+
+    @Override
+    public String generateNextEventId() throws RemoteException {
+        return UnitOfWork.execute("EventService.generateNextEventId", () -> eventDao.generateNextEventId());
     }
 }
\ No newline at end of file
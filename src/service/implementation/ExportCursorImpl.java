@@ -0,0 +1,162 @@
+package service.implementation;
+
+import dao.ExportReader;
+import dao.HibernateUtil;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.rmi.server.Unreferenced;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import service.ExportCursor;
+
+/**
+ * Implementation of ExportCursor for RMI, exported per export.
+ *
+ * Each cursor holds a database connection until the last row has been read
+ * or it is closed. A finished cursor stays exported, answering with empty
+ * chunks, until the client closes it, the client has not called it within
+ * hibernate.export.idle_timeout, or RMI reports that no client references it
+ * any more (the client exited or lost its connection and its lease ran out).
+ */
+public class ExportCursorImpl<T> extends UnicastRemoteObject implements ExportCursor<T>, Unreferenced {
+
+    private static final Logger logger = Logger.getLogger(ExportCursorImpl.class.getName());
+
+    static final int DEFAULT_CHUNK_SIZE = 500;
+    static final int MAX_CHUNK_SIZE = 5000;
+
+    private static final long IDLE_TIMEOUT = HibernateUtil.getSetting("hibernate.export.idle_timeout", 120000);
+
+    private static final Set<ExportCursorImpl<?>> openCursors = ConcurrentHashMap.newKeySet();
+
+    private static final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "export-cursor-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        long interval = Math.max(1000, IDLE_TIMEOUT / 4);
+        reaper.scheduleWithFixedDelay(ExportCursorImpl::closeIdleCursors, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private final ExportReader<T> reader;
+    private final int chunkSize;
+    private volatile long lastAccess = System.currentTimeMillis();
+    private boolean closed;
+
+    private ExportCursorImpl(ExportReader<T> reader, int chunkSize) throws RemoteException {
+        super();
+        this.reader = reader;
+        this.chunkSize = chunkSize <= 0 ? DEFAULT_CHUNK_SIZE : Math.min(chunkSize, MAX_CHUNK_SIZE);
+    }
+
+    /**
+     * Exports a cursor over an open reader
+     *
+     * @param reader Reader from a DAO export method; null if it failed to open
+     * @param chunkSize Rows per chunk; non-positive means the default
+     * @return The remote cursor, or null if the reader is null
+     */
+    static <T> ExportCursor<T> open(ExportReader<T> reader, int chunkSize) throws RemoteException {
+        if (reader == null) {
+            return null;
+        }
+        try {
+            ExportCursorImpl<T> cursor = new ExportCursorImpl<>(reader, chunkSize);
+            openCursors.add(cursor);
+            return cursor;
+        } catch (RemoteException | RuntimeException ex) {
+            reader.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Gets the number of export cursors currently open
+     */
+    public static int getOpenCursors() {
+        return openCursors.size();
+    }
+
+    @Override
+    public synchronized List<T> nextChunk() throws RemoteException {
+        if (closed && !reader.isExhausted()) {
+            throw new RemoteException("Export cursor is closed");
+        }
+        lastAccess = System.currentTimeMillis();
+        try {
+            // After the last row the reader has released its connection and returns empty chunks
+            return reader.next(chunkSize);
+        } catch (RuntimeException ex) {
+            close();
+            throw new RemoteException("Export failed", ex);
+        }
+    }
+
+    @Override
+    public synchronized boolean hasMore() throws RemoteException {
+        return !closed && !reader.isExhausted();
+    }
+
+    @Override
+    public synchronized int getRowsRead() throws RemoteException {
+        return reader.getRowsRead();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        openCursors.remove(this);
+        reader.close();
+        // Unexport from another thread so a close made by a remote call can still reply
+        reaper.execute(() -> {
+            try {
+                UnicastRemoteObject.unexportObject(this, true);
+            } catch (NoSuchObjectException ex) {
+                // Already unexported
+            }
+        });
+    }
+
+    @Override
+    public void unreferenced() {
+        if (!isClosed()) {
+            if (!reader.isExhausted()) {
+                logger.warning("Closing export cursor abandoned by its client after " + reader.getRowsRead() + " rows");
+            }
+            close();
+        }
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private static void closeIdleCursors() {
+        long cutoff = System.currentTimeMillis() - IDLE_TIMEOUT;
+        for (ExportCursorImpl<?> cursor : openCursors) {
+            if (cursor.lastAccess < cutoff) {
+                try {
+                    if (!cursor.reader.isExhausted()) {
+                        logger.warning("Closing export cursor idle for more than " + IDLE_TIMEOUT + "ms after "
+                                + cursor.reader.getRowsRead() + " rows");
+                    }
+                    cursor.close();
+                } catch (RuntimeException ex) {
+                    logger.log(Level.WARNING, "Failed to close idle export cursor", ex);
+                }
+            }
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package service.implementation;
 
 import dao.InvoiceDao;
+import dao.UnitOfWork;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import model.Invoice;
+import model.InvoiceSummary;
+import model.Page;
+import service.BillingRun;
 import service.InvoiceService;
 
 /**
@@ -21,81 +26,131 @@ public class InvoiceServiceImpl extends UnicastRemoteObject implements InvoiceSe
 
     @Override
     public Invoice createInvoice(Invoice invoice) throws RemoteException {
-        return invoiceDao.createInvoice(invoice);
+        return UnitOfWork.execute("InvoiceService.createInvoice", () -> invoiceDao.createInvoice(invoice));
     }
 
     @Override
     public Invoice updateInvoice(Invoice invoice) throws RemoteException {
-        return invoiceDao.updateInvoice(invoice);
+        return UnitOfWork.execute("InvoiceService.updateInvoice", () -> invoiceDao.updateInvoice(invoice));
     }
 
     @Override
     public Invoice deleteInvoice(Invoice invoice) throws RemoteException {
-        return invoiceDao.deleteInvoice(invoice);
+        return UnitOfWork.execute("InvoiceService.deleteInvoice", () -> invoiceDao.deleteInvoice(invoice));
     }
 
     @Override
     public Invoice updateInvoiceStatus(Invoice invoice, String status) throws RemoteException {
-        return invoiceDao.updateInvoiceStatus(invoice, status);
+        return UnitOfWork.execute("InvoiceService.updateInvoiceStatus", () -> invoiceDao.updateInvoiceStatus(invoice, status));
+    }
+
+    @Override
+    public Invoice patchInvoice(int invoiceId, long version, Map<String, Object> changes) throws RemoteException {
+        return UnitOfWork.execute("InvoiceService.patchInvoice", () -> invoiceDao.patchInvoice(invoiceId, version, changes));
     }
 
     @Override
     public Invoice findInvoiceById(Invoice invoice) throws RemoteException {
-        return invoiceDao.findInvoiceById(invoice);
+        return UnitOfWork.execute("InvoiceService.findInvoiceById", () -> invoiceDao.findInvoiceById(invoice));
     }
 
     @Override
     public Invoice findInvoiceByInvoiceNumber(String invoiceNumber) throws RemoteException {
-        return invoiceDao.findInvoiceByInvoiceNumber(invoiceNumber);
+        return UnitOfWork.execute("InvoiceService.findInvoiceByInvoiceNumber", () -> invoiceDao.findInvoiceByInvoiceNumber(invoiceNumber));
     }
 
     @Override
     public List<Invoice> findInvoicesByClient(int clientId) throws RemoteException {
-        return invoiceDao.findInvoicesByClient(clientId);
+        return UnitOfWork.execute("InvoiceService.findInvoicesByClient", () -> invoiceDao.findInvoicesByClient(clientId));
     }
 
     @Override
     public List<Invoice> findInvoicesByCase(int caseId) throws RemoteException {
-        return invoiceDao.findInvoicesByCase(caseId);
+        return UnitOfWork.execute("InvoiceService.findInvoicesByCase", () -> invoiceDao.findInvoicesByCase(caseId));
     }
 
     @Override
     public List<Invoice> findInvoicesByStatus(String status) throws RemoteException {
-        return invoiceDao.findInvoicesByStatus(status);
+        return UnitOfWork.execute("InvoiceService.findInvoicesByStatus", () -> invoiceDao.findInvoicesByStatus(status));
     }
 
     @Override
     public List<Invoice> findInvoicesByDateRange(LocalDate startDate, LocalDate endDate) throws RemoteException {
-        return invoiceDao.findInvoicesByDateRange(startDate, endDate);
+        return UnitOfWork.execute("InvoiceService.findInvoicesByDateRange", () -> invoiceDao.findInvoicesByDateRange(startDate, endDate));
     }
 
     @Override
     public List<Invoice> findOverdueInvoices() throws RemoteException {
-        return invoiceDao.findOverdueInvoices();
+        return UnitOfWork.execute("InvoiceService.findOverdueInvoices", () -> invoiceDao.findOverdueInvoices());
     }
 
     @Override
     public List<Invoice> findAllInvoices() throws RemoteException {
-        return invoiceDao.findAllInvoices();
+        return UnitOfWork.execute("InvoiceService.findAllInvoices", () -> invoiceDao.findAllInvoices());
+    }
+
+    @Override
+    public List<InvoiceSummary> findAllInvoiceSummaries() throws RemoteException {
+        return UnitOfWork.execute("InvoiceService.findAllInvoiceSummaries", () -> invoiceDao.findAllInvoiceSummaries());
+    }
+
+    @Override
+    public List<InvoiceSummary> findInvoiceSummariesByStatus(String status) throws RemoteException {
+        return UnitOfWork.execute("InvoiceService.findInvoiceSummariesByStatus", () -> invoiceDao.findInvoiceSummariesByStatus(status));
+    }
+
+    @Override
+    public List<InvoiceSummary> findInvoiceSummariesByClient(int clientId) throws RemoteException {
+        return UnitOfWork.execute("InvoiceService.findInvoiceSummariesByClient", () -> invoiceDao.findInvoiceSummariesByClient(clientId));
+    }
+
+    @Override
+    public List<InvoiceSummary> findOverdueInvoiceSummaries() throws RemoteException {
+        return UnitOfWork.execute("InvoiceService.findOverdueInvoiceSummaries", () -> invoiceDao.findOverdueInvoiceSummaries());
+    }
+
+    @Override
+    public Page<Invoice> findAllInvoicesPage(String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("InvoiceService.findAllInvoicesPage", () -> invoiceDao.findAllInvoicesPage(cursor, pageSize));
+    }
+
+    @Override
+    public Page<Invoice> findInvoicesByStatusPage(String status, String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("InvoiceService.findInvoicesByStatusPage", () -> invoiceDao.findInvoicesByStatusPage(status, cursor, pageSize));
+    }
+
+    @Override
+    public Page<Invoice> findInvoicesByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("InvoiceService.findInvoicesByDateRangePage", () -> invoiceDao.findInvoicesByDateRangePage(startDate, endDate, cursor, pageSize));
     }
 
     @Override
     public Invoice getInvoiceWithDetails(Invoice invoice) throws RemoteException {
-        return invoiceDao.getInvoiceWithDetails(invoice);
+        return UnitOfWork.execute("InvoiceService.getInvoiceWithDetails", () -> invoiceDao.getInvoiceWithDetails(invoice));
+    }
+
+    @Override
+    public Invoice getInvoiceGraph(Invoice invoice, String fetchSpec) throws RemoteException {
+        return UnitOfWork.execute("InvoiceService.getInvoiceGraph", () -> invoiceDao.getInvoiceGraph(invoice, fetchSpec));
     }
 
     @Override
     public Invoice updateInvoicePaidAmount(int invoiceId) throws RemoteException {
-        return invoiceDao.updateInvoicePaidAmount(invoiceId);
+        return UnitOfWork.execute("InvoiceService.updateInvoicePaidAmount", () -> invoiceDao.updateInvoicePaidAmount(invoiceId));
     }
 
     @Override
     public Invoice createInvoiceFromUnbilledTimeEntries(int caseId, String invoiceNumber, LocalDate dueDate) throws RemoteException {
-        return invoiceDao.createInvoiceFromUnbilledTimeEntries(caseId, invoiceNumber, dueDate);
+        return UnitOfWork.execute("InvoiceService.createInvoiceFromUnbilledTimeEntries", () -> invoiceDao.createInvoiceFromUnbilledTimeEntries(caseId, invoiceNumber, dueDate));
+    }
+
+    @Override
+    public BillingRun startBillingRun(LocalDate dueDate, int workers) throws RemoteException {
+        return UnitOfWork.execute("InvoiceService.startBillingRun", () -> BillingRunImpl.start(invoiceDao, dueDate, workers));
     }
 
     @Override
     public String generateNextInvoiceNumber() throws RemoteException {
-        return invoiceDao.generateNextInvoiceNumber();
+        return UnitOfWork.execute("InvoiceService.generateNextInvoiceNumber", () -> invoiceDao.generateNextInvoiceNumber());
     }
 }
\ No newline at end of file
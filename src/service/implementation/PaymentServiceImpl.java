@@ -1,12 +1,15 @@
 package service.implementation;
 
 import dao.PaymentDao;
+import dao.UnitOfWork;
 import java.math.BigDecimal;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.time.LocalDate;
 import java.util.List;
+import model.Page;
 import model.Payment;
+import service.ExportCursor;
 import service.PaymentService;
 
 /**
@@ -22,71 +25,91 @@ public class PaymentServiceImpl extends UnicastRemoteObject implements PaymentSe
 
     @Override
     public Payment createPayment(Payment payment) throws RemoteException {
-        return paymentDao.createPayment(payment);
+        return UnitOfWork.execute("PaymentService.createPayment", () -> paymentDao.createPayment(payment));
     }
 
     @Override
     public Payment updatePayment(Payment payment) throws RemoteException {
-        return paymentDao.updatePayment(payment);
+        return UnitOfWork.execute("PaymentService.updatePayment", () -> paymentDao.updatePayment(payment));
     }
 
     @Override
     public Payment deletePayment(Payment payment) throws RemoteException {
-        return paymentDao.deletePayment(payment);
+        return UnitOfWork.execute("PaymentService.deletePayment", () -> paymentDao.deletePayment(payment));
     }
 
     @Override
     public Payment findPaymentById(Payment payment) throws RemoteException {
-        return paymentDao.findPaymentById(payment);
+        return UnitOfWork.execute("PaymentService.findPaymentById", () -> paymentDao.findPaymentById(payment));
     }
 
     @Override
     public Payment findPaymentByPaymentId(String paymentId) throws RemoteException {
-        return paymentDao.findPaymentByPaymentId(paymentId);
+        return UnitOfWork.execute("PaymentService.findPaymentByPaymentId", () -> paymentDao.findPaymentByPaymentId(paymentId));
     }
 
     @Override
     public List<Payment> findPaymentsByInvoice(int invoiceId) throws RemoteException {
-        return paymentDao.findPaymentsByInvoice(invoiceId);
+        return UnitOfWork.execute("PaymentService.findPaymentsByInvoice", () -> paymentDao.findPaymentsByInvoice(invoiceId));
     }
 
     @Override
     public List<Payment> findPaymentsByClient(int clientId) throws RemoteException {
-        return paymentDao.findPaymentsByClient(clientId);
+        return UnitOfWork.execute("PaymentService.findPaymentsByClient", () -> paymentDao.findPaymentsByClient(clientId));
     }
 
     @Override
     public List<Payment> findPaymentsByMethod(String paymentMethod) throws RemoteException {
-        return paymentDao.findPaymentsByMethod(paymentMethod);
+        return UnitOfWork.execute("PaymentService.findPaymentsByMethod", () -> paymentDao.findPaymentsByMethod(paymentMethod));
     }
 
     @Override
     public List<Payment> findPaymentsByDateRange(LocalDate startDate, LocalDate endDate) throws RemoteException {
-        return paymentDao.findPaymentsByDateRange(startDate, endDate);
+        return UnitOfWork.execute("PaymentService.findPaymentsByDateRange", () -> paymentDao.findPaymentsByDateRange(startDate, endDate));
     }
 
     @Override
     public List<Payment> findAllPayments() throws RemoteException {
-        return paymentDao.findAllPayments();
+        return UnitOfWork.execute("PaymentService.findAllPayments", () -> paymentDao.findAllPayments());
+    }
+
+    @Override
+    public Page<Payment> findAllPaymentsPage(String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("PaymentService.findAllPaymentsPage", () -> paymentDao.findAllPaymentsPage(cursor, pageSize));
+    }
+
+    @Override
+    public Page<Payment> findPaymentsByMethodPage(String paymentMethod, String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("PaymentService.findPaymentsByMethodPage", () -> paymentDao.findPaymentsByMethodPage(paymentMethod, cursor, pageSize));
+    }
+
+    @Override
+    public Page<Payment> findPaymentsByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("PaymentService.findPaymentsByDateRangePage", () -> paymentDao.findPaymentsByDateRangePage(startDate, endDate, cursor, pageSize));
+    }
+
+    @Override
+    public ExportCursor<Payment> exportPayments(int chunkSize) throws RemoteException {
+        return ExportCursorImpl.open(paymentDao.openPaymentExport(), chunkSize);
     }
 
     @Override
     public Payment getPaymentWithDetails(Payment payment) throws RemoteException {
-        return paymentDao.getPaymentWithDetails(payment);
+        return UnitOfWork.execute("PaymentService.getPaymentWithDetails", () -> paymentDao.getPaymentWithDetails(payment));
     }
 
     @Override
     public BigDecimal getTotalPaymentsByClient(int clientId) throws RemoteException {
-        return paymentDao.getTotalPaymentsByClient(clientId);
+        return UnitOfWork.execute("PaymentService.getTotalPaymentsByClient", () -> paymentDao.getTotalPaymentsByClient(clientId));
     }
 
     @Override
     public BigDecimal getTotalPaymentsByDateRange(LocalDate startDate, LocalDate endDate) throws RemoteException {
-        return paymentDao.getTotalPaymentsByDateRange(startDate, endDate);
+        return UnitOfWork.execute("PaymentService.getTotalPaymentsByDateRange", () -> paymentDao.getTotalPaymentsByDateRange(startDate, endDate));
     }
 
     @Override
     public String generateNextPaymentId() throws RemoteException {
-        return paymentDao.generateNextPaymentId();
+        return UnitOfWork.execute("PaymentService.generateNextPaymentId", () -> paymentDao.generateNextPaymentId());
     }
 }
\ No newline at end of file
@@ -1,12 +1,16 @@
 package service.implementation;
 
 import dao.TimeEntryDao;
+import dao.UnitOfWork;
 import java.math.BigDecimal;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.time.LocalDate;
 import java.util.List;
+import model.BatchInsertResult;
+import model.Page;
 import model.TimeEntry;
+import service.ExportCursor;
 import service.TimeEntryService;
 
 /**
@@ -22,76 +26,101 @@ public class TimeEntryServiceImpl extends UnicastRemoteObject implements TimeEnt
 
     @Override
     public TimeEntry createTimeEntry(TimeEntry timeEntry) throws RemoteException {
-        return timeEntryDao.createTimeEntry(timeEntry);
+        return UnitOfWork.execute("TimeEntryService.createTimeEntry", () -> timeEntryDao.createTimeEntry(timeEntry));
+    }
+
+    @Override
+    public BatchInsertResult createTimeEntries(List<TimeEntry> timeEntries) throws RemoteException {
+        return UnitOfWork.execute("TimeEntryService.createTimeEntries", () -> timeEntryDao.createTimeEntries(timeEntries));
     }
 
     @Override
     public TimeEntry updateTimeEntry(TimeEntry timeEntry) throws RemoteException {
-        return timeEntryDao.updateTimeEntry(timeEntry);
+        return UnitOfWork.execute("TimeEntryService.updateTimeEntry", () -> timeEntryDao.updateTimeEntry(timeEntry));
     }
 
     @Override
     public TimeEntry deleteTimeEntry(TimeEntry timeEntry) throws RemoteException {
-        return timeEntryDao.deleteTimeEntry(timeEntry);
+        return UnitOfWork.execute("TimeEntryService.deleteTimeEntry", () -> timeEntryDao.deleteTimeEntry(timeEntry));
     }
 
     @Override
     public TimeEntry markTimeEntryAsBilled(TimeEntry timeEntry, int invoiceId) throws RemoteException {
-        return timeEntryDao.markTimeEntryAsBilled(timeEntry, invoiceId);
+        return UnitOfWork.execute("TimeEntryService.markTimeEntryAsBilled", () -> timeEntryDao.markTimeEntryAsBilled(timeEntry, invoiceId));
     }
 
     @Override
     public TimeEntry findTimeEntryById(TimeEntry timeEntry) throws RemoteException {
-        return timeEntryDao.findTimeEntryById(timeEntry);
+        return UnitOfWork.execute("TimeEntryService.findTimeEntryById", () -> timeEntryDao.findTimeEntryById(timeEntry));
     }
 
     @Override
     public TimeEntry findTimeEntryByEntryId(String entryId) throws RemoteException {
-        return timeEntryDao.findTimeEntryByEntryId(entryId);
+        return UnitOfWork.execute("TimeEntryService.findTimeEntryByEntryId", () -> timeEntryDao.findTimeEntryByEntryId(entryId));
     }
 
     @Override
     public List<TimeEntry> findTimeEntriesByCase(int caseId) throws RemoteException {
-        return timeEntryDao.findTimeEntriesByCase(caseId);
+        return UnitOfWork.execute("TimeEntryService.findTimeEntriesByCase", () -> timeEntryDao.findTimeEntriesByCase(caseId));
     }
 
     @Override
     public List<TimeEntry> findTimeEntriesByAttorney(int attorneyId) throws RemoteException {
-        return timeEntryDao.findTimeEntriesByAttorney(attorneyId);
+        return UnitOfWork.execute("TimeEntryService.findTimeEntriesByAttorney", () -> timeEntryDao.findTimeEntriesByAttorney(attorneyId));
     }
 
     @Override
     public List<TimeEntry> findTimeEntriesByDateRange(LocalDate startDate, LocalDate endDate) throws RemoteException {
-        return timeEntryDao.findTimeEntriesByDateRange(startDate, endDate);
+        return UnitOfWork.execute("TimeEntryService.findTimeEntriesByDateRange", () -> timeEntryDao.findTimeEntriesByDateRange(startDate, endDate));
     }
 
     @Override
     public List<TimeEntry> findUnbilledTimeEntriesByCase(int caseId) throws RemoteException {
-        return timeEntryDao.findUnbilledTimeEntriesByCase(caseId);
+        return UnitOfWork.execute("TimeEntryService.findUnbilledTimeEntriesByCase", () -> timeEntryDao.findUnbilledTimeEntriesByCase(caseId));
     }
 
     @Override
     public List<TimeEntry> findTimeEntriesByInvoice(int invoiceId) throws RemoteException {
-        return timeEntryDao.findTimeEntriesByInvoice(invoiceId);
+        return UnitOfWork.execute("TimeEntryService.findTimeEntriesByInvoice", () -> timeEntryDao.findTimeEntriesByInvoice(invoiceId));
     }
 
     @Override
     public List<TimeEntry> findAllTimeEntries() throws RemoteException {
-        return timeEntryDao.findAllTimeEntries();
+        return UnitOfWork.execute("TimeEntryService.findAllTimeEntries", () -> timeEntryDao.findAllTimeEntries());
+    }
+
+    @Override
+    public Page<TimeEntry> findAllTimeEntriesPage(String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("TimeEntryService.findAllTimeEntriesPage", () -> timeEntryDao.findAllTimeEntriesPage(cursor, pageSize));
+    }
+
+    @Override
+    public Page<TimeEntry> findTimeEntriesByDateRangePage(LocalDate startDate, LocalDate endDate, String cursor, int pageSize) throws RemoteException {
+        return UnitOfWork.execute("TimeEntryService.findTimeEntriesByDateRangePage", () -> timeEntryDao.findTimeEntriesByDateRangePage(startDate, endDate, cursor, pageSize));
+    }
+
+    @Override
+    public ExportCursor<TimeEntry> exportTimeEntries(int chunkSize) throws RemoteException {
+        return ExportCursorImpl.open(timeEntryDao.openTimeEntryExport(), chunkSize);
     }
 
     @Override
     public TimeEntry getTimeEntryWithDetails(TimeEntry timeEntry) throws RemoteException {
-        return timeEntryDao.getTimeEntryWithDetails(timeEntry);
+        return UnitOfWork.execute("TimeEntryService.getTimeEntryWithDetails", () -> timeEntryDao.getTimeEntryWithDetails(timeEntry));
     }
 
     @Override
     public double getTotalHoursByCase(int caseId) throws RemoteException {
-        return timeEntryDao.getTotalHoursByCase(caseId);
+        return UnitOfWork.execute("TimeEntryService.getTotalHoursByCase", () -> timeEntryDao.getTotalHoursByCase(caseId));
     }
 
     @Override
     public BigDecimal getTotalAmountByCase(int caseId) throws RemoteException {
-        return timeEntryDao.getTotalAmountByCase(caseId);
+        return UnitOfWork.execute("TimeEntryService.getTotalAmountByCase", () -> timeEntryDao.getTotalAmountByCase(caseId));
+    }
+
+    @Override
+    public String generateNextTimeEntryId() throws RemoteException {
+        return UnitOfWork.execute("TimeEntryService.generateNextTimeEntryId", () -> timeEntryDao.generateNextTimeEntryId());
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package service.implementation;
 
+import dao.UnitOfWork;
 import dao.UserDao;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
@@ -36,7 +37,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return null;
             }
             
-            User user = userDao.authenticateUser(username.trim(), password);
+            User user = UnitOfWork.execute("UserService.authenticateUser", () -> userDao.authenticateUser(username.trim(), password));
             if (user != null) {
                 logger.info("Traditional authentication successful for user: " + username);
             } else {
@@ -66,7 +67,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return false;
             }
             
-            boolean result = userDao.initiateOTPLogin(cleanEmail);
+            boolean result = UnitOfWork.execute("UserService.initiateOTPLogin", () -> userDao.initiateOTPLogin(cleanEmail));
             if (result) {
                 logger.info("OTP initiated successfully for email: " + cleanEmail);
             } else {
@@ -101,7 +102,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return null;
             }
             
-            User user = userDao.authenticateWithOTP(cleanEmail, cleanOtpCode);
+            User user = UnitOfWork.execute("UserService.authenticateWithOTP", () -> userDao.authenticateWithOTP(cleanEmail, cleanOtpCode));
             if (user != null) {
                 logger.info("OTP authentication successful for email: " + cleanEmail);
             } else {
@@ -121,7 +122,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return false;
             }
             String cleanEmail = email.trim().toLowerCase();
-            boolean canRequest = userDao.canRequestNewOTP(cleanEmail);
+            boolean canRequest = UnitOfWork.execute("UserService.canRequestNewOTP", () -> userDao.canRequestNewOTP(cleanEmail));
             logger.fine("OTP request eligibility for " + cleanEmail + ": " + canRequest);
             return canRequest;
         } catch (Exception e) {
@@ -137,7 +138,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return 0;
             }
             String cleanEmail = email.trim().toLowerCase();
-            long remainingSeconds = userDao.getRemainingCooldownSeconds(cleanEmail);
+            long remainingSeconds = UnitOfWork.execute("UserService.getRemainingCooldownSeconds", () -> userDao.getRemainingCooldownSeconds(cleanEmail));
             logger.fine("Remaining cooldown for " + cleanEmail + ": " + remainingSeconds + " seconds");
             return remainingSeconds;
         } catch (Exception e) {
@@ -160,7 +161,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return null;
             }
             
-            User createdUser = userDao.createUser(user, password);
+            User createdUser = UnitOfWork.execute("UserService.createUser", () -> userDao.createUser(user, password));
             if (createdUser != null) {
                 logger.info("User created successfully: " + user.getUsername());
             } else {
@@ -182,7 +183,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return null;
             }
             
-            User updatedUser = userDao.updateUser(user);
+            User updatedUser = UnitOfWork.execute("UserService.updateUser", () -> userDao.updateUser(user));
             if (updatedUser != null) {
                 logger.info("User updated successfully: " + user.getUsername());
             } else {
@@ -201,7 +202,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
             if (username == null || username.trim().isEmpty()) {
                 return false;
             }
-            boolean exists = userDao.isUsernameExists(username.trim());
+            boolean exists = UnitOfWork.execute("UserService.isUsernameExists", () -> userDao.isUsernameExists(username.trim()));
             logger.fine("Username existence check for '" + username + "': " + exists);
             return exists;
         } catch (Exception e) {
@@ -223,7 +224,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return false;
             }
             
-            boolean success = userDao.changePassword(userId, currentPassword, newPassword);
+            boolean success = UnitOfWork.execute("UserService.changePassword", () -> userDao.changePassword(userId, currentPassword, newPassword));
             if (success) {
                 logger.info("Password changed successfully for user ID: " + userId);
             } else {
@@ -245,7 +246,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return null;
             }
             
-            String newPassword = userDao.resetPassword(email.trim());
+            String newPassword = UnitOfWork.execute("UserService.resetPassword", () -> userDao.resetPassword(email.trim()));
             if (newPassword != null) {
                 logger.info("Password reset successful for email: " + email);
             } else {
@@ -267,7 +268,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return false;
             }
             
-            boolean success = userDao.deactivateUser(user);
+            boolean success = UnitOfWork.execute("UserService.deactivateUser", () -> userDao.deactivateUser(user));
             if (success) {
                 logger.info("User deactivated successfully: " + user.getUsername());
             } else {
@@ -289,7 +290,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return false;
             }
             
-            boolean success = userDao.reactivateUser(user);
+            boolean success = UnitOfWork.execute("UserService.reactivateUser", () -> userDao.reactivateUser(user));
             if (success) {
                 logger.info("User reactivated successfully: " + user.getUsername());
             } else {
@@ -310,7 +311,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return null;
             }
             
-            User foundUser = userDao.findUserById(user);
+            User foundUser = UnitOfWork.execute("UserService.findUserById", () -> userDao.findUserById(user));
             logger.fine("Find user by ID " + user.getId() + ": " + (foundUser != null ? "found" : "not found"));
             return foundUser;
         } catch (Exception e) {
@@ -326,7 +327,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return null;
             }
             
-            User user = userDao.findUserByUsername(username.trim());
+            User user = UnitOfWork.execute("UserService.findUserByUsername", () -> userDao.findUserByUsername(username.trim()));
             logger.fine("Find user by username '" + username + "': " + (user != null ? "found" : "not found"));
             return user;
         } catch (Exception e) {
@@ -342,7 +343,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return null;
             }
             
-            User user = userDao.findUserByEmail(email.trim());
+            User user = UnitOfWork.execute("UserService.findUserByEmail", () -> userDao.findUserByEmail(email.trim()));
             logger.fine("Find user by email '" + email + "': " + (user != null ? "found" : "not found"));
             return user;
         } catch (Exception e) {
@@ -355,7 +356,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
     public List<User> findAllActiveUsers() throws RemoteException {
         logger.fine("Attempting to find all active users");
         try {
-            List<User> users = userDao.findAllActiveUsers();
+            List<User> users = UnitOfWork.execute("UserService.findAllActiveUsers", () -> userDao.findAllActiveUsers());
             logger.fine("Found " + (users != null ? users.size() : 0) + " active users");
             return users;
         } catch (Exception e) {
@@ -372,7 +373,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
                 return null;
             }
             
-            List<User> users = userDao.findUsersByRole(role.trim());
+            List<User> users = UnitOfWork.execute("UserService.findUsersByRole", () -> userDao.findUsersByRole(role.trim()));
             logger.fine("Found " + (users != null ? users.size() : 0) + " users with role: " + role);
             return users;
         } catch (Exception e) {
@@ -0,0 +1,550 @@
+package util;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Bounded JDBC connection pool shared by the Hibernate layer and the raw JDBC DAOs.
+ *
+ * Connections are handed out as proxies whose close() returns the physical
+ * connection to the pool. The pool keeps live gauges (active, idle, waiting
+ * threads, acquire latency) that can be read with getStatistics().
+ */
+public class ConnectionPool implements DataSource {
+
+    private static final Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+
+    // Pool settings read from hibernate.cfg.xml
+    public static final String PROP_MIN_SIZE = "hibernate.pool.min_size";
+    public static final String PROP_MAX_SIZE = "hibernate.pool.max_size";
+    public static final String PROP_ACQUIRE_TIMEOUT = "hibernate.pool.acquire_timeout";
+    public static final String PROP_VALIDATION_TIMEOUT = "hibernate.pool.validation_timeout";  // Seconds, as Connection.isValid takes
+    public static final String PROP_VALIDATE_AFTER_IDLE = "hibernate.pool.validate_after_idle";
+    public static final String PROP_IDLE_TIMEOUT = "hibernate.pool.idle_timeout";
+    public static final String PROP_MAX_LIFETIME = "hibernate.pool.max_lifetime";
+    public static final String PROP_STATEMENT_CACHE_SIZE = "hibernate.pool.statement_cache_size";
+    public static final String PROP_STATS_INTERVAL = "hibernate.pool.stats_interval";  // Seconds; 0 turns the log off
+
+    // How often the housekeeper evicts idle connections and tops the pool up
+    private static final long HOUSEKEEPING_INTERVAL_MILLIS = 30000;
+    // How long a borrower at the size limit waits on the idle queue before counting the pool again
+    private static final long IDLE_WAIT_SLICE_MILLIS = 50;
+
+    private final String name;
+    private final String url;
+    private final Properties connectionProperties;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final long validateAfterIdleMillis;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final long statsIntervalMillis;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger waitingThreads = new AtomicInteger();
+
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong acquireTimeNanos = new AtomicLong();
+    private final AtomicLong maxAcquireTimeNanos = new AtomicLong();
+    private final AtomicLong acquireTimeouts = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsDestroyed = new AtomicLong();
+
+    private final ScheduledExecutorService housekeeper;
+    private volatile long lastStatsLog = System.currentTimeMillis();
+    private volatile boolean closed;
+    private PrintWriter logWriter;
+
+    /**
+     * Creates a pool for the given JDBC URL and starts the housekeeping thread
+     */
+    public ConnectionPool(String name, String url, String username, String password, Properties settings) {
+        this.name = name;
+        this.url = url;
+        this.minSize = intSetting(settings, PROP_MIN_SIZE, 2);
+        this.maxSize = Math.max(1, Math.max(minSize, intSetting(settings, PROP_MAX_SIZE, 20)));
+        this.acquireTimeoutMillis = longSetting(settings, PROP_ACQUIRE_TIMEOUT, 10000);
+        this.validationTimeoutSeconds = intSetting(settings, PROP_VALIDATION_TIMEOUT, 3);
+        this.validateAfterIdleMillis = longSetting(settings, PROP_VALIDATE_AFTER_IDLE, 5000);
+        this.idleTimeoutMillis = longSetting(settings, PROP_IDLE_TIMEOUT, 600000);
+        this.maxLifetimeMillis = longSetting(settings, PROP_MAX_LIFETIME, 1800000);
+        this.statsIntervalMillis = longSetting(settings, PROP_STATS_INTERVAL, 0) * 1000;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.connectionProperties = new Properties();
+        if (username != null) {
+            connectionProperties.setProperty("user", username);
+        }
+        if (password != null) {
+            connectionProperties.setProperty("password", password);
+        }
+
+        // Let Connector/J cache prepared statements per physical connection
+        int statementCacheSize = intSetting(settings, PROP_STATEMENT_CACHE_SIZE, 250);
+        if (statementCacheSize > 0 && url.startsWith("jdbc:mysql:")) {
+            connectionProperties.setProperty("cachePrepStmts", "true");
+            connectionProperties.setProperty("useServerPrepStmts", "true");
+            connectionProperties.setProperty("prepStmtCacheSize", String.valueOf(statementCacheSize));
+            connectionProperties.setProperty("prepStmtCacheSqlLimit", "2048");
+        }
+        if (url.startsWith("jdbc:mysql:")) {
+            // Send a JDBC batch of INSERTs as one multi-row INSERT instead of one round trip per row
+            connectionProperties.setProperty("rewriteBatchedStatements", "true");
+        }
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, HOUSEKEEPING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        logger.info("Connection pool '" + name + "' created for " + url + " (min=" + minSize + ", max=" + maxSize
+                + ", acquireTimeout=" + acquireTimeoutMillis + "ms, statementCache=" + statementCacheSize + ")");
+    }
+
+    /**
+     * Creates a pool from Hibernate configuration properties
+     */
+    public static ConnectionPool fromProperties(String name, Properties properties) throws ClassNotFoundException {
+        String driverClass = properties.getProperty("hibernate.connection.driver_class");
+        if (driverClass != null) {
+            Class.forName(driverClass);
+        }
+        return new ConnectionPool(
+                name,
+                properties.getProperty("hibernate.connection.url"),
+                properties.getProperty("hibernate.connection.username"),
+                properties.getProperty("hibernate.connection.password"),
+                properties);
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting up to the acquire timeout
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool '" + name + "' is closed");
+        }
+
+        long start = System.nanoTime();
+        boolean acquired;
+        waitingThreads.incrementAndGet();
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", ex);
+        } finally {
+            waitingThreads.decrementAndGet();
+        }
+
+        if (!acquired) {
+            acquireTimeouts.incrementAndGet();
+            throw new SQLTimeoutException("Timed out after " + acquireTimeoutMillis + " ms waiting for a connection from pool '"
+                    + name + "' (active=" + activeConnections.get() + ", max=" + maxSize + ")");
+        }
+
+        try {
+            PooledConnection pooled = borrowIdleConnection();
+            if (pooled == null) {
+                pooled = createConnection(start + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis));
+            }
+            activeConnections.incrementAndGet();
+            recordAcquireTime(System.nanoTime() - start);
+            return pooled.lease();
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Credentials are fixed per pool, so this simply borrows a pooled connection
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    /**
+     * Takes the most recently used idle connection, validating it if it has been idle for a while
+     */
+    private PooledConnection borrowIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            if ((pooled = checkOut(pooled)) != null) {
+                return pooled;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks a connection taken off the idle queue
+     *
+     * @return The connection, or null if it was expired or broken and has been destroyed
+     */
+    private PooledConnection checkOut(PooledConnection pooled) {
+        long now = System.currentTimeMillis();
+        if (pooled.isExpired(now)) {
+            destroy(pooled);
+            return null;
+        }
+        if (now - pooled.lastUsed > validateAfterIdleMillis && !pooled.isValid()) {
+            logger.fine("Discarding broken connection from pool '" + name + "'");
+            destroy(pooled);
+            return null;
+        }
+        return pooled;
+    }
+
+    /**
+     * Opens a new physical connection; the caller must hold a permit
+     *
+     * @param deadline System.nanoTime() by which the connection must be handed out
+     */
+    private PooledConnection createConnection(long deadline) throws SQLException {
+        while (true) {
+            int total = totalConnections.get();
+            if (total >= maxSize) {
+                // The housekeeper raced us; the connection it is adding turns idle shortly, unless
+                // opening it fails, so wait for it in slices and count again in between
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    acquireTimeouts.incrementAndGet();
+                    throw new SQLTimeoutException("Timed out after " + acquireTimeoutMillis + " ms waiting for a connection from pool '"
+                            + name + "' (active=" + activeConnections.get() + ", max=" + maxSize + ")");
+                }
+                PooledConnection pooled;
+                try {
+                    pooled = idleConnections.pollFirst(
+                            Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(IDLE_WAIT_SLICE_MILLIS)), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a connection", ex);
+                }
+                if (pooled != null && (pooled = checkOut(pooled)) != null) {
+                    return pooled;
+                }
+                continue;
+            }
+            if (totalConnections.compareAndSet(total, total + 1)) {
+                break;
+            }
+        }
+        try {
+            Connection physical = DriverManager.getConnection(url, connectionProperties);
+            connectionsCreated.incrementAndGet();
+            return new PooledConnection(physical);
+        } catch (SQLException | RuntimeException ex) {
+            totalConnections.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool after resetting its transactional state
+     */
+    private void release(PooledConnection pooled) {
+        try {
+            boolean reusable = !closed && !pooled.broken && !pooled.isExpired(System.currentTimeMillis());
+            if (reusable) {
+                try {
+                    if (!pooled.physical.getAutoCommit()) {
+                        pooled.physical.rollback();
+                        pooled.physical.setAutoCommit(true);
+                    }
+                    pooled.physical.clearWarnings();
+                } catch (SQLException ex) {
+                    reusable = false;
+                }
+            }
+
+            if (reusable) {
+                pooled.lastUsed = System.currentTimeMillis();
+                idleConnections.offerFirst(pooled);
+            } else {
+                destroy(pooled);
+            }
+        } finally {
+            activeConnections.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes a physical connection and removes it from the pool count
+     */
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        connectionsDestroyed.incrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException ex) {
+            logger.log(Level.FINE, "Error closing pooled connection", ex);
+        }
+    }
+
+    /**
+     * Evicts idle and expired connections, keeps the pool at its minimum size and logs gauges
+     */
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+            Iterator<PooledConnection> iterator = idleConnections.descendingIterator();
+            while (iterator.hasNext()) {
+                PooledConnection pooled = iterator.next();
+                boolean idleTooLong = now - pooled.lastUsed > idleTimeoutMillis && totalConnections.get() > minSize;
+                if ((idleTooLong || pooled.isExpired(now)) && idleConnections.removeFirstOccurrence(pooled)) {
+                    destroy(pooled);
+                }
+            }
+
+            while (!closed) {
+                int total = totalConnections.get();
+                if (total >= minSize || total >= maxSize) {
+                    break;
+                }
+                if (!totalConnections.compareAndSet(total, total + 1)) {
+                    continue;
+                }
+                try {
+                    Connection physical = DriverManager.getConnection(url, connectionProperties);
+                    connectionsCreated.incrementAndGet();
+                    idleConnections.offerLast(new PooledConnection(physical));
+                } catch (SQLException ex) {
+                    totalConnections.decrementAndGet();
+                    logger.log(Level.WARNING, "Unable to top up connection pool '" + name + "'", ex);
+                    break;
+                }
+            }
+
+            if (statsIntervalMillis > 0 && now - lastStatsLog >= statsIntervalMillis) {
+                lastStatsLog = now;
+                LogUtil.logSystem(LogUtil.LOG_LEVEL_INFO, toString());
+            }
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Connection pool housekeeping failed", ex);
+        }
+    }
+
+    private void recordAcquireTime(long nanos) {
+        acquireCount.incrementAndGet();
+        acquireTimeNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxAcquireTimeNanos.get())) {
+            if (maxAcquireTimeNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Gets a snapshot of the pool gauges and counters
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long acquired = acquireCount.get();
+        stats.put("pool", name);
+        stats.put("maxSize", maxSize);
+        stats.put("totalConnections", totalConnections.get());
+        stats.put("activeConnections", activeConnections.get());
+        stats.put("idleConnections", idleConnections.size());
+        stats.put("waitingThreads", waitingThreads.get());
+        stats.put("acquireCount", acquired);
+        stats.put("averageAcquireMillis", acquired > 0 ? acquireTimeNanos.get() / acquired / 1000000.0 : 0.0);
+        stats.put("maxAcquireMillis", maxAcquireTimeNanos.get() / 1000000.0);
+        stats.put("acquireTimeouts", acquireTimeouts.get());
+        stats.put("connectionsCreated", connectionsCreated.get());
+        stats.put("connectionsDestroyed", connectionsDestroyed.get());
+        return stats;
+    }
+
+    public int getActiveConnections() { return activeConnections.get(); }
+    public int getIdleConnections() { return idleConnections.size(); }
+    public int getWaitingThreads() { return waitingThreads.get(); }
+    public int getMaxSize() { return maxSize; }
+
+    /**
+     * Closes all idle connections and stops handing out new ones
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            destroy(pooled);
+        }
+        logger.info("Connection pool '" + name + "' closed");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() { return logWriter; }
+
+    @Override
+    public void setLogWriter(PrintWriter out) { this.logWriter = out; }
+
+    @Override
+    public void setLoginTimeout(int seconds) { DriverManager.setLoginTimeout(seconds); }
+
+    @Override
+    public int getLoginTimeout() { return DriverManager.getLoginTimeout(); }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return logger;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("ConnectionPool does not wrap " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool " + getStatistics();
+    }
+
+    private static int intSetting(Properties settings, String key, int defaultValue) {
+        return (int) longSetting(settings, key, defaultValue);
+    }
+
+    private static long longSetting(Properties settings, String key, long defaultValue) {
+        String value = settings != null ? settings.getProperty(key) : null;
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            logger.warning("Invalid value '" + value + "' for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool
+     */
+    private class PooledConnection {
+        private final Connection physical;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastUsed = createdAt;
+        private volatile boolean broken;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        boolean isExpired(long now) {
+            return maxLifetimeMillis > 0 && now - createdAt > maxLifetimeMillis;
+        }
+
+        boolean isValid() {
+            try {
+                return physical.isValid(validationTimeoutSeconds);
+            } catch (SQLException ex) {
+                return false;
+            }
+        }
+
+        /**
+         * Wraps the physical connection in a proxy that returns it to the pool on close
+         */
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new LeaseHandler(this));
+        }
+    }
+
+    /**
+     * Proxy handler for a leased connection; close() is idempotent and hands the connection back
+     */
+    private class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned;
+
+        LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if ("close".equals(methodName)) {
+                if (!returned) {
+                    returned = true;
+                    release(pooled);
+                }
+                return null;
+            }
+            if ("isClosed".equals(methodName)) {
+                return returned || pooled.physical.isClosed();
+            }
+            if ("equals".equals(methodName)) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(methodName)) {
+                return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(methodName)) {
+                return "Pooled[" + pooled.physical + "]";
+            }
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof SQLException) {
+                    String sqlState = ((SQLException) cause).getSQLState();
+                    // Class 08 is a connection exception; never hand this connection out again
+                    if (sqlState != null && sqlState.startsWith("08")) {
+                        pooled.broken = true;
+                    }
+                }
+                throw cause;
+            }
+        }
+    }
+}
@@ -1,23 +1,86 @@
 package dao;
 
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import javax.sql.DataSource;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Statistics;
 import org.hibernate.cfg.AnnotationConfiguration;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
 import org.hibernate.SessionFactory;
+import util.ConnectionPool;
 
 /**
  * Hibernate Utility class with a convenient method to get Session Factory
  * object.
  *
+ * The SessionFactory draws its JDBC connections from a shared
+ * {@link ConnectionPool} configured by the hibernate.pool.* properties.
+ * Entities marked @Cache are kept in the Ehcache regions defined in ehcache.xml.
+ * At startup the database's indexes are checked by {@link IndexAdvisor}.
+ *
+ * When hibernate.replica.url is set, a second, read-only SessionFactory with
+ * its own pool is built against that read replica; {@link ReplicaRouter}
+ * decides which reads use it.
+ *
  * @author Ornella
  */
 public class HibernateUtil {
 
     private static final SessionFactory sessionFactory;
+    private static final ConnectionPool connectionPool;
+    private static final Properties settings;
+    private static final List<String> indexAdvice;
+    private static final SessionFactory replicaSessionFactory;
+    private static final ConnectionPool replicaConnectionPool;
     
     static {
         try {
             // Create the SessionFactory from standard (hibernate.cfg.xml) 
             // config file.
-            sessionFactory = new AnnotationConfiguration().configure().buildSessionFactory();
+            Configuration configuration = new AnnotationConfiguration().configure();
+            settings = configuration.getProperties();
+
+            // Hand Hibernate our pool instead of its built-in DriverManager pool
+            connectionPool = ConnectionPool.fromProperties("primary", configuration.getProperties());
+            configuration.getProperties().put(Environment.DATASOURCE, connectionPool);
+
+            sessionFactory = configuration.buildSessionFactory();
+
+            boolean schemaUpdate = "update".equals(settings.getProperty(Environment.HBM2DDL_AUTO));
+            indexAdvice = Collections.unmodifiableList(IndexAdvisor.check(configuration, connectionPool, schemaUpdate));
+
+            String replicaUrl = getSetting("hibernate.replica.url", null);
+            if (replicaUrl != null) {
+                Configuration replicaConfiguration = new AnnotationConfiguration().configure();
+                Properties replicaSettings = replicaConfiguration.getProperties();
+                replicaSettings.setProperty(Environment.URL, replicaUrl);
+                replicaSettings.setProperty(Environment.USER, getSetting("hibernate.replica.username", settings.getProperty(Environment.USER, "")));
+                replicaSettings.setProperty(Environment.PASS, getSetting("hibernate.replica.password", settings.getProperty(Environment.PASS, "")));
+
+                // The replica's schema comes from replication; only an embedded test replica needs building
+                replicaSettings.remove(Environment.HBM2DDL_AUTO);
+                String replicaSchema = getSetting("hibernate.replica.hbm2ddl.auto", null);
+                if (replicaSchema != null) {
+                    replicaSettings.setProperty(Environment.HBM2DDL_AUTO, replicaSchema);
+                }
+                // Rows read from a lagging replica must not end up in the cache the primary reads from
+                replicaSettings.setProperty(Environment.USE_SECOND_LEVEL_CACHE, "false");
+                replicaSettings.setProperty(Environment.USE_QUERY_CACHE, "false");
+
+                replicaConnectionPool = ConnectionPool.fromProperties("replica", replicaSettings);
+                replicaSettings.put(Environment.DATASOURCE, replicaConnectionPool);
+                replicaSessionFactory = replicaConfiguration.buildSessionFactory();
+            } else {
+                replicaConnectionPool = null;
+                replicaSessionFactory = null;
+            }
         } catch (Throwable ex) {
             // Log the exception. 
             System.err.println("Initial SessionFactory creation failed." + ex);
@@ -28,4 +91,106 @@ public class HibernateUtil {
     public static SessionFactory getSessionFactory() {
         return sessionFactory;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the SessionFactory of the read replica, or null when no replica is configured
+     */
+    public static SessionFactory getReplicaSessionFactory() {
+        return replicaSessionFactory;
+    }
+
+    /**
+     * Gets the pooled DataSource behind the SessionFactory, for raw JDBC access
+     */
+    public static DataSource getDataSource() {
+        return connectionPool;
+    }
+
+    /**
+     * Gets the connection pool, e.g. to read its live statistics
+     */
+    public static ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * Gets the replica's connection pool, or null when no replica is configured
+     */
+    public static ConnectionPool getReplicaConnectionPool() {
+        return replicaConnectionPool;
+    }
+
+    /**
+     * Reads a numeric setting from hibernate.cfg.xml
+     */
+    public static long getSetting(String key, long defaultValue) {
+        String value = settings.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a text setting from hibernate.cfg.xml
+     */
+    public static String getSetting(String key, String defaultValue) {
+        String value = settings.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Gets the findings of the startup index check; empty when the indexes match
+     */
+    public static List<String> getIndexAdvice() {
+        return indexAdvice;
+    }
+
+    /**
+     * Drops one entity from the second-level cache, for writes made outside
+     * Hibernate (e.g. raw JDBC through {@link #getDataSource()})
+     */
+    public static void evictEntity(Class<?> entityClass, Serializable id) {
+        sessionFactory.getCache().evictEntity(entityClass, id);
+    }
+
+    /**
+     * Gets hit/miss statistics for every second-level cache region
+     */
+    public static Map<String, Map<String, Object>> getCacheStatistics() {
+        Map<String, Map<String, Object>> regions = new LinkedHashMap<>();
+        CacheManager cacheManager = CacheManager.getInstance();
+        for (String name : cacheManager.getCacheNames()) {
+            Ehcache cache = cacheManager.getEhcache(name);
+            Statistics stats = cache.getStatistics();
+            long hits = stats.getCacheHits();
+            long misses = stats.getCacheMisses();
+
+            Map<String, Object> region = new LinkedHashMap<>();
+            region.put("hits", hits);
+            region.put("misses", misses);
+            region.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+            region.put("size", stats.getObjectCount());
+            region.put("maxSize", cache.getCacheConfiguration().getMaxElementsInMemory());
+            region.put("evictions", stats.getEvictionCount());
+            regions.put(name, region);
+        }
+        return regions;
+    }
+
+    /**
+     * Closes the SessionFactories and their connection pools
+     */
+    public static void shutdown() {
+        if (replicaSessionFactory != null) {
+            replicaSessionFactory.close();
+            replicaConnectionPool.close();
+        }
+        sessionFactory.close();
+        connectionPool.close();
+    }
+}
@@ -0,0 +1,76 @@
+package util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects call counts, failures and latency per named operation
+ */
+public class OperationTimer {
+
+    private final Map<String, Timing> timings = new ConcurrentHashMap<>();
+
+    /**
+     * Records one execution of an operation
+     *
+     * @param operation Operation name
+     * @param nanos Elapsed time in nanoseconds
+     * @param success Whether the operation completed normally
+     */
+    public void record(String operation, long nanos, boolean success) {
+        timings.computeIfAbsent(operation, key -> new Timing()).record(nanos, success);
+    }
+
+    /**
+     * Gets a snapshot of all recorded operations, sorted by name
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        for (Map.Entry<String, Timing> entry : timings.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toMap());
+        }
+        return result;
+    }
+
+    /**
+     * Clears all recorded timings
+     */
+    public void reset() {
+        timings.clear();
+    }
+
+    private static class Timing {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos, boolean success) {
+            count.increment();
+            totalNanos.add(nanos);
+            if (!success) {
+                failures.increment();
+            }
+            long max;
+            while (nanos > (max = maxNanos.get())) {
+                if (maxNanos.compareAndSet(max, nanos)) {
+                    break;
+                }
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            long calls = count.sum();
+            map.put("count", calls);
+            map.put("failures", failures.sum());
+            map.put("averageMillis", calls > 0 ? totalNanos.sum() / calls / 1000000.0 : 0.0);
+            map.put("maxMillis", maxNanos.get() / 1000000.0);
+            return map;
+        }
+    }
+}